@@ -0,0 +1,328 @@
+/*************************************************************************
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 2005-2011 UBI/HULTIG All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 3 only ("GPL"). You may not use this
+ * file except in compliance with the License. You can obtain a copy of
+ * the License at http://www.gnu.org/licenses/gpl.txt. See the License
+ * for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * When distributing the software, include this License Header Notice
+ * in each file. If applicable, add the following below the License
+ * Header, with the fields enclosed by brackets [] replaced by your own
+ * identifying information:
+ *
+ *       "Portions Copyrighted [year] [name of copyright owner]"
+ *************************************************************************
+ */
+package hultig.align;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import hultig.sumo.CorpusIndex;
+import hultig.sumo.Text;
+import hultig.util.StringPair;
+
+
+/**
+ * <p>
+ * Seed and extend alignment of long documents, for example near duplicate
+ * texts, in plagiarism detection. Instead of filling the whole dynamic
+ * programming matrix between two documents, the word codes shared by both
+ * are found as exact k-grams, through a hash index of the second document,
+ * and each seed is extended to a maximal exact match. The matches are
+ * chained by {@link SimpleChaining#sparseChaining(List)} and the chained
+ * matches become the anchors of the alignment. Only the regions between
+ * consecutive anchors are aligned by dynamic programming, with the
+ * {@link LinearSWaterman} local aligner, whose unaligned tokens are output
+ * as gaps.
+ * </p>
+ *
+ * <p>
+ * The time is close to linear in the document lengths, when they share
+ * most of their content. The k-grams repeated more than a given number of
+ * times in the second document are not used as seeds, and the regions
+ * bigger than a given number of cells are output as gaps without being
+ * aligned.
+ * </p>
+ *
+ * <p>
+ * <b>University of Beira Interior</b> (UBI)<br />
+ * Centre For Human Language Technology and Bioinformatics (HULTIG)
+ * </p>
+ *
+ * @author J. P. Cordeiro
+ * @version 1.0
+ */
+public class AnchoredAligner
+{
+    private static final long BASE= 0x9E3779B97F4A7C15L;
+
+    /**
+     * The default seed length, in words.
+     */
+    public static final int K= 4;
+
+    /**
+     * The default maximum number of occurrences of a seed k-gram in the
+     * second document.
+     */
+    public static final int MAX_OCC= 16;
+
+    /**
+     * The default maximum size of an aligned region between anchors.
+     */
+    public static final long MAX_GAP_CELLS= 1L << 24;
+
+    private final int k;
+    private int maxOcc;
+    private long maxGapCells;
+    private final LinearSWaterman sw;
+
+    private List<SimpleChaining.Match> anchors;
+    private int matched;
+    private int[] outA;
+    private int[] outB;
+    private int outLen;
+
+
+    /**
+     * Creates an aligner with the default seed length.
+     * @param dict The dictionary of the word codes, used for scoring the
+     * substitutions between anchors, or null.
+     */
+    public AnchoredAligner(CorpusIndex dict) {
+        this(dict, K);
+    }
+
+    /**
+     * Creates an aligner with a given seed length.
+     * @param dict The dictionary of the word codes, or null.
+     * @param k The seed length, in words.
+     */
+    public AnchoredAligner(CorpusIndex dict, int k) {
+        this.k= Math.max(1, k);
+        this.maxOcc= MAX_OCC;
+        this.maxGapCells= MAX_GAP_CELLS;
+        this.sw= new LinearSWaterman(dict);
+        this.anchors= new ArrayList<>();
+        outA= new int[64];
+        outB= new int[64];
+    }
+
+    public void setMaxOccurrences(int maxOcc) {
+        this.maxOcc= maxOcc;
+    }
+
+    public void setMaxGapCells(long cells) {
+        this.maxGapCells= cells;
+    }
+
+    /**
+     * The anchors of the last alignment, as chained matches with positions
+     * starting at 1, both ends included.
+     * @return The list of anchors, in increasing order.
+     */
+    public List<SimpleChaining.Match> getAnchors() {
+        return anchors;
+    }
+
+    /**
+     * The number of aligned pairs of equal codes in the last alignment.
+     * @return The number of matched tokens.
+     */
+    public int getMatched() {
+        return matched;
+    }
+
+    /**
+     * Finds the maximal exact matches, with at least k codes, between two
+     * code arrays.
+     * @param a The first array.
+     * @param b The second array.
+     * @return The list of matches, scored by their length.
+     */
+    public List<SimpleChaining.Match> seeds(int[] a, int[] b) {
+        List<SimpleChaining.Match> matches= new ArrayList<>();
+        int n= a.length, m= b.length;
+        if ( n < k || m < k )  return matches;
+
+        long[] pa= prefix(a), pb= prefix(b);
+        long pk= 1L;
+        for (int t = 0; t < k; t++)  pk*= BASE;
+
+        // hash index of the k-grams of b: slots keyed by hash, each with
+        // a linked list of positions and the number of occurrences.
+        int nb= m - k + 1;
+        int cap= Integer.highestOneBit(Math.max(4, 2*nb)) << 1;
+        int mask= cap - 1;
+        long[] tkey= new long[cap];
+        int[] thead= new int[cap];
+        int[] tcount= new int[cap];
+        Arrays.fill(thead, -1);
+        int[] next= new int[nb];
+        for (int j = 0; j < nb; j++) {
+            long h= pb[j+k] - pb[j]*pk;
+            int s= slot(h, tkey, thead, mask);
+            tkey[s]= h;
+            next[j]= thead[s];
+            thead[s]= j;
+            tcount[s]++;
+        }
+
+        // the starts of the matches found, as (position in a, position in b).
+        HashSet<Long> found= new HashSet<>();
+        boolean leftUsed= false;
+        for (int i = 0; i + k <= n; i++) {
+            long h= pa[i+k] - pa[i]*pk;
+            int s= slot(h, tkey, thead, mask);
+            boolean used= thead[s] >= 0 && tcount[s] <= maxOcc;
+            boolean leftSeeded= leftUsed;
+            leftUsed= used;
+            if ( !used )  continue;
+            for (int j = thead[s]; j >= 0; j= next[j]) {
+                // a match that the left k-gram already seeded is skipped, and
+                // one whose left k-gram was too frequent is extended leftwards
+                // to its start.
+                int i0= i, j0= j;
+                if ( i > 0 && j > 0 && a[i-1] == b[j-1] ) {
+                    if ( leftSeeded )  continue;
+                    while ( i0 > 0 && j0 > 0 && a[i0-1] == b[j0-1] ) {
+                        i0--;
+                        j0--;
+                    }
+                }
+                if ( !found.add(((long) i0 << 32) | j0) )  continue;
+                int len= 0;
+                while ( i0+len < n && j0+len < m && a[i0+len] == b[j0+len] )  len++;
+                if ( len >= k )  matches.add(new SimpleChaining.Match(i0+1, i0+len, j0+1, j0+len, len));
+            }
+        }
+        return matches;
+    }
+
+    private static long[] prefix(int[] v) {
+        long[] p= new long[v.length + 1];
+        for (int i = 0; i < v.length; i++) {
+            long c= (v[i] + 0x7F4A7C15L) * 0xBF58476D1CE4E5B9L;
+            p[i+1]= p[i]*BASE + (c ^ (c >>> 31));
+        }
+        return p;
+    }
+
+    private static int slot(long h, long[] tkey, int[] thead, int mask) {
+        int s= (int) (h ^ (h >>> 32)) & mask;
+        while ( thead[s] >= 0 && tkey[s] != h )  s= (s+1) & mask;
+        return s;
+    }
+
+    /**
+     * Aligns two code arrays, from their chained anchors.
+     * @param a The first array.
+     * @param b The second array.
+     * @return The alignment, as two rows of equal length, where gaps are
+     * marked with -1.
+     */
+    public int[][] align(int[] a, int[] b) {
+        anchors= SimpleChaining.sparseChaining(seeds(a, b));
+        outLen= 0;
+        matched= 0;
+
+        int ia= 0, ib= 0;
+        for (SimpleChaining.Match m : anchors) {
+            fill(a, ia, m.getFromA()-1, b, ib, m.getFromB()-1);
+            for (int i = m.getFromA()-1, j = m.getFromB()-1; i < m.getToA(); i++, j++)  emit(a[i], b[j]);
+            ia= m.getToA();
+            ib= m.getToB();
+        }
+        fill(a, ia, a.length, b, ib, b.length);
+
+        int[][] va= new int[2][outLen];
+        System.arraycopy(outA, 0, va[0], 0, outLen);
+        System.arraycopy(outB, 0, va[1], 0, outLen);
+        return va;
+    }
+
+    /**
+     * Aligns the region {@code a[a0,a1)} and {@code b[b0,b1)} between two
+     * anchors, by local alignment, leaving the other tokens as gaps.
+     */
+    private void fill(int[] a, int a0, int a1, int[] b, int b0, int b1) {
+        int n= a1 - a0, m= b1 - b0;
+        if ( n > 0 && m > 0 && (long) n * m <= maxGapCells ) {
+            int[][] loc= sw.align(Arrays.copyOfRange(a, a0, a1), Arrays.copyOfRange(b, b0, b1));
+            SimpleChaining.Match r= sw.getMatch();
+            if ( r != null ) {
+                gaps(a, a0, a0 + r.getFromA()-1, b, b0, b0 + r.getFromB()-1);
+                for (int t = 0; t < loc[0].length; t++)  emit(loc[0][t], loc[1][t]);
+                gaps(a, a0 + r.getToA(), a1, b, b0 + r.getToB(), b1);
+                return;
+            }
+        }
+        gaps(a, a0, a1, b, b0, b1);
+    }
+
+    private void gaps(int[] a, int a0, int a1, int[] b, int b0, int b1) {
+        for (int i = a0; i < a1; i++)  emit(a[i], -1);
+        for (int j = b0; j < b1; j++)  emit(-1, b[j]);
+    }
+
+    private void emit(int ca, int cb) {
+        if ( outLen == outA.length ) {
+            outA= Arrays.copyOf(outA, 2*outLen);
+            outB= Arrays.copyOf(outB, 2*outLen);
+        }
+        outA[outLen]= ca;
+        outB[outLen]= cb;
+        outLen++;
+        if ( ca >= 0 && ca == cb )  matched++;
+    }
+
+    /**
+     * Aligns two texts, codified with a common dictionary.
+     * @param ta One text.
+     * @param tb The other text.
+     * @param k The seed length.
+     * @return The two aligned strings.
+     */
+    public static StringPair align(Text ta, Text tb, int k) {
+        Text t= new Text();
+        t.add(ta);
+        t.add(tb);
+        t.codify();
+        CorpusIndex dict= t.getCorpusIndex();
+        ta.codify(dict);
+        tb.codify(dict);
+
+        AnchoredAligner aa= new AnchoredAligner(dict, k);
+        int[][] va= aa.align(LinearSWaterman.codes(ta), LinearSWaterman.codes(tb));
+        return AlignCommons.fromCodesToStringAlignments(va, dict);
+    }
+
+
+    public static void main(String[] args) {
+        Text ta= new Text();
+        ta.add("gaza city, gaza strip ( ap ) - palestinian prime minister ismail haniyeh said friday that israel's offensive in gaza - including the kidnappings of some of his cabinet ministers - was part of a premeditated plan to bring down the hamas-led government.");
+        ta.add("palestinian leaders were working hard to end the standoff.");
+        Text tb= new Text();
+        tb.add("haniyeh said friday that israel's offensive in gaza was part of a premeditated plan to bring down the hamas-led government, but palestinian leaders were working hard to end the standoff.");
+
+        StringPair sp= align(ta, tb, 3);
+        System.out.println(sp.getS1());
+        System.out.println(sp.getS2());
+
+        //a shared run starting with a k-gram repeated more than MAX_OCC times.
+        int[] a= new int[60];
+        for (int i = 20; i < a.length; i++)  a[i]= i;
+        AnchoredAligner aa= new AnchoredAligner(null, 4);
+        int nseeds= aa.seeds(a, a.clone()).size();
+        aa.align(a, a.clone());
+        System.out.printf("\nseeds: %d   anchors: %d   matched: %d/%d\n", nseeds, aa.getAnchors().size(), aa.getMatched(), a.length);
+    }
+}
@@ -0,0 +1,531 @@
+/*************************************************************************
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 2005-2011 UBI/HULTIG All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 3 only ("GPL"). You may not use this
+ * file except in compliance with the License. You can obtain a copy of
+ * the License at http://www.gnu.org/licenses/gpl.txt. See the License
+ * for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * When distributing the software, include this License Header Notice
+ * in each file. If applicable, add the following below the License
+ * Header, with the fields enclosed by brackets [] replaced by your own
+ * identifying information:
+ *
+ *       "Portions Copyrighted [year] [name of copyright owner]"
+ *************************************************************************
+ */
+package hultig.align;
+
+import java.util.Arrays;
+
+import hultig.sumo.CorpusIndex;
+import hultig.sumo.Sentence;
+import hultig.sumo.Text;
+import hultig.util.StringPair;
+
+
+/**
+ * <p>
+ * A linear memory version of the {@link SWaterman} local aligner, for
+ * long inputs, like whole paragraphs. It uses exactly the same scoring
+ * (match, mismatch, key words, dictionary based substitutions and indels)
+ * but never builds the full score matrix:
+ * </p>
+ *
+ * <ul>
+ * <li>The alignment score is computed with two rolling rows, in
+ * {@code O(m)} memory.</li>
+ * <li>When the best alignment itself is requested, and the matrix has no
+ * more than {@link #getMaxTraceCells()} cells, a direction matrix is kept
+ * with 2 bits per cell, and traced back from the best cell with the same
+ * preferences as {@link SWaterman#getAlignmentsVect(int, int,
+ * java.util.Vector, java.util.Vector)}.</li>
+ * <li>For bigger matrices, the start of the best alignment is found by a
+ * reversed pass anchored at its end, and the aligned region is then
+ * globally aligned by the Hirschberg divide and conquer method, again in
+ * linear memory.</li>
+ * </ul>
+ *
+ * <p>
+ * An aligner keeps its buffers between calls, so that aligning many pairs
+ * does not allocate memory, apart from the buffer growth and the resulting
+ * alignment. It is not synchronized, and each thread should use its own
+ * instance.
+ * </p>
+ *
+ * <p>
+ * <b>University of Beira Interior</b> (UBI)<br />
+ * Centre For Human Language Technology and Bioinformatics (HULTIG)
+ * </p>
+ *
+ * @author J. P. Cordeiro
+ * @version 1.0
+ */
+public final class LinearSWaterman
+{
+    /**
+     * The default maximum number of cells of the packed direction matrix,
+     * taking 4 MB of memory.
+     */
+    public static final int MAX_TRACE_CELLS= 1 << 24;
+
+    /**
+     * The Hirschberg recursion stops at regions with at most this number
+     * of cells, which are traced back directly.
+     */
+    private static final int BASE_CELLS= 1 << 12;
+
+    /**
+     * The packed directions.
+     */
+    private static final int TB_ZERO= 0;
+    private static final int TB_LEFT= 1;
+    private static final int TB_UP= 2;
+    private static final int TB_DIAG= 3;
+
+    private static final double EPSILON= 1.0E-9;
+
+    private CorpusIndex dictionary;
+    private SubstitutionCache cache;
+    private int[] VKEYWS;
+    private int maxTraceCells;
+
+    private int[] vs1;
+    private int[] vs2;
+
+    private double[] row0, row1, row2, row3;
+    private byte[] trace;
+    private int[] outA, outB;
+    private int outLen;
+
+    private double best;
+    private int fromA, toA, fromB, toB;
+
+
+    /**
+     * Creates an aligner for plain code vectors, without a dictionary.
+     */
+    public LinearSWaterman() {
+        this((CorpusIndex) null, null);
+    }
+
+    /**
+     * Creates an aligner for vectors codified with a given dictionary,
+     * which is used to score the substitution of different words.
+     * @param dict The dictionary.
+     */
+    public LinearSWaterman(CorpusIndex dict) {
+        this(dict, null);
+    }
+
+    /**
+     * Creates an aligner for vectors codified with a given dictionary.
+     * @param dict The dictionary, or null.
+     * @param vkeyws The key word codes, in ascending order, or null.
+     */
+    public LinearSWaterman(CorpusIndex dict, int[] vkeyws) {
+        dictionary= dict;
+        cache= null;
+        VKEYWS= vkeyws;
+        maxTraceCells= MAX_TRACE_CELLS;
+        row0= row1= row2= row3= new double[0];
+        trace= new byte[0];
+        outA= new int[64];
+        outB= new int[64];
+    }
+
+    /**
+     * Creates an aligner for vectors codified with the dictionary of a
+     * given substitution cache.
+     * @param cache The cache of word substitution costs.
+     * @param vkeyws The key word codes, in ascending order, or null.
+     */
+    public LinearSWaterman(SubstitutionCache cache, int[] vkeyws) {
+        this(cache.getDictionary(), vkeyws);
+        this.cache= cache;
+    }
+
+    public void setCache(SubstitutionCache cache) {
+        this.cache= cache;
+    }
+
+    public SubstitutionCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Defines the maximum size of the packed direction matrix, above which
+     * the Hirschberg method is used.
+     * @param cells The maximum number of cells.
+     */
+    public void setMaxTraceCells(int cells) {
+        maxTraceCells= Math.max(BASE_CELLS, cells);
+    }
+
+    public int getMaxTraceCells() {
+        return maxTraceCells;
+    }
+
+    /**
+     * Concatenates the codes of all sentences of a text, codifying it if
+     * needed, in order to align whole paragraphs.
+     * @param txt The text.
+     * @return The code vector.
+     */
+    public static int[] codes(Text txt) {
+        if ( txt.getCorpusIndex() == null )  txt.codify();
+        int n= 0;
+        for (Sentence s : txt)  n+= s.size();
+        int[] v= new int[n];
+        n= 0;
+        for (Sentence s : txt) {
+            int[] vs= s.getCodes();
+            System.arraycopy(vs, 0, v, n, vs.length);
+            n+= vs.length;
+        }
+        return v;
+    }
+
+    private double similarity(int a, int b) {
+        return SWaterman.substitution(a, b, dictionary, cache, VKEYWS);
+    }
+
+    private void ensureRows(int m) {
+        if ( row0.length < m+1 ) {
+            int k= Math.max(m+1, 2*row0.length);
+            row0= new double[k];
+            row1= new double[k];
+            row2= new double[k];
+            row3= new double[k];
+        }
+    }
+
+    private void ensureTrace(long cells) {
+        int k= (int) ((cells + 3) >> 2);
+        if ( trace.length < k )  trace= new byte[Math.max(k, Math.min(2*trace.length, (maxTraceCells + 3) >> 2))];
+    }
+
+    private void setDir(int k, int d) {
+        int sh= (k & 3) << 1;
+        trace[k >> 2]= (byte) ((trace[k >> 2] & ~(3 << sh)) | (d << sh));
+    }
+
+    private int getDir(int k) {
+        return (trace[k >> 2] >> ((k & 3) << 1)) & 3;
+    }
+
+    /**
+     * Computes the local alignment score of two code vectors, in linear
+     * memory.
+     * @param v1 The first vector.
+     * @param v2 The second vector.
+     * @return The same value as {@link SWaterman#getAlignmentScore()}.
+     */
+    public double score(int[] v1, int[] v2) {
+        vs1= v1;
+        vs2= v2;
+        forward(false);
+        fromA= fromB= 0;
+        return best / SWaterman.NORM_FACTOR;
+    }
+
+    /**
+     * Gives the best local alignment of two code vectors, where gaps are
+     * represented by -1, as in {@link SWaterman#getAlignments()}.
+     * @param v1 The first vector.
+     * @param v2 The second vector.
+     * @return The alignment, as two rows of codes, empty if no positive
+     * scoring alignment exists.
+     */
+    public int[][] align(int[] v1, int[] v2) {
+        vs1= v1;
+        vs2= v2;
+        outLen= 0;
+        long cells= (long) (v1.length + 1) * (v2.length + 1);
+        if ( cells <= maxTraceCells ) {
+            forward(true);
+            if ( best > 0 )  tracebackLocal(toA, toB, v2.length + 1);
+        }
+        else {
+            forward(false);
+            if ( best > 0 ) {
+                anchorStart();
+                hirschberg(fromA - 1, toA, fromB - 1, toB);
+            }
+        }
+        if ( best <= 0 )  fromA= fromB= toA= toB= 0;
+
+        int[][] va= new int[2][outLen];
+        System.arraycopy(outA, 0, va[0], 0, outLen);
+        System.arraycopy(outB, 0, va[1], 0, outLen);
+        return va;
+    }
+
+    /**
+     * The score of the last computed alignment.
+     */
+    public double getAlignmentScore() {
+        return best / SWaterman.NORM_FACTOR;
+    }
+
+    /**
+     * The coordinates of the last alignment computed by
+     * {@link #align(int[], int[])}, as in {@link SWaterman#getMatches()}:
+     * positions start at 1 and both ends are included.
+     * @return The match, or null if no alignment was computed.
+     */
+    public SimpleChaining.Match getMatch() {
+        if ( fromA <= 0 )  return null;
+        return new SimpleChaining.Match(fromA, toA, fromB, toB, best / SWaterman.NORM_FACTOR);
+    }
+
+    /**
+     * The Smith-Waterman pass with two rolling rows, keeping the maximum
+     * score and its first cell, in row order, and optionally the packed
+     * directions.
+     */
+    private void forward(boolean withTrace) {
+        int n= vs1.length, m= vs2.length;
+        ensureRows(m);
+        if ( withTrace )  ensureTrace((long) (n + 1) * (m + 1));
+
+        double[] prev= row0, cur= row1;
+        Arrays.fill(prev, 0, m+1, 0.0);
+        best= 0.0;
+        toA= toB= 0;
+        for (int i = 1; i <= n; i++) {
+            int a= vs1[i-1];
+            int k= i*(m+1);
+            cur[0]= 0.0;
+            for (int j = 1; j <= m; j++) {
+                double diagScore= prev[j-1] + similarity(a, vs2[j-1]);
+                double upScore= cur[j-1] + SWaterman.INDEL_SCORE;
+                double leftScore= prev[j] + SWaterman.INDEL_SCORE;
+                double s= Math.max(diagScore, Math.max(upScore, Math.max(leftScore, 0)));
+                cur[j]= s;
+                if ( withTrace ) {
+                    int d;
+                    if ( s == 0 )  d= TB_ZERO;
+                    else if ( leftScore == s )  d= TB_LEFT;
+                    else if ( upScore == s )  d= TB_UP;
+                    else  d= TB_DIAG;
+                    setDir(k+j, d);
+                }
+                if ( s > best ) {
+                    best= s;
+                    toA= i;
+                    toB= j;
+                }
+            }
+            double[] t= prev; prev= cur; cur= t;
+        }
+    }
+
+    private void emit(int a, int b) {
+        if ( outLen == outA.length ) {
+            outA= Arrays.copyOf(outA, 2*outLen);
+            outB= Arrays.copyOf(outB, 2*outLen);
+        }
+        outA[outLen]= a;
+        outB[outLen]= b;
+        outLen++;
+    }
+
+    private void reverse(int from) {
+        for (int p = from, q = outLen-1; p < q; p++, q--) {
+            int t= outA[p]; outA[p]= outA[q]; outA[q]= t;
+            t= outB[p]; outB[p]= outB[q]; outB[q]= t;
+        }
+    }
+
+    /**
+     * Traces back the packed local directions, from a given cell.
+     */
+    private void tracebackLocal(int i, int j, int width) {
+        while ( i > 0 && j > 0 ) {
+            int d= getDir(i*width + j);
+            if ( d == TB_ZERO )  break;
+            if ( d == TB_LEFT ) {
+                emit(vs1[i-1], -1);
+                i--;
+            }
+            else if ( d == TB_UP ) {
+                emit(-1, vs2[j-1]);
+                j--;
+            }
+            else {
+                emit(vs1[i-1], vs2[j-1]);
+                i--;
+                j--;
+            }
+        }
+        fromA= i+1;
+        fromB= j+1;
+        reverse(0);
+    }
+
+    /**
+     * Finds the start of the best local alignment, by a reversed global
+     * pass anchored at its end cell, stopping at the first row reaching
+     * the best score.
+     */
+    private void anchorStart() {
+        int n= toA, m= toB;
+        double[] prev= row0, cur= row1;
+        prev[0]= 0.0;
+        for (int q = 1; q <= m; q++)  prev[q]= q*SWaterman.INDEL_SCORE;
+        double target= best - EPSILON*Math.max(1.0, best);
+        for (int p = 1; p <= n; p++) {
+            int a= vs1[n-p];
+            cur[0]= p*SWaterman.INDEL_SCORE;
+            for (int q = 1; q <= m; q++) {
+                double s= Math.max(prev[q-1] + similarity(a, vs2[m-q]),
+                                   Math.max(cur[q-1], prev[q]) + SWaterman.INDEL_SCORE);
+                cur[q]= s;
+                if ( s >= target ) {
+                    fromA= n-p+1;
+                    fromB= m-q+1;
+                    return;
+                }
+            }
+            double[] t= prev; prev= cur; cur= t;
+        }
+        fromA= 1;
+        fromB= 1;
+    }
+
+    /**
+     * Globally aligns {@code vs1[a0,a1)} with {@code vs2[b0,b1)}, by the
+     * Hirschberg method, emitting the aligned pairs in order.
+     */
+    private void hirschberg(int a0, int a1, int b0, int b1) {
+        int n= a1 - a0, w= b1 - b0;
+        if ( n <= 1 || (long) (n + 1) * (w + 1) <= BASE_CELLS ) {
+            globalBase(a0, a1, b0, b1);
+            return;
+        }
+
+        int mid= (a0 + a1) >>> 1;
+        ensureRows(w);
+
+        // forward scores of vs1[a0,mid) against every prefix of vs2[b0,b1).
+        double[] prev= row0, cur= row1;
+        for (int q = 0; q <= w; q++)  prev[q]= q*SWaterman.INDEL_SCORE;
+        for (int i = a0; i < mid; i++) {
+            cur[0]= prev[0] + SWaterman.INDEL_SCORE;
+            for (int q = 1; q <= w; q++) {
+                cur[q]= Math.max(prev[q-1] + similarity(vs1[i], vs2[b0+q-1]),
+                                 Math.max(cur[q-1], prev[q]) + SWaterman.INDEL_SCORE);
+            }
+            double[] t= prev; prev= cur; cur= t;
+        }
+        double[] F= prev;
+
+        // backward scores of vs1[mid,a1) against every suffix of vs2[b0,b1).
+        prev= row2;
+        cur= row3;
+        for (int q = 0; q <= w; q++)  prev[q]= q*SWaterman.INDEL_SCORE;
+        for (int i = a1-1; i >= mid; i--) {
+            cur[0]= prev[0] + SWaterman.INDEL_SCORE;
+            for (int q = 1; q <= w; q++) {
+                cur[q]= Math.max(prev[q-1] + similarity(vs1[i], vs2[b1-q]),
+                                 Math.max(cur[q-1], prev[q]) + SWaterman.INDEL_SCORE);
+            }
+            double[] t= prev; prev= cur; cur= t;
+        }
+        double[] B= prev;
+
+        int split= 0;
+        double max= Double.NEGATIVE_INFINITY;
+        for (int q = 0; q <= w; q++) {
+            double s= F[q] + B[w-q];
+            if ( s > max ) {
+                max= s;
+                split= q;
+            }
+        }
+
+        hirschberg(a0, mid, b0, b0 + split);
+        hirschberg(mid, a1, b0 + split, b1);
+    }
+
+    /**
+     * Globally aligns a small region with a packed direction matrix.
+     */
+    private void globalBase(int a0, int a1, int b0, int b1) {
+        int n= a1 - a0, w= b1 - b0, width= w + 1;
+        ensureRows(w);
+        ensureTrace((long) (n + 1) * width);
+
+        double[] prev= row0, cur= row1;
+        prev[0]= 0.0;
+        for (int q = 1; q <= w; q++) {
+            prev[q]= q*SWaterman.INDEL_SCORE;
+            setDir(q, TB_UP);
+        }
+        for (int p = 1; p <= n; p++) {
+            int a= vs1[a0+p-1];
+            cur[0]= p*SWaterman.INDEL_SCORE;
+            setDir(p*width, TB_LEFT);
+            for (int q = 1; q <= w; q++) {
+                double diagScore= prev[q-1] + similarity(a, vs2[b0+q-1]);
+                double upScore= cur[q-1] + SWaterman.INDEL_SCORE;
+                double leftScore= prev[q] + SWaterman.INDEL_SCORE;
+                double s= Math.max(diagScore, Math.max(upScore, leftScore));
+                cur[q]= s;
+                int d;
+                if ( diagScore == s )  d= TB_DIAG;
+                else if ( leftScore == s )  d= TB_LEFT;
+                else  d= TB_UP;
+                setDir(p*width + q, d);
+            }
+            double[] t= prev; prev= cur; cur= t;
+        }
+
+        int start= outLen;
+        int p= n, q= w;
+        while ( p > 0 || q > 0 ) {
+            int d= getDir(p*width + q);
+            if ( d == TB_LEFT ) {
+                emit(vs1[a0+p-1], -1);
+                p--;
+            }
+            else if ( d == TB_UP ) {
+                emit(-1, vs2[b0+q-1]);
+                q--;
+            }
+            else {
+                emit(vs1[a0+p-1], vs2[b0+q-1]);
+                p--;
+                q--;
+            }
+        }
+        reverse(start);
+    }
+
+
+    public static void main(String[] args) {
+        String s1 = "gaza city, gaza strip ( ap ) - palestinian prime minister ismail haniyeh said friday that israel's offensive in gaza - including the kidnappings of some of his cabinet ministers - was part of a premeditated plan to bring down the hamas-led government.";
+        String s2 = "haniyeh said friday that israel's offensive in gaza was part of a premeditated plan to bring down the hamas-led government, but palestinian leaders were working hard to end the standoff.\"";
+
+        Text txt = new Text();
+        txt.add(s1);
+        txt.add(s2);
+        txt.codify();
+        CorpusIndex dict= txt.getCorpusIndex();
+
+        int[] v1 = txt.getSentence(0).getCodes();
+        int[] v2 = txt.getSentence(1).getCodes();
+
+        LinearSWaterman lsw= new LinearSWaterman(dict);
+        int[][] va= lsw.align(v1, v2);
+        System.out.printf("score: %.2f   match: %s\n", lsw.getAlignmentScore(), lsw.getMatch());
+        StringPair sp= AlignCommons.fromCodesToStringAlignments(va, dict);
+        System.out.println(sp.getS1());
+        System.out.println(sp.getS2());
+    }
+}
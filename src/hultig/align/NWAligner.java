@@ -0,0 +1,305 @@
+/*************************************************************************
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 2005-2011 UBI/HULTIG All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 3 only ("GPL"). You may not use this
+ * file except in compliance with the License. You can obtain a copy of
+ * the License at http://www.gnu.org/licenses/gpl.txt. See the License
+ * for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * When distributing the software, include this License Header Notice
+ * in each file. If applicable, add the following below the License
+ * Header, with the fields enclosed by brackets [] replaced by your own
+ * identifying information:
+ *
+ *       "Portions Copyrighted [year] [name of copyright owner]"
+ *************************************************************************
+ */
+package hultig.align;
+
+import java.util.Arrays;
+
+import hultig.sumo.CorpusIndex;
+
+
+/**
+ * <p>
+ * A reusable <i>Needleman Wunsch</i> global aligner over code arrays,
+ * giving exactly the same alignments as {@link NWunsch}, with the same
+ * substitution scores and tie breaking. The score and substitution
+ * matrices are kept in flat arrays, which are reused between calls and
+ * only grow when a longer pair arrives, so that aligning a stream of pairs
+ * does not allocate memory, apart from the resulting alignments.
+ * </p>
+ *
+ * <p>
+ * The substitution scores are computed once for each distinct code of the
+ * first array against the second array (a query profile), which avoids
+ * recomputing the <i>Edit Distance</i> of repeated words. The rows of the
+ * score matrix are filled in two passes, the first one without any
+ * dependency between adjacent cells, so that it can be vectorized by the
+ * JIT compiler. Without a dictionary all scores are integers, and an
+ * integer version of the kernel is used.
+ * </p>
+ *
+ * <p>
+ * An aligner is not synchronized, and each thread should use its own
+ * instance. The dictionary and the substitution cache may be shared.
+ * </p>
+ *
+ * <p>
+ * <b>University of Beira Interior</b> (UBI)<br />
+ * Centre For Human Language Technology and Bioinformatics (HULTIG)
+ * </p>
+ *
+ * @author J. P. Cordeiro
+ * @version 1.0
+ */
+public class NWAligner
+{
+    /**
+     * The gap penalty, as in {@link NWunsch}.
+     */
+    public static final double GAPENALTY= -3;
+
+    /**
+     * The score of equal codes, and the symmetric of different ones when
+     * there is no dictionary, as in {@link NWunsch}.
+     */
+    private static final int MATCH= 10;
+
+    private CorpusIndex dictionary;
+    private SubstitutionCache cache;
+
+    private double[] score;
+    private double[] prof;
+    private int[] iscore;
+    private int[] iprof;
+    private int[] syms;
+    private int[] rows;
+    private boolean integral;
+    private int[] outA;
+    private int[] outB;
+    private double last;
+
+
+    /**
+     * Creates an aligner for arrays codified with a given dictionary.
+     * @param dict The dictionary, or null to score every different pair
+     * of codes as a plain mismatch.
+     */
+    public NWAligner(CorpusIndex dict) {
+        this(dict, null);
+    }
+
+    /**
+     * Creates an aligner for arrays codified with a given dictionary, and
+     * a cache of word substitution costs, which is only used if it has the
+     * same dictionary.
+     * @param dict The dictionary.
+     * @param cache The substitution cache, or null.
+     */
+    public NWAligner(CorpusIndex dict, SubstitutionCache cache) {
+        this.dictionary= dict;
+        this.cache= cache;
+        score= new double[256];
+        prof= new double[256];
+        iscore= new int[256];
+        iprof= new int[256];
+        syms= new int[64];
+        rows= new int[64];
+        outA= new int[64];
+        outB= new int[64];
+    }
+
+    public CorpusIndex getDict() {
+        return dictionary;
+    }
+
+    public void setDic(CorpusIndex dict) {
+        this.dictionary= dict;
+    }
+
+    public SubstitutionCache getCache() {
+        return cache;
+    }
+
+    public void setCache(SubstitutionCache cache) {
+        this.cache= cache;
+    }
+
+    /**
+     * Globally aligns two code arrays. Every code must belong to the
+     * dictionary of this aligner.
+     * @param va The first array.
+     * @param vb The second array.
+     * @return The alignment, as two rows of equal length, where gaps are
+     * marked with -1, or null if some code is not in the dictionary.
+     */
+    public int[][] align(int[] va, int[] vb) {
+        int na= va.length, nb= vb.length;
+        int k= profile(va);
+        if ( dictionary == null ) {
+            fillInt(na, k, vb);
+            integral= true;
+            last= iscore[na*(nb+1) + nb];
+        }
+        else {
+            if ( !fillDouble(na, k, vb) )  return null;
+            integral= false;
+            last= score[na*(nb+1) + nb];
+        }
+        return traceback(va, vb);
+    }
+
+    /**
+     * The score of the last alignment.
+     * @return The value of the bottom right cell of the score matrix.
+     */
+    public double getScore() {
+        return last;
+    }
+
+    /**
+     * Finds the distinct codes of the first array, in {@code syms}, and
+     * the profile row of each of its positions, in {@code rows}.
+     * @return The number of distinct codes.
+     */
+    private int profile(int[] va) {
+        int na= va.length;
+        if ( syms.length < na ) {
+            syms= new int[Math.max(na, 2*syms.length)];
+            rows= new int[syms.length];
+        }
+        System.arraycopy(va, 0, syms, 0, na);
+        Arrays.sort(syms, 0, na);
+        int k= 0;
+        for (int i = 0; i < na; i++) {
+            if ( k == 0 || syms[i] != syms[k-1] )  syms[k++]= syms[i];
+        }
+        for (int i = 0; i < na; i++)  rows[i]= Arrays.binarySearch(syms, 0, k, va[i]);
+        return k;
+    }
+
+    /**
+     * The double precision kernel. The substitution scores are computed
+     * once per distinct code of the first array (the query profile). Each
+     * row is computed in two passes: the diagonal and vertical moves, with
+     * no dependency between cells, followed by a running scan for the
+     * horizontal moves.
+     */
+    private boolean fillDouble(int na, int k, int[] vb) {
+        int nb= vb.length, w= nb + 1;
+        if ( prof.length < k * nb )  prof= new double[Math.max(k * nb, 2*prof.length)];
+        for (int c = 0; c < k; c++) {
+            int a= syms[c], pc= c*nb;
+            for (int j = 0; j < nb; j++) {
+                double sim= NWunsch.substitution(a, vb[j], dictionary, cache);
+                if ( sim != sim )  return false;
+                prof[pc + j]= sim;
+            }
+        }
+
+        if ( score.length < (na + 1) * w )  score= new double[Math.max((na + 1) * w, 2*score.length)];
+        double d= GAPENALTY;
+        for (int j = 0; j <= nb; j++)  score[j]= d * j;
+        for (int i = 1; i <= na; i++) {
+            int r= i*w, p= r - w, pr= rows[i-1]*nb - 1;
+            for (int j = 1; j <= nb; j++)
+                score[r + j]= Math.max(score[p + j-1] + prof[pr + j], score[p + j] + d);
+            double h= d * i;
+            score[r]= h;
+            for (int j = 1; j <= nb; j++) {
+                h= Math.max(score[r + j], h + d);
+                score[r + j]= h;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The integer kernel, for arrays without a dictionary, where all the
+     * scores are integers. Same structure as {@link #fillDouble(int, int, int[])}.
+     */
+    private void fillInt(int na, int k, int[] vb) {
+        int nb= vb.length, w= nb + 1;
+        if ( iprof.length < k * nb )  iprof= new int[Math.max(k * nb, 2*iprof.length)];
+        for (int c = 0; c < k; c++) {
+            int a= syms[c], pc= c*nb;
+            for (int j = 0; j < nb; j++)  iprof[pc + j]= a == vb[j] ? MATCH : -MATCH;
+        }
+
+        if ( iscore.length < (na + 1) * w )  iscore= new int[Math.max((na + 1) * w, 2*iscore.length)];
+        int d= (int) GAPENALTY;
+        for (int j = 0; j <= nb; j++)  iscore[j]= d * j;
+        for (int i = 1; i <= na; i++) {
+            int r= i*w, p= r - w, pr= rows[i-1]*nb - 1;
+            for (int j = 1; j <= nb; j++)
+                iscore[r + j]= Math.max(iscore[p + j-1] + iprof[pr + j], iscore[p + j] + d);
+            int h= d * i;
+            iscore[r]= h;
+            for (int j = 1; j <= nb; j++) {
+                h= Math.max(iscore[r + j], h + d);
+                iscore[r + j]= h;
+            }
+        }
+    }
+
+    private double cell(int k) {
+        return integral ? iscore[k] : score[k];
+    }
+
+    private double sub(int i, int j, int nb) {
+        int k= rows[i]*nb + j;
+        return integral ? iprof[k] : prof[k];
+    }
+
+    private int[][] traceback(int[] va, int[] vb) {
+        int na= va.length, nb= vb.length, w= nb + 1;
+        int cap= na + nb;
+        if ( outA.length < cap ) {
+            outA= new int[Math.max(cap, 2*outA.length)];
+            outB= new int[outA.length];
+        }
+
+        double d= GAPENALTY;
+        int i= na, j= nb, k= cap;
+        while ( i > 0 && j > 0 ) {
+            double s= cell(i*w + j);
+            if ( s == cell((i-1)*w + j-1) + sub(i-1, j-1, nb) ) {
+                k--;
+                outA[k]= va[--i];
+                outB[k]= vb[--j];
+            }
+            else if ( s == cell((i-1)*w + j) + d ) {
+                k--;
+                outA[k]= va[--i];
+                outB[k]= -1;
+            }
+            else {
+                k--;
+                outA[k]= -1;
+                outB[k]= vb[--j];
+            }
+        }
+        while ( i > 0 ) {
+            k--;
+            outA[k]= va[--i];
+            outB[k]= -1;
+        }
+        while ( j > 0 ) {
+            k--;
+            outA[k]= -1;
+            outB[k]= vb[--j];
+        }
+
+        int n= cap - k;
+        int[][] alg= new int[2][n];
+        System.arraycopy(outA, k, alg[0], 0, n);
+        System.arraycopy(outB, k, alg[1], 0, n);
+        return alg;
+    }
+}
@@ -37,6 +37,7 @@ import java.io.InputStreamReader;
 import java.io.PrintStream;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Locale;
 import java.util.Random;
 
@@ -69,6 +70,11 @@ public class NWunsch {
     private static PrintStream o= System.out;
 
     CorpusIndex dictionary;
+
+    /**
+     * The shared cache of word substitution costs, if any.
+     */
+    private SubstitutionCache cache;
     
 
     public NWunsch(int[] sa, int[] sb) {
@@ -90,6 +96,24 @@ public class NWunsch {
         constructor(sa.getCodes(), sb.getCodes());
         this.buildMatrix();
     }
+
+
+    /**
+     * Aligns two sentences codified with the dictionary of a given cache of
+     * word substitution costs. The dictionary should contain every word
+     * of both sentences.
+     * @param sa The first sentence.
+     * @param sb The second sentence.
+     * @param cache The cache of word substitution costs.
+     */
+    public NWunsch(Sentence sa, Sentence sb, SubstitutionCache cache) {
+        dictionary= cache.getDictionary();
+        this.cache= cache;
+        sa.codify(dictionary);
+        sb.codify(dictionary);
+        constructor(sa.getCodes(), sb.getCodes());
+        this.buildMatrix();
+    }
     
     
     private void constructor(int[] sa, int[] sb) {
@@ -112,6 +136,19 @@ public class NWunsch {
         return dictionary;
     }
 
+    /**
+     * Defines a cache of word substitution costs, which is only used while
+     * its dictionary is the dictionary of this aligner.
+     * @param cache The substitution cache.
+     */
+    public void setCache(SubstitutionCache cache) {
+        this.cache = cache;
+    }
+
+    public SubstitutionCache getCache() {
+        return cache;
+    }
+
     public String codes2str(int[] vs) {
         if ( this.dictionary == null ) return null;
         StringBuffer sb= new StringBuffer();
@@ -132,18 +169,8 @@ public class NWunsch {
      * @return double
      */
     public double similarity(int i, int j) {
-        double MAX= 10.0;
-        if (i == j) {
-            return MAX; //nota: experimentar outros valores.
-        }
-        if (dictionary == null) { // <--- i != j
-            return -1.0*MAX; //valor de penalizao.
-        }
-
-        //No descrimina muito bem as palavras pouco diferentes das com
-        //muitas diferenas. Isto implica uma alta facilidade de mutao
-        //gentica nos algoritmos de alinhamento. NOTA(20070310, jpc).
-        //return -1.0 * Word.distlex(dictionary.get(i), dictionary.get(j));
+        double sim= substitution(i, j, dictionary, cache);
+        if ( sim == sim )  return sim;
 
         String wi= dictionary.get(i); 
         //int ni= wi.length();
@@ -165,13 +192,49 @@ public class NWunsch {
                 o.printf("%3d   ", vb[k]);
             System.exit(1);
         }
-        
+        return sim;
+    }
+
+
+    /**
+     * The substitution score between two word codes, as defined by
+     * {@link #similarity(int, int)}, shared with {@link NWAligner}.
+     * @param i One word code.
+     * @param j The other word code.
+     * @param dictionary The dictionary, or null for plain mismatches.
+     * @param cache The substitution cache, or null.
+     * @return The score, or {@code NaN} if some code is not in the dictionary.
+     */
+    static double substitution(int i, int j, CorpusIndex dictionary, SubstitutionCache cache) {
+        double MAX= 10.0;
+        if (i == j) {
+            return MAX; //nota: experimentar outros valores.
+        }
+        if (dictionary == null) { // <--- i != j
+            return -1.0*MAX; //valor de penalizao.
+        }
+
+        //No descrimina muito bem as palavras pouco diferentes das com
+        //muitas diferenas. Isto implica uma alta facilidade de mutao
+        //gentica nos algoritmos de alinhamento. NOTA(20070310, jpc).
+        //return -1.0 * Word.distlex(dictionary.get(i), dictionary.get(j));
+
+        if ( cache != null && cache.getDictionary() == dictionary ) {
+            if ( cache.isPunctuation(i) || cache.isPunctuation(j) ) {
+                return -1.0*MAX;
+            }
+            double cost= cache.cost(i, j);
+            if ( cost == cost )  return -1.0*cost;
+        }
+
+        String wi= dictionary.get(i);
+        String wj= dictionary.get(j);
+        if ( wi == null || wj == null )  return Double.NaN;
 
         if ( Word.RPUNCT.indexOf(wi) >= 0 || Word.RPUNCT.indexOf(wj) >= 0 ) {
             return -1.0*MAX; //aqui j sabemos que i!=j
         }
 
-        double dilex  = (double)Word.distlex(wi, wj);
         //double dilexs = (double)Word.distlex(wi, wj);
         double edit = (double)Word.editDistance(wi, wj);
         double maxseq= Word.distSeqMax(wi, wj);
@@ -199,19 +262,32 @@ public class NWunsch {
             score[0][j] = d * j;
         }
 
+        // the similarities are computed once per distinct word of va.
+        HashMap<Integer, double[]> profile= new HashMap<Integer, double[]>();
         for (int i = 1; i <= na; i++) {
+            double[] prow= profile.get(va[i - 1]);
+            if ( prow == null ) {
+                prow= new double[nb];
+                for (int j = 0; j < nb; j++)  prow[j]= similarity(va[i - 1], vb[j]);
+                profile.put(va[i - 1], prow);
+            }
+            System.arraycopy(prow, 0, mutex[i-1], 0, nb);
+
+            double[] si= score[i], sp= score[i - 1];
             for (int j = 1; j <= nb; j++) {
-                mutex[i-1][j-1] = similarity(va[i - 1], vb[j - 1]);
                 /*
                 System.out.printf("mutex(%2d,%2d) = %10.3f   (%s,%s)\n", i-1, j-1, mutex[i-1][j-1],
                         dictionary.get(va[i-1]),
                         dictionary.get(vb[j-1])
                 );
                  */
-                double scorn = score[i - 1][j - 1] + mutex[i-1][j-1];
-                double left = score[i][j - 1] + d;
-                double up = score[i - 1][j] + d;
-                score[i][j] = Toolkit.maximum(left, scorn, up);
+                double scorn = sp[j - 1] + prow[j - 1];
+                double left = si[j - 1] + d;
+                double up = sp[j] + d;
+                double max = left;
+                if ( scorn > max )  max = scorn;
+                if ( up > max )  max = up;
+                si[j] = max;
             }
         }
     }
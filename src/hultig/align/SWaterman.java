@@ -25,6 +25,9 @@ package hultig.align;
 import java.io.*;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
 import java.util.Vector;
 import java.util.Random;
 
@@ -58,6 +61,11 @@ public final class SWaterman
      */
     private CorpusIndex dictionary;
 
+    /**
+     * The shared cache of word substitution costs, if any.
+     */
+    private SubstitutionCache cache;
+
     /**
      * The first vector
      * JPC
@@ -225,24 +233,79 @@ public final class SWaterman
     }
 
 
+    /**
+     * For vectors representing sentences, codified with the dictionary of
+     * a given substitution cache, which is used while building the matrix.
+     * @param vs1 The first vector.
+     * @param vs2 The second vector.
+     * @param cache The cache of word substitution costs.
+     * @param vkeyws The key word codes, or null.
+     */
+    public SWaterman(int[] vs1, int[] vs2, SubstitutionCache cache, int[] vkeyws) {
+        this.vs1 = vs1;
+        this.vs2 = vs2;
+        this.str1 = null;
+        this.str2 = null;
+
+        length1 = vs1.length;
+        length2 = vs2.length;
+
+        score = new double[length1 + 1][length2 + 1];
+        prevCells = new int[length1 + 1][length2 + 1];
+
+        setDictionary(cache.getDictionary());
+        setCache(cache);
+
+        rand= new Random();
+        VKEYWS= vkeyws;
+        buildMatrix();
+    }
+
+
     public void setDictionary(CorpusIndex dictionary) {
         this.dictionary= dictionary;
     }
 
 
+    /**
+     * Defines a cache of word substitution costs, which is only used while
+     * its dictionary is the dictionary of this aligner.
+     * @param cache The substitution cache.
+     */
+    public void setCache(SubstitutionCache cache) {
+        this.cache= cache;
+    }
+
+
+    public SubstitutionCache getCache() {
+        return cache;
+    }
+
+
     /**
      * Test for a key word.
      * @param kw The key word dictionary index.
      * @return true if it is a key word.
      */
     private boolean isKeyWord(int kw) {
-        if ( VKEYWS != null ) {
-            for (int i = 0; i < VKEYWS.length; i++) {
-                if ( VKEYWS[i] == kw )  {
+        return isKeyWord(kw, VKEYWS);
+    }
+
+
+    /**
+     * Test for a key word, in a sorted array of key word indexes.
+     * @param kw The key word dictionary index.
+     * @param vkeyws The key word indexes, in ascending order, or null.
+     * @return true if it is a key word.
+     */
+    static boolean isKeyWord(int kw, int[] vkeyws) {
+        if ( vkeyws != null ) {
+            for (int i = 0; i < vkeyws.length; i++) {
+                if ( vkeyws[i] == kw )  {
                     //System.out.print('.');
                     return true;
                 }
-                if ( kw < VKEYWS[i] )  {
+                if ( kw < vkeyws[i] )  {
                     //System.out.printf(" i: %2d   VKEYWS[i]: %5d    kw: %d\n", i, VKEYWS[i], kw);
                     return false;
                 } //for efficiency
@@ -268,40 +331,7 @@ public final class SWaterman
 
         //--- JPC ---
         if (this.vs1 != null) {
-            if ( this.dictionary == null) {
-                //o.print('.');
-                double dist;
-                if ( vs1[i - 1] == vs2[j - 1] ) {
-                    if ( isKeyWord(vs1[i-1]) )
-                        dist= 5*MATCH_SCORE;
-                    else
-                        dist= MATCH_SCORE;
-                } else
-                    dist= MISMATCH_SCORE;
-                //2010-03-17 System.out.print("x");
-                return dist;
-            }
-            else {
-                if ( vs1[i-1] == vs2[j-1] ) {
-                    //System.out.print('.');
-                    if ( isKeyWord(vs1[i-1]) ) {
-                        //System.out.print('=');
-                        return 5*MATCH_SCORE;
-                    }
-                    else
-                        return MATCH_SCORE;
-                }
-
-                String wa= dictionary.get(vs1[i - 1]);
-                String wb= dictionary.get(vs2[j - 1]);
-                //double edist= -1.0*Word.editDistance(wa, wb)*Word.distlex(wa,wb); 20070330
-                double dist= -1.0*Word.editDistance(wa, wb)/(0.01+Word.distSeqMax(wa,wb));
-
-                //edist= -1.0*(1+rand.nextInt(9));
-                //o.printf("%5.2f  i:%d  j:%d\n", edist, i, j);
-                //2010-03-17 System.out.print("y");
-                return dist;
-            }
+            return substitution(vs1[i - 1], vs2[j - 1], dictionary, cache, VKEYWS);
         }
         //-----------
 
@@ -312,6 +342,58 @@ public final class SWaterman
         //return distMatrix[i][j];
     }
 
+    /**
+     * The similarity score of substituting one word code by another, as
+     * used in the score matrix. Shared with {@link LinearSWaterman}.
+     * @param a The word code from the first vector.
+     * @param b The word code from the second vector.
+     * @param dictionary The dictionary, or null for plain mismatches.
+     * @param cache The substitution cache, or null.
+     * @param vkeyws The key word codes, or null.
+     * @return The substitution score.
+     */
+    static double substitution(int a, int b, CorpusIndex dictionary, SubstitutionCache cache, int[] vkeyws) {
+        if ( dictionary == null) {
+            //o.print('.');
+            double dist;
+            if ( a == b ) {
+                if ( isKeyWord(a, vkeyws) )
+                    dist= 5*MATCH_SCORE;
+                else
+                    dist= MATCH_SCORE;
+            } else
+                dist= MISMATCH_SCORE;
+            //2010-03-17 System.out.print("x");
+            return dist;
+        }
+        else {
+            if ( a == b ) {
+                //System.out.print('.');
+                if ( isKeyWord(a, vkeyws) ) {
+                    //System.out.print('=');
+                    return 5*MATCH_SCORE;
+                }
+                else
+                    return MATCH_SCORE;
+            }
+
+            if ( cache != null && cache.getDictionary() == dictionary ) {
+                double cost= cache.cost(a, b);
+                if ( cost == cost )  return -1.0*cost;
+            }
+
+            String wa= dictionary.get(a);
+            String wb= dictionary.get(b);
+            //double edist= -1.0*Word.editDistance(wa, wb)*Word.distlex(wa,wb); 20070330
+            double dist= -1.0*Word.editDistance(wa, wb)/(0.01+Word.distSeqMax(wa,wb));
+
+            //edist= -1.0*(1+rand.nextInt(9));
+            //o.printf("%5.2f  i:%d  j:%d\n", edist, i, j);
+            //2010-03-17 System.out.print("y");
+            return dist;
+        }
+    }
+
     /**
      * Build the score matrix using dynamic programming.
      * Note: The indel scores must be negative. Otherwise, the
@@ -349,33 +431,41 @@ public final class SWaterman
         // the rest of the matrix
         for (i = 1; i <= length1; i++) {
             for (j = 1; j <= length2; j++) {
-                double diagScore = score[i - 1][j - 1] + similarity(i, j);
-                double upScore = score[i][j - 1] + similarity(0, j);
-                double leftScore = score[i - 1][j] + similarity(i, 0);
-
-                score[i][j] =
-                    Math.max(diagScore, Math.max(upScore, Math.max(leftScore, 0)));
-                prevCells[i][j] = 0;
-
-                // find the directions that give the maximum scores.
-                // the bitwise OR operator is used to record multiple
-                // directions.
-                if (diagScore == score[i][j]) {
-                    prevCells[i][j] |= DR_DIAG;
-                }
+                computeCell(score, prevCells, i, j);
+            }
+        }
+    }
 
-                if (leftScore == score[i][j]) {
-                    prevCells[i][j] |= DR_LEFT;
-                }
+    /**
+     * Computes one cell of a score matrix and its directions, from the
+     * three preceding cells.
+     */
+    private void computeCell(double[][] sc, int[][] pc, int i, int j) {
+        double diagScore = sc[i - 1][j - 1] + similarity(i, j);
+        double upScore = sc[i][j - 1] + similarity(0, j);
+        double leftScore = sc[i - 1][j] + similarity(i, 0);
+
+        sc[i][j] =
+            Math.max(diagScore, Math.max(upScore, Math.max(leftScore, 0)));
+        pc[i][j] = 0;
+
+        // find the directions that give the maximum scores.
+        // the bitwise OR operator is used to record multiple
+        // directions.
+        if (diagScore == sc[i][j]) {
+            pc[i][j] |= DR_DIAG;
+        }
 
-                if (upScore == score[i][j]) {
-                    prevCells[i][j] |= DR_UP;
-                }
+        if (leftScore == sc[i][j]) {
+            pc[i][j] |= DR_LEFT;
+        }
 
-                if (0 == score[i][j]) {
-                    prevCells[i][j] |= DR_ZERO;
-                }
-            }
+        if (upScore == sc[i][j]) {
+            pc[i][j] |= DR_UP;
+        }
+
+        if (0 == sc[i][j]) {
+            pc[i][j] |= DR_ZERO;
         }
     }
 
@@ -493,19 +583,205 @@ public final class SWaterman
             return null;
         }
 
-        List matches= this.getMatches();
-        Vector<SimpleChaining.Match> vbest= getXBestMatches(matches);
-        Vector<int[][]> vout = new Vector<int[][]> (vbest.size()); // output vector
-        for (int i=0; i<vbest.size(); i++) {
-            SimpleChaining.Match m= vbest.get(i);
-            Vector<Integer> va1 = new Vector<Integer> (); //------------------> acumuladores
-            Vector<Integer> va2 = new Vector<Integer> (); //------------------> acumuladores
-            int[][] va = getAlignmentsVect(m.getToA(), m.getToB(), va1, va2); //recursivo.
-            vout.add(va);
-            //o.printf("vbest(%2d) ---> %s\n", i, m);
+        return getTopAlignments(Integer.MAX_VALUE);
+    }
+
+
+    /**
+     * The k best non overlapping local alignments, with a score above the
+     * threshold, in decreasing order of score.
+     * @param k The maximum number of alignments.
+     * @return The alignments, as pairs of code vectors, where gaps are
+     * marked with -1 (characters are given by their codes, for strings).
+     */
+    public Vector<int[][]> getTopAlignments(int k) {
+        return getTopAlignments(k, defaultWork());
+    }
+
+    /**
+     * The k best non overlapping local alignments, as
+     * {@link #getTopAlignments(int)}, with a bound on work.
+     * @param k The maximum number of alignments.
+     * @param maxWork The maximum work, after which no more alignments are
+     * searched. It counts the copied matrix cells, the queue operations,
+     * and the traced and visited cells, so that the whole search costs
+     * O(maxWork) time, and no alignment is given if the matrix is larger
+     * than {@code maxWork} cells.
+     * @return The alignments.
+     */
+    public Vector<int[][]> getTopAlignments(int k, long maxWork) {
+        Vector<int[][]> valg= new Vector<int[][]>();
+        topK(k, maxWork, valg);
+        return valg;
+    }
+
+    /**
+     * The coordinates of the k best non overlapping local alignments, as
+     * {@link #getTopAlignments(int)}.
+     * @param k The maximum number of alignments.
+     * @return The matches, with positions starting at 1, both ends included.
+     */
+    public Vector<SimpleChaining.Match> getTopMatches(int k) {
+        return topK(k, defaultWork(), null);
+    }
+
+    /**
+     * The coordinates of the k best non overlapping local alignments, as
+     * {@link #getTopAlignments(int, long)}, with a bound on work.
+     * @param k The maximum number of alignments.
+     * @param maxWork The maximum work.
+     * @return The matches, with positions starting at 1, both ends included.
+     */
+    public Vector<SimpleChaining.Match> getTopMatches(int k, long maxWork) {
+        return topK(k, maxWork, null);
+    }
+
+    private long defaultWork() {
+        return 64L * (length1 + 1) * (length2 + 1) + (1L << 20);
+    }
+
+    /**
+     * Enumerates the best local alignments by the Waterman-Eggert method:
+     * the cells above the threshold are taken from a priority queue, by
+     * decreasing score, and the alignment ending at the best one is traced
+     * back iteratively. Then the rows and columns of the aligned tokens
+     * are cleared, so that no other alignment may use them, and the
+     * affected cells are recomputed (declumping). Queue entries whose cell
+     * changed are reinserted with their new score. The matrices of this
+     * object are left unchanged. Every copied, queued, traced or visited
+     * cell is charged to the work, which stops the search at maxWork.
+     */
+    private Vector<SimpleChaining.Match> topK(int k, long maxWork, Vector<int[][]> valg) {
+        Vector<SimpleChaining.Match> vm= new Vector<SimpleChaining.Match>();
+        int n= length1, m= length2;
+        long work= (long) (n + 1) * (m + 1);
+        if ( work > maxWork )  return vm;
+        double[][] sc= new double[n + 1][];
+        int[][] pc= new int[n + 1][];
+        for (int i = 0; i <= n; i++) {
+            sc[i]= score[i].clone();
+            pc[i]= prevCells[i].clone();
+        }
+        boolean[] banA= new boolean[n + 1];
+        boolean[] banB= new boolean[m + 1];
+
+        PriorityQueue<double[]> queue= new PriorityQueue<double[]>(64, new Comparator<double[]>() {
+            @Override
+            public int compare(double[] x, double[] y) {
+                if ( x[0] != y[0] )  return x[0] > y[0] ? -1 : 1;
+                if ( x[1] != y[1] )  return x[1] < y[1] ? -1 : 1;
+                return Double.compare(x[2], y[2]);
+            }
+        });
+        for (int i = 1; i <= n && work < maxWork; i++)
+            for (int j = 1; j <= m; j++)
+                if ( sc[i][j] > scoreThreshold ) {
+                    queue.add(new double[] {sc[i][j], i, j});
+                    work++;
+                }
+
+        int[] pa= new int[n + m];
+        int[] pb= new int[n + m];
+        while ( vm.size() < k && !queue.isEmpty() && work < maxWork ) {
+            double[] c= queue.poll();
+            work++;
+            int i= (int) c[1], j= (int) c[2];
+            if ( banA[i] || banB[j] )  continue;
+            if ( sc[i][j] != c[0] ) {
+                if ( sc[i][j] > scoreThreshold ) {
+                    c[0]= sc[i][j];
+                    queue.add(c);
+                }
+                continue;
+            }
+
+            // iterative traceback, with the getAlignmentsVect preferences.
+            int len= 0, ti= i, tj= j;
+            while ( (pc[ti][tj] & DR_ZERO) == 0 ) {
+                if ( (pc[ti][tj] & DR_LEFT) > 0 ) {
+                    pa[len]= code1(ti--);
+                    pb[len++]= -1;
+                }
+                else if ( (pc[ti][tj] & DR_UP) > 0 ) {
+                    pa[len]= -1;
+                    pb[len++]= code2(tj--);
+                }
+                else {
+                    pa[len]= code1(ti--);
+                    pb[len++]= code2(tj--);
+                }
+            }
+            work+= len;
+
+            vm.add(new SimpleChaining.Match(ti + 1, i, tj + 1, j, sc[i][j] / NORM_FACTOR));
+            if ( valg != null ) {
+                int[][] va= new int[2][len];
+                for (int t = 0; t < len; t++) {
+                    va[0][t]= pa[len - 1 - t];
+                    va[1][t]= pb[len - 1 - t];
+                }
+                valg.add(va);
+            }
+
+            for (int a = ti + 1; a <= i; a++)  banA[a]= true;
+            for (int b = tj + 1; b <= j; b++)  banB[b]= true;
+            if ( vm.size() < k )  work+= declump(sc, pc, banA, banB, ti + 1, i, tj + 1, j, maxWork - work);
         }
+        return vm;
+    }
 
-        return vout;
+    private int code1(int i) {
+        return vs1 != null ? vs1[i - 1] : str1.charAt(i - 1);
+    }
+
+    private int code2(int j) {
+        return vs2 != null ? vs2[j - 1] : str2.charAt(j - 1);
+    }
+
+    /**
+     * Clears the just banned rows {@code r0..r1} and columns {@code c0..c1}
+     * of a score matrix, and recomputes the cells depending on some changed
+     * cell. Only the cells that may change are visited: the cleared rows,
+     * and in the other rows the cleared columns and the columns following a
+     * change in the row above or in the row itself.
+     * @param budget The work left, after which the matrix is left
+     * incomplete, as no more alignments are searched.
+     * @return The number of visited cells.
+     */
+    private long declump(double[][] sc, int[][] pc, boolean[] banA, boolean[] banB,
+                         int r0, int r1, int c0, int c1, long budget)
+    {
+        int n= length1, m= length2;
+        // the last row where the cell of each column changed.
+        int[] mark= new int[m + 1];
+        Arrays.fill(mark, -1);
+        long work= m + 1;
+        int lo= m + 1, hi= 0;
+        for (int i = 1; i <= n && work < budget; i++) {
+            boolean full= i >= r0 && i <= r1;
+            int nlo= m + 1, nhi= 0;
+            for (int j = full ? 1 : Math.min(lo, c0); j <= m; j++) {
+                if ( !full && j > c1 && j > hi + 1 && mark[j - 1] != i )  break;
+                work++;
+                double old= sc[i][j];
+                if ( banA[i] || banB[j] ) {
+                    sc[i][j]= 0;
+                    pc[i][j]= DR_ZERO;
+                }
+                else if ( mark[j - 1] >= i - 1 || mark[j] == i - 1 )
+                    computeCell(sc, pc, i, j);
+                else
+                    continue;
+                if ( sc[i][j] != old ) {
+                    mark[j]= i;
+                    if ( j < nlo )  nlo= j;
+                    nhi= j;
+                }
+            }
+            lo= nlo;
+            hi= nhi;
+        }
+        return work;
     }
 
 
@@ -641,14 +917,27 @@ public final class SWaterman
         double maxScore = getMaxScore();
         System.out.println("Max. Score: " + maxScore);
 
-        List matches= this.getMatches();
-        List<SimpleChaining.Match> vbest= getXBestMatches(matches);
-        for (int i=0; i<vbest.size(); i++) {
-            SimpleChaining.Match m= vbest.get(i);
-            if (vs1 == null)
-                printAlignments(m.getToA(), m.getToB(), "", "");  //recursivo.
-            else
-                printAlignmentsVect(m.getToA(), m.getToB(), "", "");  //recursivo.
+        Vector<int[][]> valg= getTopAlignments(Integer.MAX_VALUE);
+        for (int[][] va : valg) {
+            StringBuilder sa= new StringBuilder();
+            StringBuilder sb= new StringBuilder();
+            for (int t = 0; t < va[0].length; t++) {
+                if (vs1 == null) {
+                    sa.append(va[0][t] < 0 ? '_' : (char) va[0][t]);
+                    sb.append(va[1][t] < 0 ? '_' : (char) va[1][t]);
+                }
+                else {
+                    String si = " " + va[0][t] + " ";
+                    String sj = " " + va[1][t] + " ";
+                    if (va[0][t] < 0)  si = ' ' + underscore(sj.length() - 2) + ' ';
+                    if (va[1][t] < 0)  sj = ' ' + underscore(si.length() - 2) + ' ';
+                    sa.append(si);
+                    sb.append(sj);
+                }
+            }
+            System.out.println(sa);
+            System.out.println(sb);
+            System.out.println("");
         }
 
         /* 20070316
@@ -704,8 +993,8 @@ public final class SWaterman
      * A match is a pair of subsequences whose score is higher than the
      * preset scoreThreshold
      */
-    public List getMatches() {
-        ArrayList matchList = new ArrayList();
+    public List<SimpleChaining.Match> getMatches() {
+        ArrayList<SimpleChaining.Match> matchList = new ArrayList<SimpleChaining.Match>();
         int fA = 0, tA = 0, fB = 0, tB = 0;
         //      skip the first row and column, find the next maxScore after prevmaxScore
         for (int i = 1; i <= length1; i++) {
@@ -1060,7 +1349,10 @@ public final class SWaterman
      * Por JPC 20070317
      * @param matches List
      * @return Vector
+     * @deprecated Quadratic in the number of matches; use
+     * {@link #getTopMatches(int)}, which also declumps the matrix.
      */
+    @Deprecated
     public Vector<SimpleChaining.Match> getXBestMatches(List matches) {
         Vector<SimpleChaining.Match> v= new Vector<SimpleChaining.Match>();
 
@@ -1074,6 +1366,16 @@ public final class SWaterman
     }
 
 
+    /**
+     * The best chain of non overlapping matches, in increasing order of
+     * both sequences, computed by {@link SimpleChaining#sparseChaining(List)}.
+     * @return The list of chained matches.
+     */
+    public List<SimpleChaining.Match> getBestChain() {
+        return SimpleChaining.sparseChaining(getMatches());
+    }
+
+
     /**
      *
      *	M A I N
@@ -1110,21 +1412,11 @@ public final class SWaterman
             sw.printAlignments();
             sw.printDPMatrix();
 
-            /*
-            List ms = sw.getMatches ();
-            for (int i=0; i<ms.size(); i++) {
-                SimpleChaining.Match m= (SimpleChaining.Match)ms.get(i);
-                o.printf("chain(%2d) ---> %s\n", i, m);
-            }
-
             o.print("\n\n");
-            Vector<SimpleChaining.Match> vbest= sw.getXBestMatches(ms);
+            Vector<SimpleChaining.Match> vbest= sw.getTopMatches(5);
             for (int i=0; i<vbest.size(); i++) {
-                SimpleChaining.Match m= vbest.get(i);
-                sw.getAlignmentsVect(m.toA, m.toB);
-                o.printf("vbest(%2d) ---> %s\n", i, m);
+                o.printf("vbest(%2d) ---> %s\n", i, vbest.get(i));
             }
-            */
 
             /* para que serve isto ???
             o.println ("Chaining demo: ");
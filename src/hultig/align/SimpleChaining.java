@@ -246,6 +246,134 @@ public class SimpleChaining
 
 
 
+   /**
+    * Identify the best chain from given list of match, as the
+    * {@link #chaining(List, boolean) chaining} method, but in
+    * O(k log k) time and O(k) memory, for large sets of matches.
+    * Each chained match ends before the next one starts, in both
+    * sequences, while the dense version only requires them not to
+    * overlap in B. The matches are swept by fromA, and the best
+    * chain ending before each match is given by a Fenwick tree of
+    * prefix maxima, indexed by toB. The input list is not modified.
+    *
+    * @param matches a list of match
+    * @return the optimal chain as a list of match
+    */
+    public static List<Match> sparseChaining (List<Match> matches)
+    {
+	int size = matches.size ();
+	List<Match> chain = new ArrayList<Match> ();
+	if (size == 0)
+	    return chain;
+
+	List<Match> sorted = new ArrayList<Match> (matches);
+	Collections.sort (sorted, SimpleChaining.FROMA_COMPARATOR);
+
+	Match[] vm = sorted.toArray (new Match[size]);
+
+	//distinct toB values, the Fenwick tree keys.
+	int[] keys = new int[size];
+	for (int i = 0; i < size; i++)
+	    keys[i] = vm[i].toB;
+	Arrays.sort (keys);
+	int nk = 0;
+	for (int i = 0; i < size; i++)
+	    if (nk == 0 || keys[i] != keys[nk - 1])
+		keys[nk++] = keys[i];
+
+	//matches by increasing toA, the insertion order.
+	Integer[] byToA = new Integer[size];
+	for (int i = 0; i < size; i++)
+	    byToA[i] = i;
+	final Match[] fm = vm;
+	Arrays.sort (byToA, new Comparator<Integer> ()
+	{
+	    public int compare (Integer a, Integer b)
+	    {
+		return fm[a].toA < fm[b].toA ? -1 : (fm[a].toA > fm[b].toA ? 1 : 0);
+	    }
+	});
+
+	double[] tval = new double[nk + 1];
+	int[] tidx = new int[nk + 1];
+	Arrays.fill (tidx, -1);
+
+	double[] sMax = new double[size];
+	int[] prevIndex = new int[size];
+
+	double max = 0;
+	int maxIndex = -1;
+	for (int i = 0, e = 0; i < size; i++) {
+	    Match mr = vm[i];
+
+	    //insert every match ending before this one, in A.
+	    for (; e < size && vm[byToA[e]].toA < mr.fromA; e++) {
+		int j = byToA[e];
+		int k = Arrays.binarySearch (keys, 0, nk, vm[j].toB) + 1;
+		for (; k <= nk; k += k & (-k)) {
+		    if (better (sMax[j], j, tval[k], tidx[k])) {
+			tval[k] = sMax[j];
+			tidx[k] = j;
+		    }
+		}
+	    }
+
+	    //best chain ending before this one, in B.
+	    double best = 0;
+	    int bestIndex = -1;
+	    int k = lowerBound (keys, nk, mr.fromB);
+	    for (; k > 0; k -= k & (-k)) {
+		if (tidx[k] >= 0 && better (tval[k], tidx[k], best, bestIndex)) {
+		    best = tval[k];
+		    bestIndex = tidx[k];
+		}
+	    }
+
+	    prevIndex[i] = best > 0 ? bestIndex : -1;
+	    sMax[i] = (best > 0 ? best : 0) + mr.getScore ();
+	    if (sMax[i] > max) {
+		max = sMax[i];
+		maxIndex = i;
+	    }
+	}
+
+	for (int i = maxIndex; i >= 0; i = prevIndex[i])
+	    chain.add (vm[i]);
+	Collections.reverse (chain);
+	return chain;
+    }
+
+
+
+   /**
+    * Order of the chain scores, where an equal score with a smaller
+    * match index is better.
+    */
+    private static boolean better (double v, int i, double w, int j)
+    {
+	return v > w || (v == w && j >= 0 && i < j);
+    }
+
+
+
+   /**
+    * The number of keys smaller than a given value.
+    */
+    private static int lowerBound (int[] keys, int n, int value)
+    {
+	int a = 0, b = n;
+	while (a < b) {
+	    int mid = (a + b) >>> 1;
+	    if (keys[mid] < value)
+		a = mid + 1;
+	    else
+		b = mid;
+	}
+	return a;
+    }
+
+
+
    /**
     * System out the input array as an strict lower diagonal matrix
     */
@@ -330,12 +458,12 @@ public class SimpleChaining
 
 
 
-    public static Comparator FROMA_COMPARATOR = new Comparator ()
+    public static Comparator<Match> FROMA_COMPARATOR = new Comparator<Match> ()
     {
-	public int compare (Object o1, Object o2)
+	public int compare (Match o1, Match o2)
 	{
 
-	    return ((Match) o1).getFromA () - ((Match) o2).getFromA ();
+	    return o1.getFromA () - o2.getFromA ();
 	}
     };
 }
@@ -0,0 +1,488 @@
+/*************************************************************************
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 2005-2011 UBI/HULTIG All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 3 only ("GPL"). You may not use this
+ * file except in compliance with the License. You can obtain a copy of
+ * the License at http://www.gnu.org/licenses/gpl.txt. See the License
+ * for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * When distributing the software, include this License Header Notice
+ * in each file. If applicable, add the following below the License
+ * Header, with the fields enclosed by brackets [] replaced by your own
+ * identifying information:
+ *
+ *       "Portions Copyrighted [year] [name of copyright owner]"
+ *************************************************************************
+ */
+package hultig.align;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+import hultig.sumo.CorpusIndex;
+import hultig.sumo.Word;
+import hultig.sumo.WordDistanceMatrix;
+import hultig.util.StringKernel;
+
+
+/**
+ * <p>
+ * A bounded and thread safe cache of word substitution costs, shared by the
+ * {@link NWunsch} and {@link SWaterman} aligners. The cost of substituting
+ * two different words is their <i>Edit Distance</i> divided by their
+ * normalized maximum common sequence (see {@link #substitutionCost(String,
+ * String)}), which is expensive and recurs constantly across a corpus.
+ * </p>
+ *
+ * <p>
+ * The cache is bound to one {@link CorpusIndex}, since the word codes only
+ * have meaning in their dictionary. Entries are keyed by the packed pair of
+ * codes, as a {@code long}, with the smallest code first. The table is set
+ * associative: each key may only be in one set of {@link #WAYS} slots,
+ * guarded by one of several locks. When a set is full, the least recently
+ * used entry of the set is replaced, if LRU eviction is enabled, otherwise
+ * the new value is simply not stored.
+ * </p>
+ *
+ * <p>
+ * A lookup does not take its lock: the set is read optimistically, and read
+ * again under the lock only if it was written meanwhile. A hit marks its
+ * entry with the number of insertions made in the set, so that the recency
+ * is approximate, to the last insertion, and no shared counter is written.
+ * The hit and miss counts are kept only if enabled, by
+ * {@link #setStatistics(boolean)}.
+ * </p>
+ *
+ * <p>
+ * The cache may be saved and loaded between runs. The file keeps the words
+ * themselves, so that it remains valid for a different dictionary.
+ * </p>
+ *
+ * <p>
+ * <b>University of Beira Interior</b> (UBI)<br />
+ * Centre For Human Language Technology and Bioinformatics (HULTIG)
+ * </p>
+ *
+ * @author J. P. Cordeiro
+ * @version 1.0
+ */
+public class SubstitutionCache
+{
+    /**
+     * The number of slots per set.
+     */
+    public static final int WAYS= 8;
+
+    private static final int MAGIC= 0x48535542;
+    private static final int VERSION= 2;
+    private static final int NLOCKS= 256;
+
+    private final CorpusIndex dict;
+    private final boolean lru;
+    private final int nsets;
+
+    private final long[] keys;
+    private final double[] vals;
+    private final AtomicIntegerArray stamps;
+    private final AtomicIntegerArray ticks;
+    private final StampedLock[] locks;
+
+    /**
+     * Code indexed punctuation flags: 0 unknown, 1 word, 2 punctuation.
+     */
+    private volatile byte[] punct;
+
+    /**
+     * A precomputed table of the substitution costs, or null.
+     */
+    private volatile WordDistanceMatrix table;
+
+    private volatile boolean stats;
+    private final LongAdder hits= new LongAdder();
+    private final LongAdder misses= new LongAdder();
+
+
+    /**
+     * Creates a cache for the words of a given dictionary, with LRU
+     * eviction.
+     * @param dict The dictionary.
+     * @param capacity The maximum number of word pairs.
+     */
+    public SubstitutionCache(CorpusIndex dict, int capacity) {
+        this(dict, capacity, true);
+    }
+
+    /**
+     * Creates a cache for the words of a given dictionary.
+     * @param dict The dictionary.
+     * @param capacity The maximum number of word pairs.
+     * @param lru Enables the LRU eviction, when a set becomes full.
+     */
+    public SubstitutionCache(CorpusIndex dict, int capacity, boolean lru) {
+        this.dict= dict;
+        this.lru= lru;
+        int n= Integer.highestOneBit(Math.max(1, capacity / WAYS));
+        if ( n * WAYS < capacity && n < (1 << 26) )  n<<= 1;
+        nsets= n;
+        keys= new long[nsets * WAYS];
+        vals= new double[nsets * WAYS];
+        stamps= new AtomicIntegerArray(nsets * WAYS);
+        ticks= new AtomicIntegerArray(nsets);
+        Arrays.fill(keys, -1L);
+        locks= new StampedLock[NLOCKS];
+        for (int i = 0; i < NLOCKS; i++)  locks[i]= new StampedLock();
+        punct= new byte[1024];
+    }
+
+    /**
+     * The dictionary of this cache.
+     * @return The dictionary.
+     */
+    public CorpusIndex getDictionary() {
+        return dict;
+    }
+
+    /**
+     * Sets a table of word alignment costs, for the same dictionary, from
+     * which the cache misses are taken, instead of being computed.
+     * @param table A table with the {@link WordDistanceMatrix.Metric#COST_ALIGN}
+     * metric, or null.
+     * @return The {@code true} value if the table may be used.
+     */
+    public boolean setTable(WordDistanceMatrix table) {
+        if ( table != null && (table.getDictionary() != dict || table.getMetric() != WordDistanceMatrix.Metric.COST_ALIGN) ) {
+            System.err.printf("\n[ERROR] SubstitutionCache.setTable(%s) ---> not a cost table of this dictionary\n", table.getMetric());
+            return false;
+        }
+        this.table= table;
+        return true;
+    }
+
+    /**
+     * The cost of substituting one word by another, as used by the
+     * aligners: the <i>Edit Distance</i> divided by the normalized maximum
+     * common sequence (plus 0.01).
+     * @param wa One word.
+     * @param wb The other word.
+     * @return The substitution cost, in [0, +00[.
+     */
+    public static double substitutionCost(String wa, String wb) {
+        return StringKernel.costAlign(wa, wb);
+    }
+
+    private static long pack(int a, int b) {
+        if ( a > b ) { int x= a; a= b; b= x; }
+        return ((long) a << 32) | (b & 0xFFFFFFFFL);
+    }
+
+    private int setOf(long key) {
+        long h= key * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 40) & (nsets - 1);
+    }
+
+    private StampedLock lockOf(int s) {
+        return locks[s & (NLOCKS-1)];
+    }
+
+    /**
+     * The slot of a key in its set, or -1.
+     */
+    private int find(int s, long key) {
+        for (int k = s*WAYS, e = k+WAYS; k < e; k++) {
+            if ( keys[k] == key )  return k;
+        }
+        return -1;
+    }
+
+    /**
+     * Gives the cached cost of a pair of word codes.
+     * @param a One word code.
+     * @param b The other word code.
+     * @return The cost, or {@code NaN} if not in the cache.
+     */
+    public double get(int a, int b) {
+        if ( a < 0 || b < 0 )  return Double.NaN;
+        long key= pack(a, b);
+        int s= setOf(key);
+        StampedLock lock= lockOf(s);
+        long stamp= lock.tryOptimisticRead();
+        int k= find(s, key);
+        double c= k >= 0 ? vals[k] : Double.NaN;
+        if ( !lock.validate(stamp) ) {
+            stamp= lock.readLock();
+            try {
+                k= find(s, key);
+                c= k >= 0 ? vals[k] : Double.NaN;
+            }
+            finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        if ( k >= 0 && lru ) {
+            int t= ticks.get(s);
+            if ( stamps.get(k) != t )  stamps.lazySet(k, t);
+        }
+        return c;
+    }
+
+    /**
+     * Stores the cost of a pair of word codes.
+     * @param a One word code.
+     * @param b The other word code.
+     * @param cost The substitution cost.
+     */
+    public void put(int a, int b, double cost) {
+        if ( a < 0 || b < 0 )  return;
+        long key= pack(a, b);
+        int s= setOf(key);
+        StampedLock lock= lockOf(s);
+        long stamp= lock.writeLock();
+        try {
+            int free= -1, old= -1;
+            for (int k = s*WAYS, e = k+WAYS; k < e; k++) {
+                if ( keys[k] == key ) {
+                    vals[k]= cost;
+                    stamps.set(k, ticks.get(s));
+                    return;
+                }
+                if ( keys[k] == -1L ) {
+                    if ( free < 0 )  free= k;
+                }
+                else if ( old < 0 || stamps.get(k) - stamps.get(old) < 0 ) {
+                    old= k;
+                }
+            }
+            int k= free >= 0 ? free : (lru ? old : -1);
+            if ( k < 0 )  return;
+            keys[k]= key;
+            vals[k]= cost;
+            int t= ticks.get(s) + 1;
+            ticks.set(s, t);
+            stamps.set(k, t);
+        }
+        finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Gives the substitution cost of a pair of word codes, computing and
+     * storing it on a cache miss.
+     * @param a One word code.
+     * @param b The other word code.
+     * @return The cost, or {@code NaN} if some code is not in the dictionary.
+     */
+    public double cost(int a, int b) {
+        double c= get(a, b);
+        if ( c == c ) {
+            if ( stats )  hits.increment();
+            return c;
+        }
+        if ( stats )  misses.increment();
+        WordDistanceMatrix t= table;
+        if ( t != null ) {
+            c= t.get(a, b);
+            if ( c == c )  put(a, b, c);
+            return c;
+        }
+        String wa= dict.get(a);
+        String wb= dict.get(b);
+        if ( wa == null || wb == null )  return Double.NaN;
+        c= substitutionCost(wa, wb);
+        put(a, b, c);
+        return c;
+    }
+
+    /**
+     * Tests whether a word code refers to a right punctuation mark
+     * ({@link Word#RPUNCT}).
+     * @param a The word code.
+     * @return The {@code true} value for a punctuation mark.
+     */
+    public boolean isPunctuation(int a) {
+        if ( a < 0 )  return false;
+        byte[] v= punct;
+        if ( a < v.length && v[a] != 0 )  return v[a] == 2;
+
+        String w= dict.get(a);
+        boolean p= w != null && Word.RPUNCT.indexOf(w) >= 0;
+        synchronized (this) {
+            v= punct;
+            if ( a >= v.length )  v= Arrays.copyOf(v, Math.max(2*v.length, a+1));
+            v[a]= (byte) (p ? 2 : 1);
+            punct= v;
+        }
+        return p;
+    }
+
+    /**
+     * The number of pairs in the cache.
+     * @return The cache size.
+     */
+    public int size() {
+        int n= 0;
+        for (int s = 0; s < nsets; s++) {
+            StampedLock lock= lockOf(s);
+            long stamp= lock.readLock();
+            try {
+                for (int k = s*WAYS, e = k+WAYS; k < e; k++)
+                    if ( keys[k] != -1L )  n++;
+            }
+            finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return n;
+    }
+
+    /**
+     * The maximum number of pairs in the cache.
+     * @return The cache capacity.
+     */
+    public int capacity() {
+        return keys.length;
+    }
+
+    /**
+     * Enables the hit and miss counts, which are off by default, since they
+     * are updated on every lookup.
+     * @param on The {@code true} value to keep the counts.
+     */
+    public void setStatistics(boolean on) {
+        stats= on;
+    }
+
+    /**
+     * The number of lookups found in the cache, while the statistics are
+     * enabled.
+     * @return The number of hits.
+     */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * The number of lookups not found in the cache, while the statistics
+     * are enabled.
+     * @return The number of misses.
+     */
+    public long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * Removes all pairs from the cache.
+     */
+    public void clear() {
+        for (int s = 0; s < nsets; s++) {
+            StampedLock lock= lockOf(s);
+            long stamp= lock.writeLock();
+            try {
+                Arrays.fill(keys, s*WAYS, s*WAYS+WAYS, -1L);
+            }
+            finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+        hits.reset();
+        misses.reset();
+    }
+
+    /**
+     * Saves the cache contents to a binary file, as the number of word
+     * pairs followed by the pairs and their costs.
+     * @param fname The file name.
+     * @return The {@code true} value on success.
+     */
+    public boolean save(String fname) {
+        try {
+            ByteArrayOutputStream bytes= new ByteArrayOutputStream();
+            DataOutputStream pairs= new DataOutputStream(bytes);
+            int n= 0;
+            for (int s = 0; s < nsets; s++) {
+                StampedLock lock= lockOf(s);
+                long stamp= lock.readLock();
+                try {
+                    for (int k = s*WAYS, e = k+WAYS; k < e; k++) {
+                        if ( keys[k] == -1L )  continue;
+                        String wa= dict.get((int) (keys[k] >>> 32));
+                        String wb= dict.get((int) keys[k]);
+                        if ( wa == null || wb == null )  continue;
+                        pairs.writeUTF(wa);
+                        pairs.writeUTF(wb);
+                        pairs.writeDouble(vals[k]);
+                        n++;
+                    }
+                }
+                finally {
+                    lock.unlockRead(stamp);
+                }
+            }
+
+            DataOutputStream out= new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fname)));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(n);
+                bytes.writeTo(out);
+            }
+            finally {
+                out.close();
+            }
+            return true;
+        }
+        catch (IOException exc) {
+            System.err.printf("\n[ERROR] SubstitutionCache.save(%s) ---> %s\n", fname, exc);
+            return false;
+        }
+    }
+
+    /**
+     * Loads the pairs saved in a file, for the words existing in the
+     * dictionary of this cache.
+     * @param fname The file name.
+     * @return The {@code true} value on success.
+     */
+    public boolean load(String fname) {
+        try {
+            DataInputStream in= new DataInputStream(new BufferedInputStream(new FileInputStream(fname)));
+            try {
+                if ( in.readInt() != MAGIC || in.readInt() != VERSION ) {
+                    System.err.printf("\n[ERROR] SubstitutionCache.load(%s) ---> invalid file\n", fname);
+                    return false;
+                }
+                int n= in.readInt();
+                for (int i = 0; i < n; i++) {
+                    String wa= in.readUTF();
+                    String wb= in.readUTF();
+                    double c= in.readDouble();
+                    int a= dict.get(wa);
+                    int b= dict.get(wb);
+                    if ( a >= 0 && b >= 0 )  put(a, b, c);
+                }
+            }
+            finally {
+                in.close();
+            }
+            return true;
+        }
+        catch (IOException exc) {
+            System.err.printf("\n[ERROR] SubstitutionCache.load(%s) ---> %s\n", fname, exc);
+            return false;
+        }
+    }
+}
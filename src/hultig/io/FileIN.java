@@ -25,6 +25,7 @@ import java.util.regex.Pattern;
 public class FileIN extends File
 {
     protected BufferedReader br;
+    protected MappedLineReader mapped;
     protected String encode;
     protected URL url;
 
@@ -73,6 +74,7 @@ public class FileIN extends File
      * Open/reopen this file.
      */
     public boolean open() {
+        closeMapped();
         try {
             if (url == null) {
                 InputStream in = new FileInputStream(this);
@@ -90,14 +92,45 @@ public class FileIN extends File
         }
     }
     
+    /**
+     * Open/reopen this file in the memory mapped mode, in which the lines
+     * may be read as {@code CharSequence} views, through {@link #readChars()},
+     * without creating a string per line. This mode is only available for
+     * local files, with a byte oriented encoding, like UTF-8 or ISO-8859-1
+     * (see {@link MappedLineReader}).
+     * @return The {@code true} value on success.
+     */
+    public boolean openMapped() {
+        close();
+        if ( url != null || !MappedLineReader.isByteOriented(encode) )  return false;
+        try {
+            mapped= new MappedLineReader(getPath(), encode);
+            return true;
+        }
+        catch (IOException exc) {
+            System.err.printf("\n[ERROR] FileIN.openMapped(%s) ---> %s\n", getPath(), exc);
+            mapped= null;
+            return false;
+        }
+    }
+
+    private void closeMapped() {
+        if ( mapped != null ) {
+            mapped.close();
+            mapped= null;
+        }
+    }
+
     /**
      * Close the current file.
      */
     public void close() {
+        closeMapped();
         try {
             br.close();
         }
         catch (Exception exc) {}
+        br= null;
     }
     
     
@@ -123,6 +156,16 @@ public class FileIN extends File
      * file will end closed!.
      */
     public int countNumLines() {
+        if ( url == null && MappedLineReader.isByteOriented(encode) ) {
+            try {
+                long n= MappedLineReader.countLines(getPath());
+                close();
+                return (int) n;
+            }
+            catch (IOException exc) {
+                //reads the lines, as below.
+            }
+        }
         int counter= 0;
         open();
         while ( this.read() != null ) counter++;
@@ -162,12 +205,33 @@ public class FileIN extends File
      */
     public String read() {
         try {
+            if ( mapped != null ) {
+                CharSequence s= mapped.next();
+                return s == null ? null : s.toString();
+            }
             return br.readLine();
         }
         catch(Exception exc) {
             return null;
         }
     }
+
+    /**
+     * Reads the next line from the opened text, as a view that is only
+     * valid until the next read, in the memory mapped mode (see
+     * {@link #openMapped()}). In the default mode this is the same as
+     * {@link #read()}.
+     * @return The line read or else the null value.
+     */
+    public CharSequence readChars() {
+        if ( mapped == null )  return read();
+        try {
+            return mapped.next();
+        }
+        catch(Exception exc) {
+            return null;
+        }
+    }
     
 
     /**
@@ -22,6 +22,7 @@ package hultig.io;
 
 import hultig.sumo.CorpusIndex;
 import hultig.sumo.NewsCluster;
+import hultig.sumo.NewsClusterReader;
 import hultig.sumo.Sentence;
 import hultig.sumo.Text;
 import hultig.util.CronoSensor;
@@ -29,6 +30,7 @@ import hultig.util.Toolkit;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
@@ -183,7 +185,7 @@ public class FileNewsCluster extends File
                     break;
                 }
                 
-                int ds= dictionary.hstab.size();
+                int ds= dictionary.size();
 
                 System.out.printf("\tGroup: %3d  --->  dictionary.size(): %8d\n", k + 1, ds);
                 VCLUSTERS.add(cluster);
@@ -201,6 +203,27 @@ public class FileNewsCluster extends File
         return true;
     }
 
+    /**
+     * Opens a reader that gives the news clusters of this file one at a
+     * time, instead of loading them all, as {@link #loadClusters()} does.
+     * The texts are added to the dictionary of this object, which must not
+     * be used before the end of the file, if there is lookahead.
+     * @param lookahead The maximum number of clusters parsed ahead, by a
+     * background thread, or 0.
+     * @return The reader, or null if the file can not be opened.
+     */
+    public NewsClusterReader clusters(int lookahead) {
+        try {
+            dictionary= new CorpusIndex();
+            dictionary.clearHash();
+            return new NewsClusterReader(getPath(), "ISO-8859-1", dictionary, lookahead);
+        }
+        catch (IOException exc) {
+            System.err.printf("\n[ERROR] FileNewsCluster.clusters(%d) ---> %s\n", lookahead, exc);
+            return null;
+        }
+    }
+
     /**
      * Reads a given news cluster, from the current file reader ({@code BufferedReader}).
      * @param br The file reader from which the news cluster should be read.
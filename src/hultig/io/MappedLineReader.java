@@ -0,0 +1,366 @@
+/*************************************************************************
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 2005-2012 UBI/HULTIG All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 3 only ("GPL"). You may not use this
+ * file except in compliance with the License. You can obtain a copy of
+ * the License at http://www.gnu.org/licenses/gpl.txt. See the License
+ * for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * When distributing the software, include this License Header Notice
+ * in each file. If applicable, add the following below the License
+ * Header, with the fields enclosed by brackets [] replaced by your own
+ * identifying information:
+ *
+ *       "Portions Copyrighted [year] [name of copyright owner]"
+ *************************************************************************
+ */
+package hultig.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+
+
+/**
+ * <p>
+ * Reads the lines of a text file through a memory mapping of the file,
+ * giving each line as a {@link CharSequence} view, instead of a new
+ * {@code String}. For ISO-8859-1 the view reads the mapped bytes
+ * directly, and for other encodings each line is decoded into a reused
+ * character buffer. The file is mapped in windows of
+ * {@link #WINDOW_SIZE WINDOW_SIZE} bytes, so it may be larger than the
+ * heap, and larger than 2 GB.
+ * </p>
+ *
+ * <p>
+ * The lines end as in {@link java.io.BufferedReader#readLine()}, at a
+ * line feed, a carriage return, or both. The view given by {@link #next()}
+ * is only valid until the following call, so it must be copied, with
+ * {@code toString()}, to be kept. The encoding must be a byte oriented
+ * one, like UTF-8 or ISO-8859-1, in which the line feed and carriage
+ * return bytes never belong to other characters.
+ * </p>
+ *
+ * <pre>
+ *    MappedLineReader mlr= new MappedLineReader("corpus.txt", "UTF-8");
+ *    for (CharSequence line= mlr.next(); line != null; line= mlr.next()) {
+ *        ...
+ *    }
+ *    mlr.close();
+ * </pre>
+ *
+ * <p>
+ * <b>University of Beira Interior</b> (UBI)<br />
+ * Centre For Human Language Technology and Bioinformatics (HULTIG)
+ * </p>
+ *
+ * @author J. P. Cordeiro
+ * @version 1.0
+ */
+public class MappedLineReader implements Closeable
+{
+    /**
+     * The size, in bytes, of the file windows mapped at a time. A window
+     * grows, if needed, to hold a longer line.
+     */
+    public static int WINDOW_SIZE= 1 << 28;
+
+    private static final Charset LATIN1= Charset.forName("ISO-8859-1");
+
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final long size;
+
+    /**
+     * The decoder, or null if the bytes are read directly, as ISO-8859-1.
+     */
+    private final CharsetDecoder decoder;
+
+    private MappedByteBuffer window;
+    private ByteBuffer wview;
+    private long wstart;
+    private int wsize;
+
+    /**
+     * The window offset of the next line.
+     */
+    private int pos;
+    private long numLines;
+
+    private final ByteLine line;
+    private CharBuffer chars;
+
+
+    /**
+     * Opens a file for reading.
+     * @param filename The file name.
+     * @param encoding The file encoding, a byte oriented one.
+     * @throws IOException If the file can not be opened, or the encoding
+     * is not supported.
+     */
+    public MappedLineReader(String filename, String encoding) throws IOException {
+        Charset cs;
+        try {
+            cs= Charset.forName(encoding);
+        }
+        catch (IllegalArgumentException exc) {
+            throw new IOException("unsupported encoding: "+encoding);
+        }
+        if ( !isByteOriented(cs) )
+            throw new IOException("not a byte oriented encoding: "+encoding);
+
+        raf= new RandomAccessFile(filename, "r");
+        channel= raf.getChannel();
+        size= channel.size();
+        wsize= WINDOW_SIZE;
+        line= new ByteLine();
+        if ( cs.equals(LATIN1) )
+            decoder= null;
+        else {
+            decoder= cs.newDecoder()
+                       .onMalformedInput(CodingErrorAction.REPLACE)
+                       .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            chars= CharBuffer.allocate(256);
+        }
+        map(0);
+    }
+
+    /**
+     * Tells whether an encoding is byte oriented, as required by this
+     * class, that is, whether the line feed, the carriage return and the
+     * ASCII letters are single bytes.
+     * @param encoding The encoding name.
+     * @return The {@code true} value if the encoding is byte oriented,
+     * and {@code false} if not, or if it is unknown.
+     */
+    public static boolean isByteOriented(String encoding) {
+        try {
+            return isByteOriented(Charset.forName(encoding));
+        }
+        catch (IllegalArgumentException exc) {
+            return false;
+        }
+    }
+
+    private static boolean isByteOriented(Charset cs) {
+        return cs.canEncode() && Arrays.equals("\n\ra".getBytes(cs), new byte[]{'\n', '\r', 'a'});
+    }
+
+    /**
+     * Maps the window starting at a given file offset.
+     */
+    private void map(long start) throws IOException {
+        wstart= start;
+        window= channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(wsize, size - start));
+        wview= window.duplicate();
+        pos= 0;
+    }
+
+    /**
+     * Reads the next line.
+     * @return A view of the line, valid until the next call, or null at
+     * the end of the file.
+     * @throws IOException On a mapping error.
+     */
+    public CharSequence next() throws IOException {
+        if ( wstart + pos >= size )  return null;
+        for (;;) {
+            int limit= window.limit();
+            boolean last= wstart + limit >= size;
+            //a carriage return at the window end may be followed by a line feed.
+            int end= last ? limit : limit - 1;
+            int e= pos;
+            while ( e < end ) {
+                byte b= window.get(e);
+                if ( b == '\n' || b == '\r' )  break;
+                e++;
+            }
+            if ( e < end || last ) {
+                int a= pos;
+                if ( e < limit )
+                    pos= e + (window.get(e) == '\r' && e + 1 < limit && window.get(e + 1) == '\n' ? 2 : 1);
+                else
+                    pos= limit;
+                numLines++;
+                return view(a, e);
+            }
+            //the line crosses the window end.
+            if ( pos == 0 )
+                wsize= (int) Math.min(Integer.MAX_VALUE, 2L * wsize);
+            map(wstart + pos);
+        }
+    }
+
+    /**
+     * Gives the view of the window bytes from {@code a} to {@code b}.
+     */
+    private CharSequence view(int a, int b) {
+        if ( decoder == null ) {
+            line.set(window, a, b - a);
+            return line;
+        }
+
+        wview.clear();
+        wview.limit(b);
+        wview.position(a);
+        for (;;) {
+            decoder.reset();
+            chars.clear();
+            CoderResult r= decoder.decode(wview, chars, true);
+            if ( !r.isOverflow() )  r= decoder.flush(chars);
+            if ( !r.isOverflow() )  break;
+            chars= CharBuffer.allocate(2 * chars.capacity());
+            wview.position(a);
+        }
+        chars.flip();
+        return chars;
+    }
+
+    /**
+     * The number of lines read so far.
+     * @return The number of lines.
+     */
+    public long getNumLines() {
+        return numLines;
+    }
+
+    /**
+     * The file offset of the next line.
+     * @return The offset, in bytes.
+     */
+    public long position() {
+        return wstart + pos;
+    }
+
+    /**
+     * The file size.
+     * @return The size, in bytes.
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Closes the file.
+     */
+    @Override
+    public void close() {
+        window= null;
+        wview= null;
+        try {
+            raf.close();
+        }
+        catch (IOException exc) {
+            System.err.printf("\n[ERROR] MappedLineReader.close() ---> %s\n", exc);
+        }
+    }
+
+    /**
+     * Counts the lines of a text file, as {@link java.io.BufferedReader#readLine()}
+     * would read them, by scanning its bytes, without decoding. The file
+     * encoding must be a byte oriented one.
+     * @param filename The file name.
+     * @return The number of lines.
+     * @throws IOException If the file can not be read.
+     */
+    public static long countLines(String filename) throws IOException {
+        RandomAccessFile f= new RandomAccessFile(filename, "r");
+        try {
+            FileChannel ch= f.getChannel();
+            long size= ch.size();
+            long n= 0;
+            byte prev= '\n';
+            for (long start= 0; start < size; start+= WINDOW_SIZE) {
+                MappedByteBuffer buf= ch.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW_SIZE, size - start));
+                for (int i= 0, m= buf.limit(); i < m; i++) {
+                    byte b= buf.get(i);
+                    //a line feed after a carriage return ends no other line.
+                    if ( b == '\r' || b == '\n' && prev != '\r' )  n++;
+                    prev= b;
+                }
+            }
+            if ( size > 0 && prev != '\n' && prev != '\r' )  n++;
+            return n;
+        }
+        finally {
+            f.close();
+        }
+    }
+
+
+    /**
+     * A view of a range of ISO-8859-1 bytes, as characters.
+     */
+    private static final class ByteLine implements CharSequence
+    {
+        private ByteBuffer buf;
+        private int off;
+        private int len;
+
+        ByteLine() {
+        }
+
+        ByteLine(ByteBuffer buf, int off, int len) {
+            set(buf, off, len);
+        }
+
+        void set(ByteBuffer buf, int off, int len) {
+            this.buf= buf;
+            this.off= off;
+            this.len= len;
+        }
+
+        @Override
+        public int length() {
+            return len;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if ( index < 0 || index >= len )  throw new IndexOutOfBoundsException("index: "+index);
+            return (char) (buf.get(off + index) & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if ( start < 0 || end > len || start > end )
+                throw new IndexOutOfBoundsException("range: "+start+", "+end);
+            return new ByteLine(buf, off + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            char[] c= new char[len];
+            for (int i = 0; i < len; i++)  c[i]= (char) (buf.get(off + i) & 0xFF);
+            return new String(c);
+        }
+    }
+
+
+    public static void main(String[] args) throws IOException {
+        if ( args.length < 1 ) {
+            System.out.println("\nSYNTAX: java hultig.io.MappedLineReader file.txt [encoding]\n");
+            return;
+        }
+        String encoding= args.length > 1 ? args[1] : "UTF-8";
+        long t= System.currentTimeMillis();
+        MappedLineReader mlr= new MappedLineReader(args[0], encoding);
+        long nchars= 0;
+        for (CharSequence s= mlr.next(); s != null; s= mlr.next())  nchars+= s.length();
+        mlr.close();
+        System.out.printf("%d lines, %d chars (dt: %d ms)\n", mlr.getNumLines(), nchars, System.currentTimeMillis() - t);
+    }
+}
@@ -1,11 +1,11 @@
 package hultig.nlp;
 
 import hultig.io.FileIN;
+import hultig.io.MappedLineReader;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
-import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
@@ -19,6 +19,7 @@ import java.util.SortedSet;
 import java.util.TreeSet;
 
 import hultig.util.BasicStats;
+import hultig.util.CharTokenizer;
 import hultig.util.CronoSensor;
 import hultig.util.OSArguments;
 import hultig.util.StringInteger;
@@ -321,24 +322,31 @@ public final class HashString extends Hashtable<String, Long> implements Seriali
 
     /**
      * Read the text from a file and incrementally setup the hashtable.
+     * The file is memory mapped, unless its encoding is not a byte oriented
+     * one (see {@link MappedLineReader#isByteOriented(java.lang.String)}).
      * @param fname
      * @param onlyWords
      * @return
      */
     public boolean processFile(String fname, boolean onlyWords, boolean caseSensitive) {
 	try  {
-            InputStream in = new FileInputStream(genPathForFname(fname));
-	    BufferedReader br= new BufferedReader(new InputStreamReader(in,ENCODE));
+            MappedLineReader mlr= null;
+            BufferedReader br= null;
+            if ( MappedLineReader.isByteOriented(ENCODE) )
+                mlr= new MappedLineReader(genPathForFname(fname), ENCODE);
+            else
+                br= new BufferedReader(new InputStreamReader(new FileInputStream(genPathForFname(fname)), ENCODE));
+            CharTokenizer tok= new CharTokenizer(" ,.;:()\"\'!?");
 
 	    for(;;)  {
-		String line= br.readLine();
+		CharSequence line= mlr != null ? mlr.next() : br.readLine();
 		if ( line == null )  break;
                 
-                if ( !caseSensitive )  line= line.toLowerCase();
-                String[] words= line.split("[ ,.;:()\"\'!?]+");
-                for (String w : words) {
+                int n= tok.split(line);
+                for (int i = 0; i < n; i++) {
+                    String w= tok.token(i);
+                    if ( !caseSensitive )  w= w.toLowerCase();
                     int N= w.length();
-                    if ( N < 1 ) continue;
                     char c0= w.charAt(0);
                     char cN= w.charAt(N-1);
                     if ( !onlyWords || Character.isLetter(c0) && Character.isLetter(cN) )
@@ -346,7 +354,8 @@ public final class HashString extends Hashtable<String, Long> implements Seriali
                 }
 	    }
 
-	    br.close();
+	    if ( mlr != null )  mlr.close();
+	    if ( br != null )  br.close();
 	}
 	catch (Exception e)  {
 	    System.out.println("ERROR - "+e);
@@ -0,0 +1,550 @@
+/*************************************************************************
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 2005-2011 UBI/HULTIG All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 3 only ("GPL"). You may not use this
+ * file except in compliance with the License. You can obtain a copy of
+ * the License at http://www.gnu.org/licenses/gpl.txt. See the License
+ * for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * When distributing the software, include this License Header Notice
+ * in each file. If applicable, add the following below the License
+ * Header, with the fields enclosed by brackets [] replaced by your own
+ * identifying information:
+ *
+ *       "Portions Copyrighted [year] [name of copyright owner]"
+ *************************************************************************
+ */
+package hultig.sumo;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+
+/**
+ * <p>
+ * A compact, array-backed representation of a sentence. While the
+ * {@link Sentence} class is a linked list of {@link Word} objects, here
+ * a sentence is kept in parallel arrays: one array of word strings and
+ * three arrays of codes, the lexical, POS, and chunk codes, exactly as
+ * stored in the {@code Word.cods} array. Thus any word access is done in
+ * constant time, which is important for the similarity functions, which
+ * repeatedly traverse the sentence words.
+ * </p>
+ *
+ * <p>
+ * The conversion from a {@code Sentence} is done in a single pass, through
+ * {@link #ArraySentence(hultig.sumo.Sentence) ArraySentence(Sentence)} or
+ * {@link Sentence#toArraySentence() Sentence.toArraySentence()}, and the
+ * reverse through {@link #toSentence() toSentence()}.
+ * </p>
+ *
+ * <p>
+ * <b>University of Beira Interior</b> (UBI)<br />
+ * Centre For Human Language Technology and Bioinformatics (HULTIG)
+ * </p>
+ *
+ * @author J. P. Cordeiro
+ * @version 1.0
+ */
+public class ArraySentence implements Comparable<ArraySentence>, Serializable
+{
+    public static final long serialVersionUID = 4718304962516377105L;
+
+    /**
+     * The sentence tokens.
+     */
+    private String[] words;
+
+    /**
+     * The lexical codes, -1 for a non codified word.
+     */
+    private int[] lex;
+
+    /**
+     * The part-of-speech codes, -1 when undefined.
+     */
+    private int[] pos;
+
+    /**
+     * The chunk codes, -1 when undefined.
+     */
+    private int[] chk;
+
+    /**
+     * The word POS tags, as given by {@link Word#getTag() Word.getTag()}.
+     * This array is only created if at least one word was tagged.
+     */
+    private String[] tags;
+
+    /**
+     * Internal string representation of this sentence.
+     */
+    private String stx;
+
+    /**
+     * This label defines a sentence meta-tag.
+     */
+    public String label;
+
+    /**
+     * A sentence index, as in {@link Sentence#cod Sentence.cod}.
+     */
+    public int cod;
+
+    /**
+     * The similarity function used by {@link #similarity(hultig.sumo.ArraySentence)
+     * similarity(ArraySentence)}.
+     */
+    public Sentence.Metric metric= Sentence.Metric.SUMO;
+
+
+    /**
+     * Creates a new sentence from a given string, tokenized as in
+     * {@link Sentence#tokenize(java.lang.String) Sentence.tokenize(String)}.
+     * @param s The string containing a sentence.
+     */
+    public ArraySentence(String s) {
+        List<String> list= Sentence.tokenize(s);
+        if ( list == null ) {
+            init(new String[0]);
+            return;
+        }
+        init(list.toArray(new String[list.size()]));
+        stx= s;
+    }
+
+    /**
+     * Creates a new sentence from an array of tokens.
+     * @param words The array of tokens.
+     */
+    public ArraySentence(String[] words) {
+        init(words.clone());
+    }
+
+    /**
+     * Creates a new sentence from an array of tokens and their
+     * lexical codes. Both arrays must have the same length.
+     * @param words The array of tokens.
+     * @param lexcods The lexical codes.
+     */
+    public ArraySentence(String[] words, int[] lexcods) {
+        if ( words.length != lexcods.length )
+            throw new IllegalArgumentException("words and codes differ in length");
+        init(words.clone());
+        System.arraycopy(lexcods, 0, lex, 0, lexcods.length);
+    }
+
+    /**
+     * Converts a linked list sentence into this compact form. The
+     * source sentence is traversed only once.
+     * @param s The source sentence.
+     */
+    public ArraySentence(Sentence s) {
+        int n= s.size();
+        init(new String[n]);
+        int i= 0;
+        for (Word w : s) {
+            words[i]= w.toString();
+            lex[i]= w.getLexCod();
+            pos[i]= w.getPosCod();
+            chk[i]= w.getChkCod();
+            String tag= w.getTag();
+            if ( tag.length() > 0 ) {
+                if ( tags == null ) {
+                    tags= new String[n];
+                    Arrays.fill(tags, "");
+                }
+                tags[i]= tag;
+            }
+            i++;
+        }
+        stx= s.stx;
+        label= s.label;
+        cod= s.cod;
+        metric= s.metric;
+    }
+
+    private void init(String[] vw) {
+        int n= vw.length;
+        words= vw;
+        lex= new int[n];
+        pos= new int[n];
+        chk= new int[n];
+        Arrays.fill(lex, -1);
+        Arrays.fill(pos, -1);
+        Arrays.fill(chk, -1);
+        tags= null;
+        stx= null;
+        label= null;
+    }
+
+    /**
+     * Converts an array of sentences into their compact form.
+     * @param vs The array of sentences.
+     * @return The array of converted sentences.
+     */
+    public static ArraySentence[] valueOf(Sentence... vs) {
+        ArraySentence[] va= new ArraySentence[vs.length];
+        for (int i = 0; i < vs.length; i++)  va[i]= new ArraySentence(vs[i]);
+        return va;
+    }
+
+    /**
+     * Converts a list of sentences, for example a {@link Text}, into an
+     * array of compact sentences.
+     * @param list The list of sentences.
+     * @return The array of converted sentences.
+     */
+    public static ArraySentence[] valueOf(List<Sentence> list) {
+        ArraySentence[] va= new ArraySentence[list.size()];
+        int i= 0;
+        for (Sentence s : list)  va[i++]= new ArraySentence(s);
+        return va;
+    }
+
+    /**
+     * Creates the equivalent linked list sentence, with all codes and
+     * tags transferred to the new {@code Word} objects.
+     * @return The equivalent {@link Sentence}.
+     */
+    public Sentence toSentence() {
+        Sentence s= new Sentence();
+        for (int i = 0; i < words.length; i++)  s.add(get(i));
+        s.stx= stx != null ? stx : toString();
+        s.label= label;
+        s.cod= cod;
+        s.metric= metric;
+        return s;
+    }
+
+    /**
+     * The number of words (tokens) in this sentence.
+     * @return The number of words.
+     */
+    public int size() {
+        return words.length;
+    }
+
+    /**
+     * Tests whether this sentence has no words.
+     * @return The {@code true} value if empty.
+     */
+    public boolean isEmpty() {
+        return words.length == 0;
+    }
+
+    /**
+     * This sentence string length, similarly to {@link Sentence#length()
+     * Sentence.length()}.
+     * @return The length value.
+     */
+    public int length() {
+        return stx == null ? (words.length == 0 ? 0 : toString().length()) : stx.length();
+    }
+
+    /**
+     * Creates a {@code Word} object for a given position, with the
+     * respective codes and tag.
+     * @param index The word position.
+     * @return The new word object.
+     */
+    public Word get(int index) {
+        Word w= tags == null || tags[index].length() == 0 ?
+                new Word(words[index]) : new Word(words[index], "POS="+tags[index]);
+        w.cods= new int[]{lex[index], pos[index], chk[index]};
+        return w;
+    }
+
+    /**
+     * Gives the sentence word positioned at a given index.
+     * @param index The index to read from.
+     * @return The word read in the string form.
+     */
+    public String getWord(int index) {
+        if ( index < 0  ||  index >= words.length )  return null;
+        return words[index];
+    }
+
+    /**
+     * Gives an array of strings, containing all the words in this
+     * sentence.
+     * @return The array of words.
+     */
+    public String[] getWords() {
+        return words.clone();
+    }
+
+    /**
+     * The POS tag, if defined, for a given word.
+     * @param index The word position in the sentence.
+     * @return The POS tag read or else the null value.
+     */
+    public String getTag(int index) {
+        if ( index < 0  ||  index >= words.length )  return null;
+        return tags == null ? "" : tags[index];
+    }
+
+    /**
+     * Gives the array of POS tags for that sentence.
+     * @return The array of tags.
+     */
+    public String[] getTags() {
+        if ( tags != null )  return tags.clone();
+        String[] v= new String[words.length];
+        Arrays.fill(v, "");
+        return v;
+    }
+
+    public int getLexCod(int index) {
+        return lex[index];
+    }
+
+    public int getPosCod(int index) {
+        return pos[index];
+    }
+
+    public int getChkCod(int index) {
+        return chk[index];
+    }
+
+    /**
+     * Gives a copy of the array of lexical codes representing this
+     * sentence.
+     * @return The array of lexical codes.
+     */
+    public int[] getCodes() {
+        return lex.clone();
+    }
+
+    /**
+     * Gives the internal array of lexical codes, without copying it. It
+     * is meant for batch processing, where the codes are read many times,
+     * and must not be modified by the caller.
+     * @return The internal array of lexical codes.
+     */
+    public int[] codes() {
+        return lex;
+    }
+
+    /**
+     * Gives the array of sub-codes between two positions, as in
+     * {@link Sentence#subcodes(int, int) Sentence.subcodes(int,int)}.
+     * @param start The starting position.
+     * @param end The ending position (exclusive).
+     * @return The sub-array of codes.
+     */
+    public int[] subcodes(int start, int end) {
+        if ( end > words.length )
+            end= words.length;
+        if ( start > end || start > words.length-1 )
+            return null;
+        return Arrays.copyOfRange(lex, start, end);
+    }
+
+    /**
+     * Gives a sub-sentence from this sentence, between positions
+     * a and b.
+     * @param a The start position.
+     * @param b The end position (exclusive).
+     * @return The sub-sentence.
+     */
+    public ArraySentence subs(int a, int b) {
+        if ( a < 0 )  a= 0;
+        if ( b > words.length )  b= words.length;
+        if ( b < a )  b= a;
+
+        ArraySentence s= new ArraySentence(Arrays.copyOfRange(words, a, b));
+        System.arraycopy(lex, a, s.lex, 0, b-a);
+        System.arraycopy(pos, a, s.pos, 0, b-a);
+        System.arraycopy(chk, a, s.chk, 0, b-a);
+        if ( tags != null )  s.tags= Arrays.copyOfRange(tags, a, b);
+        return s;
+    }
+
+    /**
+     * Codifies this sentence according to a given previously
+     * processed dictionary.
+     * @param dic The indicated dictionary.
+     */
+    public void codify(CorpusIndex dic) {
+        if ( dic == null )  return;
+        for (int i = 0; i < words.length; i++)
+            lex[i]= dic.get(words[i].toLowerCase());
+    }
+
+    /**
+     * Verifies whether this sentence has been marked with a
+     * CorpusIndex object.
+     * @return The {@code true} value on success.
+     */
+    public boolean isCodefied() {
+        if ( words.length < 1 )  return false;
+        return lex[0] != -1;
+    }
+
+    /**
+     * Ensures that a given set of sentences is codified. Otherwise, the
+     * sentences are codified with a local code table, built only from
+     * their lower case words, as in {@link Sentence#ensureCodification(hultig.sumo.Sentence[])
+     * Sentence.ensureCodification(Sentence...)}.
+     * @param sentences The set of sentences.
+     */
+    public static void ensureCodification(ArraySentence... sentences) {
+        boolean ok= true;
+        for (ArraySentence s : sentences) {
+            if ( !s.isCodefied() ) {
+                ok= false;
+                break;
+            }
+        }
+        if ( ok )  return;
+
+        HashMap<String,Integer> hcod= new HashMap<>();
+        for (ArraySentence s : sentences) {
+            for (int i = 0; i < s.words.length; i++) {
+                String w= s.words[i].toLowerCase();
+                Integer c= hcod.get(w);
+                if ( c == null ) {
+                    c= hcod.size()+1;
+                    hcod.put(w, c);
+                }
+                s.lex[i]= c;
+            }
+        }
+    }
+
+    /**
+     * Counts the number of effective words in this sentence.
+     * @return The number of words found.
+     */
+    public int countNumWords() {
+        int counter= 0;
+        for (String w : words) {
+            if ( isLetterSequence(w) )  counter++;
+        }
+        return counter;
+    }
+
+    private static boolean isLetterSequence(String w) {
+        for (int k=0; k<w.length(); k++)
+            if ( !Character.isLetter(w.charAt(k)) )  return false;
+        return true;
+    }
+
+    /**
+     * Gives the index of the first occurence of a string in this
+     * sentence.
+     * @param s The string to be scaned in this sentence.
+     * @return The index found, or else the -1 value.
+     */
+    public int indexOf(String s) {
+        return indexOf(s, 0);
+    }
+
+    /**
+     * Gives the index of a string occurence within this sentence,
+     * starting the search from a given position.
+     * @param s The string to be scaned in this string.
+     * @param from The starting index.
+     * @return The index found, or else the -1 value.
+     */
+    public int indexOf(String s, int from) {
+        for (int i=from; i<words.length; i++) {
+            if ( words[i].equals(s) )  return i;
+        }
+        return -1;
+    }
+
+    /**
+     * The word level <i>Edit Distance</i> between this sentence and
+     * another one, as in {@link Sentence#dsLevenshtein(hultig.sumo.Sentence)
+     * Sentence.dsLevenshtein(Sentence)}.
+     * @param other The other sentence.
+     * @return The calculated distance.
+     */
+    public int dsLevenshtein(ArraySentence other) {
+        if ( other == null ) return -1;
+        return Sentence.dsLevenshtein(other.lex, other.words, lex, words);
+    }
+
+    /**
+     * The thresholded word level <i>Edit Distance</i>, as in
+     * {@link Sentence#dsLevenshtein(hultig.sumo.Sentence, int)
+     * Sentence.dsLevenshtein(Sentence, int)}.
+     * @param other The other sentence.
+     * @param k The maximum distance of interest.
+     * @return The calculated distance, or {@code k+1} if it exceeds {@code k}.
+     */
+    public int dsLevenshtein(ArraySentence other, int k) {
+        if ( other == null ) return -1;
+        return Sentence.dsLevenshtein(other.lex, other.words, lex, words, k);
+    }
+
+    /**
+     * The "sumo metric" between this sentence and another one, as in
+     * {@link Sentence#dsumo(hultig.sumo.Sentence) Sentence.dsumo(Sentence)}.
+     * @param other The other sentence to compare with.
+     * @return A value in the [0,1] interval.
+     */
+    public double dsumo(ArraySentence other) {
+        if ( other == null || other.isEmpty() || isEmpty() )  return 0.0;
+        ensureCodification(this, other);
+        return Sentence.dsumo(lex, other.lex);
+    }
+
+    /**
+     * Compute the similarity between two sentences, according to the
+     * {@link #metric metric} defined for this sentence. The lexical
+     * metrics (SUMO, EDIT) are computed directly on the code arrays,
+     * while the remaining ones are delegated to the {@link Sentence}
+     * implementation.
+     * @param other The other sentence.
+     * @return The similarity value.
+     */
+    public double similarity(ArraySentence other) {
+        if ( metric == Sentence.Metric.EDIT ) {
+            int m = Math.max(this.size(), other.size());
+            return 1.0 - (double) this.dsLevenshtein(other) / m;
+        }
+        if ( metric == Sentence.Metric.SUMO ) {
+            ensureCodification(this, other);
+            return Sentence.dsumo(lex, other.lex);
+        }
+
+        Sentence sa= this.toSentence();
+        Sentence sb= other.toSentence();
+        sa.metric= metric;
+        return sa.similarity(sb);
+    }
+
+    @Override
+    public int compareTo(ArraySentence other) {
+        return toString().compareTo(other.toString());
+    }
+
+    /**
+     * The string form of this sentence, built exactly as in
+     * {@link Sentence#toString() Sentence.toString()}.
+     * @return A string representing this sentence.
+     */
+    @Override
+    public String toString() {
+        StringBuilder s= new StringBuilder();
+        String sp= ".,;:?!\"'";
+        for (int i=0; i<words.length; i++) {
+            String ws= words[i];
+            if ( ws == null ) continue;
+            if ( sp.contains(ws) || i == 0 )
+                s.append(ws);
+            else
+                s.append(' ').append(ws);
+        }
+        return s.toString();
+    }
+}
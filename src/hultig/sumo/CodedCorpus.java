@@ -0,0 +1,374 @@
+/*************************************************************************
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 2005-2012 UBI/HULTIG All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 3 only ("GPL"). You may not use this
+ * file except in compliance with the License. You can obtain a copy of
+ * the License at http://www.gnu.org/licenses/gpl.txt. See the License
+ * for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * When distributing the software, include this License Header Notice
+ * in each file. If applicable, add the following below the License
+ * Header, with the fields enclosed by brackets [] replaced by your own
+ * identifying information:
+ *
+ *       "Portions Copyrighted [year] [name of copyright owner]"
+ *************************************************************************
+ */
+package hultig.sumo;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+
+/**
+ * <p>
+ * A read-only corpus of sentences already tokenized and codified, stored
+ * in a binary file, which is memory mapped and read in place. Experiments
+ * repeated over the same corpus may thus skip the tokenization and the
+ * dictionary lookups. The files are written by {@link CodedCorpusWriter},
+ * and refer to a snapshot of the {@link CorpusIndex} used for the codes,
+ * saved in its mapped format ({@link CorpusIndex#saveMapped(java.lang.String)}).
+ * </p>
+ *
+ * <p>
+ * The file format (version 1, big-endian) is the following, where
+ * {@code n} is the number of sentences:
+ * </p>
+ * <pre>
+ *    int    MAGIC ("HCOR")
+ *    int    VERSION
+ *    int    FLAGS, with the optional columns
+ *    int    dictionary size
+ *    long   n
+ *    long   index offset
+ *    int    dictionary file name length, in bytes
+ *    byte[] dictionary file name (UTF-8)
+ *    ...    sentence records
+ *    long[n]   record offsets (index)
+ *    int[n]    sentence codes, as in {@link Sentence#cod Sentence.cod}
+ *    int[n]    sentence groups, like the text or cluster of the sentence
+ * </pre>
+ * <p>
+ * A sentence record holds its number of words {@code m}, and then the
+ * {@code m} lexical codes, followed by the {@code m} POS codes and the
+ * {@code m} chunk codes, if these columns exist, matching the
+ * {@code Word.cods} array. All these values are variable length integers
+ * (zig-zag varints), so that most codes take one or two bytes. No record
+ * crosses a {@link #SEGMENT SEGMENT} boundary, and so files larger than
+ * 2 GB are mapped by segments.
+ * </p>
+ *
+ * <pre>
+ *    CodedCorpus cc= CodedCorpus.open("news.hcor");
+ *    int[] codes= new int[256];
+ *    for (int i = 0; i &lt; cc.size(); i++) {
+ *        codes= cc.lex(i, codes);
+ *        int m= cc.length(i);
+ *        ...
+ *    }
+ * </pre>
+ *
+ * <p>
+ * <b>University of Beira Interior</b> (UBI)<br />
+ * Centre For Human Language Technology and Bioinformatics (HULTIG)
+ * </p>
+ *
+ * @author J. P. Cordeiro
+ * @version 1.0
+ */
+public class CodedCorpus
+{
+    public static final int MAGIC= 0x48434F52;
+    public static final int VERSION= 1;
+
+    /**
+     * Flag marking a corpus with the POS codes column.
+     */
+    public static final int FLAG_POS= 1;
+
+    /**
+     * Flag marking a corpus with the chunk codes column.
+     */
+    public static final int FLAG_CHUNK= 2;
+
+    /**
+     * The size, in bytes, of the file segments that no record crosses.
+     */
+    public static final long SEGMENT= 1L << 30;
+
+    static final int HEADER= 36;
+
+    private final String fname;
+    private final MappedByteBuffer[] segments;
+    private final MappedByteBuffer index;
+    private final int flags;
+    private final int n;
+    private final int dicsize;
+    private final String dicname;
+
+
+    private CodedCorpus(String fname, FileChannel ch) throws IOException {
+        this.fname= fname;
+        long size= ch.size();
+        if ( size < HEADER )
+            throw new IOException("Not a coded corpus file");
+        MappedByteBuffer head= ch.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, SEGMENT));
+        if ( head.getInt(0) != MAGIC )
+            throw new IOException("Not a coded corpus file");
+        int version= head.getInt(4);
+        if ( version != VERSION )
+            throw new IOException("Unsupported coded corpus version: " + version);
+        flags= head.getInt(8);
+        dicsize= head.getInt(12);
+        long nn= head.getLong(16);
+        long indexAt= head.getLong(24);
+        if ( nn < 0 || nn > Integer.MAX_VALUE / 16 || indexAt + 16*nn > size )
+            throw new IOException("Corrupted coded corpus file");
+        n= (int) nn;
+
+        byte[] vb= new byte[head.getInt(32)];
+        for (int i = 0; i < vb.length; i++)  vb[i]= head.get(HEADER + i);
+        dicname= new String(vb, StandardCharsets.UTF_8);
+
+        segments= new MappedByteBuffer[(int) ((indexAt + SEGMENT - 1) / SEGMENT)];
+        for (int k = 0; k < segments.length; k++) {
+            long a= k * SEGMENT;
+            segments[k]= k == 0 ? head : ch.map(FileChannel.MapMode.READ_ONLY, a, Math.min(SEGMENT, size - a));
+        }
+        index= ch.map(FileChannel.MapMode.READ_ONLY, indexAt, 16L * n);
+    }
+
+    /**
+     * Opens and maps a given coded corpus file.
+     * @param fname The file name.
+     * @return The mapped corpus.
+     * @throws IOException If the file can not be read or has an invalid format.
+     */
+    public static CodedCorpus open(String fname) throws IOException {
+        RandomAccessFile raf= new RandomAccessFile(fname, "r");
+        try {
+            return new CodedCorpus(fname, raf.getChannel());
+        }
+        finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * The number of sentences.
+     * @return The number of sentences.
+     */
+    public int size() {
+        return n;
+    }
+
+    /**
+     * Tests whether the sentences have POS codes.
+     * @return The {@code true} value if the POS column exists.
+     */
+    public boolean hasPOS() {
+        return (flags & FLAG_POS) != 0;
+    }
+
+    /**
+     * Tests whether the sentences have chunk codes.
+     * @return The {@code true} value if the chunk column exists.
+     */
+    public boolean hasChunks() {
+        return (flags & FLAG_CHUNK) != 0;
+    }
+
+    /**
+     * The name of the dictionary file, as given to the writer.
+     * @return The dictionary file name.
+     */
+    public String getDictionaryName() {
+        return dicname;
+    }
+
+    /**
+     * Opens the dictionary snapshot of this corpus, in the mapped mode
+     * ({@link CorpusIndex#loadMapped(java.lang.String)}). A relative name
+     * is taken from the directory of the corpus file.
+     * @return The dictionary, or null if it can not be loaded, or if it
+     * does not have the size recorded in this corpus.
+     */
+    public CorpusIndex loadDictionary() {
+        File f= new File(dicname);
+        if ( !f.isAbsolute() )  f= new File(new File(fname).getAbsoluteFile().getParentFile(), dicname);
+        CorpusIndex dic= new CorpusIndex();
+        if ( !dic.loadMapped(f.getPath()) )  return null;
+        if ( dic.size() != dicsize ) {
+            System.err.printf("\n[ERROR] CodedCorpus.loadDictionary(%s) ---> size %d, expected %d\n",
+                              f.getPath(), dic.size(), dicsize);
+            return null;
+        }
+        return dic;
+    }
+
+    /**
+     * The code of a sentence, as in {@link Sentence#cod Sentence.cod}.
+     * @param i The sentence index.
+     * @return The sentence code.
+     */
+    public int cod(int i) {
+        return index.getInt(8*n + 4*i);
+    }
+
+    /**
+     * The group of a sentence, like its text or news cluster.
+     * @param i The sentence index.
+     * @return The group number.
+     */
+    public int group(int i) {
+        return index.getInt(12*n + 4*i);
+    }
+
+    /**
+     * The number of words of a sentence.
+     * @param i The sentence index.
+     * @return The number of words.
+     */
+    public int length(int i) {
+        long off= index.getLong(8*i);
+        MappedByteBuffer seg= segments[(int) (off / SEGMENT)];
+        int p= (int) (off % SEGMENT);
+        int v= 0;
+        for (int shift= 0; ; shift+= 7) {
+            byte b= seg.get(p++);
+            v|= (b & 0x7F) << shift;
+            if ( b >= 0 )  return v;
+        }
+    }
+
+    /**
+     * Decodes a column of a sentence record, into a given array, or into
+     * a new one if it is null or too short.
+     */
+    private int[] column(int i, int col, int[] dst) {
+        long off= index.getLong(8*i);
+        MappedByteBuffer seg= segments[(int) (off / SEGMENT)];
+        int p= (int) (off % SEGMENT);
+        int m= -1;
+        int skip= 0;
+        int k= 0;
+        for (;;) {
+            int v= 0;
+            for (int shift= 0; ; shift+= 7) {
+                byte b= seg.get(p++);
+                v|= (b & 0x7F) << shift;
+                if ( b >= 0 )  break;
+            }
+            if ( m < 0 ) {
+                m= v;
+                if ( m == 0 )  break;
+                skip= col * m;
+                if ( dst == null || dst.length < m )  dst= new int[m];
+                continue;
+            }
+            if ( skip > 0 ) {
+                skip--;
+                continue;
+            }
+            dst[k++]= (v >>> 1) ^ -(v & 1);
+            if ( k == m )  break;
+        }
+        return dst == null ? new int[0] : dst;
+    }
+
+    /**
+     * The lexical codes of a sentence, decoded into a given array, which
+     * is reused if it is long enough. Only its first {@link #length(int)
+     * length(i)} positions are written.
+     * @param i The sentence index.
+     * @param dst The destination array, or null.
+     * @return The array with the codes, {@code dst} or a new one.
+     */
+    public int[] lex(int i, int[] dst) {
+        return column(i, 0, dst);
+    }
+
+    /**
+     * The lexical codes of a sentence, in a new array.
+     * @param i The sentence index.
+     * @return The lexical codes.
+     */
+    public int[] lex(int i) {
+        return column(i, 0, new int[length(i)]);
+    }
+
+    /**
+     * The POS codes of a sentence, as in {@link #lex(int, int[])}.
+     * @param i The sentence index.
+     * @param dst The destination array, or null.
+     * @return The array with the codes, or null if there is no POS column.
+     */
+    public int[] pos(int i, int[] dst) {
+        return hasPOS() ? column(i, 1, dst) : null;
+    }
+
+    /**
+     * The chunk codes of a sentence, as in {@link #lex(int, int[])}.
+     * @param i The sentence index.
+     * @param dst The destination array, or null.
+     * @return The array with the codes, or null if there is no chunk column.
+     */
+    public int[] chk(int i, int[] dst) {
+        return hasChunks() ? column(i, hasPOS() ? 2 : 1, dst) : null;
+    }
+
+    /**
+     * Rebuilds a sentence, with its words taken from the dictionary,
+     * and so in lower case, and with the codes of this corpus. A word
+     * not in the dictionary is given as "?".
+     * @param i The sentence index.
+     * @param dic The dictionary, usually given by {@link #loadDictionary()}.
+     * @return The sentence.
+     */
+    public Sentence sentence(int i, CorpusIndex dic) {
+        int m= length(i);
+        int[] vl= lex(i, null);
+        int[] vp= pos(i, null);
+        int[] vc= chk(i, null);
+        Sentence s= new Sentence();
+        for (int k = 0; k < m; k++) {
+            String w= vl[k] < 0 ? null : dic.get(vl[k]);
+            Word word= new Word(w == null ? "?" : w);
+            word.cods= new int[]{vl[k], vp == null ? -1 : vp[k], vc == null ? -1 : vc[k]};
+            s.addWord(word);
+        }
+        s.cod= cod(i);
+        return s;
+    }
+
+
+    public static void main(String[] args) throws IOException {
+        if ( args.length < 1 ) {
+            System.out.println("\nSYNTAX: java hultig.sumo.CodedCorpus corpus.hcor\n");
+            return;
+        }
+        long t= System.currentTimeMillis();
+        CodedCorpus cc= CodedCorpus.open(args[0]);
+        int[] v= null;
+        long nwords= 0, sum= 0;
+        for (int i = 0; i < cc.size(); i++) {
+            v= cc.lex(i, v);
+            int m= cc.length(i);
+            nwords+= m;
+            for (int k = 0; k < m; k++)  sum+= v[k];
+        }
+        System.out.printf("%d sentences, %d words, dictionary %s (checksum: %d, dt: %d ms)\n",
+                          cc.size(), nwords, cc.getDictionaryName(), sum, System.currentTimeMillis() - t);
+        CorpusIndex dic= cc.loadDictionary();
+        if ( dic != null && cc.size() > 0 )
+            System.out.printf("S(0) ---> %s\n", cc.sentence(0, dic));
+    }
+}
@@ -0,0 +1,250 @@
+/*************************************************************************
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 2005-2012 UBI/HULTIG All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 3 only ("GPL"). You may not use this
+ * file except in compliance with the License. You can obtain a copy of
+ * the License at http://www.gnu.org/licenses/gpl.txt. See the License
+ * for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * When distributing the software, include this License Header Notice
+ * in each file. If applicable, add the following below the License
+ * Header, with the fields enclosed by brackets [] replaced by your own
+ * identifying information:
+ *
+ *       "Portions Copyrighted [year] [name of copyright owner]"
+ *************************************************************************
+ */
+package hultig.sumo;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+
+/**
+ * <p>
+ * Writes a {@link CodedCorpus} file, sentence by sentence, from
+ * {@link Sentence}, {@link Text}, or {@link NewsClusterList} objects. The
+ * lexical codes are given by the dictionary of the writer, as in
+ * {@link Sentence#codify(hultig.sumo.CorpusIndex) Sentence.codify}, and
+ * the POS and chunk codes are taken from the {@code Word.cods} arrays.
+ * The dictionary is saved in the mapped format when the writer is
+ * created, as the snapshot referred by the corpus, and so it must not
+ * be changed while the corpus is written.
+ * </p>
+ *
+ * <pre>
+ *    CodedCorpusWriter ccw= new CodedCorpusWriter("news.hcor", dic, "news.hidx", false, false);
+ *    ccw.add(newsClusterList);
+ *    ccw.close();
+ * </pre>
+ *
+ * <p>
+ * <b>University of Beira Interior</b> (UBI)<br />
+ * Centre For Human Language Technology and Bioinformatics (HULTIG)
+ * </p>
+ *
+ * @author J. P. Cordeiro
+ * @version 1.0
+ */
+public class CodedCorpusWriter implements Closeable
+{
+    private final String fname;
+    private final CorpusIndex dictionary;
+    private final int flags;
+    private DataOutputStream out;
+    private long position;
+
+    private long[] offsets;
+    private int[] cods;
+    private int[] groups;
+    private int n;
+    private int nextGroup;
+
+    /**
+     * The record being encoded.
+     */
+    private byte[] rec;
+    private int reclen;
+
+
+    /**
+     * Creates a coded corpus file.
+     * @param fname The corpus file name.
+     * @param dictionary The dictionary giving the lexical codes.
+     * @param dicname The file name where the dictionary snapshot is saved,
+     * and which is recorded in the corpus. It is better given relative to
+     * the directory of the corpus file, for instance {@code "news.hidx"}.
+     * @param pos Whether the POS codes are written.
+     * @param chunks Whether the chunk codes are written.
+     * @throws IOException If the files can not be written.
+     */
+    public CodedCorpusWriter(String fname, CorpusIndex dictionary, String dicname, boolean pos, boolean chunks)
+            throws IOException
+    {
+        File fdic= new File(dicname);
+        if ( !fdic.isAbsolute() )  fdic= new File(new File(fname).getAbsoluteFile().getParentFile(), dicname);
+        if ( !dictionary.saveMapped(fdic.getPath()) )
+            throw new IOException("Unable to save the dictionary: " + fdic.getPath());
+
+        this.fname= fname;
+        this.dictionary= dictionary;
+        this.flags= (pos ? CodedCorpus.FLAG_POS : 0) | (chunks ? CodedCorpus.FLAG_CHUNK : 0);
+        offsets= new long[1024];
+        cods= new int[1024];
+        groups= new int[1024];
+        rec= new byte[1024];
+
+        byte[] vb= dicname.getBytes(StandardCharsets.UTF_8);
+        out= new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fname), 1 << 16));
+        out.writeInt(CodedCorpus.MAGIC);
+        out.writeInt(CodedCorpus.VERSION);
+        out.writeInt(flags);
+        out.writeInt(dictionary.size());
+        out.writeLong(0L);  // n, written on close.
+        out.writeLong(0L);  // index offset, written on close.
+        out.writeInt(vb.length);
+        out.write(vb);
+        position= CodedCorpus.HEADER + vb.length;
+    }
+
+    /**
+     * The number of sentences written so far.
+     * @return The number of sentences.
+     */
+    public int size() {
+        return n;
+    }
+
+    /**
+     * Writes a sentence.
+     * @param s The sentence.
+     * @param group The sentence group, like its text or news cluster.
+     * @throws IOException If the file can not be written.
+     */
+    public void add(Sentence s, int group) throws IOException {
+        int m= s.size();
+        reclen= 0;
+        putVarint(m);
+        for (Word w : s) {
+            putVarint(zigzag(dictionary.get(w.toString().toLowerCase())));
+        }
+        if ( (flags & CodedCorpus.FLAG_POS) != 0 ) {
+            for (Word w : s)  putVarint(zigzag(w.getPosCod()));
+        }
+        if ( (flags & CodedCorpus.FLAG_CHUNK) != 0 ) {
+            for (Word w : s)  putVarint(zigzag(w.getChkCod()));
+        }
+        if ( reclen > CodedCorpus.SEGMENT )
+            throw new IOException("Sentence record too big: " + reclen + " bytes");
+
+        //no record crosses a segment boundary.
+        long seg= position / CodedCorpus.SEGMENT;
+        if ( seg != (position + reclen - 1) / CodedCorpus.SEGMENT ) {
+            long pad= (seg + 1) * CodedCorpus.SEGMENT - position;
+            for (long k = 0; k < pad; k++)  out.write(0);
+            position+= pad;
+        }
+
+        if ( n == offsets.length ) {
+            if ( n >= Integer.MAX_VALUE / 16 )
+                throw new IOException("Too many sentences: " + n);
+            offsets= Arrays.copyOf(offsets, 2 * n);
+            cods= Arrays.copyOf(cods, 2 * n);
+            groups= Arrays.copyOf(groups, 2 * n);
+        }
+        offsets[n]= position;
+        cods[n]= s.cod;
+        groups[n]= group;
+        n++;
+        out.write(rec, 0, reclen);
+        position+= reclen;
+        nextGroup= Math.max(nextGroup, group + 1);
+    }
+
+    /**
+     * Writes the sentences of a text, as a new group.
+     * @param txt The text.
+     * @throws IOException If the file can not be written.
+     */
+    public void add(Text txt) throws IOException {
+        int group= nextGroup;
+        for (Sentence s : txt)  add(s, group);
+        nextGroup= group + 1;
+    }
+
+    /**
+     * Writes the sentences of a news cluster, as a new group.
+     * @param nc The news cluster.
+     * @throws IOException If the file can not be written.
+     */
+    public void add(NewsCluster nc) throws IOException {
+        int group= nextGroup;
+        for (Text txt : nc) {
+            for (Sentence s : txt)  add(s, group);
+        }
+        nextGroup= group + 1;
+    }
+
+    /**
+     * Writes the sentences of a list of news clusters, each cluster as a
+     * new group.
+     * @param ncl The news cluster list.
+     * @throws IOException If the file can not be written.
+     */
+    public void add(NewsClusterList ncl) throws IOException {
+        for (NewsCluster nc : ncl)  add(nc);
+    }
+
+    private static int zigzag(int v) {
+        return (v << 1) ^ (v >> 31);
+    }
+
+    private void putVarint(int v) {
+        if ( reclen + 5 > rec.length )  rec= Arrays.copyOf(rec, 2 * rec.length);
+        while ( (v & ~0x7F) != 0 ) {
+            rec[reclen++]= (byte) ((v & 0x7F) | 0x80);
+            v>>>= 7;
+        }
+        rec[reclen++]= (byte) v;
+    }
+
+    /**
+     * Writes the index and closes the file.
+     * @throws IOException If the file can not be written.
+     */
+    @Override
+    public void close() throws IOException {
+        if ( out == null )  return;
+        long indexAt= position;
+        try {
+            for (int i = 0; i < n; i++)  out.writeLong(offsets[i]);
+            for (int i = 0; i < n; i++)  out.writeInt(cods[i]);
+            for (int i = 0; i < n; i++)  out.writeInt(groups[i]);
+        }
+        finally {
+            out.close();
+            out= null;
+        }
+
+        RandomAccessFile raf= new RandomAccessFile(fname, "rw");
+        try {
+            raf.seek(16);
+            raf.writeLong(n);
+            raf.writeLong(indexAt);
+        }
+        finally {
+            raf.close();
+        }
+    }
+}
@@ -24,9 +24,18 @@ import java.io.*;
 import java.util.*;
 import java.text.BreakIterator;
 import java.io.Serializable;
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
 
 import hultig.util.CronoSensor;
 import hultig.util.JPrimes;
+import hultig.util.StringIntMap;
 
 
 /**
@@ -40,6 +49,15 @@ import hultig.util.JPrimes;
  * {@link #rebuild() rebuild()} method. The dictionary is reset through 
  * the {@link #clearHash() clearHash()} method.
  * </p>
+ * <p>
+ * In the <i>incremental</i> mode, activated through {@link #setIncremental(boolean)
+ * setIncremental(true)}, codes are assigned in an append-only fashion: a new
+ * token receives the next free code and the existing codes never change, so
+ * that any previously codified data remains valid after new additions. In
+ * this mode the {@link #rebuild() rebuild()} method does not renumber the
+ * tokens, and a sorted view is available through {@link #sortedView()
+ * sortedView()}.
+ * </p>
  *
  * <p>
  * <b>University of Beira Interior</b> (UBI)<br />
@@ -50,6 +68,8 @@ import hultig.util.JPrimes;
  */
 public class CorpusIndex implements Serializable
 {
+    private static final long serialVersionUID = 2719639237540345007L;
+
     /**
      * A corpora index with the words/tokens being
      * the keys. Given a word we can obtain its
@@ -82,6 +102,20 @@ public class CorpusIndex implements Serializable
      */
     public static int NO_TRUNC = -1;
 
+    /**
+     * The approximate size, in bytes, of the file ranges tokenized in
+     * parallel by {@link #readCorpus(java.lang.String[], int, boolean)
+     * readCorpus(filenames, nthreads, adding)}.
+     */
+    public static int RANGE_SIZE = 64 << 20;
+
+    /**
+     * The xml corpus tags that are ignored when reading a corpus, which
+     * are the cluster, group and new tags.
+     */
+    private static final Pattern METADATA = Pattern.compile(
+        ".*<(?:cluster|group|new).*>.*|.*</(?:cluster|group|new)>.*");
+
     /**
      * The text encoding string used to read the text corpora,
      * for example {@code UTF-8}, or {@code ISO-8859-1}.
@@ -95,6 +129,22 @@ public class CorpusIndex implements Serializable
      * when the rebuild method was called.
      */
     private boolean somethingNewWasAdded= false;
+
+    /**
+     * The append-only token table, used in incremental mode instead of
+     * the {@link #sdict sdict}, {@link #idict idict}, and {@link #hstab
+     * hstab} tables. A token with table identifier {@code id} has the
+     * code {@code id+1}. It is {@code null} in the default mode.
+     */
+    private StringIntMap itab= null;
+
+    /**
+     * A read-only index, memory mapped from a binary file through the
+     * {@link #loadMapped(java.lang.String) loadMapped(String)} method.
+     * While defined, the lookups run directly against the mapped file.
+     * It is transferred into the heap tables on the first modification.
+     */
+    private transient MappedIndex mtab= null;
     
 
     /**
@@ -134,40 +184,80 @@ public class CorpusIndex implements Serializable
      * @return The {@code true true} value is the input string matches
      * one of the defined patterns.
      */
-    private boolean isMetaData(String s) {
-        s = s.toLowerCase();
-
-        //The old format.
-        if (s.matches(".*<cluster.*>.*")) {
-            return true;
-        }
-        if (s.matches(".*</cluster>.*")) {
-            return true;
+    private static boolean isMetaData(String s) {
+        if (s.indexOf('<') < 0) {
+            return false;
         }
-        //-----------
+        return METADATA.matcher(s.toLowerCase()).matches();
+    }
 
-        if (s.matches(".*<group.*>.*")) {
-            return true;
-        }
-        if (s.matches(".*</group>.*")) {
-            return true;
-        }
+    /**
+     * Recreates the current index main table {@link #hstab hstab}.
+     */
+    public final void clearHash() {
+        mtab= null;
+        hstab = new Hashtable<String, Integer>();
+        if ( itab != null )  itab= new StringIntMap();
+    }
 
-        if (s.matches(".*<new.*>.*")) {
-            return true;
+    /**
+     * Switches the incremental (append-only) coding mode on or off. When
+     * switched on, the current codes are preserved, and the tokens added
+     * since the last {@link #rebuild() rebuild()} receive the next free
+     * codes, by lexicographic order. When switched off, the tokens are
+     * renumbered as in the default mode.
+     * @param incremental The {@code true} value activates the incremental mode.
+     */
+    public void setIncremental(boolean incremental) {
+        materialize();
+        if ( incremental == (itab != null) )  return;
+
+        if ( incremental ) {
+            StringIntMap tab= new StringIntMap(Math.max(hstab.size(), 16));
+            if ( idict != null ) {
+                for (Map.Entry<Integer,String> entry : idict.entrySet()) {
+                    Integer F= hstab.get(entry.getValue());
+                    tab.add(entry.getValue(), F == null ? 0 : F.intValue());
+                }
+            }
+            Vector<String> vkeys= new Vector<String>();
+            for (String token : hstab.keySet())
+                if ( !tab.contains(token) )  vkeys.add(token);
+            Collections.sort(vkeys);
+            for (String token : vkeys)  tab.add(token, hstab.get(token).intValue());
+
+            itab= tab;
+            idict= null;
+            sdict= null;
+            hstab= new Hashtable<String, Integer>();
         }
-        if (s.matches(".*</new>.*")) {
-            return true;
+        else {
+            Hashtable<String, Integer> hst= new Hashtable<String, Integer>();
+            for (int id = 0; id < itab.size(); id++)
+                hst.put(itab.key(id), itab.count(id));
+            hstab= hst;
+            itab= null;
+            recreateTreeMaps();
         }
+        somethingNewWasAdded= false;
+    }
 
-        return false;
+    /**
+     * Tests whether this index is in the incremental (append-only) coding
+     * mode.
+     * @return The {@code true} value in the incremental mode.
+     */
+    public boolean isIncremental() {
+        return itab != null;
     }
 
     /**
-     * Recreates the current index main table {@link #hstab hstab}.
+     * The number of distinct tokens in this index.
+     * @return The number of tokens.
      */
-    public final void clearHash() {
-        hstab = new Hashtable<String, Integer>();
+    public int size() {
+        if ( mtab != null )  return mtab.size();
+        return itab != null ? itab.size() : hstab.size();
     }
 
     /**
@@ -180,12 +270,20 @@ public class CorpusIndex implements Serializable
             return null;
         }
 
+        Vector<String> v = new Vector<String> ();
+        splitWords(s, BreakIterator.getWordInstance(Locale.UK), v);
+        return v;
+    }
+
+    /**
+     * Splits a given string sentence in a list of words, with a given
+     * word boundary iterator, which may be reused from line to line.
+     */
+    private static void splitWords(String s, BreakIterator boundary, List<String> v) {
         //Starts by spliting the string in possibly several sentences.
-        BreakIterator boundary = BreakIterator.getWordInstance(Locale.UK);
         boundary.setText(s);
         int a = boundary.first();
 
-        Vector<String> v = new Vector<String> ();
         for (int b = boundary.next(); b != BreakIterator.DONE; a = b,
              b = boundary.next()) {
             String word = s.substring(a, b).trim();
@@ -193,7 +291,6 @@ public class CorpusIndex implements Serializable
                 v.add(word);
             }
         }
-        return v;
     }
 
     /**
@@ -209,17 +306,10 @@ public class CorpusIndex implements Serializable
 
         clearHash();
         for (int i = 0; i < vtokens.size(); i++) {
-            String token = vtokens.elementAt(i);
-            Integer I = hstab.get(token);
-            if (I == null) {
-                hstab.put(token, new Integer(1));
-            }
-            else {
-                hstab.put(token, new Integer(I.intValue() + 1));
-            }
+            incToken(vtokens.elementAt(i), hstab);
         }
 
-        if (hstab.size() < 1) {
+        if (size() < 1) {
             return false;
         }
         recreateTreeMaps();
@@ -254,6 +344,8 @@ public class CorpusIndex implements Serializable
             System.out.printf("   READING CORPUS (%s) ...\n", filename);
             CronoSensor crono = new CronoSensor();
             if ( ! adding )  clearHash();
+            BreakIterator boundary = BreakIterator.getWordInstance(Locale.UK);
+            ArrayList<String> v = new ArrayList<String>();
             for (long nLns=0L; ; ) {
                 String line = br.readLine();
                 if (line == null) {
@@ -267,9 +359,10 @@ public class CorpusIndex implements Serializable
                 }
 
                 //add words to the index
-                Vector<String> v = splitWords(line);
+                v.clear();
+                splitWords(line, boundary, v);
                 for (int k = 0; k < v.size(); k++) {
-                    String token = v.elementAt(k);
+                    String token = v.get(k);
                     //if ( !token.matches("[a-zA-Z].*") ) continue;
                     if (TRUNCV > 0 && token.length() > TRUNCV) {
                         token = token.substring(0, TRUNCV);
@@ -280,24 +373,307 @@ public class CorpusIndex implements Serializable
                 }
 
                 if ( ++nLns % 1000 == 0 )
-                    System.out.printf("   PROC CORPUS ...      N.LINES: %6d       N.WORDS: %d\n", nLns, hstab.size());
+                    System.out.printf("   PROC CORPUS ...      N.LINES: %6d       N.WORDS: %d\n", nLns, size());
             }
             in.close();
 
-            if (hstab.size() < 1) {
+            if (size() < 1) {
+                return false;
+            }
+            int k = recreateTreeMaps();
+            System.out.printf("   CORPUS ANALYZED (#tokens: %d   dt: %d ms)\n", k, crono.dt());
+        }
+        catch (Exception exc) {
+            System.err.println("   [readCorpus] --> (" + exc.toString() + ")");
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Reads the corpus text files found in a directory, and in its
+     * subdirectories, whose names match a glob pattern, like
+     * {@code "*.txt"}. See {@link #readCorpus(java.lang.String[], int, boolean)
+     * readCorpus(filenames, nthreads, adding)}.
+     * @param dir The directory.
+     * @param glob The file name pattern, or null for all files.
+     * @param nthreads The number of threads.
+     * @param adding Whether previously read corpora data should be maintained.
+     * @return The {@code true} value on success, and {@code false} if
+     * some erroneous situation occurs.
+     */
+    public boolean readCorpusDir(String dir, String glob, int nthreads, boolean adding) {
+        String[] filenames = listFiles(dir, glob);
+        if (filenames == null) {
+            return false;
+        }
+        return readCorpus(filenames, nthreads, adding);
+    }
+
+    /**
+     * Reads a set of corpus text files in parallel, giving the same index as
+     * reading them one after the other, with {@link #readCorpus(java.lang.String,
+     * boolean) readCorpus(filename, adding)}. The files are split in ranges of
+     * about {@link #RANGE_SIZE RANGE_SIZE} bytes, ending at line boundaries,
+     * which are tokenized by {@code nthreads} threads, each range being counted
+     * in its own table, ordered by first occurrence. These tables are merged
+     * into this index in the order of the ranges, so that in the incremental
+     * mode the codes are also assigned in the order of first occurrence,
+     * as in a serial read. The encoding must be a byte oriented one, like UTF-8 or ISO-8859-1,
+     * in which the line feed byte never belongs to another character.
+     * @param filenames The corpus files.
+     * @param nthreads The number of threads.
+     * @param adding A flag that determines whether previously read corpora data
+     * should be maintained, or cleaned.
+     * @return The {@code true} value on success, and {@code false} if
+     * some erroneous situation occurs.
+     */
+    public boolean readCorpus(final String[] filenames, int nthreads, boolean adding) {
+        nthreads = Math.max(1, nthreads);
+        ExecutorService pool = null;
+        try {
+            CronoSensor crono = new CronoSensor();
+            final List<long[]> ranges = new ArrayList<long[]>();
+            for (int f = 0; f < filenames.length; f++) {
+                splitRanges(f, new File(filenames[f]), ranges);
+            }
+            System.out.printf("   READING CORPUS (%d files, %d ranges, %d threads) ...\n",
+                              filenames.length, ranges.size(), nthreads);
+
+            pool = Executors.newFixedThreadPool(nthreads);
+            List<Future<LinkedHashMap<String, int[]>>> tasks = new ArrayList<Future<LinkedHashMap<String, int[]>>>();
+            for (final long[] range : ranges) {
+                tasks.add(pool.submit(new Callable<LinkedHashMap<String, int[]>>() {
+                    @Override
+                    public LinkedHashMap<String, int[]> call() throws IOException {
+                        return countRange(filenames[(int) range[0]], range[1], range[2]);
+                    }
+                }));
+            }
+
+            if ( ! adding )  clearHash();
+            for (int r = 0; r < tasks.size(); r++) {
+                for (Map.Entry<String, int[]> entry : tasks.get(r).get().entrySet()) {
+                    addToken(entry.getKey(), entry.getValue()[0]);
+                }
+                //the merged table is released.
+                tasks.set(r, null);
+            }
+
+            if (size() < 1) {
                 return false;
             }
             int k = recreateTreeMaps();
             System.out.printf("   CORPUS ANALYZED (#tokens: %d   dt: %d ms)\n", k, crono.dt());
         }
+        catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+            System.err.println("   [readCorpus] --> (" + exc.toString() + ")");
+            return false;
+        }
+        catch (ExecutionException exc) {
+            System.err.println("   [readCorpus] --> (" + exc.getCause() + ")");
+            return false;
+        }
         catch (Exception exc) {
             System.err.println("   [readCorpus] --> (" + exc.toString() + ")");
             return false;
         }
+        finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
 
         return true;
     }
 
+    /**
+     * Lists the files in a directory, and in its subdirectories, whose names
+     * match a glob pattern.
+     * @param dir The directory.
+     * @param glob The file name pattern, or null for all files.
+     * @return The sorted file paths, or null if {@code dir} is not a directory.
+     */
+    public static String[] listFiles(String dir, String glob) {
+        File root = new File(dir);
+        if (!root.isDirectory()) {
+            System.err.println("   [listFiles] --> (not a directory: " + dir + ")");
+            return null;
+        }
+        PathMatcher matcher = glob == null ? null : FileSystems.getDefault().getPathMatcher("glob:" + glob);
+        ArrayList<String> files = new ArrayList<String>();
+        listFiles(root, matcher, files);
+        Collections.sort(files);
+        return files.toArray(new String[files.size()]);
+    }
+
+    private static void listFiles(File dir, PathMatcher matcher, List<String> files) {
+        File[] vf = dir.listFiles();
+        if (vf == null) {
+            return;
+        }
+        for (File f : vf) {
+            if (f.isDirectory()) {
+                listFiles(f, matcher, files);
+            }
+            else if (matcher == null || matcher.matches(f.toPath().getFileName())) {
+                files.add(f.getPath());
+            }
+        }
+    }
+
+    /**
+     * Splits a file in ranges of about {@link #RANGE_SIZE RANGE_SIZE} bytes,
+     * each one ending after a line feed, or at the end of the file. The
+     * ranges are added as {@code {file, start, end}} triples.
+     */
+    private static void splitRanges(int f, File file, List<long[]> ranges) throws IOException {
+        long size = file.length();
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            byte[] buf = new byte[8192];
+            for (long a = 0; a < size; ) {
+                long b = a + Math.max(1, RANGE_SIZE) - 1;
+                if (b >= size) {
+                    b = size;
+                }
+                else {
+                    //moves b to just after the next line feed.
+                    raf.seek(b);
+                    for (long pos = b; ; ) {
+                        int n = raf.read(buf);
+                        if (n < 0) {
+                            b = size;
+                            break;
+                        }
+                        int i = 0;
+                        while (i < n && buf[i] != '\n')  i++;
+                        if (i < n) {
+                            b = pos + i + 1;
+                            break;
+                        }
+                        pos += n;
+                    }
+                }
+                ranges.add(new long[]{f, a, b});
+                a = b;
+            }
+        }
+        finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Counts the tokens of a file range, from byte {@code a} to {@code b},
+     * as {@link #readCorpus(java.lang.String, boolean) readCorpus(filename,
+     * adding)} would, but in a local table, ordered by first occurrence.
+     */
+    private LinkedHashMap<String, int[]> countRange(String filename, long a, long b)
+        throws IOException
+    {
+        LinkedHashMap<String, int[]> counts = new LinkedHashMap<String, int[]>();
+        BreakIterator boundary = BreakIterator.getWordInstance(Locale.UK);
+        ArrayList<String> v = new ArrayList<String>();
+        FileInputStream in = new FileInputStream(filename);
+        try {
+            in.getChannel().position(a);
+            BufferedReader br = new BufferedReader(
+                new InputStreamReader(new RangeInputStream(in, b - a), ENCODE), 1 << 16);
+            for (String line = br.readLine(); line != null; line = br.readLine()) {
+                if (isMetaData(line)) {
+                    continue;
+                }
+                v.clear();
+                splitWords(line, boundary, v);
+                for (int k = 0; k < v.size(); k++) {
+                    String token = v.get(k);
+                    if (TRUNCV > 0 && token.length() > TRUNCV) {
+                        token = token.substring(0, TRUNCV);
+                    }
+                    countToken(token, counts);
+                    countToken(token.toLowerCase(), counts);
+                }
+            }
+        }
+        finally {
+            in.close();
+        }
+        return counts;
+    }
+
+    private static void countToken(String token, HashMap<String, int[]> counts) {
+        int[] c = counts.get(token);
+        if (c == null) {
+            counts.put(token, new int[]{1});
+        }
+        else {
+            c[0]++;
+        }
+    }
+
+    /**
+     * An input stream limited to a given number of bytes, from the
+     * current position of another stream.
+     */
+    private static class RangeInputStream extends FilterInputStream
+    {
+        private long left;
+
+        RangeInputStream(InputStream in, long length) {
+            super(in);
+            left = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (left <= 0) {
+                return -1;
+            }
+            int c = in.read();
+            if (c >= 0) {
+                left--;
+            }
+            return c;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (left <= 0) {
+                return -1;
+            }
+            int n = in.read(b, off, (int) Math.min(len, left));
+            if (n > 0) {
+                left -= n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long k = in.skip(Math.min(n, left));
+            left -= k;
+            return k;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(in.available(), left);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+            //the underlying stream is closed by the caller.
+        }
+    }
+
     /**
      * Incrementally adds the words of a given {@code Text} to this corpora
      * index. This method should be adequately used and combined with the
@@ -382,6 +758,14 @@ public class CorpusIndex implements Serializable
      * @param hst The hash table from which the token belongs.
      */
     private void incToken(String token, Hashtable<String, Integer> hst) {
+        if ( mtab != null ) {
+            materialize();
+            hst= hstab;
+        }
+        if ( itab != null ) {
+            itab.add(token, 1);
+            return;
+        }
         Integer I = hst.get(token);
         
         if (I == null) {
@@ -392,15 +776,51 @@ public class CorpusIndex implements Serializable
         }
     }
 
+    /**
+     * Adds a given count to the frequency of a token, as {@link
+     * #incToken(java.lang.String, java.util.Hashtable) incToken} does.
+     */
+    private void addToken(String token, int n) {
+        if ( mtab != null )  materialize();
+        if ( itab != null ) {
+            itab.add(token, n);
+            return;
+        }
+        Integer I = hstab.get(token);
+        hstab.put(token, new Integer(I == null ? n : I.intValue() + n));
+    }
+
     /**
      * Recreates the corpus index upon the text loaded so far.
-     * The numeric indexes are recomputed.
+     * The numeric indexes are recomputed, unless this index is in
+     * the incremental mode, where codes are already assigned as
+     * tokens are added.
      */
     public void rebuild() {
         this.recreateTreeMaps();
     }
 
+    /**
+     * Prepares this index to be shared by several threads. The code tables,
+     * otherwise built by the first lookup, are built now, so that the
+     * lookup methods, {@link #get(java.lang.String) get(token)},
+     * {@link #get(int) get(code)}, {@link #freq(java.lang.String) freq}
+     * and {@link #size() size}, no longer modify this object. These
+     * methods may then be called concurrently, as long as no thread
+     * changes the index, by adding tokens, reading a corpus, or through
+     * {@link #rebuild() rebuild()}, in which case the index must be
+     * prepared again.
+     */
+    public void prepare() {
+        if ( mtab != null || itab != null || hstab == null )  return;
+        if ( idict == null || sdict == null )  rebuild();
+    }
+
     private int recreateTreeMaps() {
+        if ( itab != null ) {
+            somethingNewWasAdded= false;
+            return itab.size();
+        }
         idict = new TreeMap<Integer, String> ();
         sdict = new TreeMap<String, Integer> ();
         Vector<String> vkeys = new Vector<String> (hstab.keySet());
@@ -446,6 +866,16 @@ public class CorpusIndex implements Serializable
      */
     public boolean printDict(PrintStream out) {
         System.out.printf("PRINT DICTIONARY START\n");
+        materialize();
+        if ( itab != null ) {
+            for (int id = 0; id < itab.size(); id++)
+                out.printf("%012d %s %d\n", id+1, itab.key(id), itab.count(id));
+            if (out != System.out) {
+                out.close();
+            }
+            System.out.println("PRINT DICTIONARY END");
+            return true;
+        }
         if (idict == null || idict.size() < 1) {
             System.err.println("ERROR - A");
             return false;
@@ -510,6 +940,10 @@ public class CorpusIndex implements Serializable
             }
             System.out.printf("DICTIONARY LOADED WITH %d ENTRIES.\n",
                               idict.size());
+            if ( itab != null ) {
+                itab= null;
+                setIncremental(true);
+            }
         }
         catch (Exception exc) {
             System.err.printf("ERROR WHEN LOADING DICT. (FILE: %s)\n", filename);
@@ -529,6 +963,8 @@ public class CorpusIndex implements Serializable
         this.hstab = d.hstab;
         this.TRUNCV = d.TRUNCV;
         this.somethingNewWasAdded= d.somethingNewWasAdded;
+        this.itab = d.itab;
+        this.mtab = d.mtab;
     }
 
     /**
@@ -561,6 +997,7 @@ public class CorpusIndex implements Serializable
      */
     public boolean save(String fname) {
         System.out.printf("SAVE CORPORA INDEX STARTED (FILE: %s)\n", fname);
+        materialize();
         try {
             FileOutputStream ostream = new FileOutputStream(fname);
             ObjectOutputStream oos = new ObjectOutputStream(ostream);
@@ -578,6 +1015,114 @@ public class CorpusIndex implements Serializable
         return true;
     }
 
+    /**
+     * Saves this index in the binary format of the {@link MappedIndex} class,
+     * which can later be memory mapped through {@link #loadMapped(java.lang.String)
+     * loadMapped(String)}, with near zero loading time.
+     * @param fname The output file name.
+     * @return The {@code true} value on success, and {@code false} if
+     * some erroneous situation occurs.
+     */
+    public boolean saveMapped(String fname) {
+        try {
+            if ( mtab != null ) {
+                int n= mtab.size();
+                String[] vt= new String[n];
+                long[] vc= new long[n], vf= new long[n];
+                for (int e = 0; e < n; e++) {
+                    vt[e]= mtab.tokenAt(e);
+                    vc[e]= mtab.codeAt(e);
+                    vf[e]= mtab.freqAt(e);
+                }
+                MappedIndex.write(fname, vt, vc, vf, mtab.isIncremental() ? MappedIndex.FLAG_INCREMENTAL : 0);
+                return true;
+            }
+            if ( itab != null ) {
+                int n= itab.size();
+                String[] vt= itab.keys();
+                long[] vc= new long[n], vf= new long[n];
+                for (int id = 0; id < n; id++) {
+                    vc[id]= id+1;
+                    vf[id]= itab.count(id);
+                }
+                MappedIndex.write(fname, vt, vc, vf, MappedIndex.FLAG_INCREMENTAL);
+                return true;
+            }
+
+            if ( idict == null || somethingNewWasAdded )  rebuild();
+            int n= idict.size(), e= 0;
+            String[] vt= new String[n];
+            long[] vc= new long[n], vf= new long[n];
+            for (Map.Entry<Integer,String> entry : idict.entrySet()) {
+                Integer F= hstab.get(entry.getValue());
+                vt[e]= entry.getValue();
+                vc[e]= entry.getKey();
+                vf[e]= F == null ? 0 : F.intValue();
+                e++;
+            }
+            MappedIndex.write(fname, vt, vc, vf, 0);
+        }
+        catch (IOException exc) {
+            System.err.println("   [saveMapped] --> (" + exc.toString() + ")");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Opens an index file saved by {@link #saveMapped(java.lang.String)
+     * saveMapped(String)}. The file is memory mapped and queried in place,
+     * so this method returns almost immediately, independently of the
+     * vocabulary size. The index is only loaded into the heap if it gets
+     * modified, for example by adding new tokens.
+     * @param fname The file name.
+     * @return The {@code true} value on success, and {@code false} if
+     * some erroneous situation occurs.
+     */
+    public boolean loadMapped(String fname) {
+        try {
+            MappedIndex mi= MappedIndex.open(fname);
+            clearHash();
+            idict= null;
+            sdict= null;
+            itab= null;
+            mtab= mi;
+            somethingNewWasAdded= false;
+        }
+        catch (IOException exc) {
+            System.err.println("   [loadMapped] --> (" + exc.toString() + ")");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Transfers the memory mapped index, if any, into the heap tables,
+     * preserving every code.
+     */
+    private void materialize() {
+        if ( mtab == null )  return;
+        MappedIndex mi= mtab;
+        mtab= null;
+
+        int n= mi.size();
+        if ( mi.isIncremental() ) {
+            itab= new StringIntMap(n);
+            for (int e = 0; e < n; e++)  itab.add(mi.tokenAt(e), (int) mi.freqAt(e));
+            return;
+        }
+
+        idict = new TreeMap<Integer, String> ();
+        sdict = new TreeMap<String, Integer> ();
+        for (int e = 0; e < n; e++) {
+            Integer K= (int) mi.codeAt(e);
+            String S= mi.tokenAt(e);
+            idict.put(K, S);
+            sdict.put(S, K);
+            hstab.put(S, (int) mi.freqAt(e));
+        }
+    }
+
     /**
      *	Codifies a file according to the loaded dictionary.
      */
@@ -621,8 +1166,8 @@ public class CorpusIndex implements Serializable
                         token = token.substring(0, TRUNCV);
                     }
 
-                    Integer I = sdict.get(token);
-                    if (I == null) {
+                    int I = get(token);
+                    if (I < 0) {
                         out.print("-1 ");
                     }
                     else {
@@ -647,6 +1192,8 @@ public class CorpusIndex implements Serializable
      * dictionary then the <b>null</b> value is returned.
      */
     public String get(int key) {
+        if ( mtab != null )  return mtab.token(key);
+        if ( itab != null )  return itab.key(key-1);
         if (idict == null) {    
             if ( hstab == null )
                 return null;
@@ -684,6 +1231,12 @@ public class CorpusIndex implements Serializable
      * @return The code or -1 if something is wrong.
      */
     public int get(String token) {
+        if ( mtab != null )  return (int) mtab.code(token);
+        if ( itab != null ) {
+            if ( token == null )  return -1;
+            int id= itab.get(token);
+            return id < 0 ? -1 : id+1;
+        }
         if (sdict == null) {
             if ( hstab == null )
                 return -1;
@@ -707,6 +1260,8 @@ public class CorpusIndex implements Serializable
      * this dictionary.
      */
     public int freq(String token) {
+        if ( token != null && mtab != null )  return (int) mtab.freq(token);
+        if ( token != null && itab != null )  return itab.count(token);
         if (token == null || hstab == null) {
             return -1;
         }
@@ -720,6 +1275,8 @@ public class CorpusIndex implements Serializable
      * is not defined.
      */
     public int sum() {
+        if ( mtab != null )  return (int) mtab.sum();
+        if ( itab != null )  return (int) itab.sum();
         if (hstab == null) {
             return -1;
         }
@@ -732,6 +1289,26 @@ public class CorpusIndex implements Serializable
     }
 
 
+    /**
+     * Gives a view of this index sorted by token, mapping each token into
+     * its code. In the default mode this is the {@link #sdict sdict} table
+     * itself, while in the incremental mode a new sorted table is created
+     * from the append-only table, leaving the codes unchanged.
+     * @return The sorted token to code map.
+     */
+    public TreeMap<String, Integer> sortedView() {
+        materialize();
+        if ( itab == null ) {
+            if ( sdict == null )  rebuild();
+            return sdict;
+        }
+
+        TreeMap<String, Integer> view= new TreeMap<String, Integer>();
+        for (int id = 0; id < itab.size(); id++)  view.put(itab.key(id), id+1);
+        return view;
+    }
+
+
     /**
      * Codifies any "Word" contained in an array of Sentences, according
      * to this dictionary. By "codifying" here we mean that any word
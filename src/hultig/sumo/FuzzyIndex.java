@@ -0,0 +1,513 @@
+/*************************************************************************
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 2005-2011 UBI/HULTIG All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 3 only ("GPL"). You may not use this
+ * file except in compliance with the License. You can obtain a copy of
+ * the License at http://www.gnu.org/licenses/gpl.txt. See the License
+ * for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * When distributing the software, include this License Header Notice
+ * in each file. If applicable, add the following below the License
+ * Header, with the fields enclosed by brackets [] replaced by your own
+ * identifying information:
+ *
+ *       "Portions Copyrighted [year] [name of copyright owner]"
+ *************************************************************************
+ */
+package hultig.sumo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import hultig.util.StringKernel;
+
+
+/**
+ * <p>
+ * A fuzzy lookup index over a vocabulary, giving all the words within a
+ * given <i>Edit Distance</i> of a query word, through symmetric deletion
+ * (as in the <i>SymSpell</i> algorithm): two words are at most {@code k}
+ * edits apart only if some string obtained by deleting up to {@code k}
+ * characters from one is also obtained by deleting up to {@code k}
+ * characters from the other. So the deletions of the words are indexed,
+ * up to the maximum distance of the index, and a query only looks up the
+ * deletions of the query word, whose candidates are then checked with the
+ * thresholded <i>Edit Distance</i>. The results are exact.
+ * </p>
+ *
+ * <p>
+ * As in <i>SymSpell</i>, only the deletions of a prefix of each word are
+ * indexed, which bounds their number. A word within {@code k} edits of a
+ * query has its prefix of length {@code p} within {@code k} edits of some
+ * prefix of the query, with length between {@code p-k} and {@code p+k}, or
+ * else it is shorter than {@code p} and within {@code k} edits of the whole
+ * query. So the deletions of all these prefixes of the query are looked up,
+ * and the results remain exact.
+ * </p>
+ *
+ * <p>
+ * The deletion strings are not kept: each one is indexed by a 32 bit hash,
+ * in an open addressing table of primitive arrays, with a linked list of
+ * the word codes having it. A hash collision only adds candidates, which
+ * fail the final check. Before the check, the candidates are filtered by
+ * their length and character set, kept in one integer per word. The
+ * memory grows with the number of deletions, about {@code p^k/k!} per
+ * word, so indexes for large vocabularies should keep {@code k} at 1 or 2.
+ * </p>
+ *
+ * <p>
+ * Words may be added at any time, but not concurrently with the queries.
+ * The queries may run concurrently.
+ * </p>
+ *
+ * <p>
+ * <b>University of Beira Interior</b> (UBI)<br />
+ * Centre For Human Language Technology and Bioinformatics (HULTIG)
+ * </p>
+ *
+ * @author J. P. Cordeiro
+ * @version 1.0
+ */
+public class FuzzyIndex
+{
+    private static final int MAGIC= 0x46555A58;
+    private static final int VERSION= 1;
+
+    /**
+     * The default length of the indexed prefixes.
+     */
+    public static final int PREFIX= 8;
+
+    private final int maxDist;
+    private final int prefix;
+
+    /**
+     * The words, by code, and their signatures (see {@link #signature(String)}).
+     */
+    private String[] words;
+    private int[] sigs;
+    private int nwords;
+
+    /**
+     * The hash table of the deletions: the key, and the first posting, or
+     * -1 for an empty slot.
+     */
+    private int[] tkey;
+    private int[] thead;
+    private int nkeys;
+
+    /**
+     * The postings: the word code and the next posting of the same key.
+     */
+    private int[] pcode;
+    private int[] pnext;
+    private int npost;
+
+
+    /**
+     * Creates an empty index, with the default prefix length.
+     * @param maxDist The maximum <i>Edit Distance</i> of the queries.
+     */
+    public FuzzyIndex(int maxDist) {
+        this(maxDist, PREFIX);
+    }
+
+    /**
+     * Creates an empty index.
+     * @param maxDist The maximum <i>Edit Distance</i> of the queries.
+     * @param prefix The length of the indexed prefixes, which is increased
+     * up to {@code maxDist+1}, or 0 to index the whole words.
+     */
+    public FuzzyIndex(int maxDist, int prefix) {
+        this.maxDist= Math.max(0, maxDist);
+        this.prefix= prefix <= 0 ? Integer.MAX_VALUE : Math.max(prefix, this.maxDist + 1);
+        words= new String[64];
+        sigs= new int[64];
+        tkey= new int[1024];
+        thead= new int[1024];
+        Arrays.fill(thead, -1);
+        pcode= new int[1024];
+        pnext= new int[1024];
+    }
+
+    /**
+     * Creates the index of all the words of a dictionary, with their
+     * dictionary codes.
+     * @param dict The dictionary.
+     * @param maxDist The maximum <i>Edit Distance</i> of the queries.
+     * @return The index.
+     */
+    public static FuzzyIndex build(CorpusIndex dict, int maxDist) {
+        FuzzyIndex fi= new FuzzyIndex(maxDist, PREFIX);
+        dict.prepare();
+        int n= dict.size();
+        for (int c = 1; c <= n; c++) {
+            String w= dict.get(c);
+            if ( w != null )  fi.add(w, c);
+        }
+        fi.compact();
+        return fi;
+    }
+
+    public int getMaxDist() {
+        return maxDist;
+    }
+
+    public int getPrefix() {
+        return prefix;
+    }
+
+    /**
+     * The number of indexed words.
+     * @return The number of words.
+     */
+    public int size() {
+        return nwords;
+    }
+
+    /**
+     * The word of a code.
+     * @param code The word code.
+     * @return The word, or null if the code is not in the index.
+     */
+    public String get(int code) {
+        return code >= 0 && code < words.length ? words[code] : null;
+    }
+
+    /**
+     * Adds a word to the index. A code already in the index is ignored.
+     * @param word The word.
+     * @param code The word code, for example its code in a dictionary.
+     * @return The {@code true} value if the word was added.
+     */
+    public boolean add(String word, int code) {
+        if ( word == null || code < 0 )  return false;
+        if ( code >= words.length ) {
+            words= Arrays.copyOf(words, Math.max(code + 1, 2*words.length));
+            sigs= Arrays.copyOf(sigs, words.length);
+        }
+        if ( words[code] != null )  return false;
+        words[code]= word;
+        sigs[code]= signature(word);
+        nwords++;
+
+        int[] vh= deletions(word, Math.min(prefix, word.length()), maxDist, null);
+        int n= vh[0];
+        Arrays.sort(vh, 1, n + 1);
+        for (int i = 1; i <= n; i++) {
+            if ( i > 1 && vh[i] == vh[i-1] )  continue;
+            if ( 4*(nkeys + 1) > 3*tkey.length )  rehash();
+            int s= slot(vh[i]);
+            if ( thead[s] < 0 ) {
+                tkey[s]= vh[i];
+                nkeys++;
+            }
+            if ( npost == pcode.length ) {
+                pcode= Arrays.copyOf(pcode, 2*npost);
+                pnext= Arrays.copyOf(pnext, 2*npost);
+            }
+            pcode[npost]= code;
+            pnext[npost]= thead[s];
+            thead[s]= npost++;
+        }
+        return true;
+    }
+
+    /**
+     * Stores the postings of each deletion contiguously, in memory, which
+     * speeds up the queries after many words were added one at a time.
+     */
+    public void compact() {
+        int[] ncode= new int[pcode.length];
+        int[] nnext= new int[pcode.length];
+        int n= 0;
+        for (int s = 0; s < thead.length; s++) {
+            if ( thead[s] < 0 )  continue;
+            int first= n;
+            for (int p = thead[s]; p >= 0; p= pnext[p]) {
+                ncode[n]= pcode[p];
+                nnext[n]= n + 1;
+                n++;
+            }
+            nnext[n-1]= -1;
+            thead[s]= first;
+        }
+        pcode= ncode;
+        pnext= nnext;
+    }
+
+    /**
+     * Finds the words within a given <i>Edit Distance</i> of a word.
+     * @param word The query word.
+     * @param k The maximum distance, not above the index maximum distance.
+     * @return The codes of the words found, by increasing distance, and
+     * by code for the same distance.
+     */
+    public int[] lookup(String word, int k) {
+        if ( word == null )  return new int[0];
+        if ( k > maxDist ) {
+            System.err.printf("\n[ERROR] FuzzyIndex.lookup(%s, %d) ---> the index maximum distance is %d\n", word, k, maxDist);
+            k= maxDist;
+        }
+
+        int len= word.length();
+        int[] vh= deletions(word, len, k, null);
+        if ( len > prefix - k ) {
+            for (int q = prefix - k, e = Math.min(len - 1, prefix + k); q <= e; q++)
+                vh= deletions(word, q, k, vh);
+        }
+        int n= vh[0];
+        Arrays.sort(vh, 1, n + 1);
+
+        int[] cand= new int[16];
+        int nc= 0;
+        for (int i = 1; i <= n; i++) {
+            if ( i > 1 && vh[i] == vh[i-1] )  continue;
+            int s= slot(vh[i]);
+            for (int p = thead[s]; p >= 0; p= pnext[p]) {
+                if ( nc == cand.length )  cand= Arrays.copyOf(cand, 2*nc);
+                cand[nc++]= pcode[p];
+            }
+        }
+
+        // only the candidates passing the signature filter are sorted.
+        int sig= signature(word), m= 0;
+        for (int i = 0; i < nc; i++)
+            if ( near(sig, sigs[cand[i]], k) )  cand[m++]= cand[i];
+        Arrays.sort(cand, 0, m);
+
+        // packs (distance, code) for the final ordering.
+        long[] found= new long[m];
+        int nf= 0;
+        for (int i = 0; i < m; i++) {
+            if ( i > 0 && cand[i] == cand[i-1] )  continue;
+            int d= StringKernel.levenshtein(word, words[cand[i]], k);
+            if ( d <= k )  found[nf++]= ((long) d << 32) | cand[i];
+        }
+        Arrays.sort(found, 0, nf);
+        int[] codes= new int[nf];
+        for (int i = 0; i < nf; i++)  codes[i]= (int) found[i];
+        return codes;
+    }
+
+    /**
+     * Finds the words within a given <i>Edit Distance</i> of a word.
+     * @param word The query word.
+     * @param k The maximum distance.
+     * @return The words found, by increasing distance.
+     */
+    public String[] lookupWords(String word, int k) {
+        int[] codes= lookup(word, k);
+        String[] vs= new String[codes.length];
+        for (int i = 0; i < codes.length; i++)  vs[i]= words[codes[i]];
+        return vs;
+    }
+
+    /**
+     * A word signature: its length, up to 63, in the 6 high bits, and the
+     * set of its characters, modulo 26, in the 26 low bits.
+     */
+    private static int signature(String w) {
+        int mask= 0;
+        for (int i = 0; i < w.length(); i++)  mask|= 1 << (w.charAt(i) % 26);
+        return (Math.min(w.length(), 63) << 26) | mask;
+    }
+
+    /**
+     * A necessary condition for two words to be within {@code k} edits:
+     * their lengths differ at most {@code k}, and each edit changes at
+     * most two bits of the character set.
+     */
+    private static boolean near(int sa, int sb, int k) {
+        int la= sa >>> 26, lb= sb >>> 26;
+        if ( Math.abs(la - lb) > k && la < 63 && lb < 63 )  return false;
+        return Integer.bitCount((sa ^ sb) & 0x3FFFFFF) <= 2*k;
+    }
+
+    /**
+     * The hashes of all the strings obtained by deleting up to {@code k}
+     * characters from a word prefix, including the prefix itself. The
+     * first position holds the number of hashes, which may be repeated.
+     * @param len The prefix length.
+     * @param vh An array to append to, or null.
+     */
+    private static int[] deletions(String word, int len, int k, int[] vh) {
+        char[][] buf= new char[k + 1][len];
+        word.getChars(0, len, buf[0], 0);
+        if ( vh == null ) {
+            vh= new int[16];
+            vh[0]= 0;
+        }
+        return delete(buf, 0, len, 0, k, vh);
+    }
+
+    private static int[] delete(char[][] buf, int level, int len, int from, int k, int[] vh) {
+        int n= vh[0] + 1;
+        if ( n == vh.length )  vh= Arrays.copyOf(vh, 2*n);
+        vh[n]= hash(buf[level], len);
+        vh[0]= n;
+        if ( level == k || len == 0 )  return vh;
+
+        char[] src= buf[level], dst= buf[level + 1];
+        for (int i = from; i < len; i++) {
+            System.arraycopy(src, 0, dst, 0, i);
+            System.arraycopy(src, i + 1, dst, i, len - i - 1);
+            vh= delete(buf, level + 1, len - 1, i, k, vh);
+        }
+        return vh;
+    }
+
+    private static int hash(char[] v, int len) {
+        long h= 0x9E3779B97F4A7C15L ^ len;
+        for (int i = 0; i < len; i++) {
+            h= (h ^ v[i]) * 0xBF58476D1CE4E5B9L;
+            h^= h >>> 29;
+        }
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private int slot(int h) {
+        int mask= tkey.length - 1;
+        int s= h & mask;
+        while ( thead[s] >= 0 && tkey[s] != h )  s= (s+1) & mask;
+        return s;
+    }
+
+    private void rehash() {
+        int[] okey= tkey;
+        int[] ohead= thead;
+        tkey= new int[2*okey.length];
+        thead= new int[2*okey.length];
+        Arrays.fill(thead, -1);
+        for (int i = 0; i < okey.length; i++) {
+            if ( ohead[i] < 0 )  continue;
+            int s= slot(okey[i]);
+            tkey[s]= okey[i];
+            thead[s]= ohead[i];
+        }
+    }
+
+    /**
+     * Saves the index to a binary file, with its hash table, so that it is
+     * loaded without being rebuilt.
+     * @param fname The file name.
+     * @return The {@code true} value on success.
+     */
+    public boolean save(String fname) {
+        try {
+            DataOutputStream out= new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fname), 1 << 16));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(maxDist);
+                out.writeInt(prefix);
+                out.writeInt(nwords);
+                for (int c = 0; c < words.length; c++) {
+                    if ( words[c] == null )  continue;
+                    out.writeInt(c);
+                    out.writeUTF(words[c]);
+                }
+                out.writeInt(tkey.length);
+                out.writeInt(nkeys);
+                for (int s = 0; s < tkey.length; s++) {
+                    if ( thead[s] < 0 )  continue;
+                    out.writeInt(s);
+                    out.writeInt(tkey[s]);
+                    out.writeInt(thead[s]);
+                }
+                out.writeInt(npost);
+                for (int p = 0; p < npost; p++) {
+                    out.writeInt(pcode[p]);
+                    out.writeInt(pnext[p]);
+                }
+            }
+            finally {
+                out.close();
+            }
+            return true;
+        }
+        catch (IOException exc) {
+            System.err.printf("\n[ERROR] FuzzyIndex.save(%s) ---> %s\n", fname, exc);
+            return false;
+        }
+    }
+
+    /**
+     * Loads an index saved by {@link #save(String)}.
+     * @param fname The file name.
+     * @return The index, or null on error.
+     */
+    public static FuzzyIndex load(String fname) {
+        try {
+            DataInputStream in= new DataInputStream(new BufferedInputStream(new FileInputStream(fname), 1 << 16));
+            try {
+                if ( in.readInt() != MAGIC || in.readInt() != VERSION ) {
+                    System.err.printf("\n[ERROR] FuzzyIndex.load(%s) ---> invalid file\n", fname);
+                    return null;
+                }
+                int maxDist= in.readInt();
+                int prefix= in.readInt();
+                FuzzyIndex fi= new FuzzyIndex(maxDist, prefix == Integer.MAX_VALUE ? 0 : prefix);
+                fi.nwords= in.readInt();
+                for (int i = 0; i < fi.nwords; i++) {
+                    int c= in.readInt();
+                    if ( c >= fi.words.length ) {
+                        fi.words= Arrays.copyOf(fi.words, Math.max(c + 1, 2*fi.words.length));
+                        fi.sigs= Arrays.copyOf(fi.sigs, fi.words.length);
+                    }
+                    fi.words[c]= in.readUTF();
+                    fi.sigs[c]= signature(fi.words[c]);
+                }
+                int cap= in.readInt();
+                fi.tkey= new int[cap];
+                fi.thead= new int[cap];
+                Arrays.fill(fi.thead, -1);
+                fi.nkeys= in.readInt();
+                for (int i = 0; i < fi.nkeys; i++) {
+                    int s= in.readInt();
+                    fi.tkey[s]= in.readInt();
+                    fi.thead[s]= in.readInt();
+                }
+                fi.npost= in.readInt();
+                fi.pcode= new int[Math.max(1024, fi.npost)];
+                fi.pnext= new int[fi.pcode.length];
+                for (int p = 0; p < fi.npost; p++) {
+                    fi.pcode[p]= in.readInt();
+                    fi.pnext[p]= in.readInt();
+                }
+                fi.compact();
+                return fi;
+            }
+            finally {
+                in.close();
+            }
+        }
+        catch (IOException exc) {
+            System.err.printf("\n[ERROR] FuzzyIndex.load(%s) ---> %s\n", fname, exc);
+            return null;
+        }
+    }
+
+
+    public static void main(String[] args) {
+        CorpusIndex dict= new CorpusIndex();
+        dict.add("the president of the united states said that the presidency would present a new presentation");
+        dict.add("presidents and vice presidents of several states presented their statements today");
+        dict.rebuild();
+
+        FuzzyIndex fi= FuzzyIndex.build(dict, 2);
+        for (String w : new String[] {"presidnt", "state", "presentd", "tody"}) {
+            System.out.printf("%-10s --->  %s\n", w, Arrays.toString(fi.lookupWords(w, 2)));
+        }
+    }
+}
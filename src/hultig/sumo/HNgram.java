@@ -73,11 +73,11 @@ public class HNgram extends Hashtable<String, Integer>
      */
     public HNgram(String fname) {
         FileIN f= new FileIN(fname);
-        f.open();
         if ( !f.isFile() ) {
             System.err.printf("\n   ERROR - FILE NOT FOUND - file name: %s\n", fname);
             return;
         }
+        if ( !f.openMapped() )  f.open();
         //hsubngram= new Hashtable<>();
         set(f);
     }
@@ -96,23 +96,25 @@ public class HNgram extends Hashtable<String, Integer>
 
     /**
      * This method loads the n-gram table from a given file. It is assumed
-     * that the n-grams dimensionality was already defined.
+     * that the n-grams dimensionality was already defined. The file may
+     * have been opened in the memory mapped mode ({@link FileIN#openMapped()}).
      * @param f Represents the n-gram table file to be processed.
      */
     public final void set(FileIN f) {
         for (;;) {
-            String line= f.read();
+            CharSequence line= f.readChars();
             if ( line == null ) {
                 f.close();
                 return;
             }
 
-            int p= line.lastIndexOf(' ');
+            int p= line.length() - 1;
+            while ( p >= 0 && line.charAt(p) != ' ' )  p--;
             if ( p < 1 ) continue;
 
-            String ngram= line.substring(0,p).trim();
             try {
-                Integer freq= Integer.parseInt( line.substring(p+1) );
+                Integer freq= Integer.parseInt( line.subSequence(p+1, line.length()).toString() );
+                String ngram= line.subSequence(0,p).toString().trim();
                 put(ngram, freq);
                 soma+= freq;
                 //storeSubNgram(ngram, freq);
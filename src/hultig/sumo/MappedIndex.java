@@ -0,0 +1,340 @@
+/*************************************************************************
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 2005-2011 UBI/HULTIG All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 3 only ("GPL"). You may not use this
+ * file except in compliance with the License. You can obtain a copy of
+ * the License at http://www.gnu.org/licenses/gpl.txt. See the License
+ * for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * When distributing the software, include this License Header Notice
+ * in each file. If applicable, add the following below the License
+ * Header, with the fields enclosed by brackets [] replaced by your own
+ * identifying information:
+ *
+ *       "Portions Copyrighted [year] [name of copyright owner]"
+ *************************************************************************
+ */
+package hultig.sumo;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+
+
+/**
+ * <p>
+ * A read-only lexical index stored in a binary file, which is memory
+ * mapped and queried in place, without being loaded into the heap. It
+ * is the on-disk form of the {@link CorpusIndex} and {@link PrimeIndex}
+ * tables, written through their {@code saveMapped} methods.
+ * </p>
+ *
+ * <p>
+ * The file format (version 1, big-endian) is the following, where
+ * {@code n} is the number of entries, sorted by code:
+ * </p>
+ * <pre>
+ *    int    MAGIC ("HIDX")
+ *    int    VERSION
+ *    int    FLAGS
+ *    int    n
+ *    int    pool size, in bytes
+ *    int    (reserved)
+ *    long[n]   codes, in ascending order
+ *    long[n]   frequencies
+ *    int[n+1]  string pool offsets, for each entry
+ *    int[n]    entries sorted by their token bytes (lookup section)
+ *    byte[]    string pool (UTF-8)
+ * </pre>
+ * <p>
+ * A token is found by binary search over the lookup section, and a code
+ * either directly, when codes are the dense sequence 1..n, or by binary
+ * search over the codes column.
+ * </p>
+ *
+ * <p>
+ * <b>University of Beira Interior</b> (UBI)<br />
+ * Centre For Human Language Technology and Bioinformatics (HULTIG)
+ * </p>
+ *
+ * @author J. P. Cordeiro
+ * @version 1.0
+ */
+public class MappedIndex
+{
+    public static final int MAGIC= 0x48494458;
+    public static final int VERSION= 1;
+
+    /**
+     * Flag marking an index saved in the incremental (append-only) mode.
+     */
+    public static final int FLAG_INCREMENTAL= 1;
+
+    private static final int HEADER= 24;
+
+    private final MappedByteBuffer buf;
+    private final int n;
+    private final int flags;
+    private final boolean dense;
+
+    private final int codesAt;
+    private final int freqsAt;
+    private final int offsAt;
+    private final int sortAt;
+    private final int poolAt;
+
+
+    private MappedIndex(MappedByteBuffer buf) throws IOException {
+        this.buf= buf;
+        if ( buf.getInt(0) != MAGIC )
+            throw new IOException("Not a mapped index file");
+        int version= buf.getInt(4);
+        if ( version != VERSION )
+            throw new IOException("Unsupported mapped index version: " + version);
+        flags= buf.getInt(8);
+        n= buf.getInt(12);
+
+        codesAt= HEADER;
+        freqsAt= codesAt + 8*n;
+        offsAt= freqsAt + 8*n;
+        sortAt= offsAt + 4*(n+1);
+        poolAt= sortAt + 4*n;
+
+        dense= n == 0 || (buf.getLong(codesAt) == 1L && buf.getLong(codesAt + 8*(n-1)) == n);
+    }
+
+    /**
+     * Opens and maps a given index file.
+     * @param fname The file name.
+     * @return The mapped index.
+     * @throws IOException If the file can not be read or has an invalid format.
+     */
+    public static MappedIndex open(String fname) throws IOException {
+        RandomAccessFile raf= new RandomAccessFile(fname, "r");
+        try {
+            FileChannel ch= raf.getChannel();
+            MappedByteBuffer mb= ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            return new MappedIndex(mb);
+        }
+        finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Writes an index file, from the parallel arrays of tokens, codes,
+     * and frequencies. The arrays do not need to be sorted.
+     * @param fname The output file name.
+     * @param tokens The tokens.
+     * @param codes The token codes.
+     * @param freqs The token frequencies.
+     * @param flags The index flags, for example {@link #FLAG_INCREMENTAL}.
+     * @throws IOException If the file can not be written or gets bigger than 2 GB.
+     */
+    public static void write(String fname, String[] tokens, final long[] codes, long[] freqs, int flags)
+            throws IOException
+    {
+        final int n= tokens.length;
+        Integer[] vbycode= new Integer[n];
+        for (int e = 0; e < n; e++)  vbycode[e]= e;
+        Arrays.sort(vbycode, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Long.compare(codes[a], codes[b]);
+            }
+        });
+
+        final byte[][] vb= new byte[n][];
+        long poolsz= 0L;
+        for (int e = 0; e < n; e++) {
+            vb[e]= tokens[vbycode[e]].getBytes(StandardCharsets.UTF_8);
+            poolsz+= vb[e].length;
+        }
+        long total= HEADER + 20L*n + 4L*(n+1) + poolsz;
+        if ( total > Integer.MAX_VALUE )
+            throw new IOException("Mapped index too big: " + total + " bytes");
+
+        Integer[] vsort= new Integer[n];
+        for (int e = 0; e < n; e++)  vsort[e]= e;
+        Arrays.sort(vsort, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return compareBytes(vb[a], 0, vb[a].length, vb[b]);
+            }
+        });
+
+        DataOutputStream out= new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fname), 1 << 16));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(flags);
+            out.writeInt(n);
+            out.writeInt((int) poolsz);
+            out.writeInt(0);
+            for (int e = 0; e < n; e++)  out.writeLong(codes[vbycode[e]]);
+            for (int e = 0; e < n; e++)  out.writeLong(freqs[vbycode[e]]);
+            int off= 0;
+            for (int e = 0; e < n; e++) {
+                out.writeInt(off);
+                off+= vb[e].length;
+            }
+            out.writeInt(off);
+            for (int e = 0; e < n; e++)  out.writeInt(vsort[e]);
+            for (int e = 0; e < n; e++)  out.write(vb[e]);
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Compares, as unsigned bytes, a key with a given byte sequence.
+     */
+    private static int compareBytes(byte[] a, int from, int to, byte[] key) {
+        int na= to - from;
+        int m= Math.min(na, key.length);
+        for (int i = 0; i < m; i++) {
+            int c= (a[from+i] & 0xff) - (key[i] & 0xff);
+            if ( c != 0 )  return c;
+        }
+        return na - key.length;
+    }
+
+    private int compareEntry(int e, byte[] key) {
+        int from= poolAt + buf.getInt(offsAt + 4*e);
+        int to= poolAt + buf.getInt(offsAt + 4*(e+1));
+        int m= Math.min(to - from, key.length);
+        for (int i = 0; i < m; i++) {
+            int c= (buf.get(from+i) & 0xff) - (key[i] & 0xff);
+            if ( c != 0 )  return c;
+        }
+        return (to - from) - key.length;
+    }
+
+    /**
+     * The number of entries in this index.
+     * @return The number of tokens.
+     */
+    public int size() {
+        return n;
+    }
+
+    /**
+     * Tests whether this index was saved in the incremental mode.
+     * @return The {@code true} value for an incremental index.
+     */
+    public boolean isIncremental() {
+        return (flags & FLAG_INCREMENTAL) != 0;
+    }
+
+    /**
+     * Gives the entry position (by code order) of a given token.
+     * @param token The token.
+     * @return The entry position or -1 if not found.
+     */
+    public int find(String token) {
+        if ( token == null )  return -1;
+        byte[] key= token.getBytes(StandardCharsets.UTF_8);
+        int a= 0, b= n-1;
+        while ( a <= b ) {
+            int mid= (a + b) >>> 1;
+            int e= buf.getInt(sortAt + 4*mid);
+            int c= compareEntry(e, key);
+            if ( c < 0 )
+                a= mid+1;
+            else if ( c > 0 )
+                b= mid-1;
+            else
+                return e;
+        }
+        return -1;
+    }
+
+    /**
+     * Gives the entry position (by code order) of a given code.
+     * @param code The code.
+     * @return The entry position or -1 if not found.
+     */
+    public int findCode(long code) {
+        if ( dense )  return code >= 1 && code <= n ? (int) code - 1 : -1;
+        int a= 0, b= n-1;
+        while ( a <= b ) {
+            int mid= (a + b) >>> 1;
+            long c= buf.getLong(codesAt + 8*mid);
+            if ( c < code )
+                a= mid+1;
+            else if ( c > code )
+                b= mid-1;
+            else
+                return mid;
+        }
+        return -1;
+    }
+
+    public long codeAt(int e) {
+        return buf.getLong(codesAt + 8*e);
+    }
+
+    public long freqAt(int e) {
+        return buf.getLong(freqsAt + 8*e);
+    }
+
+    public String tokenAt(int e) {
+        int from= buf.getInt(offsAt + 4*e);
+        int to= buf.getInt(offsAt + 4*(e+1));
+        byte[] vb= new byte[to - from];
+        for (int i = 0; i < vb.length; i++)  vb[i]= buf.get(poolAt + from + i);
+        return new String(vb, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Gives the code of a given token.
+     * @param token The token.
+     * @return The code, or -1 if not found.
+     */
+    public long code(String token) {
+        int e= find(token);
+        return e < 0 ? -1L : codeAt(e);
+    }
+
+    /**
+     * Gives the token with a given code.
+     * @param code The code.
+     * @return The token, or null if not found.
+     */
+    public String token(long code) {
+        int e= findCode(code);
+        return e < 0 ? null : tokenAt(e);
+    }
+
+    /**
+     * Gives the frequency of a given token.
+     * @param token The token.
+     * @return The frequency, or -1 if not found.
+     */
+    public long freq(String token) {
+        int e= find(token);
+        return e < 0 ? -1L : freqAt(e);
+    }
+
+    /**
+     * Sums the frequencies of all tokens.
+     * @return The sum.
+     */
+    public long sum() {
+        long s= 0L;
+        for (int e = 0; e < n; e++)  s+= freqAt(e);
+        return s;
+    }
+}
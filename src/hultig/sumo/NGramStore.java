@@ -0,0 +1,347 @@
+/*************************************************************************
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 2005-2012 UBI/HULTIG All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 3 only ("GPL"). You may not use this
+ * file except in compliance with the License. You can obtain a copy of
+ * the License at http://www.gnu.org/licenses/gpl.txt. See the License
+ * for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * When distributing the software, include this License Header Notice
+ * in each file. If applicable, add the following below the License
+ * Header, with the fields enclosed by brackets [] replaced by your own
+ * identifying information:
+ *
+ *       "Portions Copyrighted [year] [name of copyright owner]"
+ *************************************************************************
+ */
+package hultig.sumo;
+
+import java.util.Arrays;
+
+import hultig.util.HashStr;
+
+
+/**
+ * <p>
+ * The table of n-gram statistics computed by {@link NGramsV}. Each n-gram
+ * is stored as a reference to one of its occurrences in the corpus (a
+ * position and a length), with its term frequency (tf) and document
+ * frequency (df), in parallel primitive arrays. The n-grams are found
+ * through an open addressing table keyed by a 64-bit polynomial hash of
+ * their code sequences, which is computed for any corpus segment in
+ * constant time, from the prefix hashes of the corpus. Equal hashes are
+ * always confirmed by comparing the codes, so collisions never merge
+ * different n-grams.
+ * </p>
+ *
+ * <p>
+ * <b>University of Beira Interior</b> (UBI)<br />
+ * Centre For Human Language Technology and Bioinformatics (HULTIG)
+ * </p>
+ *
+ * @author J. P. Cordeiro
+ * @version 1.0
+ */
+public class NGramStore
+{
+    private static final long BASE= 0x9E3779B97F4A7C15L;
+
+    private final int[] corpus;
+    private final long[] prefix;
+    private final long[] power;
+
+    private int[] pos;
+    private int[] len;
+    private int[] tf;
+    private int[] df;
+    private long[] hash;
+    private int[] slots;
+    private int size;
+    private int maxn;
+
+
+    /**
+     * Creates an empty store for the n-grams of a given corpus.
+     * @param corpus The corpus codes, which are not copied.
+     */
+    public NGramStore(int[] corpus) {
+        this.corpus= corpus;
+        int N= corpus.length;
+        prefix= new long[N+1];
+        power= new long[N+1];
+        power[0]= 1L;
+        for (int i = 0; i < N; i++) {
+            prefix[i+1]= prefix[i]*BASE + mix(corpus[i]);
+            power[i+1]= power[i]*BASE;
+        }
+
+        int cap= 16;
+        pos= new int[cap];
+        len= new int[cap];
+        tf= new int[cap];
+        df= new int[cap];
+        hash= new long[cap];
+        slots= new int[4*cap];
+        size= 0;
+        maxn= 0;
+    }
+
+    private static long mix(int c) {
+        long h= (c + 0x7F4A7C15L) * 0xBF58476D1CE4E5B9L;
+        return h ^ (h >>> 31);
+    }
+
+    private long hashAt(int p, int n) {
+        return prefix[p+n] - prefix[p]*power[n];
+    }
+
+    private static long hashOf(int[] gram) {
+        long h= 0L;
+        for (int c : gram)  h= h*BASE + mix(c);
+        return h;
+    }
+
+    private static int slotOf(long h, int mask) {
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    /**
+     * Finds the entry for the corpus segment {@code [p, p+n)}, or the
+     * free slot where it should be inserted, as {@code -(slot+1)}.
+     */
+    private int lookup(int p, int n, long h) {
+        int mask= slots.length - 1;
+        for (int k= slotOf(h, mask); ; k= (k+1) & mask) {
+            int id= slots[k] - 1;
+            if ( id < 0 )  return -(k+1);
+            if ( hash[id] == h && len[id] == n && sameCodes(pos[id], p, n) )  return id;
+        }
+    }
+
+    private boolean sameCodes(int a, int b, int n) {
+        if ( a == b )  return true;
+        for (int i = 0; i < n; i++)
+            if ( corpus[a+i] != corpus[b+i] )  return false;
+        return true;
+    }
+
+    private int insert(int p, int n, long h, int slot) {
+        if ( size == pos.length ) {
+            int cap= 2*size;
+            pos= Arrays.copyOf(pos, cap);
+            len= Arrays.copyOf(len, cap);
+            tf= Arrays.copyOf(tf, cap);
+            df= Arrays.copyOf(df, cap);
+            hash= Arrays.copyOf(hash, cap);
+        }
+        int id= size++;
+        pos[id]= p;
+        len[id]= n;
+        tf[id]= 0;
+        df[id]= -1;
+        hash[id]= h;
+        slots[slot]= id+1;
+        if ( n > maxn )  maxn= n;
+        if ( 2*size > slots.length )  rehash();
+        return id;
+    }
+
+    private void rehash() {
+        int[] vs= new int[2*slots.length];
+        int mask= vs.length - 1;
+        for (int id = 0; id < size; id++) {
+            int k= slotOf(hash[id], mask);
+            while ( vs[k] != 0 )  k= (k+1) & mask;
+            vs[k]= id+1;
+        }
+        slots= vs;
+    }
+
+    /**
+     * Defines the term frequency of the n-gram occurring at a given corpus
+     * position, adding it to the store if needed.
+     * @param p The corpus position.
+     * @param n The n-gram length.
+     * @param f The term frequency.
+     * @return The n-gram identifier.
+     */
+    public int put(int p, int n, int f) {
+        long h= hashAt(p, n);
+        int id= lookup(p, n, h);
+        if ( id < 0 )  id= insert(p, n, h, -id-1);
+        tf[id]= f;
+        return id;
+    }
+
+    /**
+     * Increments the term frequency of the n-gram occurring at a given
+     * corpus position, adding it to the store if needed.
+     * @param p The corpus position.
+     * @param n The n-gram length.
+     * @param inc The increment.
+     * @return The n-gram identifier.
+     */
+    public int increment(int p, int n, int inc) {
+        long h= hashAt(p, n);
+        int id= lookup(p, n, h);
+        if ( id < 0 )  id= insert(p, n, h, -id-1);
+        tf[id]+= inc;
+        return id;
+    }
+
+    /**
+     * Gives the identifier of a given n-gram.
+     * @param gram The n-gram codes.
+     * @return The identifier, or -1 if not stored.
+     */
+    public int find(int[] gram) {
+        if ( gram == null || gram.length == 0 )  return -1;
+        long h= hashOf(gram);
+        int mask= slots.length - 1;
+        for (int k= slotOf(h, mask); ; k= (k+1) & mask) {
+            int id= slots[k] - 1;
+            if ( id < 0 )  return -1;
+            if ( hash[id] == h && len[id] == gram.length ) {
+                int i= 0;
+                while ( i < gram.length && corpus[pos[id]+i] == gram[i] )  i++;
+                if ( i == gram.length )  return id;
+            }
+        }
+    }
+
+    /**
+     * The number of stored n-grams.
+     * @return The store size.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * The length of the longest stored n-gram.
+     * @return The biggest n.
+     */
+    public int maxN() {
+        return maxn;
+    }
+
+    public int n(int id) {
+        return len[id];
+    }
+
+    public int position(int id) {
+        return pos[id];
+    }
+
+    public int tf(int id) {
+        return tf[id];
+    }
+
+    /**
+     * Gives the document frequency of an n-gram.
+     * @param id The n-gram identifier.
+     * @return The df value, or -1 if it was not computed.
+     */
+    public int df(int id) {
+        return df[id];
+    }
+
+    void setDf(int id, int f) {
+        df[id]= f;
+    }
+
+    /**
+     * Gives the term frequency of a given n-gram.
+     * @param gram The n-gram codes.
+     * @return The tf value, or zero if not stored.
+     */
+    public int tf(int[] gram) {
+        int id= find(gram);
+        return id < 0 ? 0 : tf[id];
+    }
+
+    /**
+     * Gives the document frequency of a given n-gram.
+     * @param gram The n-gram codes.
+     * @return The df value, zero if not stored, or -1 if not computed.
+     */
+    public int df(int[] gram) {
+        int id= find(gram);
+        return id < 0 ? 0 : df[id];
+    }
+
+    /**
+     * Gives the codes of an n-gram.
+     * @param id The n-gram identifier.
+     * @return A new array with the codes.
+     */
+    public int[] gram(int id) {
+        return Arrays.copyOfRange(corpus, pos[id], pos[id] + len[id]);
+    }
+
+    /**
+     * Gives the identifiers of all stored n-grams of a given length.
+     * @param n The n-gram length.
+     * @return The identifiers, in insertion order.
+     */
+    public int[] ids(int n) {
+        int k= 0;
+        for (int id = 0; id < size; id++)  if ( len[id] == n )  k++;
+        int[] v= new int[k];
+        k= 0;
+        for (int id = 0; id < size; id++)  if ( len[id] == n )  v[k++]= id;
+        return v;
+    }
+
+    /**
+     * Counts, for each length n, the stored n-grams having a term
+     * frequency greater than or equal to a given value.
+     * @param minTf The minimum term frequency.
+     * @return The array of counts, where position {@code n-1} refers
+     * to length {@code n}.
+     */
+    public int[] countByN(int minTf) {
+        int[] v= new int[maxn];
+        for (int id = 0; id < size; id++)
+            if ( tf[id] >= minTf )  v[len[id]-1]++;
+        return v;
+    }
+
+    /**
+     * Counts, for each length n, the stored n-grams having a document
+     * frequency greater than or equal to a given value.
+     * @param minDf The minimum document frequency.
+     * @return The array of counts, where position {@code n-1} refers
+     * to length {@code n}.
+     */
+    public int[] countByNdf(int minDf) {
+        int[] v= new int[maxn];
+        for (int id = 0; id < size; id++)
+            if ( df[id] >= minDf )  v[len[id]-1]++;
+        return v;
+    }
+
+    /**
+     * Converts this store to the former string keyed table, where each
+     * n-gram key has the form {@code "n<c1,c2,...,cn>"}, mapped to its
+     * term frequency.
+     * @return The equivalent table.
+     */
+    public HashStr toHashStr() {
+        HashStr hs= new HashStr();
+        for (int id = 0; id < size; id++)
+            hs.put(len[id] + NGramsV.vectstr(gram(id)), tf[id]);
+        return hs;
+    }
+
+    /**
+     * Prints the stored n-grams, sorted by their string keys.
+     */
+    public void print() {
+        toHashStr().print();
+    }
+}
@@ -21,10 +21,15 @@
 package hultig.sumo;
 
 import java.util.*;
-import hultig.util.HashStr;
+import hultig.util.SuffixArray;
 
 
 
+/**
+ * A node of the lcp-interval stack of the former df computation.
+ * @deprecated No longer used by {@link NGramsV}.
+ */
+@Deprecated
 class Node {
     int i;
     int k;
@@ -44,7 +49,7 @@ class Node {
  */
 public class NGramsV
 {
-    public HashStr hstng; //---------> hashtable with all n-grams
+    public NGramStore ngrams; //-----> table with all n-grams
     public int[] corpus= null; //----> the corpus
     public int N; //-----------------> corpus size
     public int[] suf; //-------------> suffix array
@@ -52,17 +57,55 @@ public class NGramsV
 
     private int MAXN; //-------------> biggest n, for all n-grams
 
+    public int[] docid; //-----------> document of each corpus position
+    public int D; //-----------------> number of documents
+
+    /**
+     * The stack of the former df computation, now always empty.
+     * @deprecated The lcp-intervals are kept in private arrays.
+     */
+    @Deprecated
     public Stack<Node> stack;
+
+    /**
+     * The last suffix array position of each document, as left by
+     * {@link #compute_df(DFSink)}.
+     * @deprecated Internal state of the df computation.
+     */
+    @Deprecated
     public int[] doclink;
-    public int[] docid;
+
+    /**
+     * @deprecated Not used.
+     */
+    @Deprecated
     public int s;
 
+    /**
+     * The lcp-intervals found by {@link #compute_df(DFSink)}, in the order
+     * they were closed (by right boundary, and then from the deepest).
+     */
+    private int[] cllb, clrb, cldf;
+    private int ncl;
+
+
+    /**
+     * Receives the repeated n-grams found by
+     * {@link NGramsV#compute_df(DFSink)}. Each call represents the class of
+     * n-grams starting at corpus position {@code pos}, with lengths from
+     * {@code minN} to {@code maxN}, which share the same frequencies.
+     */
+    public interface DFSink
+    {
+        void ngram(int pos, int minN, int maxN, int tf, int df);
+    }
+
 
     public NGramsV(int[] v)
     {
         corpus= v.clone();
         N= corpus.length;
-        hstng= new HashStr();
+        ngrams= new NGramStore(corpus);
         suf= null;
         lcp= null;
         MAXN= 0;
@@ -85,50 +128,25 @@ public class NGramsV
 
 
     /**
-     * Compute suffix array.
+     * Compute suffix array, in linear time (SA-IS). The suffixes are in the
+     * {@link OrdVSuffixes} order, where a suffix comes after its extensions.
      */
     private void suffix_array()
     {
         if ( corpus == null )  return;
 
-        Integer[] vI= new Integer[N];
-        for (int i=0; i<N; i++)  vI[i]= new Integer(i);
-
-        OrdVSuffixes osuff= new OrdVSuffixes(corpus);
-        Arrays.sort(vI, osuff);
-
-        suf= new int[vI.length];
-        for (int i=0; i<vI.length; i++)  {
-            suf[i] = vI[i].intValue();
-            //System.out.printf("suffix(%d) = %d\n", i, suf[i]);
-        }
-    }
-
-
-    private int complcp(int i)
-    {
-        int a= suf[i];
-        int b= suf[i-1];
-
-        int j= 0;
-        for (j=0; j<Math.min(N-a, N-b); j++)
-            if ( corpus[a+j] != corpus[b+j] )  break;
-
-        return j;
+        suf= SuffixArray.build(corpus, false);
     }
 
 
     /**
-     * Compute the lcp array.
+     * Compute the lcp array, in linear time (Kasai et al.).
      */
     private void lcp_array()
     {
         if ( suf == null ) return;
 
-        lcp= new int[N+1];
-        for(int i=1; i<N; i++)  lcp[i] = complcp(i);
-
-        lcp[0] = lcp[N] = 0;
+        lcp= SuffixArray.lcp(corpus, suf);
     }
 
 
@@ -140,19 +158,15 @@ public class NGramsV
         char ch;
 
         if( i ==j ) {
-            String lgram= "1<"+corpus[suf[i]]+">";
             if ( MAXN < 1 )  MAXN= 1;
-            hstng.increment(lgram, 1);
-
-            //System.out.printf("1-gram:... %s\n", lgram);
+            ngrams.increment(suf[i], 1, 1);
         }
         else if(LBL < SIL) {
             tf= j-i+1;
-            int[] v= subvector(corpus, suf[k], suf[k]+SIL);
-            String ngram= v.length + vectstr(v);
-            if ( MAXN < v.length )  MAXN= v.length;
-            hstng.put(ngram, new Integer(tf));
-            //System.out.printf("n-gram:................. %s\n", ngram);
+            int n= Math.min(SIL, N-suf[k]);
+            if ( MAXN < n )  MAXN= n;
+            ngrams.put(suf[k], n, tf);
+            //System.out.printf("n-gram:................. %s\n", vectstr(subvector(corpus, suf[k], suf[k]+n)));
             /*
             System.out.printf("\t\t nontrival <%d, %d>, rep=%d, tf=%d  s=[%s]\n",
                               i, j, k, tf, corpus.substring(suf[k],suf[k]+SIL));
@@ -161,25 +175,6 @@ public class NGramsV
     }
 
 
-    private void output_hst(int i, int j, int k, int df)
-    {
-        int LBL = (lcp[i] > lcp[j+1]) ? lcp[i] : lcp[j+1];
-        int SIL = lcp[k];
-        int tf, r;
-        char ch;
-
-        if( i ==j ) {
-            System.out.printf("trivial <%d,%d>, tf=1\n", i, j);
-            //System.out.printf("1-gram:... %s\n", lgram);
-        }
-        else if(LBL < SIL) {
-            tf= j-i+1;
-            System.out.printf("\t\t nontrival <%d, %d>, rep=%d, tf=%d  df=%d\n",
-                              i, j, k, tf, df);//, corpus.substring(suf[k],suf[k]+SIL));
-        }
-    }
-
-
     public static int[] subvector(int[] v, int a)
     {
         if ( v == null ) return null;
@@ -239,127 +234,242 @@ public class NGramsV
     }
 
 
-    private int doc(int i)
+    /**
+     * Compute all n-grams
+     */
+    public void compute()
     {
-        return docid[suf[i]];
+        if ( corpus == null )  return;
+
+        suffix_array();
+        lcp_array();
+        print_LDIs_hst(0,0);
+        //populateList();
     }
 
 
-    private void print_LDIs_hst_with_df(int N, int D)
+    /**
+     * Computes the document of each corpus position, where documents are
+     * separated by the -1001 code, which belongs to the document it ends.
+     */
+    private void doc_table()
     {
-        int i, j, df;
+        docid= new int[N];
+        int id= 0;
+        for (int i=0; i<N; i++) {
+            docid[i]= id;
+            // -1001 is the end document token.
+            if ( corpus[i] == -1001 ) id++;
+        }
+        D= N > 0 && corpus[N-1] != -1001 ? id+1 : id;
+    }
 
-        doclink= new int[D];
-        for (i=0; i<D; i++) doclink[i]= -1;
 
-        push(0,0,1);
-        for (j=0; j<N; j++) {
-            output_hst(j,j,0,1);
-            if ( doclink[doc(j)] != -1 ) dec_df(doc(j));
-            doclink[doc(j)]= j;
+    /**
+     * Computes the term and document frequencies of every repeated n-gram,
+     * storing them in the {@link #ngrams} table, under the longest n-gram
+     * of each class. The n-grams crossing document boundaries are
+     * excluded.
+     * @return The table of n-grams.
+     */
+    public NGramStore compute_df()
+    {
+        if ( corpus == null ) return null;
 
-            df= 1;
-            while ( lcp[j+1] < lcp[stack.peek().k] ) {
-                df= stack.peek().df + df;
-                output_hst(stack.peek().i, j, stack.peek().k, stack.peek().df);
-                pop();
+        ngrams= new NGramStore(corpus);
+        compute_df(new DFSink() {
+            @Override
+            public void ngram(int pos, int minN, int maxN, int tf, int df) {
+                ngrams.setDf(ngrams.put(pos, maxN, tf), df);
             }
-
-            push(stack.peek().k, j+1, df);
-        }
+        });
+        return ngrams;
     }
 
 
-    private void push(int i, int k, int df)
+    /**
+     * Computes the term and document frequencies of every repeated n-gram,
+     * in a single bottom-up traversal of the lcp-intervals (Yamamoto and
+     * Church, 2001), in linear time. The df of an interval is its number
+     * of suffixes, minus the number of pairs of consecutive suffixes (in
+     * the suffix array) from the same document, whose lowest common
+     * interval lies in its subtree. The n-grams crossing document
+     * boundaries, or containing the -1001 code, are not reported.
+     * @param sink The receiver of each class of n-grams.
+     */
+    public void compute_df(DFSink sink)
     {
-        Node node= new Node();
-        node.i= i;
-        node.k= k;
-        node.df= df;
-        stack.push(node);
+        if ( corpus == null ) return;
+
+        N= corpus.length;
+        if ( suf == null )  suffix_array();
+        if ( lcp == null )  lcp_array();
+        doc_table();
+
+        // end position (exclusive, without the marker) of each document.
+        int[] docend= new int[D];
+        for (int i=N-1; i>=0; i--) {
+            if ( corpus[i] == -1001 || i == N-1 )
+                docend[docid[i]]= corpus[i] == -1001 ? i : N;
+        }
+
+        int[] doclink= this.doclink= new int[D];
+        Arrays.fill(doclink, -1);
+        int[] slcp= new int[N+1], slb= new int[N+1], sdf= new int[N+1];
+        cllb= new int[N];
+        clrb= new int[N];
+        cldf= new int[N];
+        ncl= 0;
+
+        int top= 0;
+        slcp[0]= 0;  slb[0]= 0;  sdf[0]= 0;
+        for (int j=0; j<N; j++) {
+            int next= lcp[j+1];
+            if ( next > slcp[top] ) {
+                top++;
+                slcp[top]= next;  slb[top]= j;  sdf[top]= 0;
+            }
+
+            // leaf j, and the correction for the previous leaf of its document.
+            sdf[top]++;
+            int d= docid[suf[j]];
+            int p= doclink[d];
+            if ( p >= 0 ) {
+                int a= 0, b= top;
+                while ( a < b ) {
+                    int mid= (a+b+1) >>> 1;
+                    if ( slb[mid] <= p )  a= mid;
+                    else  b= mid-1;
+                }
+                sdf[a]--;
+            }
+            doclink[d]= j;
+
+            // close the intervals ending at j.
+            while ( next < slcp[top] ) {
+                int lb= slb[top], df= sdf[top], sil= slcp[top];
+                top--;
+                int parent= Math.max(next, slcp[top]);
+                if ( next > slcp[top] ) {
+                    top++;
+                    slcp[top]= next;  slb[top]= lb;  sdf[top]= 0;
+                }
+                sdf[top]+= df;
+
+                cllb[ncl]= lb;  clrb[ncl]= j;  cldf[ncl]= df;  ncl++;
+
+                int pos= suf[lb];
+                int maxN= Math.min(sil, docend[docid[pos]] - pos);
+                if ( maxN > parent ) {
+                    if ( MAXN < maxN )  MAXN= maxN;
+                    sink.ngram(pos, parent+1, maxN, j-lb+1, df);
+                }
+            }
+        }
     }
 
 
-    public void pop()
+    /**
+     * Compares the suffix at {@code suf[i]} with an n-gram: zero if the
+     * n-gram is a prefix of the suffix, and otherwise the order of the
+     * suffix relatively to the n-gram.
+     */
+    private int cmpsuffix(int i, int[] gram)
     {
-        stack.pop();
+        int a= suf[i];
+        for (int k=0; k<gram.length; k++) {
+            if ( a+k >= N )  return 1;
+            if ( corpus[a+k] != gram[k] )  return corpus[a+k] < gram[k] ? -1 : 1;
+        }
+        return 0;
     }
 
 
-    private void dec_df(int docid)
+    /**
+     * Gives the suffix array interval of the occurrences of an n-gram.
+     * @return The interval {lb, rb}, empty if rb &lt; lb.
+     */
+    private int[] interval(int[] gram)
     {
-        int beg=0, end=stack.size(), mid= end/2;
-        while ( beg != end ) {
-            stack.get(mid);
-            if ( doclink[docid] >= stack.get(mid).i ) beg= mid;
-            else end= mid;
-            mid= (beg+end)/2;
+        int a= 0, b= N;
+        while ( a < b ) {
+            int mid= (a+b) >>> 1;
+            if ( cmpsuffix(mid, gram) < 0 )  a= mid+1;
+            else  b= mid;
+        }
+        int lb= a;
+        b= N;
+        while ( a < b ) {
+            int mid= (a+b) >>> 1;
+            if ( cmpsuffix(mid, gram) <= 0 )  a= mid+1;
+            else  b= mid;
         }
-        Node n= stack.get(mid);  n.df--;
-        stack.set(mid,n);
+        return new int[] {lb, a-1};
     }
 
 
-
     /**
-     * Compute all n-grams
+     * Gives the term frequency of any n-gram, by binary search over the
+     * suffix array.
+     * @param gram The n-gram codes.
+     * @return The number of occurrences of the n-gram in the corpus.
      */
-    public void compute()
+    public int tf(int[] gram)
     {
-        if ( corpus == null )  return;
-
-        suffix_array();
-        lcp_array();
-        print_LDIs_hst(0,0);
-        //populateList();
+        if ( gram == null || gram.length == 0 || corpus == null )  return 0;
+        if ( suf == null )  suffix_array();
+        int[] v= interval(gram);
+        return v[1] - v[0] + 1;
     }
 
 
-    private int[] doc_table(int[] corpus, int[] docnum)
+    /**
+     * Gives the document frequency of any n-gram, after
+     * {@link #compute_df()} or {@link #compute_df(DFSink)} has been called.
+     * @param gram The n-gram codes.
+     * @return The number of documents containing the n-gram, or -1 if the
+     * document frequencies were not computed.
+     */
+    public int df(int[] gram)
     {
-        int[] doc_id = new int[N];
-        int id = 0;
-        for(int i = 0; i < N; i++){
-            doc_id[i] = id;
-            // -1001 is the end document token.
-            if ( corpus[i] == -1001 ) id++;
+        if ( cllb == null )  return -1;
+        if ( gram == null || gram.length == 0 )  return 0;
+        int[] v= interval(gram);
+        int lb= v[0], rb= v[1];
+        if ( rb < lb )  return 0;
+        if ( rb == lb )  return 1;
+
+        // the intervals are sorted by rb, and then by decreasing lb.
+        int a= 0, b= ncl-1;
+        while ( a <= b ) {
+            int mid= (a+b) >>> 1;
+            int c= clrb[mid] != rb ? (clrb[mid] < rb ? -1 : 1) : (cllb[mid] > lb ? -1 : cllb[mid] < lb ? 1 : 0);
+            if ( c < 0 )  a= mid+1;
+            else if ( c > 0 )  b= mid-1;
+            else  return cldf[mid];
         }
-        docnum[0] = id;
-        return doc_id;
+        return -1;
     }
 
 
-    public void compute_df()
+    /**
+     * The number of documents in the corpus, after the document
+     * frequencies were computed.
+     * @return The number of documents.
+     */
+    public int numDocs()
     {
-        if ( corpus == null ) return;
-
-        N = corpus.length;
-        suffix_array();
-
-        System.out.print("     i = ");
-        for(int i = 0; i < N; i++) System.out.printf("%2d ", i);
-        System.out.println();
-
-        System.out.printf("cor[i] = ");
-        for(int i = 0; i < N; i++) System.out.printf(" %d ", corpus[i]);
-        System.out.println();
-
-        System.out.printf("s[i]   = ");
-        for(int i = 0; i < N; i++) System.out.printf("%2d ", suf[i]);
-        System.out.println();
-
-        lcp_array();
-        System.out.printf("lcp[i] = ");
-        for(int i = 0; i < N+1; i++) System.out.printf("%2d ", lcp[i]);
-        System.out.println();
-
+        return D;
+    }
 
-        int[] D= new int[1];
-        docid = doc_table(corpus, D); System.out.printf("doc[i] = ");
-        for(int i = 0; i < N; i++) System.out.printf("%2d ", docid[i]);
-        System.out.println();
 
-        print_LDIs_hst_with_df(N, D[0]);
+    /**
+     * @deprecated The {@link #stack} is no longer used.
+     */
+    @Deprecated
+    public void pop()
+    {
+        stack.pop();
     }
 
 
@@ -378,7 +488,7 @@ public class NGramsV
                               i, lcp[i], i, vectstr(subvector(corpus,suf[i])) );
 
         System.out.print("\nN-GRAMS COMPUTED\n");
-        hstng.print();
+        ngrams.print();
     }
 
 
@@ -22,9 +22,11 @@ package hultig.sumo;
 
 import hultig.nlp.HashString;
 import hultig.util.BestStrings;
+import hultig.util.MatrixItem;
 import hultig.util.StringDouble;
 import java.util.Vector;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -107,6 +109,23 @@ public class NewsCluster extends Vector<Text>
     }
 
 
+    /**
+     * Gives all pairs of sentences from this cluster whose similarity is
+     * greater than or equal to a given threshold, computed in parallel
+     * through a {@link SimilarityEngine}.
+     * @param metric The similarity function.
+     * @param threshold The minimum similarity value.
+     * @return The list of pairs, where {@code i()} and {@code j()} are
+     * positions in the {@link #getSentences()} array.
+     */
+    public List<MatrixItem> getSimilarPairs(Sentence.Metric metric, double threshold)
+    {
+        Sentence[] vs= getSentences();
+        if ( vs == null )  return new LinkedList<MatrixItem>();
+        return new SimilarityEngine(vs, metric).pairsAbove(threshold);
+    }
+
+
     /**
      * Clean the whole set of sentences in the news cluster.
      * @return The set of cleaned sentences.
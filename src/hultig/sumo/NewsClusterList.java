@@ -51,6 +51,15 @@ public class NewsClusterList extends ArrayList<NewsCluster> implements Serializa
     public static Toolkit to;
     CorpusIndex  dictionary;
 
+    /**
+     * The meta symbols removed by {@link #cleanSentence(String)}.
+     */
+    private static final Pattern[] CLEAN_PATTERNS= {
+        Pattern.compile("<[^>]*>"),
+        Pattern.compile("_#[0-9]*"),
+        Pattern.compile("&quot;")
+    };
+
 
 
     public NewsClusterList() {
@@ -98,7 +107,7 @@ public class NewsClusterList extends ArrayList<NewsCluster> implements Serializa
                 numstc+= cluster.numSentences();
                 System.out.printf("CLUSTER(%2d) .... processing ... #sentences: %d\n", k, numstc);
 
-                int ds= dictionary.hstab.size();
+                int ds= dictionary.size();
 
                 //to.printf("\tGroup: %3d  --->  dictionary.size(): %8d\n", k + 1, ds);
                 add(cluster);
@@ -127,6 +136,21 @@ public class NewsClusterList extends ArrayList<NewsCluster> implements Serializa
      * @throws Exception
      */
     public boolean readCluster(BufferedReader br, NewsCluster cluster) throws Exception {
+        return readCluster(br, cluster, dictionary);
+    }
+
+
+    /**
+     * Read the next news cluster, from a given reader, adding its texts to
+     * a dictionary.
+     *
+     * @param br The reader.
+     * @param cluster The output cluster.
+     * @param dictionary The dictionary, or null.
+     * @return The {@code true} value if a cluster was read.
+     * @throws Exception
+     */
+    public static boolean readCluster(BufferedReader br, NewsCluster cluster, CorpusIndex dictionary) throws Exception {
         boolean incluster = false;
         Text txt = null;
 
@@ -161,7 +185,7 @@ public class NewsClusterList extends ArrayList<NewsCluster> implements Serializa
                     for (int i=0; i<txt.size(); i++)  txt.get(i).cod= txt_id;
 
                     cluster.add(txt);
-                    dictionary.addText(txt);
+                    if ( dictionary != null )  dictionary.addText(txt);
                 }
                 txt = null;
                 txt_id++;
@@ -193,12 +217,12 @@ public class NewsClusterList extends ArrayList<NewsCluster> implements Serializa
      * @param line String
      * @return boolean
      */
-    public boolean passfilter(String line) {
+    public static boolean passfilter(String line) {
         if (line == null || line.length() < 5) {
             return false;
         }
         String s = line.toLowerCase();
-        if (s.matches(".*all rights reserved.*")) {
+        if (s.contains("all rights reserved")) {
             return false;
         }
 
@@ -222,14 +246,7 @@ public class NewsClusterList extends ArrayList<NewsCluster> implements Serializa
     public static String cleanSentence(String s) {
         if ( s == null ) return null;
 
-        String[] patterns = {
-            "<[^>]*>",
-            "_#[0-9]*",
-            "&quot;"
-        };
-
-        for (String ps : patterns) {
-            Pattern p= Pattern.compile(ps);
+        for (Pattern p : CLEAN_PATTERNS) {
             Matcher m= p.matcher(s);
             StringBuffer sb= new StringBuffer();
             int a= 0;
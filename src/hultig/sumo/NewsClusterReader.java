@@ -0,0 +1,283 @@
+/*************************************************************************
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 2005-2012 UBI/HULTIG All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 3 only ("GPL"). You may not use this
+ * file except in compliance with the License. You can obtain a copy of
+ * the License at http://www.gnu.org/licenses/gpl.txt. See the License
+ * for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * When distributing the software, include this License Header Notice
+ * in each file. If applicable, add the following below the License
+ * Header, with the fields enclosed by brackets [] replaced by your own
+ * identifying information:
+ *
+ *       "Portions Copyrighted [year] [name of copyright owner]"
+ *************************************************************************
+ */
+package hultig.sumo;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+
+/**
+ * <p>
+ * Reads the clusters of a news file one at a time, through
+ * {@link NewsClusterList#readCluster(BufferedReader, NewsCluster, CorpusIndex)},
+ * so that a news dump may be processed as it is parsed, in bounded memory,
+ * instead of being loaded whole into a {@link NewsClusterList}. The clusters
+ * are given by an {@link Iterator}, or by a sequential {@link Stream}.
+ * </p>
+ *
+ * <p>
+ * With a positive lookahead, the clusters are parsed by a background
+ * thread, which stays at most that number of clusters ahead of the
+ * consumer. The texts may also be added to a dictionary, as the clusters
+ * are read, but then, with lookahead, the dictionary must not be used
+ * before the end of the file, since it is filled by the reading thread.
+ * </p>
+ *
+ * <pre>
+ *    NewsClusterReader ncr= new NewsClusterReader("news.xml", "UTF-8", null, 4);
+ *    while ( ncr.hasNext() ) {
+ *        NewsCluster nc= ncr.next();
+ *        ...
+ *    }
+ *    ncr.close();
+ * </pre>
+ *
+ * <p>
+ * <b>University of Beira Interior</b> (UBI)<br />
+ * Centre For Human Language Technology and Bioinformatics (HULTIG)
+ * </p>
+ *
+ * @author J. P. Cordeiro
+ * @version 1.0
+ */
+public class NewsClusterReader implements Iterator<NewsCluster>, Closeable
+{
+    /**
+     * Marks the end of the clusters, in the lookahead queue.
+     */
+    private static final Object END= new Object();
+
+    private final BufferedReader br;
+    private final CorpusIndex dictionary;
+    private final String source;
+
+    private NewsCluster current;
+    private boolean finished;
+    private boolean failed;
+
+    private BlockingQueue<Object> queue;
+    private Thread reader;
+    private volatile boolean closed;
+
+
+    /**
+     * Reads a UTF-8 news file, without lookahead.
+     * @param filename The file name.
+     * @throws IOException If the file can not be opened.
+     */
+    public NewsClusterReader(String filename) throws IOException {
+        this(filename, "UTF-8", null, 0);
+    }
+
+    /**
+     * Reads a news file.
+     * @param filename The file name.
+     * @param encoding The file encoding.
+     * @param dictionary A dictionary to which the texts are added, or null.
+     * @param lookahead The maximum number of clusters read ahead, by a
+     * background thread, or 0 to read them in the calling thread.
+     * @throws IOException If the file can not be opened.
+     */
+    public NewsClusterReader(String filename, String encoding, CorpusIndex dictionary, int lookahead) throws IOException {
+        this(new BufferedReader(new InputStreamReader(new FileInputStream(filename), encoding), 1 << 16),
+             filename, dictionary, lookahead);
+    }
+
+    /**
+     * Reads the news clusters from a reader.
+     * @param br The reader, which is closed by {@link #close()}.
+     * @param dictionary A dictionary to which the texts are added, or null.
+     * @param lookahead The maximum number of clusters read ahead, or 0.
+     */
+    public NewsClusterReader(BufferedReader br, CorpusIndex dictionary, int lookahead) {
+        this(br, "reader", dictionary, lookahead);
+    }
+
+    private NewsClusterReader(BufferedReader br, String source, CorpusIndex dictionary, int lookahead) {
+        this.br= br;
+        this.source= source;
+        this.dictionary= dictionary;
+        if ( lookahead > 0 )  startReader(lookahead);
+    }
+
+    private void startReader(int lookahead) {
+        queue= new ArrayBlockingQueue<Object>(lookahead);
+        reader= new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Object last= END;
+                try {
+                    for (;;) {
+                        NewsCluster nc= new NewsCluster();
+                        if ( closed || !NewsClusterList.readCluster(br, nc, dictionary) )  break;
+                        queue.put(nc);
+                    }
+                }
+                catch (InterruptedException exc) {
+                    return;
+                }
+                catch (Throwable exc) {
+                    //errors too, or the consumer would wait forever.
+                    last= exc;
+                }
+                try {
+                    queue.put(last);
+                }
+                catch (InterruptedException exc) {
+                    // closed while waiting.
+                }
+            }
+        }, "NewsClusterReader");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * Reads the next cluster, from the file or from the lookahead queue.
+     */
+    private NewsCluster fetch() {
+        try {
+            if ( queue == null ) {
+                NewsCluster nc= new NewsCluster();
+                return NewsClusterList.readCluster(br, nc, dictionary) ? nc : null;
+            }
+            Object o= queue.take();
+            if ( o == END )  return null;
+            if ( o instanceof Throwable ) {
+                System.err.printf("\n[ERROR] NewsClusterReader.fetch(%s) ---> %s\n", source, o);
+                failed= true;
+                return null;
+            }
+            return (NewsCluster) o;
+        }
+        catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+            System.err.printf("\n[ERROR] NewsClusterReader.fetch(%s) ---> %s\n", source, exc);
+        }
+        catch (Exception exc) {
+            System.err.printf("\n[ERROR] NewsClusterReader.fetch(%s) ---> %s\n", source, exc);
+        }
+        failed= true;
+        return null;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if ( current == null && !finished ) {
+            current= fetch();
+            if ( current == null )  finished= true;
+        }
+        return current != null;
+    }
+
+    @Override
+    public NewsCluster next() {
+        if ( !hasNext() )  throw new NoSuchElementException();
+        NewsCluster nc= current;
+        current= null;
+        return nc;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Tells whether the reading stopped on an error, rather than at the
+     * end of the file.
+     * @return The {@code true} value on error.
+     */
+    public boolean failed() {
+        return failed;
+    }
+
+    /**
+     * The clusters not read yet, as an ordered sequential stream.
+     * @return The stream, which closes this reader when closed.
+     */
+    public Stream<NewsCluster> stream() {
+        Spliterator<NewsCluster> sp= Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(sp, false).onClose(new Runnable() {
+            @Override
+            public void run() {
+                close();
+            }
+        });
+    }
+
+    /**
+     * Stops the background reader, if any, and closes the input.
+     */
+    @Override
+    public void close() {
+        closed= true;
+        finished= true;
+        current= null;
+        if ( reader != null ) {
+            reader.interrupt();
+            try {
+                reader.join();
+            }
+            catch (InterruptedException exc) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try {
+            br.close();
+        }
+        catch (IOException exc) {
+            System.err.printf("\n[ERROR] NewsClusterReader.close(%s) ---> %s\n", source, exc);
+        }
+    }
+
+
+    public static void main(String[] args) throws IOException {
+        if ( args.length < 1 ) {
+            System.out.println("\nSYNTAX: java hultig.sumo.NewsClusterReader news.xml [encoding] [lookahead]\n");
+            return;
+        }
+        String encoding= args.length > 1 ? args[1] : "UTF-8";
+        int lookahead= args.length > 2 ? Integer.parseInt(args[2]) : 4;
+
+        NewsClusterReader ncr= new NewsClusterReader(args[0], encoding, null, lookahead);
+        int k= 0;
+        long nstc= 0;
+        while ( ncr.hasNext() ) {
+            NewsCluster nc= ncr.next();
+            nstc+= nc.numSentences();
+            System.out.printf("CLUSTER(%4d) ---> texts: %3d   sentences: %d\n", k++, nc.size(), nc.numSentences());
+        }
+        ncr.close();
+        System.out.printf("%d clusters, %d sentences\n", k, nstc);
+    }
+}
@@ -0,0 +1,350 @@
+/*************************************************************************
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 2005-2011 UBI/HULTIG All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 3 only ("GPL"). You may not use this
+ * file except in compliance with the License. You can obtain a copy of
+ * the License at http://www.gnu.org/licenses/gpl.txt. See the License
+ * for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * When distributing the software, include this License Header Notice
+ * in each file. If applicable, add the following below the License
+ * Header, with the fields enclosed by brackets [] replaced by your own
+ * identifying information:
+ *
+ *       "Portions Copyrighted [year] [name of copyright owner]"
+ *************************************************************************
+ */
+package hultig.sumo;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import hultig.align.NWAligner;
+import hultig.align.SubstitutionCache;
+import hultig.util.Toolkit;
+
+
+/**
+ * <p>
+ * Aligns a stream of paraphrase pairs with the <i>Needleman Wunsch</i>
+ * algorithm, across a pool of threads, giving the same word alignments as
+ * {@link ParaphAlignPair#align(POSType)}, but working directly on the code
+ * arrays, without the intermediate aligned strings. Each thread keeps its
+ * own {@link NWAligner}, whose buffers are reused from pair to pair.
+ * </p>
+ *
+ * <p>
+ * The pairs are read in chunks of a fixed size, which are aligned in
+ * parallel, and their results are delivered to a sink in the input order,
+ * always from the calling thread, before the next chunk is read. So the
+ * memory in use is bounded by the chunk size, whatever the stream length,
+ * and the sinks need not be thread safe.
+ * </p>
+ *
+ * <p>
+ * The words are codified with a shared dictionary, which should contain
+ * them all. A pair with some unknown word is codified with its own
+ * dictionary, as {@link ParaphAlignPair#align(POSType)} does for every
+ * pair, and so without the substitution cache, which is much slower.
+ * These pairs are counted ({@link #getFallbacks()}), and reported at the
+ * end of each stream. The input sentences are never modified.
+ * </p>
+ *
+ * <p>
+ * <b>University of Beira Interior</b> (UBI)<br />
+ * Centre For Human Language Technology and Bioinformatics (HULTIG)
+ * </p>
+ *
+ * @author J. P. Cordeiro
+ * @version 1.0
+ */
+public class ParaphAlignBatch
+{
+    /**
+     * Receives the aligned word arrays of each pair.
+     */
+    public interface PairSink
+    {
+        /**
+         * @param index The pair position in the input stream.
+         * @param wa The aligned words of the first sentence.
+         * @param wb The aligned words of the second sentence.
+         */
+        void aligned(long index, Word[] wa, Word[] wb);
+    }
+
+    /**
+     * Receives the bubbles extracted from each pair.
+     */
+    public interface BubbleSink
+    {
+        /**
+         * @param index The pair position in the input stream.
+         * @param bubbles The bubbles, possibly empty.
+         */
+        void bubbles(long index, Vector<XBubble> bubbles);
+    }
+
+    /**
+     * The default number of pairs per chunk.
+     */
+    public static final int CHUNK_SIZE= 4096;
+
+    private final CorpusIndex dict;
+    private final SubstitutionCache cache;
+    private final POSType postype;
+    private final int nthreads;
+    private final int chunkSize;
+    private final ExecutorService pool;
+    private final AtomicLong fallbacks= new AtomicLong();
+
+    private final ThreadLocal<NWAligner> aligner= new ThreadLocal<NWAligner>() {
+        @Override
+        protected NWAligner initialValue() {
+            return new NWAligner(dict, cache);
+        }
+    };
+
+
+    /**
+     * Creates a batch aligner with a given number of threads.
+     * @param dict The shared dictionary, or null to codify each pair
+     * with its own dictionary.
+     * @param nthreads The number of threads.
+     */
+    public ParaphAlignBatch(CorpusIndex dict, int nthreads) {
+        this(dict, null, null, nthreads, CHUNK_SIZE);
+    }
+
+    /**
+     * Creates a batch aligner.
+     * @param dict The shared dictionary, or null to codify each pair
+     * with its own dictionary.
+     * @param cache A cache of word substitution costs for the dictionary,
+     * or null.
+     * @param postype The definition of the POS tags, to mark the aligned
+     * words, or null to keep their POS codes.
+     * @param nthreads The number of threads.
+     * @param chunkSize The number of pairs aligned between two deliveries.
+     */
+    public ParaphAlignBatch(CorpusIndex dict, SubstitutionCache cache, POSType postype, int nthreads, int chunkSize) {
+        this.dict= dict;
+        this.cache= cache;
+        this.postype= postype;
+        this.nthreads= Math.max(1, nthreads);
+        this.chunkSize= Math.max(1, chunkSize);
+        if ( dict != null )  dict.prepare();
+        pool= Executors.newFixedThreadPool(this.nthreads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t= new Thread(r, "ParaphAlignBatch");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Aligns a stream of sentence pairs.
+     * @param pairs The pairs, as arrays with two sentences.
+     * @param sink The receiver of the aligned words.
+     * @return The number of aligned pairs, or -1 if the alignment failed.
+     */
+    public long align(Iterator<Sentence[]> pairs, final PairSink sink) {
+        return run(pairs, new Delivery() {
+            @Override
+            public Object compute(Word[][] alg) {
+                return alg;
+            }
+
+            @Override
+            public void deliver(long index, Object result) {
+                Word[][] alg= (Word[][]) result;
+                sink.aligned(index, alg[0], alg[1]);
+            }
+        });
+    }
+
+    /**
+     * Aligns a stream of sentence pairs and extracts their bubbles, through
+     * {@link ParaphAlignPair#extractNXBubbles(double)}, in the worker
+     * threads.
+     * @param pairs The pairs, as arrays with two sentences.
+     * @param minValue The minimum bubble value.
+     * @param sink The receiver of the bubbles.
+     * @return The number of aligned pairs, or -1 if the alignment failed.
+     */
+    public long extractNXBubbles(Iterator<Sentence[]> pairs, final double minValue, final BubbleSink sink) {
+        return run(pairs, new Delivery() {
+            @Override
+            public Object compute(Word[][] alg) {
+                return new ParaphAlignPair(alg[0], alg[1]).extractNXBubbles(minValue);
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public void deliver(long index, Object result) {
+                sink.bubbles(index, (Vector<XBubble>) result);
+            }
+        });
+    }
+
+    /**
+     * The number of pairs aligned so far with their own dictionary, for
+     * having some word missing from the shared dictionary.
+     * @return The number of pairs.
+     */
+    public long getFallbacks() {
+        return fallbacks.get();
+    }
+
+    /**
+     * Releases the threads of this batch aligner.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Aligns a single pair in the current thread.
+     * @param sa The first sentence.
+     * @param sb The second sentence.
+     * @return The two arrays of aligned words.
+     */
+    public Word[][] align(Sentence sa, Sentence sb) {
+        NWAligner nw= aligner.get();
+        CorpusIndex d= dict;
+        int[] va= codes(sa, d);
+        int[] vb= codes(sb, d);
+        if ( va == null || vb == null ) {
+            if ( dict != null )  fallbacks.incrementAndGet();
+            d= new CorpusIndex();
+            d.add(sa);
+            d.add(sb);
+            d.rebuild();
+            va= codes(sa, d);
+            vb= codes(sb, d);
+        }
+
+        nw.setDic(d);
+        int[][] alg= nw.align(va, vb);
+        nw.setDic(dict);
+        if ( alg == null )  return null;
+
+        int n= alg[0].length;
+        Word[][] vw= new Word[2][n];
+        Iterator<Word> ita= sa.iterator(), itb= sb.iterator();
+        for (int i = 0; i < n; i++) {
+            int ka= alg[0][i], kb= alg[1][i];
+            String sta= ka >= 0 ? d.get(ka) : null;
+            String stb= kb >= 0 ? d.get(kb) : null;
+            vw[0][i]= ka >= 0 ? word(sta, ka, ita.next()) : gap(stb.length());
+            vw[1][i]= kb >= 0 ? word(stb, kb, itb.next()) : gap(sta.length());
+        }
+        return vw;
+    }
+
+    private static int[] codes(Sentence s, CorpusIndex d) {
+        if ( d == null )  return null;
+        int[] v= new int[s.size()];
+        int k= 0;
+        for (Word w : s) {
+            v[k]= d.get(w.toString().toLowerCase());
+            if ( v[k++] < 0 )  return null;
+        }
+        return v;
+    }
+
+    private Word word(String token, int lexcod, Word src) {
+        Word w= new Word(token);
+        w.setLexCod(lexcod);
+        w.setPosCod(postype != null ? postype.str2cod(src.getPOS()) : src.getPosCod());
+        w.setChkCod(src.getChkCod());
+        return w;
+    }
+
+    private static Word gap(int len) {
+        Word w= new Word(Toolkit.underscore(len));
+        w.setLexCod(-1);
+        w.setPosCod(-1);
+        w.setChkCod(-1);
+        return w;
+    }
+
+
+    /**
+     * What is computed for each aligned pair, in the worker threads, and
+     * how it is delivered, in the calling thread.
+     */
+    private interface Delivery
+    {
+        Object compute(Word[][] alg);
+        void deliver(long index, Object result);
+    }
+
+    private long run(Iterator<Sentence[]> pairs, final Delivery delivery) {
+        long index= 0;
+        long f0= fallbacks.get();
+        List<Sentence[]> chunk= new ArrayList<Sentence[]>(chunkSize);
+        final Object[] results= new Object[chunkSize];
+        List<Future<Boolean>> tasks= new ArrayList<Future<Boolean>>(nthreads);
+        try {
+            while ( pairs.hasNext() ) {
+                chunk.clear();
+                while ( chunk.size() < chunkSize && pairs.hasNext() )  chunk.add(pairs.next());
+
+                final List<Sentence[]> vp= chunk;
+                int n= vp.size();
+                int step= (n + nthreads - 1) / nthreads;
+                tasks.clear();
+                for (int a = 0; a < n; a+= step) {
+                    final int from= a, to= Math.min(n, a + step);
+                    tasks.add(pool.submit(new Callable<Boolean>() {
+                        @Override
+                        public Boolean call() {
+                            for (int i = from; i < to; i++) {
+                                Sentence[] p= vp.get(i);
+                                Word[][] alg= align(p[0], p[1]);
+                                results[i]= alg == null ? null : delivery.compute(alg);
+                            }
+                            return Boolean.TRUE;
+                        }
+                    }));
+                }
+                for (Future<Boolean> f : tasks)  f.get();
+
+                for (int i = 0; i < n; i++) {
+                    if ( results[i] != null )  delivery.deliver(index + i, results[i]);
+                    results[i]= null;
+                }
+                index+= n;
+            }
+            long nf= fallbacks.get() - f0;
+            if ( nf > 0 )
+                System.err.printf("\n[WARNING] ParaphAlignBatch.run(%d) ---> %d pairs with words missing from the dictionary, aligned without it\n", index, nf);
+            return index;
+        }
+        catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+            System.err.printf("\n[ERROR] ParaphAlignBatch.run(%d) ---> %s\n", index, exc);
+            return -1;
+        }
+        catch (ExecutionException exc) {
+            System.err.printf("\n[ERROR] ParaphAlignBatch.run(%d) ---> %s\n", index, exc.getCause());
+            return -1;
+        }
+    }
+}
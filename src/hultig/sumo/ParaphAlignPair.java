@@ -135,6 +135,22 @@ public class ParaphAlignPair {
         }
     }
     
+
+    /**
+     * Creates a pair from two already aligned arrays of words, of equal
+     * length, where the void tokens are sequences of underscores with the
+     * lexical code -1, as produced by {@link ParaphAlignBatch}. The arrays
+     * are not copied, and there is no chunk level representation.
+     * @param wa The aligned words of one sentence.
+     * @param wb The aligned words of the other sentence.
+     */
+    public ParaphAlignPair(Word[] wa, Word[] wb) {
+        this.wa = wa;
+        this.wb = wb;
+        csa = null;
+        csb = null;
+    }
+    
     
     public void setID(int id) {
         this.ID= id;
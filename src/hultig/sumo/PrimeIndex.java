@@ -52,6 +52,8 @@ import hultig.util.StringInteger;
  */
 public class PrimeIndex implements Serializable, Comparator<StringInteger>
 {
+    private static final long serialVersionUID = -6494000690986087473L;
+
     /**
      * A corpora index with the words/tokens being
      * the keys. Given a word we can obtain its
@@ -97,6 +99,14 @@ public class PrimeIndex implements Serializable, Comparator<StringInteger>
      * when the rebuild method was called.
      */
     private boolean somethingNewWasAdded= false;
+
+    /**
+     * A read-only index, memory mapped from a binary file through the
+     * {@link #loadMapped(java.lang.String) loadMapped(String)} method.
+     * While defined, the lookups run directly against the mapped file.
+     * It is transferred into the heap tables on the first modification.
+     */
+    private transient MappedIndex mtab= null;
     
 
     /**
@@ -169,6 +179,7 @@ public class PrimeIndex implements Serializable, Comparator<StringInteger>
      * Recreates the current index main table {@link #hstab hstab}.
      */
     public final void clearHash() {
+        mtab= null;
         hstab = new HashString();
     }
 
@@ -383,6 +394,10 @@ public class PrimeIndex implements Serializable, Comparator<StringInteger>
      * @param hst The hash table from which the token belongs.
      */
     private void incToken(String token, HashString hst) {
+        if ( mtab != null ) {
+            materialize();
+            hst= hstab;
+        }
         Long I = hst.get(token);
         
         if (I == null) {
@@ -395,6 +410,8 @@ public class PrimeIndex implements Serializable, Comparator<StringInteger>
     
     
     public void fusion(PrimeIndex other) {
+        materialize();
+        other.materialize();
         String[] vKeys= other.hstab.getKeys();
         for (String sk : vKeys) {
             Long I= other.hstab.get(sk);
@@ -409,11 +426,13 @@ public class PrimeIndex implements Serializable, Comparator<StringInteger>
      * The numeric indexes are recomputed.
      */
     public void rebuild() {
+        materialize();
         this.recreateTreeMaps(null);
     }
     
     
     public void rebuild(JPrimes primes) {
+        materialize();
         this.recreateTreeMaps(primes);
     }
     
@@ -460,6 +479,7 @@ public class PrimeIndex implements Serializable, Comparator<StringInteger>
 
     
     public boolean printDict(PrintStream out) {
+        materialize();
         if ( hstab == null ) return false;
         return printDict(out, 0, hstab.size());
     }
@@ -584,6 +604,7 @@ public class PrimeIndex implements Serializable, Comparator<StringInteger>
         this.hstab = d.hstab;
         this.TRUNCV = d.TRUNCV;
         this.somethingNewWasAdded= d.somethingNewWasAdded;
+        this.mtab = d.mtab;
     }
 
     /**
@@ -616,6 +637,7 @@ public class PrimeIndex implements Serializable, Comparator<StringInteger>
      */
     public boolean save(String fname) {
         System.out.printf("SAVE CORPORA INDEX STARTED (FILE: %s)\n", fname);
+        materialize();
         try {
             FileOutputStream ostream = new FileOutputStream(fname);
             ObjectOutputStream oos = new ObjectOutputStream(ostream);
@@ -633,6 +655,98 @@ public class PrimeIndex implements Serializable, Comparator<StringInteger>
         return true;
     }
 
+    /**
+     * Saves this index in the binary format of the {@link MappedIndex} class,
+     * which can later be memory mapped through {@link #loadMapped(java.lang.String)
+     * loadMapped(String)}, with near zero loading time.
+     * @param fname The output file name.
+     * @return The {@code true} value on success, and {@code false} if
+     * some erroneous situation occurs.
+     */
+    public boolean saveMapped(String fname) {
+        try {
+            int n, e= 0;
+            String[] vt;
+            long[] vc, vf;
+            if ( mtab != null ) {
+                n= mtab.size();
+                vt= new String[n];
+                vc= new long[n];
+                vf= new long[n];
+                for (; e < n; e++) {
+                    vt[e]= mtab.tokenAt(e);
+                    vc[e]= mtab.codeAt(e);
+                    vf[e]= mtab.freqAt(e);
+                }
+            }
+            else {
+                if ( idict == null || somethingNewWasAdded )  rebuild();
+                n= idict.size();
+                vt= new String[n];
+                vc= new long[n];
+                vf= new long[n];
+                for (Map.Entry<Long,String> entry : idict.entrySet()) {
+                    Long F= hstab.get(entry.getValue());
+                    vt[e]= entry.getValue();
+                    vc[e]= entry.getKey();
+                    vf[e]= F == null ? 0L : F.longValue();
+                    e++;
+                }
+            }
+            MappedIndex.write(fname, vt, vc, vf, 0);
+        }
+        catch (IOException exc) {
+            System.err.println("   [saveMapped] --> (" + exc.toString() + ")");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Opens an index file saved by {@link #saveMapped(java.lang.String)
+     * saveMapped(String)}. The file is memory mapped and queried in place,
+     * so this method returns almost immediately, independently of the
+     * vocabulary size.
+     * @param fname The file name.
+     * @return The {@code true} value on success, and {@code false} if
+     * some erroneous situation occurs.
+     */
+    public boolean loadMapped(String fname) {
+        try {
+            MappedIndex mi= MappedIndex.open(fname);
+            clearHash();
+            idict= null;
+            sdict= null;
+            mtab= mi;
+            somethingNewWasAdded= false;
+        }
+        catch (IOException exc) {
+            System.err.println("   [loadMapped] --> (" + exc.toString() + ")");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Transfers the memory mapped index, if any, into the heap tables,
+     * preserving every code.
+     */
+    private void materialize() {
+        if ( mtab == null )  return;
+        MappedIndex mi= mtab;
+        mtab= null;
+
+        idict = new TreeMap<Long, String> ();
+        sdict = new TreeMap<String, Long> ();
+        for (int e = 0, n= mi.size(); e < n; e++) {
+            Long K= mi.codeAt(e);
+            String S= mi.tokenAt(e);
+            idict.put(K, S);
+            sdict.put(S, K);
+            hstab.put(S, mi.freqAt(e));
+        }
+    }
+
     /**
      *	Codifies a file according to the loaded dictionary.
      */
@@ -676,8 +790,8 @@ public class PrimeIndex implements Serializable, Comparator<StringInteger>
                         token = token.substring(0, TRUNCV);
                     }
 
-                    Long I = sdict.get(token);
-                    if (I == null) {
+                    long I = get(token);
+                    if (I < 0) {
                         out.print("-1 ");
                     }
                     else {
@@ -702,6 +816,7 @@ public class PrimeIndex implements Serializable, Comparator<StringInteger>
      * dictionary then the <b>null</b> value is returned.
      */
     public String get(long key) {
+        if ( mtab != null )  return mtab.token(key);
         if (idict == null) {    
             if ( hstab == null )
                 return null;
@@ -739,6 +854,7 @@ public class PrimeIndex implements Serializable, Comparator<StringInteger>
      * @return The code or -1 if something is wrong.
      */
     public long get(String token) {
+        if ( mtab != null )  return mtab.code(token);
         if (sdict == null) {
             if ( hstab == null )
                 return -1;
@@ -762,6 +878,7 @@ public class PrimeIndex implements Serializable, Comparator<StringInteger>
      * this dictionary.
      */
     public long freq(String token) {
+        if ( token != null && mtab != null )  return mtab.freq(token);
         if (token == null || hstab == null) {
             return -1;
         }
@@ -775,6 +892,7 @@ public class PrimeIndex implements Serializable, Comparator<StringInteger>
      * is not defined.
      */
     public long sum() {
+        if ( mtab != null )  return mtab.sum();
         if (hstab == null) {
             return -1;
         }
@@ -840,6 +958,7 @@ public class PrimeIndex implements Serializable, Comparator<StringInteger>
     
     
     public int size() {
+        if ( mtab != null )  return mtab.size();
         return hstab.size();
     }
 
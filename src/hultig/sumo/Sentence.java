@@ -21,15 +21,16 @@
 package hultig.sumo;
 
 import java.util.ArrayList;
-import java.util.Enumeration;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.ListIterator;
 import java.util.Random;
 import java.util.StringTokenizer;
 
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import hultig.util.StringKernel;
 import hultig.util.Toolkit;
 
 
@@ -270,8 +271,8 @@ public class Sentence extends LinkedList<Word> implements Comparable
     public void codify(CorpusIndex dic) {
         if ( dic == null )  return;
 
-        for (int i=0; i<size(); i++) {
-            get(i).setLexCod(dic.get(getWord(i).toLowerCase()));
+        for (Word w : this) {
+            w.setLexCod(dic.get(w.toString().toLowerCase()));
         }
     }
 
@@ -292,6 +293,15 @@ public class Sentence extends LinkedList<Word> implements Comparable
         }
     }
 
+    /**
+     * Converts this sentence into its compact, array-backed form, in
+     * a single pass over the word list.
+     * @return The equivalent {@link ArraySentence}.
+     */
+    public ArraySentence toArraySentence() {
+        return new ArraySentence(this);
+    }
+
     /**
      * This sentence string length.
      * @return The length value.
@@ -318,7 +328,8 @@ public class Sentence extends LinkedList<Word> implements Comparable
      */
     public String[] getWords() {
         String[] vs= new String[size()];
-        for (int i=0; i<vs.length; i++)  vs[i]= super.get(i).toString();
+        int i= 0;
+        for (Word w : this)  vs[i++]= w.toString();
         return vs;
     }
     
@@ -353,8 +364,9 @@ public class Sentence extends LinkedList<Word> implements Comparable
      */
     public int[] getCodes() {
         int[] v= new int[size()];
-        for (int i=0; i<size(); i++)  v[i]= get(i).getLexCod();
-	return v;
+        int i= 0;
+        for (Word w : this)  v[i++]= w.getLexCod();
+        return v;
     }
 
     /**
@@ -364,7 +376,8 @@ public class Sentence extends LinkedList<Word> implements Comparable
      */
     public String[] getTags() {
         String[] v= new String[size()];
-        for (int i=0; i<size(); i++)  v[i]= get(i).getTag();
+        int i= 0;
+        for (Word w : this)  v[i++]= w.getTag();
         return v;
     }
 
@@ -494,37 +507,63 @@ public class Sentence extends LinkedList<Word> implements Comparable
     public int dsLevenshtein(Sentence other) {
         if ( other == null ) return -1;
 
-        int d[][];   //-------------> matrix;
         int n= other.size();
         int m= this.size();
-        int cost;
 
         if ( n == 0 ) return m;
         if ( m == 0 ) return n;
 
-        // step 2
-        d= new int[n+1][m+1];
-        for(int i=0; i<=n; i++)  d[i][0]= i;
-        for(int j=0; j<=m; j++)  d[0][j]= j;
-
-        // step 3
-        for(int i=1; i<=n; i++) {
-            Word wi= other.get(i-1);
-            // step 4
-            for(int j=1; j<=m; j++) {
-                Word wj= this.get(j-1);
-                // step 5
-                if ( wi.getLexCod() >= 0  &&  wj.getLexCod() >= 0 )
-                    cost= (wi.getLexCod() == wj.getLexCod()) ? 0 : 1;
-                else
-                    cost = wi.toString().equals(wj.toString()) ? 0 : 1;
-                // step 6
-                d[i][j]= Toolkit.minimum(d[i-1][j]+1, d[i][j-1]+1, d[i-1][j-1]+cost);
-            }
-        }
+        return dsLevenshtein(other.getCodes(), other.getWords(), this.getCodes(), this.getWords());
+    }
 
-        // step 7
-        return d[n][m];
+    /**
+     * A thresholded version of the {@link #dsLevenshtein(Sentence)} word
+     * level <i>Edit Distance</i>, which only computes a diagonal band of
+     * the matrix and stops as soon as the distance must exceed {@code k}.
+     * @param other The other sentence.
+     * @param k The maximum distance of interest.
+     * @return The calculated distance, or {@code k+1} if it exceeds {@code k}.
+     */
+    public int dsLevenshtein(Sentence other, int k) {
+        if ( other == null ) return -1;
+        return dsLevenshtein(other.getCodes(), other.getWords(), this.getCodes(), this.getWords(), k);
+    }
+
+    /**
+     * The word level <i>Edit Distance</i> between two sentences represented
+     * by their parallel arrays of lexical codes and word strings. Two words
+     * are equal if both are codified and share the same code, or else if
+     * their strings are equal. Only two matrix rows are kept in memory.
+     * @param ca The lexical codes of the first sentence.
+     * @param wa The words of the first sentence.
+     * @param cb The lexical codes of the second sentence.
+     * @param wb The words of the second sentence.
+     * @return The calculated distance.
+     */
+    static int dsLevenshtein(int[] ca, String[] wa, int[] cb, String[] wb) {
+        return dsLevenshtein(ca, wa, cb, wb, Math.max(ca.length, cb.length));
+    }
+
+    /**
+     * The thresholded word level <i>Edit Distance</i>, over parallel arrays
+     * of codes and words, by the banded kernel of {@link StringKernel}. Only
+     * the diagonal band of width {@code 2k+1} is computed, and the
+     * computation stops when a whole row exceeds {@code k}.
+     * @param ca The lexical codes of the first sentence.
+     * @param wa The words of the first sentence.
+     * @param cb The lexical codes of the second sentence.
+     * @param wb The words of the second sentence.
+     * @param k The maximum distance of interest.
+     * @return The calculated distance, or {@code k+1} if it exceeds {@code k}.
+     */
+    static int dsLevenshtein(final int[] ca, final String[] wa, final int[] cb, final String[] wb, int k) {
+        return StringKernel.levenshtein(ca.length, cb.length, new StringKernel.Symbols() {
+            @Override
+            public boolean same(int i, int j) {
+                if ( ca[i] >= 0  &&  cb[j] >= 0 )  return ca[i] == cb[j];
+                return wa[i].equals(wb[j]);
+            }
+        }, k);
     }
 
     /**
@@ -545,8 +584,9 @@ public class Sentence extends LinkedList<Word> implements Comparable
 
         int N= end-start;
         int[] vsub= new int[N];
+        ListIterator<Word> it= listIterator(start);
         for (int k=0; k<N; k++) {
-            vsub[k] = get(start + k).getLexCod();
+            vsub[k] = it.next().getLexCod();
         }
         return vsub;
     }
@@ -990,24 +1030,12 @@ public class Sentence extends LinkedList<Word> implements Comparable
 
         NGramsV ngs= new NGramsV(v);  ngs.compute();
 
-        //count n-grams overlapping.
-        int[] match= new int[ngs.maxN()];
-        for(int i=0; i<match.length; i++)  match[i]= 0;
-
-        Enumeration<String> es= ngs.hstng.keys();
-        while ( es.hasMoreElements() ) {
-            String ngkey= es.nextElement();
-            Integer Fs= ngs.hstng.get(ngkey);
-            int n= Integer.parseInt( ngkey.substring(0, ngkey.indexOf('<')) );
-
-            /**
-             * Estimativa para o clculo do DF
-             * se DF >= 2 ento considera-se que
-             * houve overlapping.
-             */
-            if ( Fs < 2 ) continue;
-            match[n-1]++;
-        }
+        /**
+         * Estimativa para o clculo do DF
+         * se DF >= 2 ento considera-se que
+         * houve overlapping.
+         */
+        int[] match= ngs.ngrams.countByN(2);
 
         double maxp= 0.0;
         int N= Math.min(4, match.length);
@@ -1029,22 +1057,15 @@ public class Sentence extends LinkedList<Word> implements Comparable
      * Counts the number of exclusive links between two arrays of integers.
      * This method was created to serve the "<code>dsumo</code>" funtion,
      * and their different versions. Usually, it is expected that the arrays
-     * contain the word index codes of two sentences.
+     * contain the word index codes of two sentences. The arrays are not
+     * modified.
+     * @see SumoScorer#links(int[], int[])
      * @param u One array of codes.
      * @param v The other array of codes.
      * @return The number of exclusive links.
      */
     private static int numExclusiveLinks(int[] u, int[] v) {
-        int numExLk= 0;
-        for (int i=0; i<u.length; i++)
-            for (int j=0; j<v.length; j++)
-                if ( v[j] >= 0  &&  u[i] >= 0  &&  Math.abs(u[i]-v[j]) == 0 )  {
-                    numExLk++;
-                    v[j]= -1*v[j];
-                    u[i]= -1*u[i];
-                    break;
-                }
-        return numExLk;
+        return SumoScorer.local().links(u, v);
     }
 
 
@@ -1062,47 +1083,7 @@ public class Sentence extends LinkedList<Word> implements Comparable
      * @return A value in the [0,1] interval.
      */
     public double dsumo(Sentence other) {
-        if ( other == null || other.length() < 1 || length() < 1 )  return 0.0;
-
-        ensureCodification(this,other);
-
-        int NL=0;
-        int n=size(), m= other.size();
-
-        if (get(0).getLexCod() >= 0) {
-            int[] u = this.getCodes();
-            int[] v = other.getCodes();
-            NL = numExclusiveLinks(u, v);
-            if (NL == 0) return 0.0;
-        }
-        else { //==> Sentence not codified.
-            String[] va=  this.getWords();
-            String[] vb= other.getWords();
-            for (String s : va) {
-                for (int j = 0; j < vb.length; j++) {
-                    if (vb[j] != null && s.equals(vb[j])) {
-                        //System.out.printf("EQ(%d,%d) = %s\n", i,j,va[i]);
-                        NL++;
-                        vb[j]= null;
-                        break;
-                    }
-                }
-            }
-        }
-        
-
-        //proceed to final calculations
-        if ( m < n ) {int aux=m; m=n; n=aux;}
-        double pm= (double)NL/m;
-        double pn= (double) NL/n;
-
-        double alfa= 0.5;
-        double beta= 1.0 - alfa;
-        double similarity= - alfa*Toolkit.log2(pm) - beta*Toolkit.log2(pn);
-        //System.out.printf("\nNL: %d   m:%d   n: %d   pm: %f   pn: %f   sim: %f\n", NL, m, n, pm, pn, similarity);
-        if ( similarity > 1.0 )  similarity= 1.0/Math.exp(3*similarity);
-
-        return similarity == -0.0 ? 0.0 : similarity;
+        return SumoScorer.local().score(this, other);
     }
 
     /**
@@ -1135,6 +1116,18 @@ public class Sentence extends LinkedList<Word> implements Comparable
 
         //count the number of matches
         int NL= numExclusiveLinks(u, v);
+        return sumo(NL, n, m);
+    }
+
+    /**
+     * The final calculation of the "sumo metric", from the number of
+     * exclusive links between two sentences and their sizes.
+     * @param NL The number of exclusive links.
+     * @param n The size of the shortest sentence.
+     * @param m The size of the longest sentence.
+     * @return The similarity value in the [0,1] interval.
+     */
+    static double sumo(int NL, int n, int m) {
         if ( NL == 0 )  return 0.0;
 
         //procced to calculations
@@ -1630,7 +1623,7 @@ public class Sentence extends LinkedList<Word> implements Comparable
         if ( metric == Metric.SUMOWSIZE ) 
             return this.dsumoWSize(other);
 
-        return Sentence.dsumo(this.getCodes(), other.getCodes());
+        return SumoScorer.local().scoreCodes(this, other);
     }
 
     /**
@@ -1709,9 +1702,9 @@ public class Sentence extends LinkedList<Word> implements Comparable
     {
         StringBuilder s= new StringBuilder();
         String sp= ".,;:?!\"'";
-        int n= this.size();
-        for (int i=0; i<n; i++) {
-            Word w= this.get(i);
+        int i= -1;
+        for (Word w : this) {
+            i++;
             if ( w == null ) continue;
             String ws= w.toString();
             if ( sp.contains(ws) || i == 0 ) {
@@ -0,0 +1,392 @@
+/*************************************************************************
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 2005-2011 UBI/HULTIG All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 3 only ("GPL"). You may not use this
+ * file except in compliance with the License. You can obtain a copy of
+ * the License at http://www.gnu.org/licenses/gpl.txt. See the License
+ * for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * When distributing the software, include this License Header Notice
+ * in each file. If applicable, add the following below the License
+ * Header, with the fields enclosed by brackets [] replaced by your own
+ * identifying information:
+ *
+ *       "Portions Copyrighted [year] [name of copyright owner]"
+ *************************************************************************
+ */
+package hultig.sumo;
+
+import java.util.Arrays;
+
+
+/**
+ * <p>
+ * An inverted index from lexical codes to the sentences containing them,
+ * used to prune the candidates of a similarity search. The sumo function
+ * is zero for any pair of sentences without common codes, so only the
+ * sentences sharing at least {@code k} distinct codes with a query need
+ * to be scored. Optionally, the shared codes may be weighted by their
+ * inverse document frequency, {@code log(N/df)}, computed over the indexed
+ * sentences, in order to discard candidates that only share very common
+ * words.
+ * </p>
+ *
+ * <p>
+ * The postings are stored in compact form: the sorted array of distinct
+ * codes, and for each one a slice of a single array of sentence
+ * positions, in ascending order. Negative codes (not codified words) are
+ * never indexed. Queries may run concurrently, each thread using its own
+ * accumulator.
+ * </p>
+ *
+ * <p>
+ * <b>University of Beira Interior</b> (UBI)<br />
+ * Centre For Human Language Technology and Bioinformatics (HULTIG)
+ * </p>
+ *
+ * @author J. P. Cordeiro
+ * @version 1.0
+ */
+public class SentenceIndex
+{
+    /**
+     * The dictionary used to codify the indexed sentences, if known.
+     */
+    private CorpusIndex dict;
+
+    /**
+     * The number of indexed sentences.
+     */
+    private final int N;
+
+    /**
+     * The distinct codes, in ascending order.
+     */
+    private final int[] vcodes;
+
+    /**
+     * The postings of code {@code vcodes[c]} are in
+     * {@code ids[start[c] .. start[c+1]-1]}.
+     */
+    private final int[] start;
+    private final int[] ids;
+
+    private final ThreadLocal<Scratch> scratch= new ThreadLocal<Scratch>() {
+        @Override
+        protected Scratch initialValue() {
+            return new Scratch(N);
+        }
+    };
+
+
+    /**
+     * Creates the index for a set of sentences. If they are not yet
+     * codified, they get a common codification, as in
+     * {@link Sentence#ensureCodification(Sentence...)}, whose dictionary
+     * is kept for the query sentences. Otherwise their dictionary is not
+     * known, and the index may only be queried by codes.
+     * @param vs The array of sentences.
+     */
+    public SentenceIndex(Sentence[] vs) {
+        this(vs, codified(vs) ? null : CorpusIndex.codifyOnFly(vs));
+    }
+
+    /**
+     * Creates the index for a set of sentences, codified with a given
+     * dictionary. The query sentences will be codified with the same
+     * dictionary.
+     * @param vs The array of sentences.
+     * @param dict The dictionary, or null if the sentences are already
+     * codified with an unknown one.
+     */
+    public SentenceIndex(Sentence[] vs, CorpusIndex dict) {
+        this(codesOf(vs, dict));
+        if ( dict != null )  dict.prepare();
+        this.dict= dict;
+    }
+
+    /**
+     * Creates the index for a set of sentences, given by their arrays of
+     * lexical codes.
+     * @param codes The code arrays, one per sentence.
+     */
+    public SentenceIndex(int[][] codes) {
+        N= codes.length;
+
+        // distinct codes of each sentence, concatenated.
+        int[] offs= new int[N+1];
+        int total= 0;
+        int[][] vd= new int[N][];
+        for (int i = 0; i < N; i++) {
+            vd[i]= distinct(codes[i]);
+            total+= vd[i].length;
+            offs[i+1]= total;
+        }
+        int[] all= new int[total];
+        for (int i = 0; i < N; i++)  System.arraycopy(vd[i], 0, all, offs[i], vd[i].length);
+
+        int[] sorted= all.clone();
+        Arrays.sort(sorted);
+        int nc= 0;
+        for (int e = 0; e < total; e++) {
+            if ( e == 0 || sorted[e] != sorted[e-1] )  sorted[nc++]= sorted[e];
+        }
+        vcodes= Arrays.copyOf(sorted, nc);
+
+        start= new int[nc+1];
+        int[] slot= new int[total];
+        for (int e = 0; e < total; e++) {
+            slot[e]= Arrays.binarySearch(vcodes, all[e]);
+            start[slot[e]+1]++;
+        }
+        for (int c = 0; c < nc; c++)  start[c+1]+= start[c];
+
+        ids= new int[total];
+        int[] fill= Arrays.copyOf(start, nc);
+        for (int i = 0; i < N; i++) {
+            for (int e = offs[i]; e < offs[i+1]; e++)  ids[fill[slot[e]]++]= i;
+        }
+    }
+
+    private static boolean codified(Sentence[] vs) {
+        for (Sentence s : vs)  if ( !s.isCodefied() )  return false;
+        return true;
+    }
+
+    private static int[][] codesOf(Sentence[] vs, CorpusIndex dict) {
+        if ( dict != null ) {
+            for (Sentence s : vs)  s.codify(dict);
+        }
+        int[][] codes= new int[vs.length][];
+        for (int i = 0; i < vs.length; i++)  codes[i]= vs[i].getCodes();
+        return codes;
+    }
+
+    /**
+     * The distinct non-negative codes of an array, in ascending order.
+     */
+    private static int[] distinct(int[] v) {
+        int[] u= new int[v.length];
+        int n= 0;
+        for (int c : v)  if ( c >= 0 )  u[n++]= c;
+        Arrays.sort(u, 0, n);
+        int m= 0;
+        for (int e = 0; e < n; e++) {
+            if ( e == 0 || u[e] != u[e-1] )  u[m++]= u[e];
+        }
+        return Arrays.copyOf(u, m);
+    }
+
+    /**
+     * The number of indexed sentences.
+     * @return The index size.
+     */
+    public int size() {
+        return N;
+    }
+
+    /**
+     * The number of distinct indexed codes.
+     * @return The vocabulary size.
+     */
+    public int numCodes() {
+        return vcodes.length;
+    }
+
+    /**
+     * The number of indexed sentences containing a given code.
+     * @param code The lexical code.
+     * @return The document frequency of the code.
+     */
+    public int df(int code) {
+        int c= Arrays.binarySearch(vcodes, code);
+        return c < 0 ? 0 : start[c+1] - start[c];
+    }
+
+    /**
+     * The inverse document frequency of a given code, {@code log(N/df)}.
+     * @param code The lexical code.
+     * @return The idf value, or zero for a code not indexed.
+     */
+    public double idf(int code) {
+        int df= df(code);
+        return df == 0 ? 0.0 : Math.log((double) N / df);
+    }
+
+    /**
+     * Gives the sentences containing a given code.
+     * @param code The lexical code.
+     * @return A new array with the sentence positions, in ascending order.
+     */
+    public int[] postings(int code) {
+        int c= Arrays.binarySearch(vcodes, code);
+        if ( c < 0 )  return new int[0];
+        return Arrays.copyOfRange(ids, start[c], start[c+1]);
+    }
+
+    /**
+     * The dictionary of the indexed sentences, with which the query
+     * sentences are codified.
+     * @return The dictionary, or null if it is not known.
+     */
+    public CorpusIndex getDictionary() {
+        return dict;
+    }
+
+    /**
+     * Gives the indexed sentences sharing at least {@code k} distinct codes
+     * with a query sentence. The query words are looked up in the
+     * dictionary of the index, and the query sentence is not modified.
+     * @param q The query sentence.
+     * @param k The minimum number of shared codes.
+     * @return The candidate positions, in ascending order.
+     * @throws IllegalStateException If the dictionary of the index is not
+     * known, see {@link #getDictionary()}.
+     */
+    public int[] candidates(Sentence q, int k) {
+        return candidates(queryCodes(q), k, 0);
+    }
+
+    /**
+     * Gives the indexed sentences sharing codes with a query sentence, whose
+     * summed idf weight is greater than or equal to a given value.
+     * @param q The query sentence.
+     * @param minWeight The minimum sum of idf weights.
+     * @return The candidate positions, in ascending order.
+     * @throws IllegalStateException If the dictionary of the index is not
+     * known, see {@link #getDictionary()}.
+     */
+    public int[] candidates(Sentence q, double minWeight) {
+        return candidates(queryCodes(q), minWeight, 0);
+    }
+
+    /**
+     * The codes of a query sentence in the dictionary of this index, as
+     * given by {@link Sentence#codify(CorpusIndex)}, without codifying it.
+     */
+    private int[] queryCodes(Sentence q) {
+        if ( dict == null )
+            throw new IllegalStateException("the dictionary of the indexed sentences is not known, query by codes");
+        int[] codes= new int[q.size()];
+        for (int i = 0; i < codes.length; i++)  codes[i]= dict.get(q.getWord(i).toLowerCase());
+        return codes;
+    }
+
+    /**
+     * Gives the indexed sentences, from position {@code from} onward,
+     * sharing at least {@code k} distinct codes with a query.
+     * @param codes The query codes.
+     * @param k The minimum number of shared codes.
+     * @param from The first sentence position to consider.
+     * @return The candidate positions, in ascending order.
+     */
+    public int[] candidates(int[] codes, int k, int from) {
+        if ( k < 1 )  k= 1;
+        Scratch s= scratch.get();
+        s.reset();
+        int n= 0;
+        for (int code : distinct(codes)) {
+            int c= Arrays.binarySearch(vcodes, code);
+            if ( c < 0 )  continue;
+            for (int e = firstFrom(c, from); e < start[c+1]; e++) {
+                int i= ids[e];
+                if ( s.hit(i) == k )  s.out[n++]= i;
+            }
+        }
+        int[] v= Arrays.copyOf(s.out, n);
+        Arrays.sort(v);
+        return v;
+    }
+
+    /**
+     * Gives the indexed sentences, from position {@code from} onward,
+     * whose shared codes with a query have a summed idf weight greater
+     * than or equal to a given value.
+     * @param codes The query codes.
+     * @param minWeight The minimum sum of idf weights.
+     * @param from The first sentence position to consider.
+     * @return The candidate positions, in ascending order.
+     */
+    public int[] candidates(int[] codes, double minWeight, int from) {
+        Scratch s= scratch.get();
+        s.reset();
+        for (int code : distinct(codes)) {
+            int c= Arrays.binarySearch(vcodes, code);
+            if ( c < 0 )  continue;
+            double w= Math.log((double) N / (start[c+1] - start[c]));
+            for (int e = firstFrom(c, from); e < start[c+1]; e++)  s.add(ids[e], w);
+        }
+        int n= 0;
+        for (int t = 0; t < s.touched; t++) {
+            int i= s.out[t];
+            if ( s.weight[i] >= minWeight )  s.out[n++]= i;
+        }
+        int[] v= Arrays.copyOf(s.out, n);
+        Arrays.sort(v);
+        return v;
+    }
+
+    /**
+     * The first posting of slot {@code c} with a sentence position
+     * greater than or equal to {@code from}.
+     */
+    private int firstFrom(int c, int from) {
+        if ( from <= 0 )  return start[c];
+        int a= start[c], b= start[c+1];
+        while ( a < b ) {
+            int mid= (a + b) >>> 1;
+            if ( ids[mid] < from )  a= mid+1;
+            else  b= mid;
+        }
+        return a;
+    }
+
+
+    /**
+     * Per thread query accumulators, cleared in constant time by
+     * incrementing a stamp.
+     */
+    private static final class Scratch
+    {
+        final int[] stamp;
+        final int[] count;
+        final double[] weight;
+        final int[] out;
+        int cur;
+        int touched;
+
+        Scratch(int n) {
+            stamp= new int[n];
+            count= new int[n];
+            weight= new double[n];
+            out= new int[n];
+            cur= 0;
+        }
+
+        void reset() {
+            cur++;
+            touched= 0;
+        }
+
+        int hit(int i) {
+            if ( stamp[i] != cur ) {
+                stamp[i]= cur;
+                count[i]= 0;
+            }
+            return ++count[i];
+        }
+
+        void add(int i, double w) {
+            if ( stamp[i] != cur ) {
+                stamp[i]= cur;
+                weight[i]= 0.0;
+                out[touched++]= i;
+            }
+            weight[i]+= w;
+        }
+    }
+}
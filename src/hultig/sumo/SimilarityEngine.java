@@ -0,0 +1,436 @@
+/*************************************************************************
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 2005-2011 UBI/HULTIG All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 3 only ("GPL"). You may not use this
+ * file except in compliance with the License. You can obtain a copy of
+ * the License at http://www.gnu.org/licenses/gpl.txt. See the License
+ * for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * When distributing the software, include this License Header Notice
+ * in each file. If applicable, add the following below the License
+ * Header, with the fields enclosed by brackets [] replaced by your own
+ * identifying information:
+ *
+ *       "Portions Copyrighted [year] [name of copyright owner]"
+ *************************************************************************
+ */
+package hultig.sumo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import hultig.util.MatrixItem;
+
+
+/**
+ * <p>
+ * A batch engine for computing the similarity between all pairs of
+ * sentences from a given set, as needed for paraphrase mining over a
+ * {@link NewsCluster}. The triangular space of pairs {@code (i,j)}, with
+ * {@code i < j}, is recursively split into blocks of rows with similar
+ * numbers of pairs, which are processed in parallel in a fork-join pool.
+ * </p>
+ *
+ * <p>
+ * The sentences are codified only once, when the engine is created, and
+ * their codes are extracted into arrays. The SUMO and EDIT metrics are
+ * then computed directly on these arrays, while the remaining metrics
+ * are delegated to the {@link Sentence} functions. The results are
+ * given as {@link MatrixItem} objects, where {@code i()} and {@code j()}
+ * are the sentence positions, and {@code aij()} the similarity value.
+ * </p>
+ *
+ * <p>
+ * When a minimum number of shared codes is given, an inverted
+ * {@link SentenceIndex} is used to score only the pairs of sentences
+ * having at least that number of common codes. Since the sumo value of
+ * two sentences without common codes is zero, this pruning does not
+ * change the SUMO results above any positive threshold.
+ * </p>
+ *
+ * <pre>
+ *    SimilarityEngine engine= new SimilarityEngine(cluster.getSentences(), Sentence.Metric.SUMO);
+ *    List&lt;MatrixItem&gt; pairs= engine.pairsAbove(0.5);
+ * </pre>
+ *
+ * <p>
+ * <b>University of Beira Interior</b> (UBI)<br />
+ * Centre For Human Language Technology and Bioinformatics (HULTIG)
+ * </p>
+ *
+ * @author J. P. Cordeiro
+ * @version 1.0
+ */
+public class SimilarityEngine
+{
+    /**
+     * The approximate number of pairs processed by each fork-join leaf task.
+     */
+    public static int GRAIN= 4096;
+
+    /**
+     * Orders the matrix items by increasing value, as {@link MatrixItem}
+     * does, but typed.
+     */
+    private static final Comparator<MatrixItem> BY_VALUE= new Comparator<MatrixItem>() {
+        @Override
+        public int compare(MatrixItem a, MatrixItem b) {
+            if ( a.aij() == b.aij() )  return 0;
+            return a.aij() < b.aij() ? -1 : 1;
+        }
+    };
+
+    private final Sentence[] vs;
+    private final Sentence.Metric metric;
+    private final ForkJoinPool pool;
+
+    private final int[][] codes;
+    private final String[][] words;
+    private final int[][] sorted;
+
+    private SentenceIndex index= null;
+
+
+    /**
+     * Creates an engine for a set of sentences and a similarity function,
+     * running on the common fork-join pool.
+     * @param vs The array of sentences.
+     * @param metric The similarity function.
+     */
+    public SimilarityEngine(Sentence[] vs, Sentence.Metric metric) {
+        this(vs, metric, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates an engine for a set of sentences and a similarity function,
+     * running on a given fork-join pool.
+     * @param vs The array of sentences.
+     * @param metric The similarity function.
+     * @param pool The fork-join pool.
+     */
+    public SimilarityEngine(Sentence[] vs, Sentence.Metric metric, ForkJoinPool pool) {
+        this.vs= vs;
+        this.metric= metric == null ? Sentence.Metric.SUMO : metric;
+        this.pool= pool;
+
+        Sentence.ensureCodification(vs);
+
+        int n= vs.length;
+        codes= new int[n][];
+        words= this.metric == Sentence.Metric.EDIT ? new String[n][] : null;
+        sorted= isSumo() ? new int[n][] : null;
+        for (int i = 0; i < n; i++) {
+            codes[i]= vs[i].getCodes();
+            if ( words != null )  words[i]= vs[i].getWords();
+            if ( sorted != null ) {
+                sorted[i]= codes[i].clone();
+                Arrays.sort(sorted[i]);
+            }
+        }
+    }
+
+    private boolean isSumo() {
+        switch (metric) {
+            case NGRAM: case XGRAM: case UNIGRAM: case BLEU:
+            case EDIT: case ENTROPY: case GAUSS: case SUMOWSIZE:
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * The number of sentences in this engine.
+     * @return The number of sentences.
+     */
+    public int size() {
+        return vs.length;
+    }
+
+    /**
+     * Computes the similarity between two sentences of this engine.
+     * @param i The first sentence position.
+     * @param j The second sentence position.
+     * @return The similarity value.
+     */
+    public double similarity(int i, int j) {
+        return score(i, j, Double.NEGATIVE_INFINITY);
+    }
+
+    /**
+     * Gives all the sentence pairs {@code (i,j)}, with {@code i < j}, whose
+     * similarity is greater than or equal to a given threshold.
+     * @param threshold The minimum similarity value.
+     * @return The list of pairs, ordered by {@code i} and then by {@code j}.
+     */
+    public List<MatrixItem> pairsAbove(double threshold) {
+        if ( vs.length < 2 )  return new ArrayList<MatrixItem>();
+        return pool.invoke(new PairTask(0, vs.length, threshold, null, 0));
+    }
+
+    /**
+     * Gives the sentence pairs {@code (i,j)}, with {@code i < j}, sharing at
+     * least {@code minShared} distinct codes, and whose similarity is
+     * greater than or equal to a given threshold. Only these candidate
+     * pairs are scored.
+     * @param threshold The minimum similarity value.
+     * @param minShared The minimum number of shared codes.
+     * @return The list of pairs, ordered by {@code i} and then by {@code j}.
+     */
+    public List<MatrixItem> pairsAbove(double threshold, int minShared) {
+        if ( minShared < 1 )  return pairsAbove(threshold);
+        if ( vs.length < 2 )  return new ArrayList<MatrixItem>();
+        getIndex();
+        return pool.invoke(new PairTask(0, vs.length, threshold, null, minShared));
+    }
+
+    /**
+     * Gives the inverted index of this engine sentences, creating it on
+     * the first call.
+     * @return The sentence index.
+     */
+    public synchronized SentenceIndex getIndex() {
+        if ( index == null )  index= new SentenceIndex(codes);
+        return index;
+    }
+
+    /**
+     * Gives, for each sentence, the {@code k} most similar sentences.
+     * @param k The number of neighbours per sentence.
+     * @return For each sentence position, the array of its neighbours,
+     * by decreasing similarity.
+     */
+    public MatrixItem[][] topK(int k) {
+        return topK(k, Double.NEGATIVE_INFINITY);
+    }
+
+    /**
+     * Gives, for each sentence, the {@code k} most similar sentences, having
+     * a similarity greater than or equal to a given threshold.
+     * @param k The number of neighbours per sentence.
+     * @param threshold The minimum similarity value.
+     * @return For each sentence position, the array of its neighbours,
+     * by decreasing similarity, where each item has {@code i()} equal
+     * to the sentence position.
+     */
+    public MatrixItem[][] topK(int k, double threshold) {
+        int n= vs.length;
+        TopList[] vbest= new TopList[n];
+        for (int i = 0; i < n; i++)  vbest[i]= new TopList(k);
+        if ( n > 1 && k > 0 )  pool.invoke(new PairTask(0, n, threshold, vbest, 0));
+
+        MatrixItem[][] M= new MatrixItem[n][];
+        for (int i = 0; i < n; i++)  M[i]= vbest[i].items(i);
+        return M;
+    }
+
+    /**
+     * The similarity of a pair. For the sumo metric, the links are
+     * counted by merging the sorted code arrays. For the edit metric, the
+     * distance is only computed up to the value that still reaches the
+     * threshold, and any value below the threshold may be returned for
+     * the other pairs.
+     */
+    private double score(int i, int j, double threshold) {
+        int[] u= codes[i];
+        int[] v= codes[j];
+        switch (metric) {
+            case EDIT:
+                int m = Math.max(u.length, v.length);
+                if ( threshold > Double.NEGATIVE_INFINITY && m > 0 ) {
+                    int k= (int) Math.max(0.0, Math.min(m, Math.floor((1.0 - threshold) * m)));
+                    while ( k > 0 && 1.0 - (double) k / m < threshold )  k--;
+                    while ( k < m && 1.0 - (double) (k+1) / m >= threshold )  k++;
+                    return 1.0 - (double) Sentence.dsLevenshtein(v, words[j], u, words[i], k) / m;
+                }
+                return 1.0 - (double) Sentence.dsLevenshtein(v, words[j], u, words[i]) / m;
+            case NGRAM:
+                return Sentence.dsNgram(vs[i], vs[j]);
+            case XGRAM:
+                return Sentence.dsuffixArrays(vs[i], vs[j]);
+            case UNIGRAM:
+                return Sentence.dsUnigramX(vs[i], vs[j]);
+            case BLEU:
+                return Sentence.dsBLEU(vs[i], vs[j]);
+            case ENTROPY:
+                return vs[i].dsEntropy(vs[j]);
+            case GAUSS:
+                return vs[i].dgauss(vs[j], 0.5, 0.8, 0.25, 0.1);
+            case SUMOWSIZE:
+                return vs[i].dsumoWSize(vs[j]);
+            default:
+                return Sentence.sumo(SumoScorer.linksSorted(sorted[i], sorted[j]),
+                                     Math.min(u.length, v.length), Math.max(u.length, v.length));
+        }
+    }
+
+    /**
+     * The number of pairs in the rows before row {@code i}.
+     */
+    private long pairsBefore(long i) {
+        long n= vs.length;
+        return i*(n-1) - i*(i-1)/2;
+    }
+
+
+    /**
+     * A fork-join task processing the pairs from a block of rows. When
+     * {@code vbest} is defined the pairs are offered to the neighbour
+     * lists, otherwise the pairs above the threshold are returned. When
+     * {@code minShared} is positive only the index candidates are scored.
+     */
+    private class PairTask extends RecursiveTask<List<MatrixItem>>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final int lo, hi;
+        private final double threshold;
+        private final TopList[] vbest;
+        private final int minShared;
+
+        PairTask(int lo, int hi, double threshold, TopList[] vbest, int minShared) {
+            this.lo= lo;
+            this.hi= hi;
+            this.threshold= threshold;
+            this.vbest= vbest;
+            this.minShared= minShared;
+        }
+
+        @Override
+        protected List<MatrixItem> compute() {
+            long a= pairsBefore(lo), b= pairsBefore(hi);
+            if ( hi - lo > 1  &&  b - a > GRAIN ) {
+                long half= (a + b) / 2;
+                int x= lo+1, y= hi-1;
+                while ( x < y ) {
+                    int mid= (x + y) >>> 1;
+                    if ( pairsBefore(mid) < half )  x= mid+1;
+                    else  y= mid;
+                }
+                PairTask left= new PairTask(lo, x, threshold, vbest, minShared);
+                PairTask right= new PairTask(x, hi, threshold, vbest, minShared);
+                left.fork();
+                List<MatrixItem> lr= right.compute();
+                List<MatrixItem> ll= left.join();
+                if ( ll == null )  return lr;
+                ll.addAll(lr);
+                return ll;
+            }
+
+            int n= vs.length;
+            List<MatrixItem> list= vbest == null ? new ArrayList<MatrixItem>() : null;
+            for (int i = lo; i < hi; i++) {
+                if ( minShared > 0 ) {
+                    for (int j : index.candidates(codes[i], minShared, i+1))
+                        pair(i, j, score(i, j, threshold), list);
+                }
+                else {
+                    for (int j = i+1; j < n; j++)
+                        pair(i, j, score(i, j, threshold), list);
+                }
+            }
+            return list;
+        }
+
+        private void pair(int i, int j, double sij, List<MatrixItem> list) {
+            if ( sij < threshold )  return;
+            if ( vbest == null ) {
+                list.add(new MatrixItem(i, j, sij));
+            }
+            else {
+                vbest[i].offer(j, sij);
+                vbest[j].offer(i, sij);
+            }
+        }
+    }
+
+
+    /**
+     * A bounded list of the best neighbours of one sentence, kept as a
+     * binary min-heap on the similarity value.
+     */
+    private static final class TopList
+    {
+        private final int k;
+        private final int[] ids;
+        private final double[] vals;
+        private int size;
+
+        /**
+         * The smallest kept value, read without the lock to discard the
+         * smaller ones. It is NaN until the list is full, since no value
+         * compares as less than or equal to NaN.
+         */
+        private volatile double floor= Double.NaN;
+
+        TopList(int k) {
+            this.k= k;
+            ids= new int[k];
+            vals= new double[k];
+            size= 0;
+        }
+
+        void offer(int id, double val) {
+            if ( val <= floor )  return;
+            synchronized (this) {
+                if ( size < k ) {
+                    ids[size]= id;
+                    vals[size]= val;
+                    siftUp(size++);
+                }
+                else if ( val > vals[0] ) {
+                    ids[0]= id;
+                    vals[0]= val;
+                    siftDown(0);
+                }
+                else {
+                    return;
+                }
+                if ( size == k )  floor= vals[0];
+            }
+        }
+
+        private void siftUp(int c) {
+            while ( c > 0 ) {
+                int p= (c-1) >>> 1;
+                if ( vals[p] <= vals[c] )  break;
+                swap(p, c);
+                c= p;
+            }
+        }
+
+        private void siftDown(int p) {
+            for (;;) {
+                int c= 2*p+1;
+                if ( c >= size )  break;
+                if ( c+1 < size && vals[c+1] < vals[c] )  c++;
+                if ( vals[p] <= vals[c] )  break;
+                swap(p, c);
+                p= c;
+            }
+        }
+
+        private void swap(int a, int b) {
+            int t= ids[a];  ids[a]= ids[b];  ids[b]= t;
+            double x= vals[a];  vals[a]= vals[b];  vals[b]= x;
+        }
+
+        synchronized MatrixItem[] items(int i) {
+            MatrixItem[] v= new MatrixItem[size];
+            for (int e = 0; e < size; e++)  v[e]= new MatrixItem(i, ids[e], vals[e]);
+            Arrays.sort(v, BY_VALUE);
+            for (int a = 0, b = v.length-1; a < b; a++, b--) {
+                MatrixItem t= v[a];  v[a]= v[b];  v[b]= t;
+            }
+            return v;
+        }
+    }
+}
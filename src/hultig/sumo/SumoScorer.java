@@ -0,0 +1,260 @@
+/*************************************************************************
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 2005-2011 UBI/HULTIG All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 3 only ("GPL"). You may not use this
+ * file except in compliance with the License. You can obtain a copy of
+ * the License at http://www.gnu.org/licenses/gpl.txt. See the License
+ * for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * When distributing the software, include this License Header Notice
+ * in each file. If applicable, add the following below the License
+ * Header, with the fields enclosed by brackets [] replaced by your own
+ * identifying information:
+ *
+ *       "Portions Copyrighted [year] [name of copyright owner]"
+ *************************************************************************
+ */
+package hultig.sumo;
+
+import java.util.Arrays;
+
+
+/**
+ * <p>
+ * A reusable calculator of the "sumo metric", holding its own scratch
+ * buffers, so that scoring a pair of sentences does not allocate any
+ * memory (apart from the buffer growth for longer sentences) and never
+ * modifies its inputs. The exclusive links are counted by copying both
+ * code sequences into the buffers, sorting them, and merging, in
+ * {@code O(n log n)} time: each common code contributes the minimum of
+ * its two multiplicities. Very short pairs are counted directly, by
+ * marking the linked positions, which is faster at that size.
+ * </p>
+ *
+ * <p>
+ * A scorer is not synchronized, and each thread should use its own
+ * instance, for example the one given by {@link #local()}.
+ * </p>
+ *
+ * <p>
+ * <b>University of Beira Interior</b> (UBI)<br />
+ * Centre For Human Language Technology and Bioinformatics (HULTIG)
+ * </p>
+ *
+ * @author J. P. Cordeiro
+ * @version 1.0
+ */
+public class SumoScorer
+{
+    private static final ThreadLocal<SumoScorer> LOCAL= new ThreadLocal<SumoScorer>() {
+        @Override
+        protected SumoScorer initialValue() {
+            return new SumoScorer();
+        }
+    };
+
+    /**
+     * Pairs with at most this product of sizes are counted directly.
+     */
+    private static final int SMALL= 64;
+
+    private int[] ua;
+    private int[] va;
+    private int[] mark;
+    private int stamp;
+    private String[] us;
+    private String[] vs;
+
+
+    /**
+     * Creates a scorer with buffers for sentences of up to 64 words,
+     * which grow as needed.
+     */
+    public SumoScorer() {
+        ua= new int[64];
+        va= new int[64];
+        mark= new int[64];
+        stamp= 0;
+        us= new String[64];
+        vs= new String[64];
+    }
+
+    /**
+     * Gives the scorer of the current thread.
+     * @return The thread scorer.
+     */
+    public static SumoScorer local() {
+        return LOCAL.get();
+    }
+
+    /**
+     * Counts the number of exclusive links between two arrays of codes,
+     * that is, the number of pairs of equal non-negative codes, each
+     * position being linked at most once.
+     * @param u One array of codes.
+     * @param v The other array of codes.
+     * @return The number of exclusive links.
+     */
+    public int links(int[] u, int[] v) {
+        if ( ua.length < u.length )  ua= new int[2*u.length];
+        if ( va.length < v.length )  va= new int[2*v.length];
+        int n= 0, m= 0;
+        for (int c : u)  if ( c >= 0 )  ua[n++]= c;
+        for (int c : v)  if ( c >= 0 )  va[m++]= c;
+        return merge(n, m);
+    }
+
+    /**
+     * Computes the "sumo metric" between two arrays of codes, as
+     * {@link Sentence#dsumo(int[], int[])}.
+     * @param u The first array of codes.
+     * @param v The second array of codes.
+     * @return The similarity value in the [0,1] interval.
+     */
+    public double score(int[] u, int[] v) {
+        if ( u == null || v == null )  return 0.0;
+        return Sentence.sumo(links(u, v), Math.min(u.length, v.length), Math.max(u.length, v.length));
+    }
+
+    /**
+     * Computes the "sumo metric" between two sentences, as
+     * {@link Sentence#dsumo(Sentence)}: the sentences are codified if
+     * necessary, and when they are not, their words are compared instead.
+     * @param a The first sentence.
+     * @param b The second sentence.
+     * @return The similarity value in the [0,1] interval.
+     */
+    public double score(Sentence a, Sentence b) {
+        if ( a == null || b == null || a.length() < 1 || b.length() < 1 )  return 0.0;
+
+        Sentence.ensureCodification(a, b);
+
+        int n= a.size(), m= b.size();
+        int NL= a.get(0).getLexCod() >= 0 ? codeLinks(a, b) : wordLinks(a, b);
+        return Sentence.sumo(NL, Math.min(n, m), Math.max(n, m));
+    }
+
+    /**
+     * Computes the "sumo metric" between the current codes of two sentences,
+     * without codifying them, as {@link Sentence#similarity(Sentence)} does.
+     * @param a The first sentence.
+     * @param b The second sentence.
+     * @return The similarity value in the [0,1] interval.
+     */
+    public double scoreCodes(Sentence a, Sentence b) {
+        if ( a == null || b == null )  return 0.0;
+        int n= a.size(), m= b.size();
+        return Sentence.sumo(codeLinks(a, b), Math.min(n, m), Math.max(n, m));
+    }
+
+    private int codeLinks(Sentence a, Sentence b) {
+        if ( ua.length < a.size() )  ua= new int[2*a.size()];
+        if ( va.length < b.size() )  va= new int[2*b.size()];
+        int n= 0, m= 0;
+        for (Word w : a) {
+            int c= w.getLexCod();
+            if ( c >= 0 )  ua[n++]= c;
+        }
+        for (Word w : b) {
+            int c= w.getLexCod();
+            if ( c >= 0 )  va[m++]= c;
+        }
+        return merge(n, m);
+    }
+
+    private int merge(int n, int m) {
+        if ( n == 0 || m == 0 )  return 0;
+        if ( n*m <= SMALL )  return direct(n, m);
+        Arrays.sort(ua, 0, n);
+        Arrays.sort(va, 0, m);
+        int NL= 0;
+        for (int i = 0, j = 0; i < n && j < m; ) {
+            if ( ua[i] < va[j] )  i++;
+            else if ( ua[i] > va[j] )  j++;
+            else {
+                NL++;
+                i++;
+                j++;
+            }
+        }
+        return NL;
+    }
+
+    /**
+     * Direct counting, where {@code mark[j] == stamp} flags an already
+     * linked position of {@code va}.
+     */
+    private int direct(int n, int m) {
+        if ( mark.length < m )  mark= new int[2*m];
+        if ( ++stamp == 0 ) {
+            Arrays.fill(mark, 0);
+            stamp= 1;
+        }
+        int NL= 0;
+        for (int i = 0; i < n; i++) {
+            int c= ua[i];
+            for (int j = 0; j < m; j++) {
+                if ( va[j] == c  &&  mark[j] != stamp ) {
+                    mark[j]= stamp;
+                    NL++;
+                    break;
+                }
+            }
+        }
+        return NL;
+    }
+
+    /**
+     * Counts the exclusive links between two arrays of codes already
+     * sorted in ascending order, by merging them in linear time. Negative
+     * codes are ignored.
+     * @param u One sorted array of codes.
+     * @param v The other sorted array of codes.
+     * @return The number of exclusive links.
+     */
+    public static int linksSorted(int[] u, int[] v) {
+        int n= u.length, m= v.length;
+        int i= 0, j= 0;
+        while ( i < n && u[i] < 0 )  i++;
+        while ( j < m && v[j] < 0 )  j++;
+        int NL= 0;
+        while ( i < n && j < m ) {
+            if ( u[i] < v[j] )  i++;
+            else if ( u[i] > v[j] )  j++;
+            else {
+                NL++;
+                i++;
+                j++;
+            }
+        }
+        return NL;
+    }
+
+    private int wordLinks(Sentence a, Sentence b) {
+        if ( us.length < a.size() )  us= new String[2*a.size()];
+        if ( vs.length < b.size() )  vs= new String[2*b.size()];
+        int n= 0, m= 0;
+        for (Word w : a)  us[n++]= w.toString();
+        for (Word w : b)  vs[m++]= w.toString();
+        Arrays.sort(us, 0, n);
+        Arrays.sort(vs, 0, m);
+        int NL= 0;
+        for (int i = 0, j = 0; i < n && j < m; ) {
+            int c= us[i].compareTo(vs[j]);
+            if ( c < 0 )  i++;
+            else if ( c > 0 )  j++;
+            else {
+                NL++;
+                i++;
+                j++;
+            }
+        }
+        Arrays.fill(us, 0, n, null);
+        Arrays.fill(vs, 0, m, null);
+        return NL;
+    }
+}
@@ -22,8 +22,10 @@ package hultig.sumo;
 
 
 
+import hultig.io.MappedLineReader;
 import java.io.*;
 import java.util.StringTokenizer;
+import java.util.regex.Pattern;
 
 
 /**
@@ -50,6 +52,33 @@ public class TxtFilter
      */
     public byte NUMTAG;
 
+    /**
+     * The meta-data lines (some xml tags), which are not filtered.
+     */
+    private static final Pattern METADATA= Pattern.compile(".*<[/]*[nNcC].*>.*");
+
+    /**
+     * The numbers, replaced by the <NUM> tag.
+     */
+    private static final Pattern NUMBERS= Pattern.compile("[0-9][0-9]*");
+
+    /**
+     * The abbreviations and quotes replaced, and their replacements.
+     */
+    private static final Pattern[] QUOTES= {
+        Pattern.compile(" Mr\\."),
+        Pattern.compile(" Mrs\\."),
+        Pattern.compile(" Ms\\."),
+        Pattern.compile(" Dr\\."),
+        Pattern.compile(" Rep\\."),
+        Pattern.compile("''"),
+        Pattern.compile("``"),
+        Pattern.compile("\\?\\?")
+    };
+    private static final String[] QUOTES_BY= {
+        " Mr ", " Mrs ", " Ms ", " Dr ", " Rep ", "\"", "\"", "'"
+    };
+
     /**
      * The string minimum length.
      */
@@ -295,12 +324,10 @@ public class TxtFilter
      */
     public boolean process(String file, String fout)
     {
-        BufferedReader br= null;  //---> input
+        MappedLineReader br= null;  //---> input
         PrintWriter pwr= null; //------> output
         try  {
-            int n=0;
-            InputStream in= new FileInputStream(file);
-            br= new BufferedReader(new InputStreamReader(in, "ISO-8859-1"));
+            br= new MappedLineReader(file, "ISO-8859-1");
             if ( fout != null )
                 pwr= new PrintWriter(new FileOutputStream(fout));
         }
@@ -314,10 +341,10 @@ public class TxtFilter
             //----------
             //READ LINE
             //----------
-            String line= "";
+            CharSequence chars;
             try {
-                line= br.readLine();
-                if ( line == null ) {
+                chars= br.next();
+                if ( chars == null ) {
                     br.close();
                     break;
                 }
@@ -328,27 +355,22 @@ public class TxtFilter
             }
             //----------
 
-            //ignores meta-data (some xml tags)
-            if ( line.toLowerCase().matches(".*<[/]*[nc].*>.*") )  {
+            //ignores meta-data (some xml tags), matched over the mapped line.
+            if ( METADATA.matcher(chars).matches() )  {
                 if ( pwr == null )
-                    System.out.printf("%s\n",line);
+                    System.out.printf("%s\n",chars);
                 else
-                    pwr.println(line);
+                    pwr.println(chars);
                 continue;
             }
 
+            String line= chars.toString();
             if ( NUMTAG == ON )
-                line= line.replaceAll("[0-9][0-9]*","<NUM>");
+                line= NUMBERS.matcher(line).replaceAll("<NUM>");
 
             //replace quotes.
-            line= line.replaceAll(" Mr\\.", " Mr ");
-            line= line.replaceAll(" Mrs\\.", " Mrs ");
-            line= line.replaceAll(" Ms\\.", " Ms ");
-            line= line.replaceAll(" Dr\\.", " Dr ");
-            line= line.replaceAll(" Rep\\.", " Rep ");
-            line= line.replaceAll("''", "\"");
-            line= line.replaceAll("``", "\"");
-            line= line.replaceAll("\\?\\?", "'");
+            for (int i = 0; i < QUOTES.length; i++)
+                line= QUOTES[i].matcher(line).replaceAll(QUOTES_BY[i]);
 
            if ( ! satisfySpecialRules(line) )  continue;
 
@@ -362,11 +384,11 @@ public class TxtFilter
             //the number of thousand lines already processed
             if ( count%1000 == 0 )  {
                 System.out.printf("    ... %7d lines\n", count);
-                pwr.flush();
+                if ( pwr != null )  pwr.flush();
             }
         }
 
-        if (  br != null)  try { br.close(); } catch(Exception e) {}
+        if (  br != null)  br.close();
         if ( pwr != null)  try { pwr.close(); } catch(Exception e) {}
 
         return true;
@@ -23,7 +23,7 @@ package hultig.sumo;
 import java.util.*;
 import java.io.*;
 
-import hultig.util.Toolkit;
+import hultig.util.StringKernel;
 
 
 /**
@@ -525,6 +525,37 @@ public class Word implements Serializable
         return null;
     }
 
+    /**
+     * The meta-tags list, as held by this word, for the binary formats
+     * of this package ({@link XBubbleFile}).
+     * @return The list, or null.
+     */
+    Vector<String> metaList() {
+        return META;
+    }
+
+    /**
+     * The POS tag characters, as held by this word.
+     * @return The characters, or null.
+     */
+    char[] posChars() {
+        return POS;
+    }
+
+    /**
+     * Redefines the word string, meta-tags list and POS tag of this word,
+     * keeping the given references, as read by the binary formats of
+     * this package.
+     * @param word The word string.
+     * @param meta The meta-tags list, or null.
+     * @param pos The POS tag characters, or null.
+     */
+    void restore(String word, Vector<String> meta, char[] pos) {
+        this.word= word;
+        META= meta;
+        POS= pos;
+    }
+
     /**
      * Test whether this word is undefined or not.
      * @return The boolean test result.
@@ -615,30 +646,7 @@ public class Word implements Serializable
      * @return The calculated distance.
      */
     public static float distlex(String sa, String sb, float q) {
-        if ( sa == null && sb == null )  return 0;
-        if ( sa != null && sb == null )  return sa.length();
-        if ( sa == null && sb != null )  return sb.length();
-
-        if ( sa.length() > sb.length() ) {
-            String saux= sa;
-            sa= sb;
-            sb= saux;
-        }
-
-        int k;
-        float dist=0, d=1;
-        for (k=0; k<sb.length(); k++)  {
-            if ( k<sa.length() ) {
-                if (sa.charAt(k) != sb.charAt(k))
-                    dist += 1/d;
-            }
-            else
-                dist+= 1/d;
-
-            d= d*q;
-        }
-
-        return dist;
+        return StringKernel.distlex(sa, sb, q);
     }
 
     /**
@@ -652,32 +660,7 @@ public class Word implements Serializable
      * @return The calculated distance.
      */
     public static float distlexSuffix(String sa, String sb, float q) {
-        if ( sa == null && sb == null )  return 0;
-        if ( sa != null && sb == null )  return sa.length();
-        if ( sa == null && sb != null )  return sb.length();
-
-        if ( sa.length() > sb.length() ) {
-            String saux= sa;
-            sa= sb;
-            sb= saux;
-        }
-
-        int na= sa.length();
-        int nb= sb.length();
-
-        int k;
-        float dist=0, d=1;
-        for (k=0; k<nb; k++)  {
-            if ( k<na ) {
-                if (sa.charAt(na-k-1) != sb.charAt(nb-k-1))
-                    dist += 1/d;
-            }
-            else
-                dist+= 1/d;
-
-            d= d*q;
-        }
-        return dist;
+        return StringKernel.distlexSuffix(sa, sb, q);
     }
 
     /**
@@ -799,38 +782,7 @@ public class Word implements Serializable
      * @return double
      */
     public static double distSeqMax(String sa, String sb) {
-        char[] a= sa.toCharArray();
-        char[] b= sb.toCharArray();
-
-        int maxseq= 0;
-        for (int i=0; i<a.length; i++) {
-            int ki=i;
-            for (int j = 0; j<b.length; j++) {
-                int kj= j, seqsz = 0;
-                seqsz= prefixeSize(a, b, ki, kj);
-                if ( seqsz > maxseq )  maxseq=seqsz;
-            }
-        }
-        int n= Math.max(a.length, b.length);
-        return (double)maxseq/n;
-    }
-
-    /**
-     * An auxiliar method for calculating the common prefix size.
-     * @param a One word's array codes
-     * @param b The other word's array codes.
-     * @param afrom Start position, in the a array.
-     * @param bfrom Start positiion in the b array.
-     * @return
-     */
-    private static int prefixeSize(char[] a, char[] b, int afrom, int bfrom) {
-        int i= afrom, j= bfrom, size= 0;
-        while ( i<a.length && j<b.length && a[i] == b[j] ) {
-            i++;
-            j++;
-            size++;
-        }
-        return size;
+        return StringKernel.distSeqMax(sa, sb);
     }
 
 
@@ -861,50 +813,44 @@ public class Word implements Serializable
 
     /**
      * Computes <i>Levenshtein Distance</i>, also known as the
-     * <i>Edit Distance</i>
+     * <i>Edit Distance</i>. When the shortest string has at most 64
+     * characters, the bit-parallel algorithm of Myers (1999) is used,
+     * otherwise only two rows of the distance matrix are kept.
      * @param s One string.
      * @param t The other string.
      * @return The calculated value.
      */
     public static int editDistance(String s, String t)
     {
-        int d[][]; 	//--> matrix
-        int n; 		//--> length of s
-        int m; 		//--> length of t
-        int i; 		//--> iterates through s
-        int j; 		//--> iterates through t
-        char s_i; 	//--> ith character of s
-        char t_j; 	//--> jth character of t
-        int cost; 	//--> cost
-
-        // Step 1
-        n = s.length ();
-        m = t.length ();
-
-        if (n == 0)  return m;
-        if (m == 0)  return n;
-
-        d = new int[n+1][m+1];
-        // Step 2
-        for (i = 0; i <= n; i++)  d[i][0] = i;
-        for (j = 0; j <= m; j++)  d[0][j] = j;
-
-        // Step 3
-        for (i = 1; i <= n; i++) {
-            s_i = s.charAt (i - 1);
-            // Step 4
-            for (j = 1; j <= m; j++) {
-                t_j = t.charAt (j - 1);
-                // Step 5
-                cost= s_i == t_j ? 0 : 1;
-                // Step 6
-                d[i][j] = Toolkit.minimum(d[i-1][j]+1, d[i][j-1]+1, d[i-1][j-1] + cost);
-            }
-        }
-        // Step 7
-        return d[n][m];
+        return StringKernel.levenshtein(s, t);
+    }
+
+    /**
+     * A thresholded <i>Edit Distance</i>, for callers that only need to
+     * know whether two strings are close. The computation stops as soon as
+     * the distance is known to exceed {@code k}, and for longer strings
+     * only a diagonal band of width {@code 2k+1} is computed.
+     * @param s One string.
+     * @param t The other string.
+     * @param k The maximum distance of interest.
+     * @return The edit distance, if it is at most {@code k}, and
+     * {@code k+1} otherwise.
+     */
+    public static int editDistance(String s, String t, int k)
+    {
+        return StringKernel.levenshtein(s, t, k);
     }
 
+    /**
+     * The thresholded edit distance to another word.
+     * @see #editDistance(String, String, int)
+     * @param w The other word.
+     * @param k The maximum distance of interest.
+     * @return The edit distance, or {@code k+1} if it exceeds {@code k}.
+     */
+    public int editDistance(Word w, int k) {
+        return editDistance(this.toString(), w.toString(), k);
+    }
 
     /**
      * Cost of aligning two words. This formula was used to compute a
@@ -0,0 +1,575 @@
+/*************************************************************************
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 2005-2011 UBI/HULTIG All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 3 only ("GPL"). You may not use this
+ * file except in compliance with the License. You can obtain a copy of
+ * the License at http://www.gnu.org/licenses/gpl.txt. See the License
+ * for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * When distributing the software, include this License Header Notice
+ * in each file. If applicable, add the following below the License
+ * Header, with the fields enclosed by brackets [] replaced by your own
+ * identifying information:
+ *
+ *       "Portions Copyrighted [year] [name of copyright owner]"
+ *************************************************************************
+ */
+package hultig.sumo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import hultig.util.StringKernel;
+import hultig.util.Toolkit;
+
+
+/**
+ * <p>
+ * A memoized table of a lexical metric between every pair of words of a
+ * {@link CorpusIndex}, for the vocabulary level analyses that ask the same
+ * pair questions many times, like the word mutation matrices and the
+ * lexical neighbour queries. Only the pairs within a threshold are kept
+ * (for example, costs below some value, or similarities above some value),
+ * each row in increasing code order, in a compressed sparse row layout.
+ * The value of any other pair is computed when asked.
+ * </p>
+ *
+ * <p>
+ * The rows are divided into shards of consecutive codes, which are
+ * computed when one of their rows is first needed, or all at once by
+ * {@link #precompute(int)}, in parallel. For the length bounded metrics,
+ * only the words whose length may give a value within the threshold are
+ * compared. A table is thread safe, and may be saved and loaded again for
+ * the same dictionary.
+ * </p>
+ *
+ * <p>
+ * <b>University of Beira Interior</b> (UBI)<br />
+ * Centre For Human Language Technology and Bioinformatics (HULTIG)
+ * </p>
+ *
+ * @author J. P. Cordeiro
+ * @version 1.0
+ */
+public class WordDistanceMatrix
+{
+    /**
+     * The lexical metrics that may be tabled.
+     */
+    public enum Metric
+    {
+        /**
+         * The word alignment cost, {@link Word#costAlign(Word)}, in
+         * [0, +00[. Kept when not above the threshold.
+         */
+        COST_ALIGN(false) {
+            @Override
+            public double value(Word a, Word b) {
+                return StringKernel.costAlign(a.toString(), b.toString());
+            }
+
+            @Override
+            boolean mayBeWithin(int la, int lb, double threshold) {
+                // editDistance >= |la-lb| and distSeqMax <= 1.
+                return Math.abs(la - lb) <= threshold * 1.01;
+            }
+        },
+
+        /**
+         * The cosine of the character vectors, {@link Word#distcos(Word)}.
+         * Kept when not below the threshold.
+         */
+        DISTCOS(true) {
+            @Override
+            public double value(Word a, Word b) {
+                return a.distcos(b);
+            }
+        },
+
+        /**
+         * The normalized edit proximity, {@link Word#dnormEditDistance(Word)},
+         * in [0,1]. Kept when not below the threshold.
+         */
+        DNORM_EDIT(true) {
+            @Override
+            public double value(Word a, Word b) {
+                return a.dnormEditDistance(b);
+            }
+
+            @Override
+            boolean mayBeWithin(int la, int lb, double threshold) {
+                // editDistance >= |la-lb|.
+                return 1.0 - (double) Math.abs(la - lb) / Math.max(la, lb) >= threshold;
+            }
+        },
+
+        /**
+         * The string cosine similarity, {@link Toolkit#cosSimStr(String, String)},
+         * in [0,1]. Kept when not below the threshold.
+         */
+        COSSIM(true) {
+            @Override
+            public double value(Word a, Word b) {
+                return Toolkit.cosSimStr(a.toString(), b.toString());
+            }
+        };
+
+        private final boolean similarity;
+
+        private Metric(boolean similarity) {
+            this.similarity= similarity;
+        }
+
+        /**
+         * The metric value of a pair of words.
+         */
+        public abstract double value(Word a, Word b);
+
+        /**
+         * Tells whether greater values mean closer words.
+         */
+        public boolean isSimilarity() {
+            return similarity;
+        }
+
+        /**
+         * Tests whether a value is within a threshold.
+         */
+        public boolean within(double v, double threshold) {
+            return similarity ? v >= threshold : v <= threshold;
+        }
+
+        /**
+         * A necessary condition, on the word lengths, for a pair to be
+         * within the threshold.
+         */
+        boolean mayBeWithin(int la, int lb, double threshold) {
+            return true;
+        }
+    }
+
+    /**
+     * The default number of rows per shard.
+     */
+    public static final int SHARD_ROWS= 1024;
+
+    private static final int MAGIC= 0x5744584D;
+    private static final int VERSION= 1;
+
+    private final CorpusIndex dict;
+    private final Metric metric;
+    private final double threshold;
+    private final int shardRows;
+    private final int size;
+
+    /**
+     * The words, by code, and the codes sorted by word length, with the
+     * first position of each length.
+     */
+    private Word[] words;
+    private int[] bylen;
+    private int[] lenStart;
+
+    private final AtomicReferenceArray<Shard> shards;
+    private final Object[] locks;
+
+
+    /**
+     * The compressed rows of a shard: the row {@code r} has the columns
+     * {@code cols[ptr[r]..ptr[r+1]-1]}, in increasing order, and their
+     * values in {@code vals}.
+     */
+    private static final class Shard
+    {
+        final int[] ptr;
+        final int[] cols;
+        final double[] vals;
+
+        Shard(int[] ptr, int[] cols, double[] vals) {
+            this.ptr= ptr;
+            this.cols= cols;
+            this.vals= vals;
+        }
+    }
+
+
+    /**
+     * Creates an empty table, with the default shard size.
+     * @param dict The dictionary.
+     * @param metric The tabled metric.
+     * @param threshold The threshold of the kept pairs.
+     */
+    public WordDistanceMatrix(CorpusIndex dict, Metric metric, double threshold) {
+        this(dict, metric, threshold, SHARD_ROWS);
+    }
+
+    /**
+     * Creates an empty table.
+     * @param dict The dictionary, whose codes go from 1 to its size.
+     * @param metric The tabled metric.
+     * @param threshold The threshold of the kept pairs.
+     * @param shardRows The number of rows per shard.
+     */
+    public WordDistanceMatrix(CorpusIndex dict, Metric metric, double threshold, int shardRows) {
+        this.dict= dict;
+        this.metric= metric;
+        this.threshold= threshold;
+        this.shardRows= Math.max(1, shardRows);
+        dict.prepare();
+        this.size= dict.size();
+        int nshards= size / this.shardRows + 1;
+        shards= new AtomicReferenceArray<Shard>(nshards);
+        locks= new Object[nshards];
+        for (int i = 0; i < nshards; i++)  locks[i]= new Object();
+    }
+
+    public CorpusIndex getDictionary() {
+        return dict;
+    }
+
+    public Metric getMetric() {
+        return metric;
+    }
+
+    public double getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * The value of the metric between two word codes, taken from the
+     * table when the pair is within the threshold, and computed otherwise.
+     * @param a One word code.
+     * @param b The other word code.
+     * @return The value, or {@code NaN} if some code is not in the dictionary.
+     */
+    public double get(int a, int b) {
+        if ( a < 1 || a > size || b < 1 || b > size )  return Double.NaN;
+        Shard s= shard(a);
+        int r= a % shardRows;
+        int k= Arrays.binarySearch(s.cols, s.ptr[r], s.ptr[r+1], b);
+        if ( k >= 0 )  return s.vals[k];
+        return metric.value(words[a], words[b]);
+    }
+
+    /**
+     * The value of the metric between two words of the dictionary.
+     * @param wa One word.
+     * @param wb The other word.
+     * @return The value, or {@code NaN} if some word is not in the dictionary.
+     */
+    public double get(String wa, String wb) {
+        return get(dict.get(wa), dict.get(wb));
+    }
+
+    /**
+     * Tests whether a pair of word codes is within the threshold.
+     * @param a One word code.
+     * @param b The other word code.
+     * @return The {@code true} value if the pair is kept in the table.
+     */
+    public boolean near(int a, int b) {
+        if ( a < 1 || a > size || b < 1 || b > size )  return false;
+        Shard s= shard(a);
+        int r= a % shardRows;
+        return Arrays.binarySearch(s.cols, s.ptr[r], s.ptr[r+1], b) >= 0;
+    }
+
+    /**
+     * The lexical neighbours of a word code: the other codes within the
+     * threshold.
+     * @param a The word code.
+     * @return The codes, in increasing order, possibly empty.
+     */
+    public int[] neighbours(int a) {
+        if ( a < 1 || a > size )  return new int[0];
+        Shard s= shard(a);
+        int r= a % shardRows;
+        return Arrays.copyOfRange(s.cols, s.ptr[r], s.ptr[r+1]);
+    }
+
+    /**
+     * The metric values of the neighbours of a word code, in the same order
+     * as {@link #neighbours(int)}.
+     * @param a The word code.
+     * @return The values, possibly empty.
+     */
+    public double[] neighbourValues(int a) {
+        if ( a < 1 || a > size )  return new double[0];
+        Shard s= shard(a);
+        int r= a % shardRows;
+        return Arrays.copyOfRange(s.vals, s.ptr[r], s.ptr[r+1]);
+    }
+
+    /**
+     * The lexical neighbours of a word.
+     * @param w The word.
+     * @return The neighbour words, possibly empty.
+     */
+    public String[] neighbours(String w) {
+        int[] v= neighbours(dict.get(w));
+        String[] vs= new String[v.length];
+        for (int i = 0; i < v.length; i++)  vs[i]= dict.get(v[i]);
+        return vs;
+    }
+
+    /**
+     * The number of pairs kept in the computed shards.
+     * @return The number of pairs.
+     */
+    public long pairs() {
+        long n= 0;
+        for (int i = 0; i < shards.length(); i++) {
+            Shard s= shards.get(i);
+            if ( s != null )  n+= s.cols.length;
+        }
+        return n;
+    }
+
+    /**
+     * Computes all the shards not computed yet.
+     * @param nthreads The number of threads.
+     * @return The {@code true} value on success.
+     */
+    public boolean precompute(int nthreads) {
+        vocabulary();
+        ExecutorService pool= Executors.newFixedThreadPool(Math.max(1, nthreads));
+        try {
+            List<Future<Shard>> tasks= new ArrayList<Future<Shard>>();
+            for (int i = 0; i < shards.length(); i++) {
+                final int code= i * shardRows;
+                tasks.add(pool.submit(new Callable<Shard>() {
+                    @Override
+                    public Shard call() {
+                        return shard(code);
+                    }
+                }));
+            }
+            for (Future<Shard> f : tasks)  f.get();
+            return true;
+        }
+        catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+            System.err.printf("\n[ERROR] WordDistanceMatrix.precompute(%d) ---> %s\n", nthreads, exc);
+            return false;
+        }
+        catch (ExecutionException exc) {
+            System.err.printf("\n[ERROR] WordDistanceMatrix.precompute(%d) ---> %s\n", nthreads, exc.getCause());
+            return false;
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Gives the shard of a code, computing it if needed.
+     */
+    private Shard shard(int code) {
+        int i= code / shardRows;
+        Shard s= shards.get(i);
+        if ( s != null )  return s;
+        vocabulary();
+        synchronized (locks[i]) {
+            s= shards.get(i);
+            if ( s == null ) {
+                s= compute(i);
+                shards.set(i, s);
+            }
+        }
+        return s;
+    }
+
+    /**
+     * Builds the word array and the length index, once.
+     */
+    private synchronized void vocabulary() {
+        if ( words != null )  return;
+        Word[] vw= new Word[size + 1];
+        int maxlen= 0;
+        for (int c = 1; c <= size; c++) {
+            vw[c]= new Word(dict.get(c));
+            maxlen= Math.max(maxlen, vw[c].length());
+        }
+        int[] start= new int[maxlen + 2];
+        for (int c = 1; c <= size; c++)  start[vw[c].length() + 1]++;
+        for (int l = 0; l <= maxlen; l++)  start[l+1]+= start[l];
+        int[] order= new int[size];
+        int[] fill= Arrays.copyOf(start, start.length);
+        for (int c = 1; c <= size; c++)  order[fill[vw[c].length()]++]= c;
+        bylen= order;
+        lenStart= start;
+        words= vw;
+    }
+
+    /**
+     * Computes the rows of a shard.
+     */
+    private Shard compute(int i) {
+        int first= i * shardRows;
+        int nrows= shardRows;
+        int[] ptr= new int[nrows + 1];
+        int[] cols= new int[16];
+        double[] vals= new double[16];
+        int[] cand= new int[size];
+        int maxlen= lenStart.length - 2;
+        int n= 0;
+        for (int r = 0; r < nrows; r++) {
+            int a= first + r;
+            ptr[r]= n;
+            if ( a < 1 || a > size )  continue;
+
+            Word wa= words[a];
+            int la= wa.length(), nc= 0;
+            for (int l = 0; l <= maxlen; l++) {
+                if ( lenStart[l] == lenStart[l+1] || !metric.mayBeWithin(la, l, threshold) )  continue;
+                System.arraycopy(bylen, lenStart[l], cand, nc, lenStart[l+1] - lenStart[l]);
+                nc+= lenStart[l+1] - lenStart[l];
+            }
+            Arrays.sort(cand, 0, nc);
+
+            for (int k = 0; k < nc; k++) {
+                int b= cand[k];
+                if ( b == a )  continue;
+                double v= metric.value(wa, words[b]);
+                if ( !metric.within(v, threshold) )  continue;
+                if ( n == cols.length ) {
+                    cols= Arrays.copyOf(cols, 2*n);
+                    vals= Arrays.copyOf(vals, 2*n);
+                }
+                cols[n]= b;
+                vals[n++]= v;
+            }
+        }
+        ptr[nrows]= n;
+        return new Shard(ptr, Arrays.copyOf(cols, n), Arrays.copyOf(vals, n));
+    }
+
+    /**
+     * Saves the computed shards to a binary file, together with the words
+     * of the dictionary, which are checked when loading.
+     * @param fname The file name.
+     * @return The {@code true} value on success.
+     */
+    public boolean save(String fname) {
+        vocabulary();
+        try {
+            DataOutputStream out= new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fname)));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(metric.name());
+                out.writeDouble(threshold);
+                out.writeInt(shardRows);
+                out.writeInt(size);
+                for (int c = 1; c <= size; c++)  out.writeUTF(words[c].toString());
+                for (int i = 0; i < shards.length(); i++) {
+                    Shard s= shards.get(i);
+                    if ( s == null )  continue;
+                    out.writeInt(i);
+                    out.writeInt(s.cols.length);
+                    for (int r = 0; r <= shardRows; r++)  out.writeInt(s.ptr[r]);
+                    for (int k = 0; k < s.cols.length; k++) {
+                        out.writeInt(s.cols[k]);
+                        out.writeDouble(s.vals[k]);
+                    }
+                }
+                out.writeInt(-1);
+            }
+            finally {
+                out.close();
+            }
+            return true;
+        }
+        catch (IOException exc) {
+            System.err.printf("\n[ERROR] WordDistanceMatrix.save(%s) ---> %s\n", fname, exc);
+            return false;
+        }
+    }
+
+    /**
+     * Loads the shards saved in a file, which must have the same metric,
+     * threshold and shard size as this table, and the same dictionary.
+     * @param fname The file name.
+     * @return The {@code true} value on success.
+     */
+    public boolean load(String fname) {
+        vocabulary();
+        try {
+            DataInputStream in= new DataInputStream(new BufferedInputStream(new FileInputStream(fname)));
+            try {
+                if ( in.readInt() != MAGIC || in.readInt() != VERSION ) {
+                    System.err.printf("\n[ERROR] WordDistanceMatrix.load(%s) ---> invalid file\n", fname);
+                    return false;
+                }
+                if ( !in.readUTF().equals(metric.name()) || in.readDouble() != threshold
+                  || in.readInt() != shardRows || in.readInt() != size ) {
+                    System.err.printf("\n[ERROR] WordDistanceMatrix.load(%s) ---> different table parameters\n", fname);
+                    return false;
+                }
+                for (int c = 1; c <= size; c++) {
+                    if ( !in.readUTF().equals(words[c].toString()) ) {
+                        System.err.printf("\n[ERROR] WordDistanceMatrix.load(%s) ---> different dictionary\n", fname);
+                        return false;
+                    }
+                }
+                for (int i= in.readInt(); i >= 0; i= in.readInt()) {
+                    int n= in.readInt();
+                    int[] ptr= new int[shardRows + 1];
+                    int[] cols= new int[n];
+                    double[] vals= new double[n];
+                    for (int r = 0; r <= shardRows; r++)  ptr[r]= in.readInt();
+                    for (int k = 0; k < n; k++) {
+                        cols[k]= in.readInt();
+                        vals[k]= in.readDouble();
+                    }
+                    shards.set(i, new Shard(ptr, cols, vals));
+                }
+            }
+            finally {
+                in.close();
+            }
+            return true;
+        }
+        catch (IOException exc) {
+            System.err.printf("\n[ERROR] WordDistanceMatrix.load(%s) ---> %s\n", fname, exc);
+            return false;
+        }
+    }
+
+
+    public static void main(String[] args) {
+        CorpusIndex dict= new CorpusIndex();
+        dict.add("the president of the united states said that the presidency would present a new presentation");
+        dict.add("presidents and vice presidents of several states presented their statements today");
+        dict.rebuild();
+
+        WordDistanceMatrix wdm= new WordDistanceMatrix(dict, Metric.COST_ALIGN, 3.0, 8);
+        wdm.precompute(2);
+        for (String w : new String[] {"president", "states", "present"}) {
+            String[] vn= wdm.neighbours(w);
+            double[] vv= wdm.neighbourValues(dict.get(w));
+            System.out.printf("%-12s", w);
+            for (int i = 0; i < vn.length; i++)  System.out.printf("  %s(%.2f)", vn[i], vv[i]);
+            System.out.println();
+        }
+        System.out.printf("pairs: %d\n", wdm.pairs());
+    }
+}
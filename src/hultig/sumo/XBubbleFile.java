@@ -0,0 +1,397 @@
+/*************************************************************************
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 2005-2012 UBI/HULTIG All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 3 only ("GPL"). You may not use this
+ * file except in compliance with the License. You can obtain a copy of
+ * the License at http://www.gnu.org/licenses/gpl.txt. See the License
+ * for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * When distributing the software, include this License Header Notice
+ * in each file. If applicable, add the following below the License
+ * Header, with the fields enclosed by brackets [] replaced by your own
+ * identifying information:
+ *
+ *       "Portions Copyrighted [year] [name of copyright owner]"
+ *************************************************************************
+ */
+package hultig.sumo;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.Vector;
+
+
+/**
+ * <p>
+ * Reads a bubble list file in the columnar binary format, written by
+ * {@link XBubbleFileWriter}, instead of the Java serialization of the
+ * whole {@link XBubbleList} object graph. The file is a header followed by
+ * blocks of bubbles, each block being memory mapped when read. A block
+ * holds the strings and POS types first used in it, which are added to
+ * the pools shared by all the following blocks, and then the bubble and
+ * word fields, each one as a column of primitive values:
+ * </p>
+ *
+ * <pre>
+ *    header: MAGIC, VERSION, FORMAT, list POS type, number of bubbles
+ *    block:  byte length, bubbles, new strings, new POS types,
+ *            words, cods and meta-tags counts,
+ *            bubble POS types, WX lengths, segment lengths,
+ *            word strings, cods lengths, meta-tags counts, POS tags,
+ *            chunk tags, frequencies, cods, meta-tags
+ * </pre>
+ *
+ * <p>
+ * All the integers are big endian, the strings are UTF-8, and -1 stands
+ * for a null reference. The words are the ones of {@code WL}, {@code WX[0]},
+ * ..., {@code WR}, bubble after bubble, and equal strings are read as the
+ * same {@code String} object.
+ * </p>
+ *
+ * <pre>
+ *    XBubbleList lxb= XBubbleFile.load("lbub.dat");
+ * </pre>
+ *
+ * <p>
+ * <b>University of Beira Interior</b> (UBI)<br />
+ * Centre For Human Language Technology and Bioinformatics (HULTIG)
+ * </p>
+ *
+ * @author J. P. Cordeiro
+ * @version 1.0
+ */
+public class XBubbleFile implements Closeable
+{
+    /**
+     * The file magic number, "HXBL".
+     */
+    public static final int MAGIC= 0x4858424C;
+    public static final int VERSION= 1;
+
+    /**
+     * The header size, in bytes.
+     */
+    static final int HEADER= 24;
+
+    /**
+     * The word string code of a null word.
+     */
+    static final int NULL_WORD= -2;
+
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final long size;
+
+    private final int format;
+    private final int postype;
+    private final long n;
+
+    /**
+     * The string and POS type pools, of the blocks read so far.
+     */
+    final ArrayList<String> strings;
+    final ArrayList<POSType> postypes;
+
+    /**
+     * The file offset of the next block, and the number of bubbles read.
+     */
+    private long next;
+    private long nread;
+
+    private final HashMap<String,ChunkTag> chunkTags;
+
+
+    /**
+     * Opens a bubble list file.
+     * @param fname The file name.
+     * @throws IOException If the file can not be read, or is not in the
+     * columnar format.
+     */
+    public XBubbleFile(String fname) throws IOException {
+        raf= new RandomAccessFile(fname, "r");
+        channel= raf.getChannel();
+        size= channel.size();
+        ByteBuffer head= ByteBuffer.allocate(HEADER);
+        while ( head.hasRemaining() && channel.read(head, head.position()) > 0 )  ;
+        head.flip();
+        if ( head.limit() < HEADER || head.getInt(0) != MAGIC ) {
+            raf.close();
+            throw new IOException("not a bubble list file: " + fname);
+        }
+        if ( head.getInt(4) != VERSION ) {
+            raf.close();
+            throw new IOException("unsupported bubble list file version: " + head.getInt(4));
+        }
+        format= head.getInt(8);
+        postype= head.getInt(12);
+        n= head.getLong(16);
+
+        strings= new ArrayList<>();
+        postypes= new ArrayList<>();
+        chunkTags= new HashMap<>();
+        for (ChunkTag t : ChunkTag.values())  chunkTags.put(t.name(), t);
+        next= HEADER;
+    }
+
+    /**
+     * Tests whether a file is in the columnar bubble list format.
+     * @param fname The file name.
+     * @return The {@code true} value if the file starts with the
+     * {@link #MAGIC MAGIC} number.
+     */
+    public static boolean isXBubbleFile(String fname) {
+        try {
+            DataInputStream in= new DataInputStream(new FileInputStream(fname));
+            try {
+                return in.readInt() == MAGIC;
+            }
+            finally {
+                in.close();
+            }
+        }
+        catch (IOException exc) {
+            return false;
+        }
+    }
+
+    /**
+     * The output format of the list, {@link XBubbleList#FORMAT}.
+     * @return The format.
+     */
+    public int getFormat() {
+        return format;
+    }
+
+    /**
+     * The number of bubbles, as recorded in the header.
+     * @return The number of bubbles.
+     */
+    public long size() {
+        return n;
+    }
+
+    /**
+     * The number of bubbles of the blocks read so far.
+     * @return The number of bubbles.
+     */
+    public long getNumRead() {
+        return nread;
+    }
+
+    /**
+     * The file offset after the last block read.
+     * @return The offset, in bytes.
+     */
+    long position() {
+        return next;
+    }
+
+    /**
+     * The POS type of the list, available once the first block is read.
+     * @return The POS type, or null.
+     */
+    public POSType getPOSType() {
+        return postype >= 0 && postype < postypes.size() ? postypes.get(postype) : null;
+    }
+
+    /**
+     * Reads the next block of bubbles. An incomplete block, at the end of
+     * an interrupted write, is ignored.
+     * @param dst The list where the bubbles are added, or null to read
+     * only the string and POS type pools.
+     * @return The {@code true} value if a block was read, and {@code false}
+     * at the end of the file.
+     * @throws IOException On a read or format error.
+     */
+    public boolean readBlock(XBubbleList dst) throws IOException {
+        if ( next + 8 > size )  return false;
+        ByteBuffer blen= ByteBuffer.allocate(8);
+        while ( blen.hasRemaining() && channel.read(blen, next + blen.position()) > 0 )  ;
+        long len= blen.getLong(0);
+        if ( len < 0 || len > Integer.MAX_VALUE || next + 8 + len > size )  return false;
+
+        MappedByteBuffer buf= channel.map(FileChannel.MapMode.READ_ONLY, next + 8, len);
+        int nb= buf.getInt();
+        int ns= buf.getInt();
+        for (int i = 0; i < ns; i++) {
+            byte[] b= new byte[buf.getInt()];
+            buf.get(b);
+            strings.add(new String(b, StandardCharsets.UTF_8));
+        }
+        int np= buf.getInt();
+        for (int i = 0; i < np; i++) {
+            String[][] tags= new String[buf.getInt()][];
+            for (int j = 0; j < tags.length; j++) {
+                int m= buf.getInt();
+                if ( m < 0 )  continue;
+                tags[j]= new String[m];
+                for (int h = 0; h < m; h++)  tags[j][h]= str(buf.getInt());
+            }
+            POSType post= new POSType(tags);
+            post.ran= new Random();
+            postypes.add(post);
+        }
+        int nw= buf.getInt();
+        int nc= buf.getInt();
+        int nm= buf.getInt();
+
+        next+= 8 + len;
+        nread+= nb;
+        if ( dst == null )  return true;
+
+        int[] post= ints(buf, nb);
+        int[] nx= ints(buf, nb);
+        int nseg= 2 * nb;
+        for (int i = 0; i < nb; i++)  if ( nx[i] > 0 )  nseg+= nx[i];
+        int[] seg= ints(buf, nseg);
+        int[] wid= ints(buf, nw);
+        int[] ncod= ints(buf, nw);
+        int[] nmeta= ints(buf, nw);
+        int[] pos= ints(buf, nw);
+        int[] chk= ints(buf, nw);
+        long[] freq= new long[nw];
+        buf.asLongBuffer().get(freq);
+        buf.position(buf.position() + 8 * nw);
+        int[] cods= ints(buf, nc);
+        int[] meta= ints(buf, nm);
+
+        Word[] words= new Word[nw];
+        for (int i = 0, c = 0, m = 0; i < nw; i++) {
+            if ( wid[i] == NULL_WORD )  continue;
+            Word w= new Word();
+            Vector<String> vmeta= null;
+            if ( nmeta[i] >= 0 ) {
+                vmeta= new Vector<>(nmeta[i]);
+                for (int k = 0; k < nmeta[i]; k++)  vmeta.add(str(meta[m++]));
+            }
+            w.restore(str(wid[i]), vmeta, pos[i] < 0 ? null : str(pos[i]).toCharArray());
+            if ( ncod[i] >= 0 ) {
+                w.cods= new int[ncod[i]];
+                System.arraycopy(cods, c, w.cods, 0, ncod[i]);
+                c+= ncod[i];
+            }
+            if ( chk[i] >= 0 ) {
+                w.CHTAG= chunkTags.get(str(chk[i]));
+                if ( w.CHTAG == null )  throw new IOException("unknown chunk tag: " + str(chk[i]));
+            }
+            w.FREQ= freq[i];
+            words[i]= w;
+        }
+
+        dst.ensureCapacity(dst.size() + nb);
+        int k= 0, s= 0;
+        for (int i = 0; i < nb; i++) {
+            Word[] wl= segment(words, k, seg[s++]);  k+= Math.max(0, seg[s - 1]);
+            Word[][] wx= null;
+            if ( nx[i] >= 0 ) {
+                wx= new Word[nx[i]][];
+                for (int j = 0; j < nx[i]; j++) {
+                    wx[j]= segment(words, k, seg[s++]);  k+= Math.max(0, seg[s - 1]);
+                }
+            }
+            Word[] wr= segment(words, k, seg[s++]);  k+= Math.max(0, seg[s - 1]);
+            XBubble xb= new XBubble(wl, wx, wr);
+            xb.POST= post[i] < 0 ? null : postypes.get(post[i]);
+            dst.add(xb);
+        }
+        return true;
+    }
+
+    /**
+     * Reads all the remaining blocks.
+     * @return The list of bubbles, with the format and POS type of the file.
+     * @throws IOException On a read or format error.
+     */
+    public XBubbleList readAll() throws IOException {
+        XBubbleList lxb= new XBubbleList();
+        while ( readBlock(lxb) )  ;
+        lxb.FORMAT= format;
+        lxb.setPOSType(getPOSType());
+        return lxb;
+    }
+
+    /**
+     * Loads a bubble list file, in the columnar format.
+     * @param fname The file name.
+     * @return The list of bubbles.
+     * @throws IOException If the file can not be read.
+     */
+    public static XBubbleList load(String fname) throws IOException {
+        XBubbleFile xbf= new XBubbleFile(fname);
+        try {
+            return xbf.readAll();
+        }
+        finally {
+            xbf.close();
+        }
+    }
+
+    private String str(int id) throws IOException {
+        if ( id < 0 )  return null;
+        if ( id >= strings.size() )  throw new IOException("invalid string code: " + id);
+        return strings.get(id);
+    }
+
+    private static Word[] segment(Word[] words, int k, int len) {
+        if ( len < 0 )  return null;
+        Word[] v= new Word[len];
+        System.arraycopy(words, k, v, 0, len);
+        return v;
+    }
+
+    private static int[] ints(ByteBuffer buf, int len) {
+        int[] v= new int[len];
+        buf.asIntBuffer().get(v);
+        buf.position(buf.position() + 4 * len);
+        return v;
+    }
+
+    /**
+     * Closes the file.
+     */
+    @Override
+    public void close() {
+        try {
+            raf.close();
+        }
+        catch (IOException exc) {
+            System.err.printf("\n[ERROR] XBubbleFile.close() ---> %s\n", exc);
+        }
+    }
+
+
+    /**
+     * Converts a bubble list file, in either format, to the columnar
+     * format, and compares the loading times of both files.
+     * @param args The input and output file names.
+     */
+    public static void main(String[] args) throws IOException {
+        if ( args.length < 2 ) {
+            System.out.println("\nSYNTAX: java hultig.sumo.XBubbleFile in.dat out.dat\n");
+            return;
+        }
+        long t= System.currentTimeMillis();
+        XBubbleList lxb= XBubbleList.loadList(args[0]);
+        if ( lxb == null )  return;
+        System.out.printf("%d bubbles loaded from %s (dt: %d ms)\n", lxb.size(), args[0], System.currentTimeMillis() - t);
+
+        if ( !lxb.save(args[1]) )  return;
+        t= System.currentTimeMillis();
+        lxb= load(args[1]);
+        System.out.printf("%d bubbles loaded from %s (dt: %d ms)\n", lxb.size(), args[1], System.currentTimeMillis() - t);
+    }
+}
@@ -0,0 +1,386 @@
+/*************************************************************************
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 2005-2012 UBI/HULTIG All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 3 only ("GPL"). You may not use this
+ * file except in compliance with the License. You can obtain a copy of
+ * the License at http://www.gnu.org/licenses/gpl.txt. See the License
+ * for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * When distributing the software, include this License Header Notice
+ * in each file. If applicable, add the following below the License
+ * Header, with the fields enclosed by brackets [] replaced by your own
+ * identifying information:
+ *
+ *       "Portions Copyrighted [year] [name of copyright owner]"
+ *************************************************************************
+ */
+package hultig.sumo;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Vector;
+
+
+/**
+ * <p>
+ * Writes a bubble list file in the columnar binary format read by
+ * {@link XBubbleFile}. The bubbles are written in blocks of
+ * {@link #BLOCK_SIZE BLOCK_SIZE} bubbles, as they are added, and the
+ * header is updated after each block, so that a file may be extended
+ * later, by opening it again for appending, or be read while it grows.
+ * The POS types are compared by their content, so that equal POS types
+ * are written only once.
+ * </p>
+ *
+ * <pre>
+ *    XBubbleFileWriter xbw= new XBubbleFileWriter("lbub.dat", XBubbleList.ARFF, post);
+ *    for (...)  xbw.add(xb);
+ *    xbw.close();
+ * </pre>
+ *
+ * <p>
+ * <b>University of Beira Interior</b> (UBI)<br />
+ * Centre For Human Language Technology and Bioinformatics (HULTIG)
+ * </p>
+ *
+ * @author J. P. Cordeiro
+ * @version 1.0
+ */
+public class XBubbleFileWriter implements Closeable
+{
+    /**
+     * The number of bubbles written in each block.
+     */
+    public static int BLOCK_SIZE= 4096;
+
+    private RandomAccessFile raf;
+    private final FileChannel channel;
+    private long end;
+    private long n;
+
+    /**
+     * The string and POS type pools, and the items not yet written.
+     */
+    private final HashMap<String,Integer> strings;
+    private final ArrayList<String> newStrings;
+    private final ArrayList<POSType> postypes;
+    private final IdentityHashMap<POSType,Integer> postypeIds;
+    private int nwritten;
+
+    private final ArrayList<XBubble> pending;
+
+
+    /**
+     * Creates a bubble list file.
+     * @param fname The file name.
+     * @param format The output format of the list, {@link XBubbleList#FORMAT}.
+     * @param postype The POS type of the list, or null.
+     * @throws IOException If the file can not be written.
+     */
+    public XBubbleFileWriter(String fname, int format, POSType postype) throws IOException {
+        strings= new HashMap<>();
+        newStrings= new ArrayList<>();
+        postypes= new ArrayList<>();
+        postypeIds= new IdentityHashMap<>();
+        pending= new ArrayList<>();
+
+        raf= new RandomAccessFile(fname, "rw");
+        channel= raf.getChannel();
+        raf.setLength(0);
+        writeHeader(format, postypeId(postype));
+    }
+
+    /**
+     * Opens a bubble list file for appending, or creates it, with the
+     * {@link XBubbleList#ARFF ARFF} format and no POS type, if it does not
+     * exist. An incomplete block, at the end of an interrupted write, is
+     * discarded.
+     * @param fname The file name.
+     * @throws IOException If the file can not be written, or is not in the
+     * columnar format.
+     */
+    public XBubbleFileWriter(String fname) throws IOException {
+        strings= new HashMap<>();
+        newStrings= new ArrayList<>();
+        postypes= new ArrayList<>();
+        postypeIds= new IdentityHashMap<>();
+        pending= new ArrayList<>();
+
+        if ( !new File(fname).exists() ) {
+            raf= new RandomAccessFile(fname, "rw");
+            channel= raf.getChannel();
+            writeHeader(XBubbleList.ARFF, -1);
+            return;
+        }
+
+        XBubbleFile xbf= new XBubbleFile(fname);
+        try {
+            while ( xbf.readBlock(null) )  ;
+            for (int i = 0; i < xbf.strings.size(); i++)  strings.put(xbf.strings.get(i), i);
+            postypes.addAll(xbf.postypes);
+            nwritten= postypes.size();
+            end= xbf.position();
+            n= xbf.getNumRead();
+        }
+        finally {
+            xbf.close();
+        }
+        raf= new RandomAccessFile(fname, "rw");
+        channel= raf.getChannel();
+        raf.setLength(end);
+        writeCount();
+    }
+
+    /**
+     * The number of bubbles written, or waiting in the current block.
+     * @return The number of bubbles.
+     */
+    public long size() {
+        return n + pending.size();
+    }
+
+    /**
+     * Adds a bubble, written when its block is complete.
+     * @param xb The bubble.
+     * @throws IOException If the file can not be written.
+     */
+    public void add(XBubble xb) throws IOException {
+        pending.add(xb);
+        if ( pending.size() >= BLOCK_SIZE )  flush();
+    }
+
+    /**
+     * Adds all the bubbles of a list.
+     * @param lxb The list.
+     * @throws IOException If the file can not be written.
+     */
+    public void add(XBubbleList lxb) throws IOException {
+        for (XBubble xb : lxb)  add(xb);
+    }
+
+    /**
+     * Writes the bubbles added so far, as a block, and updates the header.
+     * @throws IOException If the file can not be written.
+     */
+    public void flush() throws IOException {
+        if ( pending.isEmpty() && newStrings.isEmpty() && nwritten == postypes.size() )  return;
+
+        int nb= pending.size();
+        Ints post= new Ints(nb);
+        Ints nx= new Ints(nb);
+        Ints seg= new Ints(3 * nb);
+        ArrayList<Word> words= new ArrayList<>(16 * nb);
+        for (XBubble xb : pending) {
+            post.add(postypeId(xb.POST));
+            nx.add(xb.WX == null ? -1 : xb.WX.length);
+            segment(xb.WL, seg, words);
+            if ( xb.WX != null )  for (Word[] wx : xb.WX)  segment(wx, seg, words);
+            segment(xb.WR, seg, words);
+        }
+
+        int nw= words.size();
+        Ints wid= new Ints(nw), ncod= new Ints(nw), nmeta= new Ints(nw), pos= new Ints(nw), chk= new Ints(nw);
+        Ints cods= new Ints(nw), meta= new Ints(nw);
+        long[] freq= new long[nw];
+        for (int i = 0; i < nw; i++) {
+            Word w= words.get(i);
+            if ( w == null ) {
+                wid.add(XBubbleFile.NULL_WORD);
+                ncod.add(-1);
+                nmeta.add(-1);
+                pos.add(-1);
+                chk.add(-1);
+                continue;
+            }
+            wid.add(stringId(w.toString()));
+            ncod.add(w.cods == null ? -1 : w.cods.length);
+            if ( w.cods != null )  for (int c : w.cods)  cods.add(c);
+            Vector<String> vmeta= w.metaList();
+            nmeta.add(vmeta == null ? -1 : vmeta.size());
+            if ( vmeta != null )  for (String m : vmeta)  meta.add(stringId(m));
+            char[] vpos= w.posChars();
+            pos.add(vpos == null ? -1 : stringId(new String(vpos)));
+            chk.add(w.CHTAG == null ? -1 : stringId(w.CHTAG.name()));
+            freq[i]= w.FREQ;
+        }
+
+        //the POS type strings.
+        for (int i = nwritten; i < postypes.size(); i++) {
+            for (String[] e : postypes.get(i))  if ( e != null )  for (String s : e)  stringId(s);
+        }
+
+        byte[][] vs= new byte[newStrings.size()][];
+        long len= 4L * 6;
+        for (int i = 0; i < vs.length; i++) {
+            vs[i]= newStrings.get(i).getBytes(StandardCharsets.UTF_8);
+            len+= 4 + vs[i].length;
+        }
+        for (int i = nwritten; i < postypes.size(); i++) {
+            len+= 4;
+            for (String[] e : postypes.get(i))  len+= 4 + (e == null ? 0 : 4L * e.length);
+        }
+        len+= 4L * (post.n + nx.n + seg.n + 5L * nw + cods.n + meta.n) + 8L * nw;
+        if ( len > Integer.MAX_VALUE )
+            throw new IOException("Bubble block too big: " + len + " bytes, BLOCK_SIZE= " + BLOCK_SIZE);
+
+        ByteBuffer buf= ByteBuffer.allocate((int) (8 + len));
+        buf.putLong(len);
+        buf.putInt(nb);
+        buf.putInt(vs.length);
+        for (byte[] b : vs) {
+            buf.putInt(b.length);
+            buf.put(b);
+        }
+        buf.putInt(postypes.size() - nwritten);
+        for (int i = nwritten; i < postypes.size(); i++) {
+            POSType pt= postypes.get(i);
+            buf.putInt(pt.size());
+            for (String[] e : pt) {
+                buf.putInt(e == null ? -1 : e.length);
+                if ( e != null )  for (String s : e)  buf.putInt(stringId(s));
+            }
+        }
+        buf.putInt(nw);
+        buf.putInt(cods.n);
+        buf.putInt(meta.n);
+        post.put(buf);
+        nx.put(buf);
+        seg.put(buf);
+        wid.put(buf);
+        ncod.put(buf);
+        nmeta.put(buf);
+        pos.put(buf);
+        chk.put(buf);
+        buf.asLongBuffer().put(freq);
+        buf.position(buf.position() + 8 * nw);
+        cods.put(buf);
+        meta.put(buf);
+        buf.flip();
+
+        write(buf, end);
+        end+= buf.limit();
+        n+= nb;
+        pending.clear();
+        newStrings.clear();
+        nwritten= postypes.size();
+        writeCount();
+    }
+
+    /**
+     * Writes the pending bubbles and closes the file.
+     * @throws IOException If the file can not be written.
+     */
+    @Override
+    public void close() throws IOException {
+        if ( raf == null )  return;
+        try {
+            flush();
+        }
+        finally {
+            raf.close();
+            raf= null;
+        }
+    }
+
+    private void segment(Word[] v, Ints seg, ArrayList<Word> words) {
+        seg.add(v == null ? -1 : v.length);
+        if ( v != null )  words.addAll(Arrays.asList(v));
+    }
+
+    private int stringId(String s) {
+        if ( s == null )  return -1;
+        Integer id= strings.get(s);
+        if ( id == null ) {
+            id= strings.size();
+            strings.put(s, id);
+            newStrings.add(s);
+        }
+        return id;
+    }
+
+    /**
+     * The index of a POS type, added to the pool if it is a new one.
+     */
+    private int postypeId(POSType pt) {
+        if ( pt == null )  return -1;
+        Integer id= postypeIds.get(pt);
+        if ( id != null )  return id;
+        for (int i = 0; i < postypes.size() && id == null; i++) {
+            if ( equal(pt, postypes.get(i)) )  id= i;
+        }
+        if ( id == null ) {
+            id= postypes.size();
+            postypes.add(pt);
+        }
+        postypeIds.put(pt, id);
+        return id;
+    }
+
+    private static boolean equal(POSType a, POSType b) {
+        if ( a.size() != b.size() )  return false;
+        for (int i = 0; i < a.size(); i++) {
+            if ( !Arrays.equals(a.get(i), b.get(i)) )  return false;
+        }
+        return true;
+    }
+
+    private void writeHeader(int format, int postype) throws IOException {
+        ByteBuffer head= ByteBuffer.allocate(XBubbleFile.HEADER);
+        head.putInt(XBubbleFile.MAGIC);
+        head.putInt(XBubbleFile.VERSION);
+        head.putInt(format);
+        head.putInt(postype);
+        head.putLong(0L);
+        head.flip();
+        write(head, 0);
+        end= XBubbleFile.HEADER;
+    }
+
+    private void writeCount() throws IOException {
+        ByteBuffer b= ByteBuffer.allocate(8);
+        b.putLong(n);
+        b.flip();
+        write(b, 16);
+    }
+
+    private void write(ByteBuffer buf, long position) throws IOException {
+        while ( buf.hasRemaining() )  position+= channel.write(buf, position);
+    }
+
+
+    /**
+     * A growable array of integers.
+     */
+    private static final class Ints
+    {
+        int[] v;
+        int n;
+
+        Ints(int capacity) {
+            v= new int[Math.max(capacity, 16)];
+        }
+
+        void add(int x) {
+            if ( n == v.length )  v= Arrays.copyOf(v, 2 * n);
+            v[n++]= x;
+        }
+
+        void put(ByteBuffer buf) {
+            buf.asIntBuffer().put(v, 0, n);
+            buf.position(buf.position() + 4 * n);
+        }
+    }
+}
@@ -123,6 +123,11 @@ public class XBubbleList extends ArrayList<XBubble> implements Serializable, Com
     public POSType getPOSType() {
         return postype;
     }
+
+
+    public void setPOSType(POSType pos) {
+        postype= pos;
+    }
     
     
     /**
@@ -182,11 +187,62 @@ public class XBubbleList extends ArrayList<XBubble> implements Serializable, Com
     
     
     /**
-     * Grava este objecto num ficheiro.
+     * Grava este objecto num ficheiro, no formato binrio por colunas
+     * lido por {@link XBubbleFile}.
      * @param fname Nome/path do ficheiro de output.
      * @return
      */
     public boolean save(String fname) {
+        try  {
+            XBubbleFileWriter xbw= new XBubbleFileWriter(fname, FORMAT, postype);
+            try {
+                xbw.add(this);
+            }
+            finally {
+                xbw.close();
+            }
+        }
+        catch (Exception e)  {
+            System.out.println("ERROR: "+e);
+            return false;
+        }
+
+        return true;
+    }
+
+
+    /**
+     * Acrescenta as bolhas desta lista a um ficheiro no formato binrio por
+     * colunas, criado se ainda no existir.
+     * @param fname Nome/path do ficheiro de output.
+     * @return
+     */
+    public boolean append(String fname) {
+        try  {
+            XBubbleFileWriter xbw= new XBubbleFileWriter(fname);
+            try {
+                xbw.add(this);
+            }
+            finally {
+                xbw.close();
+            }
+        }
+        catch (Exception e)  {
+            System.out.println("ERROR: "+e);
+            return false;
+        }
+
+        return true;
+    }
+
+
+    /**
+     * Grava este objecto num ficheiro, com a serializao Java, o formato
+     * anterior ao de {@link XBubbleFile}.
+     * @param fname Nome/path do ficheiro de output.
+     * @return
+     */
+    public boolean saveSerialized(String fname) {
         try  {
             FileOutputStream ostream= new FileOutputStream(fname);
             ObjectOutputStream oos= new ObjectOutputStream(ostream);
@@ -271,8 +327,14 @@ public class XBubbleList extends ArrayList<XBubble> implements Serializable, Com
     }
     
     
+    /**
+     * Carrega uma lista de um ficheiro no formato binrio por colunas, ou
+     * serializado, do formato anterior.
+     */
     public static XBubbleList loadList(String fname) {
         try {
+            if ( XBubbleFile.isXBubbleFile(fname) )  return XBubbleFile.load(fname);
+
             FileInputStream istream= new FileInputStream(fname);
             ObjectInputStream ois= new ObjectInputStream(istream);
 
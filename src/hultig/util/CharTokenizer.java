@@ -0,0 +1,156 @@
+/*************************************************************************
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 2005-2012 UBI/HULTIG All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 3 only ("GPL"). You may not use this
+ * file except in compliance with the License. You can obtain a copy of
+ * the License at http://www.gnu.org/licenses/gpl.txt. See the License
+ * for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * When distributing the software, include this License Header Notice
+ * in each file. If applicable, add the following below the License
+ * Header, with the fields enclosed by brackets [] replaced by your own
+ * identifying information:
+ *
+ *       "Portions Copyrighted [year] [name of copyright owner]"
+ *************************************************************************
+ */
+package hultig.util;
+
+
+/**
+ * <p>
+ * Splits a {@link CharSequence} in tokens separated by runs of delimiter
+ * characters, giving the token offsets rather than substrings, so that a
+ * line may be tokenized without allocation. The tokens are the same as the
+ * non empty strings given by {@code s.split("[delimiters]+")}. A tokenizer
+ * is reused from line to line, and is not thread safe.
+ * </p>
+ *
+ * <pre>
+ *    CharTokenizer tok= new CharTokenizer(" ,.;:");
+ *    int n= tok.split(line);
+ *    for (int i = 0; i &lt; n; i++)
+ *        ... line.charAt(tok.start(i)) ... tok.token(i) ...
+ * </pre>
+ *
+ * <p>
+ * <b>University of Beira Interior</b> (UBI)<br />
+ * Centre For Human Language Technology and Bioinformatics (HULTIG)
+ * </p>
+ *
+ * @author J. P. Cordeiro
+ * @version 1.0
+ */
+public class CharTokenizer
+{
+    private final boolean[] latin;
+    private final String delimiters;
+
+    private CharSequence s;
+    private int[] spans;
+    private int n;
+
+
+    /**
+     * Creates a tokenizer for a given set of delimiter characters.
+     * @param delimiters The delimiter characters.
+     */
+    public CharTokenizer(String delimiters) {
+        this.delimiters= delimiters;
+        latin= new boolean[256];
+        for (int i = 0; i < delimiters.length(); i++) {
+            char c= delimiters.charAt(i);
+            if ( c < 256 )  latin[c]= true;
+        }
+        spans= new int[64];
+    }
+
+    /**
+     * Tests whether a character is a delimiter.
+     * @param c The character.
+     * @return The {@code true} value if {@code c} is a delimiter.
+     */
+    public boolean isDelimiter(char c) {
+        return c < 256 ? latin[c] : delimiters.indexOf(c) >= 0;
+    }
+
+    /**
+     * Splits a character sequence, which is kept until the next split.
+     * @param s The character sequence.
+     * @return The number of tokens.
+     */
+    public int split(CharSequence s) {
+        this.s= s;
+        n= 0;
+        int a= -1;
+        for (int i = 0, len = s.length(); i <= len; i++) {
+            if ( i < len && !isDelimiter(s.charAt(i)) ) {
+                if ( a < 0 )  a= i;
+            }
+            else if ( a >= 0 ) {
+                add(a, i);
+                a= -1;
+            }
+        }
+        return n;
+    }
+
+    private void add(int a, int b) {
+        if ( 2 * n + 2 > spans.length ) {
+            int[] v= new int[2 * spans.length];
+            System.arraycopy(spans, 0, v, 0, spans.length);
+            spans= v;
+        }
+        spans[2 * n]= a;
+        spans[2 * n + 1]= b;
+        n++;
+    }
+
+    /**
+     * The number of tokens of the last split.
+     * @return The number of tokens.
+     */
+    public int size() {
+        return n;
+    }
+
+    /**
+     * The offset of a token, in the last split sequence.
+     * @param i The token index.
+     * @return The offset of its first character.
+     */
+    public int start(int i) {
+        return spans[2 * i];
+    }
+
+    /**
+     * The end offset of a token, in the last split sequence.
+     * @param i The token index.
+     * @return The offset after its last character.
+     */
+    public int end(int i) {
+        return spans[2 * i + 1];
+    }
+
+    /**
+     * A view of a token.
+     * @param i The token index.
+     * @return The token, as a view of the last split sequence.
+     */
+    public CharSequence get(int i) {
+        return s.subSequence(spans[2 * i], spans[2 * i + 1]);
+    }
+
+    /**
+     * A token, as a new string.
+     * @param i The token index.
+     * @return The token.
+     */
+    public String token(int i) {
+        return s.subSequence(spans[2 * i], spans[2 * i + 1]).toString();
+    }
+}
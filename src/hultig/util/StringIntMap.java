@@ -0,0 +1,265 @@
+/*************************************************************************
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 2005-2011 UBI/HULTIG All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 3 only ("GPL"). You may not use this
+ * file except in compliance with the License. You can obtain a copy of
+ * the License at http://www.gnu.org/licenses/gpl.txt. See the License
+ * for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * When distributing the software, include this License Header Notice
+ * in each file. If applicable, add the following below the License
+ * Header, with the fields enclosed by brackets [] replaced by your own
+ * identifying information:
+ *
+ *       "Portions Copyrighted [year] [name of copyright owner]"
+ *************************************************************************
+ */
+package hultig.util;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Comparator;
+
+
+/**
+ * <p>
+ * An append-only symbol table, mapping strings into dense integer
+ * identifiers (0, 1, 2, ...) by insertion order, and counting the
+ * frequency of each string. Once a string gets an identifier, that
+ * identifier never changes. The table is implemented with primitive
+ * arrays: an open addressing hash table (linear probing) of identifiers,
+ * and an identifier indexed array of strings, thus avoiding any boxing.
+ * </p>
+ *
+ * <p>
+ * This class is not synchronized.
+ * </p>
+ *
+ * <p>
+ * <b>University of Beira Interior</b> (UBI)<br />
+ * Centre For Human Language Technology and Bioinformatics (HULTIG)
+ * </p>
+ *
+ * @author J. P. Cordeiro
+ * @version 1.0
+ */
+public class StringIntMap implements Serializable
+{
+    public static final long serialVersionUID = -2953387201946318412L;
+
+    /**
+     * Identifier indexed table of strings.
+     */
+    private String[] keys;
+
+    /**
+     * Identifier indexed table of frequencies.
+     */
+    private int[] counts;
+
+    /**
+     * The open addressing table. Each slot holds an identifier plus one,
+     * with zero marking an empty slot.
+     */
+    private int[] slots;
+
+    /**
+     * The number of strings in this table.
+     */
+    private int size;
+
+
+    /**
+     * Creates an empty table.
+     */
+    public StringIntMap() {
+        this(1024);
+    }
+
+    /**
+     * Creates an empty table, prepared to receive a given number of
+     * strings without being resized.
+     * @param capacity The expected number of strings.
+     */
+    public StringIntMap(int capacity) {
+        if ( capacity < 16 )  capacity= 16;
+        keys= new String[capacity];
+        counts= new int[capacity];
+        slots= new int[tableSize(capacity)];
+        size= 0;
+    }
+
+    private static int tableSize(int capacity) {
+        int n= Integer.highestOneBit(capacity) << 2;
+        return n < 0 ? 1 << 30 : n;
+    }
+
+    private static int hash(String s) {
+        int h= s.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Removes all strings from this table.
+     */
+    public void clear() {
+        Arrays.fill(keys, 0, size, null);
+        Arrays.fill(counts, 0, size, 0);
+        Arrays.fill(slots, 0);
+        size= 0;
+    }
+
+    /**
+     * The number of strings in this table.
+     * @return The table size.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gives the identifier of a given string.
+     * @param key The string.
+     * @return The identifier or -1 if the string is not in this table.
+     */
+    public int get(String key) {
+        int mask= slots.length - 1;
+        for (int k= hash(key) & mask; ; k= (k+1) & mask) {
+            int id= slots[k] - 1;
+            if ( id < 0 )  return -1;
+            if ( keys[id].equals(key) )  return id;
+        }
+    }
+
+    /**
+     * Tests whether a given string belongs to this table.
+     * @param key The string.
+     * @return The {@code true} value if found.
+     */
+    public boolean contains(String key) {
+        return get(key) >= 0;
+    }
+
+    /**
+     * Adds a string to this table, with zero frequency, if it is not
+     * already there.
+     * @param key The string.
+     * @return The string identifier.
+     */
+    public int put(String key) {
+        return add(key, 0);
+    }
+
+    /**
+     * Adds a given amount to the frequency of a string. If the string
+     * is new it receives the next free identifier.
+     * @param key The string.
+     * @param n The frequency increment.
+     * @return The string identifier.
+     */
+    public int add(String key, int n) {
+        int mask= slots.length - 1;
+        int k= hash(key) & mask;
+        for (; ; k= (k+1) & mask) {
+            int id= slots[k] - 1;
+            if ( id < 0 )  break;
+            if ( keys[id].equals(key) ) {
+                counts[id]+= n;
+                return id;
+            }
+        }
+
+        if ( size == keys.length ) {
+            keys= Arrays.copyOf(keys, 2*size);
+            counts= Arrays.copyOf(counts, 2*size);
+        }
+        int id= size++;
+        keys[id]= key;
+        counts[id]= n;
+        slots[k]= id+1;
+        if ( 2*size > slots.length )  rehash();
+        return id;
+    }
+
+    private void rehash() {
+        int[] vs= new int[2*slots.length];
+        int mask= vs.length - 1;
+        for (int id = 0; id < size; id++) {
+            int k= hash(keys[id]) & mask;
+            while ( vs[k] != 0 )  k= (k+1) & mask;
+            vs[k]= id+1;
+        }
+        slots= vs;
+    }
+
+    /**
+     * Gives the string with a given identifier.
+     * @param id The identifier.
+     * @return The string or null, if the identifier is out of range.
+     */
+    public String key(int id) {
+        if ( id < 0 || id >= size )  return null;
+        return keys[id];
+    }
+
+    /**
+     * Gives the frequency of the string with a given identifier.
+     * @param id The identifier.
+     * @return The frequency, or -1 if the identifier is out of range.
+     */
+    public int count(int id) {
+        if ( id < 0 || id >= size )  return -1;
+        return counts[id];
+    }
+
+    /**
+     * Gives the frequency of a given string.
+     * @param key The string.
+     * @return The frequency, or -1 if not found.
+     */
+    public int count(String key) {
+        int id= get(key);
+        return id < 0 ? -1 : counts[id];
+    }
+
+    /**
+     * Sums the frequencies of all strings.
+     * @return The sum.
+     */
+    public long sum() {
+        long s= 0L;
+        for (int id = 0; id < size; id++)  s+= counts[id];
+        return s;
+    }
+
+    /**
+     * Gives the strings of this table in identifier order.
+     * @return A new array with all strings.
+     */
+    public String[] keys() {
+        return Arrays.copyOf(keys, size);
+    }
+
+    /**
+     * Gives the identifiers ordered by the lexicographic order of
+     * their strings.
+     * @return A new array of identifiers.
+     */
+    public int[] sortedIds() {
+        Integer[] vI= new Integer[size];
+        for (int id = 0; id < size; id++)  vI[id]= id;
+        Arrays.sort(vI, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return keys[a].compareTo(keys[b]);
+            }
+        });
+        int[] v= new int[size];
+        for (int i = 0; i < size; i++)  v[i]= vI[i];
+        return v;
+    }
+}
@@ -0,0 +1,450 @@
+/*************************************************************************
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 2005-2012 UBI/HULTIG All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 3 only ("GPL"). You may not use this
+ * file except in compliance with the License. You can obtain a copy of
+ * the License at http://www.gnu.org/licenses/gpl.txt. See the License
+ * for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * When distributing the software, include this License Header Notice
+ * in each file. If applicable, add the following below the License
+ * Header, with the fields enclosed by brackets [] replaced by your own
+ * identifying information:
+ *
+ *       "Portions Copyrighted [year] [name of copyright owner]"
+ *************************************************************************
+ */
+package hultig.util;
+
+
+/**
+ * <p>
+ * The string kernels behind the lexical word metrics: the <i>Levenshtein
+ * Distance</i>, the longest common substring, and the prefix and suffix
+ * weighted distances ({@code distlex}). They are called for every cell of
+ * the alignment matrices, so all of them work directly over the string
+ * characters, without copying them into new arrays, and keep their masks
+ * and matrix rows in per thread buffers, which only grow. The bit-parallel
+ * <i>Levenshtein Distance</i> allocates the masks of the pattern characters
+ * above 255, if there are any, and the banded one a small view of the two
+ * strings.
+ * </p>
+ *
+ * <p>
+ * The longest common substring of a word with at most 64 characters is
+ * found by a bit-parallel method, in {@code O(n L)} word operations, for a
+ * longest substring with {@code L} characters. Longer strings are scanned
+ * along the diagonals of the comparison matrix, keeping only the current
+ * run length, and a diagonal is abandoned as soon as it can not give a
+ * longer substring. The <i>Levenshtein Distance</i> uses the
+ * bit-parallel algorithm of Myers (1999), when the shortest string has at
+ * most 64 characters, and a band of two rolling rows otherwise. The banded
+ * kernel also compares other sequences, given as {@link Symbols}, as the
+ * words of two sentences.
+ * </p>
+ *
+ * <p>
+ * <b>University of Beira Interior</b> (UBI)<br />
+ * Centre For Human Language Technology and Bioinformatics (HULTIG)
+ * </p>
+ *
+ * @author J. P. Cordeiro
+ * @version 1.0
+ */
+public final class StringKernel
+{
+    private StringKernel() {
+    }
+
+    /**
+     * The length of the longest common substring of two strings.
+     * @param a One string.
+     * @param b The other string.
+     * @return The number of characters of the longest common substring.
+     */
+    public static int lcsubstr(String a, String b) {
+        int n= a.length();
+        int m= b.length();
+        if ( n <= m ) {
+            if ( n <= 64 && latin(a) )  return lcsbits(a, b);
+        }
+        else {
+            if ( m <= 64 && latin(b) )  return lcsbits(b, a);
+        }
+        return lcsdiag(a, b);
+    }
+
+    private static boolean latin(String s) {
+        for (int i = 0; i < s.length(); i++)
+            if ( s.charAt(i) >= 256 )  return false;
+        return true;
+    }
+
+    /**
+     * Bit-parallel longest common substring, where the pattern {@code p}
+     * has at most 64 characters, all below 256. For each position {@code j}
+     * of the text, the mask {@code eq[j]} marks where the pattern has the
+     * character {@code t[j]}, and a common substring of length {@code L}
+     * ends at {@code j} if the masks of the last {@code L} positions,
+     * shifted by their distance to {@code j}, have some common bit.
+     */
+    private static int lcsbits(String p, String t) {
+        int m= p.length();
+        int n= t.length();
+        long[] peq= PEQ.get();
+        for (int i = 0; i < m; i++)  peq[p.charAt(i)]|= 1L << i;
+
+        long[] eq= EQ.get();
+        if ( eq.length < n )  EQ.set(eq= new long[Math.max(n, 2*eq.length)]);
+        int best= 0;
+        for (int j = 0; j < n && best < m; j++) {
+            char c= t.charAt(j);
+            eq[j]= c < 256 ? peq[c] : 0L;
+            while ( best < m && best <= j ) {
+                long x= eq[j];
+                for (int l = 1; l <= best && x != 0; l++)  x&= eq[j-l] << l;
+                if ( x == 0 )  break;
+                best++;
+            }
+        }
+
+        for (int i = 0; i < m; i++)  peq[p.charAt(i)]= 0L;
+        return best;
+    }
+
+    /**
+     * Longest common substring along the diagonals, for any strings.
+     */
+    private static int lcsdiag(String a, String b) {
+        int n= a.length();
+        int m= b.length();
+        int max= Math.min(n, m);
+        int best= 0;
+
+        // diagonals from the main one outwards, where they are longer.
+        for (int d = 0, nd = 2*Math.max(n, m); d < nd && best < max; d++) {
+            int off= (d & 1) == 0 ? d >> 1 : -((d + 1) >> 1);
+            if ( off >= n || -off >= m )  continue;
+            int i= Math.max(0, off);
+            int j= Math.max(0, -off);
+            int len= Math.min(n - i, m - j);
+            if ( len <= best )  continue;
+
+            int run= 0;
+            for (int e = i + len; i < e; i++, j++) {
+                if ( a.charAt(i) == b.charAt(j) ) {
+                    if ( ++run > best )  best= run;
+                }
+                else {
+                    if ( e - i - 1 <= best )  break;
+                    run= 0;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * The longest common substring of two strings, divided by the length
+     * of the longest one, as in {@code Word.distSeqMax}.
+     * @param a One string.
+     * @param b The other string.
+     * @return The normalized value, in [0,1].
+     */
+    public static double distSeqMax(String a, String b) {
+        return (double) lcsubstr(a, b) / Math.max(a.length(), b.length());
+    }
+
+    /**
+     * The word substitution cost used by the aligners: the <i>Edit
+     * Distance</i> divided by the normalized maximum common sequence
+     * (plus 0.01).
+     * @param a One string.
+     * @param b The other string.
+     * @return The cost, in [0, +00[.
+     */
+    public static double costAlign(String a, String b) {
+        return levenshtein(a, b) / (0.01 + distSeqMax(a, b));
+    }
+
+    /**
+     * A lexical distance where the character differences weight less as
+     * they get farther from the word start: the {@code k}-th position
+     * weights {@code 1/q^k}.
+     * @param a One string, or null.
+     * @param b The other string, or null.
+     * @param q The weight ratio.
+     * @return The distance.
+     */
+    public static float distlex(String a, String b, float q) {
+        if ( a == null || b == null )  return a == null ? (b == null ? 0 : b.length()) : a.length();
+
+        int na= a.length(), nb= b.length();
+        int n= Math.min(na, nb), m= Math.max(na, nb);
+        float dist= 0, d= 1;
+        int k= 0;
+        for (; k < n; k++) {
+            if ( a.charAt(k) != b.charAt(k) )  dist+= 1/d;
+            d= d*q;
+        }
+        for (; k < m; k++) {
+            dist+= 1/d;
+            d= d*q;
+        }
+        return dist;
+    }
+
+    /**
+     * The same distance as {@link #distlex(String, String, float)}, but
+     * weighting the differences from the word end.
+     * @param a One string, or null.
+     * @param b The other string, or null.
+     * @param q The weight ratio.
+     * @return The distance.
+     */
+    public static float distlexSuffix(String a, String b, float q) {
+        if ( a == null || b == null )  return a == null ? (b == null ? 0 : b.length()) : a.length();
+
+        int na= a.length(), nb= b.length();
+        int n= Math.min(na, nb), m= Math.max(na, nb);
+        float dist= 0, d= 1;
+        int k= 0;
+        for (; k < n; k++) {
+            if ( a.charAt(na-k-1) != b.charAt(nb-k-1) )  dist+= 1/d;
+            d= d*q;
+        }
+        for (; k < m; k++) {
+            dist+= 1/d;
+            d= d*q;
+        }
+        return dist;
+    }
+
+    /**
+     * The <i>Levenshtein Distance</i> of two strings.
+     * @param s One string.
+     * @param t The other string.
+     * @return The minimum number of insertions, deletions and substitutions.
+     */
+    public static int levenshtein(String s, String t) {
+        int n= s.length();
+        int m= t.length();
+
+        if (n == 0)  return m;
+        if (m == 0)  return n;
+
+        if ( n <= m ) {
+            if ( n <= 64 )  return myers(s, t, m);
+        }
+        else {
+            if ( m <= 64 )  return myers(t, s, n);
+        }
+        return banded(s, t, Math.max(n, m));
+    }
+
+    /**
+     * A thresholded <i>Levenshtein Distance</i>. The computation stops as
+     * soon as the distance is known to exceed {@code k}, and for longer
+     * strings only a diagonal band of width {@code 2k+1} is computed.
+     * @param s One string.
+     * @param t The other string.
+     * @param k The maximum distance of interest.
+     * @return The distance, if it is at most {@code k}, and {@code k+1}
+     * otherwise.
+     */
+    public static int levenshtein(String s, String t, int k) {
+        int n= s.length();
+        int m= t.length();
+        if ( k < 0 )  return 0;
+        if ( Math.abs(n-m) > k )  return k+1;
+        if ( n == 0 || m == 0 )  return Math.max(n, m);
+
+        int maxk= Math.max(n, m);
+        if ( k >= maxk )  return levenshtein(s, t);
+        if ( n <= m ) {
+            if ( n <= 64 )  return myers(s, t, k);
+        }
+        else {
+            if ( m <= 64 )  return myers(t, s, k);
+        }
+        return banded(s, t, k);
+    }
+
+    /**
+     * Two sequences whose symbols are compared by position, for the
+     * <i>Edit Distance</i> of sequences other than strings.
+     */
+    public interface Symbols
+    {
+        /**
+         * Tests whether two symbols are equal. It must not call the
+         * kernels of this class, whose buffers are in use.
+         * @param i The position in the first sequence, from 0.
+         * @param j The position in the second sequence, from 0.
+         * @return The {@code true} value for equal symbols.
+         */
+        boolean same(int i, int j);
+    }
+
+    /**
+     * A thresholded <i>Levenshtein Distance</i> of two sequences of
+     * symbols, over a diagonal band of width {@code 2k+1}, stopping as soon
+     * as the distance is known to exceed {@code k}.
+     * @param n The length of the first sequence.
+     * @param m The length of the second sequence.
+     * @param eq The symbol comparison.
+     * @param k The maximum distance of interest.
+     * @return The distance, if it is at most {@code k}, and {@code k+1}
+     * otherwise.
+     */
+    public static int levenshtein(int n, int m, Symbols eq, int k) {
+        if ( k < 0 )  return 0;
+        if ( k > Math.max(n, m) )  k= Math.max(n, m);
+        if ( Math.abs(n-m) > k )  return k+1;
+        if ( n == 0 || m == 0 )  return Math.max(n, m);
+        return banded(n, m, eq, k);
+    }
+
+    /**
+     * Per thread table of character masks for the bit-parallel algorithm,
+     * for characters below 256. It is cleared after each use.
+     */
+    private static final ThreadLocal<long[]> PEQ= new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[256];
+        }
+    };
+
+    /**
+     * Per thread buffer of the text masks, for the bit-parallel longest
+     * common substring.
+     */
+    private static final ThreadLocal<long[]> EQ= new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[64];
+        }
+    };
+
+    /**
+     * Per thread pair of matrix rows, for the banded edit distance.
+     */
+    private static final ThreadLocal<int[][]> ROWS= new ThreadLocal<int[][]>() {
+        @Override
+        protected int[][] initialValue() {
+            return new int[2][65];
+        }
+    };
+
+    /**
+     * Myers bit-parallel edit distance, where the pattern {@code p} has at
+     * most 64 characters. Stops when the distance must exceed {@code k}.
+     */
+    private static int myers(String p, String t, int k) {
+        int m= p.length();
+        int n= t.length();
+        long[] peq= PEQ.get();
+        char[] xc= null;  //---> pattern characters above 255.
+        long[] xm= null;
+        int nx= 0;
+        for (int i = 0; i < m; i++) {
+            char c= p.charAt(i);
+            if ( c < 256 ) {
+                peq[c]|= 1L << i;
+            }
+            else {
+                if ( xc == null ) {
+                    xc= new char[m];
+                    xm= new long[m];
+                }
+                int e= 0;
+                while ( e < nx && xc[e] != c )  e++;
+                if ( e == nx )  xc[nx++]= c;
+                xm[e]|= 1L << i;
+            }
+        }
+
+        long pv= -1L, mv= 0L;
+        long last= 1L << (m-1);
+        int score= m;
+        int j= 0;
+        for (; j < n; j++) {
+            char c= t.charAt(j);
+            long eq= 0L;
+            if ( c < 256 )
+                eq= peq[c];
+            else
+                for (int e = 0; e < nx; e++)  if ( xc[e] == c ) { eq= xm[e]; break; }
+
+            long xv= eq | mv;
+            long xh= (((eq & pv) + pv) ^ pv) | eq;
+            long ph= mv | ~(xh | pv);
+            long mh= pv & xh;
+            if ( (ph & last) != 0 )  score++;
+            else if ( (mh & last) != 0 )  score--;
+            ph= (ph << 1) | 1L;
+            mh= mh << 1;
+            pv= mh | ~(xv | ph);
+            mv= ph & xv;
+
+            if ( score - (n-1-j) > k )  break;
+        }
+
+        for (int i = 0; i < m; i++) {
+            char c= p.charAt(i);
+            if ( c < 256 )  peq[c]= 0L;
+        }
+        return j < n ? k+1 : Math.min(score, k+1);
+    }
+
+    private static int banded(final String s, final String t, int k) {
+        return banded(s.length(), t.length(), new Symbols() {
+            @Override
+            public boolean same(int i, int j) {
+                return s.charAt(i) == t.charAt(j);
+            }
+        }, k);
+    }
+
+    /**
+     * Edit distance computed over a diagonal band of width {@code 2k+1},
+     * with two rolling rows, stopping as soon as a whole row exceeds
+     * {@code k}.
+     */
+    private static int banded(int n, int m, Symbols eq, int k) {
+        int INF= k+1;
+        int[][] rows= ROWS.get();
+        if ( rows[0].length < m+1 ) {
+            int len= Math.max(m+1, 2*rows[0].length);
+            rows[0]= new int[len];
+            rows[1]= new int[len];
+        }
+        int[] prev= rows[0];
+        int[] curr= rows[1];
+        for (int j = 0; j <= m; j++)  prev[j]= j <= k ? j : INF;
+
+        for (int i = 1; i <= n; i++) {
+            int lo= Math.max(1, i-k);
+            int hi= Math.min(m, i+k);
+            curr[lo-1]= lo == 1 ? Math.min(i, INF) : INF;
+            int rowmin= curr[lo-1];
+            for (int j = lo; j <= hi; j++) {
+                int v= prev[j-1] + (eq.same(i-1, j-1) ? 0 : 1);
+                if ( prev[j]+1 < v )  v= prev[j]+1;
+                if ( curr[j-1]+1 < v )  v= curr[j-1]+1;
+                if ( v > INF )  v= INF;
+                curr[j]= v;
+                if ( v < rowmin )  rowmin= v;
+            }
+            if ( hi < m )  curr[hi+1]= INF;
+            if ( rowmin > k )  return INF;
+            int[] aux= prev;  prev= curr;  curr= aux;
+        }
+        return Math.min(prev[m], INF);
+    }
+}
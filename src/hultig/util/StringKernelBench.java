@@ -0,0 +1,254 @@
+/*************************************************************************
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 2005-2012 UBI/HULTIG All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 3 only ("GPL"). You may not use this
+ * file except in compliance with the License. You can obtain a copy of
+ * the License at http://www.gnu.org/licenses/gpl.txt. See the License
+ * for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * When distributing the software, include this License Header Notice
+ * in each file. If applicable, add the following below the License
+ * Header, with the fields enclosed by brackets [] replaced by your own
+ * identifying information:
+ *
+ *       "Portions Copyrighted [year] [name of copyright owner]"
+ *************************************************************************
+ */
+package hultig.util;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+
+/**
+ * <p>
+ * Benchmark of the {@link StringKernel} methods against the former word
+ * metric implementations, over the vocabulary of a text file. Random pairs
+ * of words are drawn from the vocabulary, both versions are checked for
+ * equal results, and then timed, after a warm up phase.
+ * </p>
+ *
+ * <pre>   java hultig.util.StringKernelBench corpus.txt [npairs] [encoding]</pre>
+ *
+ * <p>
+ * <b>University of Beira Interior</b> (UBI)<br />
+ * Centre For Human Language Technology and Bioinformatics (HULTIG)
+ * </p>
+ *
+ * @author J. P. Cordeiro
+ * @version 1.0
+ */
+public class StringKernelBench
+{
+    private static final int ROUNDS= 5;
+
+    /**
+     * Reads the distinct lower case words of a text file.
+     * @param fname The file name.
+     * @param encoding The file encoding.
+     * @return The vocabulary, or null on error.
+     */
+    public static String[] vocabulary(String fname, String encoding) {
+        Set<String> voc= new LinkedHashSet<String>();
+        try {
+            BufferedReader in= new BufferedReader(new InputStreamReader(new FileInputStream(fname), encoding));
+            try {
+                String line;
+                while ( (line= in.readLine()) != null ) {
+                    for (String w : line.toLowerCase().split("[^\\p{L}\\p{N}]+"))
+                        if ( w.length() > 0 )  voc.add(w);
+                }
+            }
+            finally {
+                in.close();
+            }
+        }
+        catch (IOException exc) {
+            System.err.printf("\n[ERROR] StringKernelBench.vocabulary(%s) ---> %s\n", fname, exc);
+            return null;
+        }
+        return voc.toArray(new String[voc.size()]);
+    }
+
+    /**
+     * The former {@code Word.distSeqMax}: every start pair is extended
+     * with a character by character comparison, over copies of the strings.
+     */
+    static double oldDistSeqMax(String sa, String sb) {
+        char[] a= sa.toCharArray();
+        char[] b= sb.toCharArray();
+
+        int maxseq= 0;
+        for (int i=0; i<a.length; i++) {
+            for (int j = 0; j<b.length; j++) {
+                int ki= i, kj= j, seqsz= 0;
+                while ( ki<a.length && kj<b.length && a[ki] == b[kj] ) {
+                    ki++;
+                    kj++;
+                    seqsz++;
+                }
+                if ( seqsz > maxseq )  maxseq=seqsz;
+            }
+        }
+        int n= Math.max(a.length, b.length);
+        return (double)maxseq/n;
+    }
+
+    /**
+     * The former full matrix <i>Edit Distance</i>.
+     */
+    static int oldEditDistance(String s, String t) {
+        int n= s.length();
+        int m= t.length();
+        if (n == 0)  return m;
+        if (m == 0)  return n;
+
+        int[][] d= new int[n+1][m+1];
+        for (int i = 0; i <= n; i++)  d[i][0]= i;
+        for (int j = 0; j <= m; j++)  d[0][j]= j;
+        for (int i = 1; i <= n; i++) {
+            char si= s.charAt(i-1);
+            for (int j = 1; j <= m; j++) {
+                int cost= si == t.charAt(j-1) ? 0 : 1;
+                d[i][j]= Math.min(Math.min(d[i-1][j]+1, d[i][j-1]+1), d[i-1][j-1]+cost);
+            }
+        }
+        return d[n][m];
+    }
+
+    /**
+     * The former {@code Word.distlex}.
+     */
+    static float oldDistlex(String sa, String sb, float q) {
+        if ( sa.length() > sb.length() ) {
+            String saux= sa;
+            sa= sb;
+            sb= saux;
+        }
+        float dist=0, d=1;
+        for (int k=0; k<sb.length(); k++)  {
+            if ( k<sa.length() ) {
+                if (sa.charAt(k) != sb.charAt(k))
+                    dist += 1/d;
+            }
+            else
+                dist+= 1/d;
+            d= d*q;
+        }
+        return dist;
+    }
+
+    /**
+     * The former {@code Word.distlexSuffix}.
+     */
+    static float oldDistlexSuffix(String sa, String sb, float q) {
+        if ( sa.length() > sb.length() ) {
+            String saux= sa;
+            sa= sb;
+            sb= saux;
+        }
+        int na= sa.length();
+        int nb= sb.length();
+        float dist=0, d=1;
+        for (int k=0; k<nb; k++)  {
+            if ( k<na ) {
+                if (sa.charAt(na-k-1) != sb.charAt(nb-k-1))
+                    dist += 1/d;
+            }
+            else
+                dist+= 1/d;
+            d= d*q;
+        }
+        return dist;
+    }
+
+    /**
+     * Checks that both versions agree on every pair.
+     * @return The number of different results.
+     */
+    static int check(String[] va, String[] vb) {
+        int ndiff= 0;
+        for (int i = 0; i < va.length; i++) {
+            String a= va[i], b= vb[i];
+            if ( Double.compare(oldDistSeqMax(a, b), StringKernel.distSeqMax(a, b)) != 0 )  ndiff++;
+            if ( oldEditDistance(a, b) != StringKernel.levenshtein(a, b) )  ndiff++;
+            if ( oldDistlex(a, b, 2f) != StringKernel.distlex(a, b, 2f) )  ndiff++;
+            if ( oldDistlexSuffix(a, b, 2f) != StringKernel.distlexSuffix(a, b, 2f) )  ndiff++;
+        }
+        return ndiff;
+    }
+
+    /**
+     * Runs one kernel over all pairs.
+     * @return A checksum, so that the work is not discarded.
+     */
+    static double run(int kernel, String[] va, String[] vb) {
+        double sum= 0;
+        int n= va.length;
+        switch (kernel) {
+            case 0: for (int i = 0; i < n; i++)  sum+= oldDistSeqMax(va[i], vb[i]); break;
+            case 1: for (int i = 0; i < n; i++)  sum+= StringKernel.distSeqMax(va[i], vb[i]); break;
+            case 2: for (int i = 0; i < n; i++)  sum+= oldEditDistance(va[i], vb[i]); break;
+            case 3: for (int i = 0; i < n; i++)  sum+= StringKernel.levenshtein(va[i], vb[i]); break;
+            case 4: for (int i = 0; i < n; i++)  sum+= oldDistlex(va[i], vb[i], 2f); break;
+            case 5: for (int i = 0; i < n; i++)  sum+= StringKernel.distlex(va[i], vb[i], 2f); break;
+            case 6: for (int i = 0; i < n; i++)  sum+= oldDistlexSuffix(va[i], vb[i], 2f); break;
+            default: for (int i = 0; i < n; i++)  sum+= StringKernel.distlexSuffix(va[i], vb[i], 2f);
+        }
+        return sum;
+    }
+
+
+    public static void main(String[] args) {
+        if ( args.length < 1 ) {
+            System.out.println("\nSYNTAX: java hultig.util.StringKernelBench corpus.txt [npairs] [encoding]\n");
+            return;
+        }
+        int npairs= args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+        String[] voc= vocabulary(args[0], args.length > 2 ? args[2] : "UTF-8");
+        if ( voc == null || voc.length == 0 )  return;
+
+        Random rand= new Random(1);
+        String[] va= new String[npairs];
+        String[] vb= new String[npairs];
+        for (int i = 0; i < npairs; i++) {
+            va[i]= voc[rand.nextInt(voc.length)];
+            vb[i]= voc[rand.nextInt(voc.length)];
+        }
+        System.out.printf("vocabulary: %d words    pairs: %d\n", voc.length, npairs);
+        System.out.printf("different results: %d\n\n", check(va, vb));
+
+        String[] names= {"distSeqMax", "editDistance", "distlex", "distlexSuffix"};
+        List<double[]> times= new ArrayList<double[]>();
+        for (int r = 0; r <= ROUNDS; r++) {
+            double[] t= new double[8];
+            for (int k = 0; k < 8; k++) {
+                long t0= System.nanoTime();
+                run(k, va, vb);
+                t[k]= (System.nanoTime() - t0) / (double) npairs;
+            }
+            if ( r > 0 )  times.add(t);  //---> round 0 is the warm up.
+        }
+
+        System.out.printf("%-15s %12s %12s %8s\n", "ns/pair", "former", "kernel", "speedup");
+        for (int m = 0; m < names.length; m++) {
+            double told= Double.MAX_VALUE, tnew= Double.MAX_VALUE;
+            for (double[] t : times) {
+                told= Math.min(told, t[2*m]);
+                tnew= Math.min(tnew, t[2*m+1]);
+            }
+            System.out.printf("%-15s %12.1f %12.1f %8.2f\n", names[m], told, tnew, told/tnew);
+        }
+    }
+}
@@ -0,0 +1,221 @@
+/*************************************************************************
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 2005-2012 UBI/HULTIG All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 3 only ("GPL"). You may not use this
+ * file except in compliance with the License. You can obtain a copy of
+ * the License at http://www.gnu.org/licenses/gpl.txt. See the License
+ * for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * When distributing the software, include this License Header Notice
+ * in each file. If applicable, add the following below the License
+ * Header, with the fields enclosed by brackets [] replaced by your own
+ * identifying information:
+ *
+ *       "Portions Copyrighted [year] [name of copyright owner]"
+ *************************************************************************
+ */
+package hultig.util;
+
+import java.util.Arrays;
+
+
+/**
+ * <p>
+ * Linear time construction of suffix arrays over integer sequences,
+ * through the SA-IS algorithm (induced sorting, by Nong, Zhang and Chan,
+ * 2009), and of their longest common prefix arrays, through the algorithm
+ * of Kasai et al. (2001). Both run in {@code O(n)} time and only use
+ * primitive arrays.
+ * </p>
+ *
+ * <p>
+ * <b>University of Beira Interior</b> (UBI)<br />
+ * Centre For Human Language Technology and Bioinformatics (HULTIG)
+ * </p>
+ *
+ * @author J. P. Cordeiro
+ * @version 1.0
+ */
+public class SuffixArray
+{
+    /**
+     * Builds the suffix array of an integer sequence, with any values.
+     * The values are first compacted into a dense alphabet. Suffixes are
+     * sorted in lexicographic order, where a suffix that is a proper
+     * prefix of another comes first if {@code prefixFirst} is true, and
+     * last otherwise.
+     * @param v The input sequence.
+     * @param prefixFirst The position of a prefix relatively to its extensions.
+     * @return The suffix array, with {@code v.length} positions.
+     */
+    public static int[] build(int[] v, boolean prefixFirst) {
+        int n= v.length;
+        if ( n == 0 )  return new int[0];
+
+        int[] alpha= v.clone();
+        Arrays.sort(alpha);
+        int K= 0;
+        for (int i = 0; i < n; i++) {
+            if ( i == 0 || alpha[i] != alpha[i-1] )  alpha[K++]= alpha[i];
+        }
+
+        // symbol 0 is the sentinel, and each value gets a symbol in 1..K.
+        // Reversing the alphabet and the final order puts prefixes last.
+        int[] s= new int[n+1];
+        for (int i = 0; i < n; i++) {
+            int r= Arrays.binarySearch(alpha, 0, K, v[i]);
+            s[i]= prefixFirst ? r+1 : K-r;
+        }
+        s[n]= 0;
+
+        int[] sa= sais(s, K+1);
+        int[] suf= new int[n];
+        if ( prefixFirst )
+            System.arraycopy(sa, 1, suf, 0, n);
+        else
+            for (int i = 0; i < n; i++)  suf[i]= sa[n-i];
+        return suf;
+    }
+
+    /**
+     * The SA-IS algorithm. The sequence must end with a unique sentinel
+     * symbol 0, smaller than every other symbol.
+     * @param s The input sequence, with symbols in {@code [0,K)}.
+     * @param K The alphabet size.
+     * @return The suffix array of {@code s}, including the sentinel.
+     */
+    public static int[] sais(int[] s, int K) {
+        int n= s.length;
+        int[] sa= new int[n];
+        if ( n == 1 )  return sa;
+
+        // suffix types: true for S-type, false for L-type.
+        boolean[] t= new boolean[n];
+        t[n-1]= true;
+        for (int i = n-2; i >= 0; i--)
+            t[i]= s[i] < s[i+1] || (s[i] == s[i+1] && t[i+1]);
+
+        int[] bkt= new int[K];
+
+        // 1. sort the LMS substrings.
+        buckets(s, bkt, K, true);
+        Arrays.fill(sa, -1);
+        for (int i = 1; i < n; i++)
+            if ( isLMS(t, i) )  sa[--bkt[s[i]]]= i;
+        induceL(s, t, sa, bkt, K);
+        induceS(s, t, sa, bkt, K);
+
+        // 2. name the LMS substrings.
+        int n1= 0;
+        for (int i = 0; i < n; i++)
+            if ( isLMS(t, sa[i]) )  sa[n1++]= sa[i];
+        Arrays.fill(sa, n1, n, -1);
+        int name= 0, prev= -1;
+        for (int i = 0; i < n1; i++) {
+            int pos= sa[i];
+            boolean diff= false;
+            for (int d = 0; ; d++) {
+                if ( prev == -1 || s[pos+d] != s[prev+d] || t[pos+d] != t[prev+d] ) {
+                    diff= true;
+                    break;
+                }
+                if ( d > 0 && (isLMS(t, pos+d) || isLMS(t, prev+d)) )  break;
+            }
+            if ( diff ) {
+                name++;
+                prev= pos;
+            }
+            sa[n1 + pos/2]= name-1;
+        }
+        for (int i = n-1, j = n-1; i >= n1; i--)
+            if ( sa[i] >= 0 )  sa[j--]= sa[i];
+
+        // 3. sort the reduced problem, recursively if names are not unique.
+        int[] s1= Arrays.copyOfRange(sa, n-n1, n);
+        int[] sa1;
+        if ( name < n1 ) {
+            sa1= sais(s1, name);
+        }
+        else {
+            sa1= new int[n1];
+            for (int i = 0; i < n1; i++)  sa1[s1[i]]= i;
+        }
+
+        // 4. induce the final order from the sorted LMS suffixes.
+        for (int i = 1, j = 0; i < n; i++)
+            if ( isLMS(t, i) )  s1[j++]= i;
+        for (int i = 0; i < n1; i++)  sa1[i]= s1[sa1[i]];
+        Arrays.fill(sa, -1);
+        buckets(s, bkt, K, true);
+        for (int i = n1-1; i >= 0; i--) {
+            int j= sa1[i];
+            sa[--bkt[s[j]]]= j;
+        }
+        induceL(s, t, sa, bkt, K);
+        induceS(s, t, sa, bkt, K);
+        return sa;
+    }
+
+    private static boolean isLMS(boolean[] t, int i) {
+        return i > 0 && t[i] && !t[i-1];
+    }
+
+    private static void buckets(int[] s, int[] bkt, int K, boolean end) {
+        Arrays.fill(bkt, 0);
+        for (int c : s)  bkt[c]++;
+        int sum= 0;
+        for (int c = 0; c < K; c++) {
+            sum+= bkt[c];
+            bkt[c]= end ? sum : sum - bkt[c];
+        }
+    }
+
+    private static void induceL(int[] s, boolean[] t, int[] sa, int[] bkt, int K) {
+        buckets(s, bkt, K, false);
+        for (int i = 0; i < sa.length; i++) {
+            int j= sa[i] - 1;
+            if ( j >= 0 && !t[j] )  sa[bkt[s[j]]++]= j;
+        }
+    }
+
+    private static void induceS(int[] s, boolean[] t, int[] sa, int[] bkt, int K) {
+        buckets(s, bkt, K, true);
+        for (int i = sa.length-1; i >= 0; i--) {
+            int j= sa[i] - 1;
+            if ( j >= 0 && t[j] )  sa[--bkt[s[j]]]= j;
+        }
+    }
+
+    /**
+     * Computes the longest common prefix array, by the Kasai et al.
+     * algorithm, where {@code lcp[i]} is the length of the longest common
+     * prefix between the suffixes {@code suf[i-1]} and {@code suf[i]}, and
+     * {@code lcp[0] = lcp[n] = 0}.
+     * @param v The input sequence.
+     * @param suf Its suffix array.
+     * @return The lcp array, with {@code n+1} positions.
+     */
+    public static int[] lcp(int[] v, int[] suf) {
+        int n= v.length;
+        int[] lcp= new int[n+1];
+        int[] rank= new int[n];
+        for (int i = 0; i < n; i++)  rank[suf[i]]= i;
+
+        for (int p = 0, h = 0; p < n; p++) {
+            int r= rank[p];
+            if ( r == 0 ) {
+                h= 0;
+                continue;
+            }
+            int q= suf[r-1];
+            while ( p+h < n && q+h < n && v[p+h] == v[q+h] )  h++;
+            lcp[r]= h;
+            if ( h > 0 )  h--;
+        }
+        return lcp;
+    }
+}
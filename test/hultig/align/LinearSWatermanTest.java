@@ -0,0 +1,132 @@
+/*************************************************************************
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 2005-2011 UBI/HULTIG All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 3 only ("GPL"). You may not use this
+ * file except in compliance with the License. You can obtain a copy of
+ * the License at http://www.gnu.org/licenses/gpl.txt. See the License
+ * for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * When distributing the software, include this License Header Notice
+ * in each file. If applicable, add the following below the License
+ * Header, with the fields enclosed by brackets [] replaced by your own
+ * identifying information:
+ *
+ *       "Portions Copyrighted [year] [name of copyright owner]"
+ *************************************************************************
+ */
+package hultig.align;
+
+import java.util.Random;
+import java.util.Vector;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+/**
+ * Tests the {@link LinearSWaterman} aligner against the full matrix
+ * {@link SWaterman}, both with the packed trace and with the Hirschberg
+ * recursion.
+ *
+ * @author J. P. Cordeiro
+ */
+public class LinearSWatermanTest
+{
+    private static int[] codes(Random r, int n, int alpha) {
+        int[] v= new int[n];
+        for (int i = 0; i < n; i++)  v[i]= 1 + r.nextInt(alpha);
+        return v;
+    }
+
+    /**
+     * A vector sharing some segments with another one.
+     */
+    private static int[] related(Random r, int[] v, int alpha) {
+        int[] u= new int[v.length + r.nextInt(20)];
+        for (int i = 0; i < u.length; i++) {
+            u[i]= i < v.length && r.nextInt(5) != 0 ? v[i] : 1 + r.nextInt(alpha);
+        }
+        return u;
+    }
+
+    /**
+     * The score of an alignment, with the gaps marked by -1.
+     */
+    private static double rescore(int[][] va) {
+        double s= 0.0;
+        for (int k = 0; k < va[0].length; k++) {
+            if ( va[0][k] < 0 || va[1][k] < 0 )
+                s+= SWaterman.INDEL_SCORE;
+            else
+                s+= SWaterman.substitution(va[0][k], va[1][k], null, null, null);
+        }
+        return s / SWaterman.NORM_FACTOR;
+    }
+
+    /**
+     * Tests that an alignment row, without its gaps, is the segment
+     * {@code v[from-1 .. to-1]}.
+     */
+    private static void assertSegment(int[] row, int[] v, int from, int to) {
+        int i= from - 1;
+        for (int c : row) {
+            if ( c < 0 )  continue;
+            assertTrue(i < to);
+            assertEquals(v[i++], c);
+        }
+        assertEquals(to, i);
+    }
+
+    @Test
+    public void testSameAsSWaterman() {
+        Random r= new Random(12);
+        LinearSWaterman lsw= new LinearSWaterman();
+        for (int t = 0; t < 300; t++) {
+            int alpha= 2 + r.nextInt(10);
+            int[] v1= codes(r, r.nextInt(60), alpha);
+            int[] v2= r.nextBoolean() ? related(r, v1, alpha) : codes(r, r.nextInt(60), alpha);
+
+            SWaterman sw= new SWaterman(v1, v2);
+            double score= sw.getAlignmentScore();
+            assertEquals(score, lsw.score(v1, v2), 1e-9);
+
+            lsw.setMaxTraceCells(LinearSWaterman.MAX_TRACE_CELLS);
+            int[][] va= lsw.align(v1, v2);
+            assertEquals(score, lsw.getAlignmentScore(), 1e-9);
+            Vector<int[][]> vsw= sw.getTopAlignments(1);
+            if ( score > 0 && !vsw.isEmpty() ) {
+                assertArrayEquals(vsw.get(0)[0], va[0]);
+                assertArrayEquals(vsw.get(0)[1], va[1]);
+            }
+        }
+    }
+
+    @Test
+    public void testHirschberg() {
+        Random r= new Random(13);
+        LinearSWaterman lsw= new LinearSWaterman();
+        lsw.setMaxTraceCells(0);
+        for (int t = 0; t < 300; t++) {
+            int alpha= 2 + r.nextInt(10);
+            int[] v1= codes(r, r.nextInt(r.nextInt(4) == 0 ? 400 : 60), alpha);
+            int[] v2= r.nextBoolean() ? related(r, v1, alpha) : codes(r, r.nextInt(60), alpha);
+
+            double score= new SWaterman(v1, v2).getAlignmentScore();
+            int[][] va= lsw.align(v1, v2);
+            assertEquals(score, lsw.getAlignmentScore(), 1e-9);
+            if ( score <= 0 ) {
+                assertEquals(0, va[0].length);
+                continue;
+            }
+            assertEquals(score, rescore(va), 1e-9);
+
+            SimpleChaining.Match m= lsw.getMatch();
+            assertSegment(va[0], v1, m.getFromA(), m.getToA());
+            assertSegment(va[1], v2, m.getFromB(), m.getToB());
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*************************************************************************
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 2005-2011 UBI/HULTIG All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 3 only ("GPL"). You may not use this
+ * file except in compliance with the License. You can obtain a copy of
+ * the License at http://www.gnu.org/licenses/gpl.txt. See the License
+ * for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * When distributing the software, include this License Header Notice
+ * in each file. If applicable, add the following below the License
+ * Header, with the fields enclosed by brackets [] replaced by your own
+ * identifying information:
+ *
+ *       "Portions Copyrighted [year] [name of copyright owner]"
+ *************************************************************************
+ */
+package hultig.align;
+
+import java.util.Random;
+import java.util.Vector;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+/**
+ * Tests the {@link SWaterman} top k alignments, with the incremental
+ * declumping, against the whole score matrix recomputed after each
+ * alignment, with the rows and columns of the previous ones cleared.
+ *
+ * @author J. P. Cordeiro
+ */
+public class SWatermanTest
+{
+    /**
+     * The SWaterman score threshold, before normalization.
+     */
+    private static final double THRESHOLD= 10.0;
+
+    private static int[] codes(Random r, int n, int alpha) {
+        int[] v= new int[n];
+        for (int i = 0; i < n; i++)  v[i]= 1 + r.nextInt(alpha);
+        return v;
+    }
+
+    /**
+     * A vector with repeated segments of another one, so that there are
+     * several good local alignments.
+     */
+    private static int[] repeats(Random r, int[] v, int alpha) {
+        int[] u= new int[v.length + r.nextInt(30)];
+        for (int i = 0; i < u.length; i++) {
+            u[i]= v.length > 0 && r.nextInt(6) != 0 ? v[(i * 7 / 5) % v.length] : 1 + r.nextInt(alpha);
+        }
+        return u;
+    }
+
+    /**
+     * The k best alignments, each one found in the score matrix rebuilt
+     * from scratch, at the best cell with the lowest (i, j), and traced
+     * back with the left, up and diagonal preference.
+     */
+    private static Vector<int[][]> reference(int[] v1, int[] v2, int k, Vector<SimpleChaining.Match> vm) {
+        int n= v1.length, m= v2.length;
+        boolean[] banA= new boolean[n + 1];
+        boolean[] banB= new boolean[m + 1];
+        Vector<int[][]> valg= new Vector<int[][]>();
+        while ( valg.size() < k ) {
+            double[][] sc= new double[n + 1][m + 1];
+            int[][] pc= new int[n + 1][m + 1];
+            for (int i = 0; i <= n; i++)  pc[i][0]= SWaterman.DR_ZERO;
+            for (int j = 0; j <= m; j++)  pc[0][j]= SWaterman.DR_ZERO;
+            int bi= 0, bj= 0;
+            for (int i = 1; i <= n; i++) {
+                for (int j = 1; j <= m; j++) {
+                    if ( banA[i] || banB[j] ) {
+                        pc[i][j]= SWaterman.DR_ZERO;
+                        continue;
+                    }
+                    double diag= sc[i-1][j-1] + SWaterman.substitution(v1[i-1], v2[j-1], null, null, null);
+                    double up= sc[i][j-1] + SWaterman.INDEL_SCORE;
+                    double left= sc[i-1][j] + SWaterman.INDEL_SCORE;
+                    double s= Math.max(diag, Math.max(up, Math.max(left, 0)));
+                    sc[i][j]= s;
+                    if ( diag == s )  pc[i][j]|= SWaterman.DR_DIAG;
+                    if ( left == s )  pc[i][j]|= SWaterman.DR_LEFT;
+                    if ( up == s )  pc[i][j]|= SWaterman.DR_UP;
+                    if ( s == 0 )  pc[i][j]|= SWaterman.DR_ZERO;
+                    if ( s > sc[bi][bj] ) {
+                        bi= i;
+                        bj= j;
+                    }
+                }
+            }
+            if ( sc[bi][bj] <= THRESHOLD )  break;
+
+            int[] pa= new int[n + m], pb= new int[n + m];
+            int len= 0, i= bi, j= bj;
+            while ( (pc[i][j] & SWaterman.DR_ZERO) == 0 ) {
+                if ( (pc[i][j] & SWaterman.DR_LEFT) > 0 ) {
+                    pa[len]= v1[--i];
+                    pb[len++]= -1;
+                }
+                else if ( (pc[i][j] & SWaterman.DR_UP) > 0 ) {
+                    pa[len]= -1;
+                    pb[len++]= v2[--j];
+                }
+                else {
+                    pa[len]= v1[--i];
+                    pb[len++]= v2[--j];
+                }
+            }
+            int[][] va= new int[2][len];
+            for (int t = 0; t < len; t++) {
+                va[0][t]= pa[len - 1 - t];
+                va[1][t]= pb[len - 1 - t];
+            }
+            valg.add(va);
+            vm.add(new SimpleChaining.Match(i + 1, bi, j + 1, bj, sc[bi][bj] / SWaterman.NORM_FACTOR));
+            for (int a = i + 1; a <= bi; a++)  banA[a]= true;
+            for (int b = j + 1; b <= bj; b++)  banB[b]= true;
+        }
+        return valg;
+    }
+
+    @Test
+    public void testTopK() {
+        Random r= new Random(17);
+        int found= 0;
+        for (int t = 0; t < 400; t++) {
+            int alpha= 2 + r.nextInt(8);
+            int[] v1= codes(r, r.nextInt(70), alpha);
+            int[] v2= r.nextInt(4) != 0 ? repeats(r, v1, alpha) : codes(r, r.nextInt(70), alpha);
+            int k= 1 + r.nextInt(6);
+
+            Vector<SimpleChaining.Match> vmr= new Vector<SimpleChaining.Match>();
+            Vector<int[][]> valr= reference(v1, v2, k, vmr);
+            SWaterman sw= new SWaterman(v1, v2);
+            Vector<int[][]> valg= sw.getTopAlignments(k);
+            Vector<SimpleChaining.Match> vm= sw.getTopMatches(k);
+
+            assertEquals(valr.size(), valg.size());
+            assertEquals(valr.size(), vm.size());
+            for (int e = 0; e < valr.size(); e++) {
+                assertArrayEquals(valr.get(e)[0], valg.get(e)[0]);
+                assertArrayEquals(valr.get(e)[1], valg.get(e)[1]);
+                SimpleChaining.Match a= vmr.get(e), b= vm.get(e);
+                assertEquals(a.getFromA(), b.getFromA());
+                assertEquals(a.getToA(), b.getToA());
+                assertEquals(a.getFromB(), b.getFromB());
+                assertEquals(a.getToB(), b.getToB());
+                assertEquals(a.getScore(), b.getScore(), 1e-9);
+                if ( e > 0 )  assertTrue(vm.get(e-1).getScore() >= b.getScore());
+            }
+            found+= valr.size();
+        }
+        assertTrue(found > 400);
+    }
+
+    @Test
+    public void testMaxWork() {
+        Random r= new Random(18);
+        int[] v1= codes(r, 50, 3);
+        int[] v2= repeats(r, v1, 3);
+        SWaterman sw= new SWaterman(v1, v2);
+        assertEquals(0, sw.getTopMatches(5, 10).size());
+        Vector<SimpleChaining.Match> all= sw.getTopMatches(5);
+        for (long w = 100; w < 100000; w*= 2) {
+            Vector<SimpleChaining.Match> vm= sw.getTopMatches(5, w);
+            assertTrue(vm.size() <= all.size());
+            for (int e = 0; e < vm.size(); e++) {
+                assertEquals(all.get(e).getFromA(), vm.get(e).getFromA());
+                assertEquals(all.get(e).getToB(), vm.get(e).getToB());
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*************************************************************************
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 2005-2011 UBI/HULTIG All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 3 only ("GPL"). You may not use this
+ * file except in compliance with the License. You can obtain a copy of
+ * the License at http://www.gnu.org/licenses/gpl.txt. See the License
+ * for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * When distributing the software, include this License Header Notice
+ * in each file. If applicable, add the following below the License
+ * Header, with the fields enclosed by brackets [] replaced by your own
+ * identifying information:
+ *
+ *       "Portions Copyrighted [year] [name of copyright owner]"
+ *************************************************************************
+ */
+package hultig.align;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+/**
+ * Tests {@link SimpleChaining#sparseChaining(List)} against the quadratic
+ * chaining recurrence.
+ *
+ * @author J. P. Cordeiro
+ */
+public class SimpleChainingTest
+{
+    private static List<SimpleChaining.Match> matches(Random r, int n, int len, boolean ties) {
+        List<SimpleChaining.Match> v= new ArrayList<SimpleChaining.Match>();
+        for (int i = 0; i < n; i++) {
+            int fa= r.nextInt(len), fb= r.nextInt(len);
+            int ta= fa + r.nextInt(6), tb= fb + r.nextInt(6);
+            double s= ties ? 1 + r.nextInt(3) : r.nextDouble() * 10;
+            v.add(new SimpleChaining.Match(fa, ta, fb, tb, s));
+        }
+        return v;
+    }
+
+    private static double score(List<SimpleChaining.Match> chain) {
+        double s= 0.0;
+        for (SimpleChaining.Match m : chain)  s+= m.getScore();
+        return s;
+    }
+
+    private static void assertChain(List<SimpleChaining.Match> chain) {
+        for (int i = 1; i < chain.size(); i++) {
+            SimpleChaining.Match p= chain.get(i-1), m= chain.get(i);
+            assertTrue(p.getToA() < m.getFromA());
+            assertTrue(p.getToB() < m.getFromB());
+        }
+    }
+
+    @Test
+    public void testEmpty() {
+        assertTrue(SimpleChaining.sparseChaining(new ArrayList<SimpleChaining.Match>()).isEmpty());
+    }
+
+    /**
+     * The best chain score, by the quadratic recurrence over the matches
+     * sorted by fromA.
+     */
+    private static double bruteForce(List<SimpleChaining.Match> v) {
+        List<SimpleChaining.Match> sorted= new ArrayList<SimpleChaining.Match>(v);
+        Collections.sort(sorted, SimpleChaining.FROMA_COMPARATOR);
+        double[] best= new double[sorted.size()];
+        double max= 0.0;
+        for (int i = 0; i < best.length; i++) {
+            SimpleChaining.Match m= sorted.get(i);
+            double prev= 0.0;
+            for (int j = 0; j < i; j++) {
+                SimpleChaining.Match p= sorted.get(j);
+                if ( p.getToA() < m.getFromA() && p.getToB() < m.getFromB() )  prev= Math.max(prev, best[j]);
+            }
+            best[i]= prev + m.getScore();
+            max= Math.max(max, best[i]);
+        }
+        return max;
+    }
+
+    @Test
+    public void testBestScore() {
+        Random r= new Random(15);
+        for (int t = 0; t < 1000; t++) {
+            boolean ties= t % 2 == 0;
+            List<SimpleChaining.Match> v= matches(r, r.nextInt(50), ties ? 30 : 60, ties);
+            List<SimpleChaining.Match> input= new ArrayList<SimpleChaining.Match>(v);
+            List<SimpleChaining.Match> sparse= SimpleChaining.sparseChaining(v);
+            assertEquals("the input list must not be modified", input, v);
+            assertTrue(input.containsAll(sparse));
+            assertChain(sparse);
+            assertEquals(bruteForce(v), score(sparse), 1e-9);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*************************************************************************
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 2005-2011 UBI/HULTIG All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 3 only ("GPL"). You may not use this
+ * file except in compliance with the License. You can obtain a copy of
+ * the License at http://www.gnu.org/licenses/gpl.txt. See the License
+ * for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * When distributing the software, include this License Header Notice
+ * in each file. If applicable, add the following below the License
+ * Header, with the fields enclosed by brackets [] replaced by your own
+ * identifying information:
+ *
+ *       "Portions Copyrighted [year] [name of copyright owner]"
+ *************************************************************************
+ */
+package hultig.align;
+
+import java.io.File;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import hultig.sumo.CorpusIndex;
+
+
+/**
+ * Tests the {@link SubstitutionCache} against the uncached
+ * {@link SubstitutionCache#substitutionCost(String, String)}.
+ *
+ * @author J. P. Cordeiro
+ */
+public class SubstitutionCacheTest
+{
+    private static CorpusIndex dictionary(Random r, int nwords) {
+        CorpusIndex dict= new CorpusIndex();
+        StringBuilder sb= new StringBuilder(" ");
+        for (int i = 0; i < nwords; i++) {
+            int len= 1 + r.nextInt(8);
+            for (int j = 0; j < len; j++)  sb.append((char) ('a' + r.nextInt(6)));
+            sb.append(' ');
+        }
+        dict.add(sb.toString());
+        dict.prepare();
+        return dict;
+    }
+
+    @Test
+    public void testSaveLoadWithEmptyWord() throws Exception {
+        CorpusIndex dict= dictionary(new Random(11), 40);
+        int empty= dict.get("");
+        assertTrue("the dictionary should hold the empty word", empty >= 0);
+
+        SubstitutionCache cache= new SubstitutionCache(dict, 1 << 14);
+        int n= dict.size();
+        for (int a = 1; a <= n; a++)
+            for (int b = a; b <= n; b++)  cache.cost(a, b);
+        int size= cache.size();
+
+        File f= File.createTempFile("subst", ".dat");
+        f.deleteOnExit();
+        assertTrue(cache.save(f.getPath()));
+
+        SubstitutionCache loaded= new SubstitutionCache(dict, 1 << 14);
+        assertTrue(loaded.load(f.getPath()));
+        assertEquals(size, loaded.size());
+        for (int a = 1; a <= n; a++) {
+            for (int b = a; b <= n; b++) {
+                assertEquals(cache.get(a, b), loaded.get(a, b), 0.0);
+            }
+        }
+        assertEquals(cache.get(empty, n), loaded.get(empty, n), 0.0);
+    }
+
+    @Test
+    public void testConcurrentCosts() throws Exception {
+        final CorpusIndex dict= dictionary(new Random(23), 300);
+        final int n= dict.size();
+        final SubstitutionCache cache= new SubstitutionCache(dict, 256);
+        cache.setStatistics(true);
+
+        final int nthreads= 4, nlookups= 20000;
+        final AtomicInteger wrong= new AtomicInteger();
+        Thread[] vt= new Thread[nthreads];
+        for (int t = 0; t < nthreads; t++) {
+            final long seed= t;
+            vt[t]= new Thread() {
+                @Override
+                public void run() {
+                    Random r= new Random(seed);
+                    for (int i = 0; i < nlookups; i++) {
+                        int a= 1 + r.nextInt(n), b= 1 + r.nextInt(n);
+                        double expected= SubstitutionCache.substitutionCost(dict.get(a), dict.get(b));
+                        if ( cache.cost(a, b) != expected )  wrong.incrementAndGet();
+                    }
+                }
+            };
+            vt[t].start();
+        }
+        for (Thread t : vt)  t.join();
+
+        assertEquals(0, wrong.get());
+        assertTrue(cache.size() <= cache.capacity());
+        assertEquals((long) nthreads * nlookups, cache.hits() + cache.misses());
+    }
+
+    @Test
+    public void testStatisticsOffByDefault() {
+        CorpusIndex dict= dictionary(new Random(5), 10);
+        SubstitutionCache cache= new SubstitutionCache(dict, 64);
+        cache.cost(1, 2);
+        cache.cost(1, 2);
+        assertEquals(0, cache.hits() + cache.misses());
+    }
+}
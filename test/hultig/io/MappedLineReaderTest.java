@@ -0,0 +1,135 @@
+/*************************************************************************
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 2005-2012 UBI/HULTIG All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 3 only ("GPL"). You may not use this
+ * file except in compliance with the License. You can obtain a copy of
+ * the License at http://www.gnu.org/licenses/gpl.txt. See the License
+ * for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * When distributing the software, include this License Header Notice
+ * in each file. If applicable, add the following below the License
+ * Header, with the fields enclosed by brackets [] replaced by your own
+ * identifying information:
+ *
+ *       "Portions Copyrighted [year] [name of copyright owner]"
+ *************************************************************************
+ */
+package hultig.io;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+/**
+ * Tests the {@link MappedLineReader} lines against the ones read by a
+ * {@link BufferedReader}, with small windows, so that the lines and the
+ * multi byte characters cross the window ends.
+ *
+ * @author J. P. Cordeiro
+ */
+public class MappedLineReaderTest
+{
+    private int windowSize;
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        windowSize= MappedLineReader.WINDOW_SIZE;
+        file= File.createTempFile("mapped", ".txt");
+    }
+
+    @After
+    public void tearDown() {
+        MappedLineReader.WINDOW_SIZE= windowSize;
+        file.delete();
+    }
+
+    /**
+     * A random text with every kind of line end, empty lines, and possibly
+     * no line end at the end of the file.
+     */
+    private static String text(Random r, boolean latin1) {
+        String alpha= latin1 ? "ab \u00e7\u00e3\u00ff" : "ab \u00e7\u00e3\u20ac\ud83d\ude00";
+        String[] ends= { "\n", "\r", "\r\n", "\n\n", "\r\r\n" };
+        StringBuilder sb= new StringBuilder();
+        for (int n = r.nextInt(40); n > 0; n--) {
+            for (int e = r.nextInt(r.nextInt(5) == 0 ? 80 : 12); e > 0; e--) {
+                int c= r.nextInt(alpha.length());
+                //the surrogate pair is only taken whole.
+                if ( Character.isLowSurrogate(alpha.charAt(c)) )  c--;
+                sb.append(alpha.charAt(c));
+                if ( Character.isHighSurrogate(alpha.charAt(c)) )  sb.append(alpha.charAt(c + 1));
+            }
+            if ( n > 1 || r.nextBoolean() )  sb.append(ends[r.nextInt(ends.length)]);
+        }
+        return sb.toString();
+    }
+
+    private void write(String s, String encoding) throws IOException {
+        FileOutputStream out= new FileOutputStream(file);
+        try {
+            out.write(s.getBytes(encoding));
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    private void check(String encoding) throws IOException {
+        BufferedReader br= new BufferedReader(new InputStreamReader(new FileInputStream(file), encoding));
+        MappedLineReader mlr= new MappedLineReader(file.getPath(), encoding);
+        try {
+            long n= 0;
+            for (String s= br.readLine(); s != null; s= br.readLine()) {
+                CharSequence line= mlr.next();
+                assertNotNull(line);
+                assertEquals(s, line.toString());
+                assertEquals(s.length(), line.length());
+                if ( s.length() > 0 )  assertEquals(s.charAt(s.length() - 1), line.charAt(line.length() - 1));
+                n++;
+            }
+            assertNull(mlr.next());
+            assertEquals(n, mlr.getNumLines());
+            assertEquals(mlr.size(), mlr.position());
+            assertEquals(n, MappedLineReader.countLines(file.getPath()));
+        }
+        finally {
+            br.close();
+            mlr.close();
+        }
+    }
+
+    @Test
+    public void testLines() throws IOException {
+        Random r= new Random(23);
+        for (int t = 0; t < 500; t++) {
+            boolean latin1= r.nextBoolean();
+            String encoding= latin1 ? "ISO-8859-1" : "UTF-8";
+            write(text(r, latin1), encoding);
+            MappedLineReader.WINDOW_SIZE= r.nextBoolean() ? 1 + r.nextInt(16) : 1 << 20;
+            check(encoding);
+        }
+    }
+
+    @Test
+    public void testByteOriented() {
+        assertTrue(MappedLineReader.isByteOriented("UTF-8"));
+        assertTrue(MappedLineReader.isByteOriented("ISO-8859-1"));
+        assertFalse(MappedLineReader.isByteOriented("UTF-16"));
+        assertFalse(MappedLineReader.isByteOriented("no-such-encoding"));
+    }
+}
@@ -0,0 +1,163 @@
+/*************************************************************************
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 2005-2012 UBI/HULTIG All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 3 only ("GPL"). You may not use this
+ * file except in compliance with the License. You can obtain a copy of
+ * the License at http://www.gnu.org/licenses/gpl.txt. See the License
+ * for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * When distributing the software, include this License Header Notice
+ * in each file. If applicable, add the following below the License
+ * Header, with the fields enclosed by brackets [] replaced by your own
+ * identifying information:
+ *
+ *       "Portions Copyrighted [year] [name of copyright owner]"
+ *************************************************************************
+ */
+package hultig.sumo;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+/**
+ * Tests the {@link CodedCorpus} read back of the sentences written by a
+ * {@link CodedCorpusWriter}, with every column combination.
+ *
+ * @author J. P. Cordeiro
+ */
+public class CodedCorpusTest
+{
+    private static final String[] WORDS= {
+        "the", "cat", "dog", "sat", "on", "a", "mat", "ran", "in", "park",
+        "big", "small", "red", "house", "tree", "bird", "saw", "near", "old", "man"
+    };
+
+    /**
+     * The number of the last sentences with words out of the dictionary.
+     */
+    private static final int UNSEEN= 50;
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir= File.createTempFile("coded", "");
+        dir.delete();
+        assertTrue(dir.mkdir());
+    }
+
+    @After
+    public void tearDown() {
+        for (File f : dir.listFiles())  f.delete();
+        dir.delete();
+    }
+
+    /**
+     * Random sentences, some empty and some longer than 127 words, with
+     * random POS and chunk codes, negative and large ones included. The
+     * last ones have also some words out of the {@link #WORDS}.
+     */
+    private static Sentence[] sentences(Random r, int n) {
+        Sentence[] vs= new Sentence[n];
+        for (int i = 0; i < n; i++) {
+            int m= r.nextInt(10) == 0 ? 100 + r.nextInt(200) : r.nextInt(12);
+            StringBuilder sb= new StringBuilder();
+            for (int k = 0; k < m; k++) {
+                if ( i >= n - UNSEEN && r.nextInt(4) == 0 )
+                    sb.append("unseen").append(r.nextInt(5)).append(' ');
+                else
+                    sb.append(WORDS[r.nextInt(WORDS.length)]).append(' ');
+            }
+            vs[i]= m == 0 ? new Sentence() : new Sentence(sb.toString().trim());
+            vs[i].cod= r.nextInt();
+        }
+        return vs;
+    }
+
+    private static void tag(Random r, Sentence[] vs) {
+        for (Sentence s : vs) {
+            for (Word w : s) {
+                int code= w.cods == null ? -1 : w.cods[0];
+                int pos= r.nextBoolean() ? r.nextInt(40) : r.nextInt(1 << 24) - (1 << 23);
+                w.cods= new int[]{code, pos, r.nextInt(3) == 0 ? -1 : r.nextInt(300)};
+            }
+        }
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Random r= new Random(24);
+        int unseen= 0;
+        for (int t = 0; t < 8; t++) {
+            Sentence[] vs= sentences(r, 300);
+            CorpusIndex dic= CorpusIndex.codifyOnFly(Arrays.copyOf(vs, vs.length - UNSEEN));
+            tag(r, vs);
+            boolean pos= (t & 1) != 0, chunks= (t & 2) != 0;
+
+            String fname= new File(dir, "corpus" + t + ".hcor").getPath();
+            CodedCorpusWriter ccw= new CodedCorpusWriter(fname, dic, "dict" + t + ".hidx", pos, chunks);
+            int[] groups= new int[vs.length];
+            for (int i = 0; i < vs.length; i++) {
+                groups[i]= i / 7;
+                ccw.add(vs[i], groups[i]);
+            }
+            assertEquals(vs.length, ccw.size());
+            ccw.close();
+
+            CodedCorpus cc= CodedCorpus.open(fname);
+            assertEquals(vs.length, cc.size());
+            assertEquals(pos, cc.hasPOS());
+            assertEquals(chunks, cc.hasChunks());
+            assertEquals("dict" + t + ".hidx", cc.getDictionaryName());
+            CorpusIndex cdic= cc.loadDictionary();
+            assertNotNull(cdic);
+            assertEquals(dic.size(), cdic.size());
+
+            int[] buf= new int[4];
+            for (int i = 0; i < vs.length; i++) {
+                Sentence s= vs[i];
+                int m= s.size();
+                assertEquals(m, cc.length(i));
+                assertEquals(s.cod, cc.cod(i));
+                assertEquals(groups[i], cc.group(i));
+
+                int[] lex= cc.lex(i);
+                assertEquals(m, lex.length);
+                buf= cc.lex(i, buf);
+                int[] vp= cc.pos(i, null);
+                int[] vc= cc.chk(i, null);
+                assertEquals(pos, vp != null);
+                assertEquals(chunks, vc != null);
+                Sentence rs= cc.sentence(i, cdic);
+                assertEquals(m, rs.size());
+                assertEquals(s.cod, rs.cod);
+
+                int k= 0;
+                for (Word w : s) {
+                    String lw= w.toString().toLowerCase();
+                    int code= dic.get(lw);
+                    assertEquals(code, lex[k]);
+                    assertEquals(code, buf[k]);
+                    if ( pos )  assertEquals(w.getPosCod(), vp[k]);
+                    if ( chunks )  assertEquals(w.getChkCod(), vc[k]);
+                    assertEquals(code < 0 ? "?" : lw, rs.getWord(k));
+                    if ( code < 0 )  unseen++;
+                    k++;
+                }
+            }
+        }
+        assertTrue(unseen > 0);
+    }
+}
@@ -0,0 +1,135 @@
+/*************************************************************************
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 2005-2012 UBI/HULTIG All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 3 only ("GPL"). You may not use this
+ * file except in compliance with the License. You can obtain a copy of
+ * the License at http://www.gnu.org/licenses/gpl.txt. See the License
+ * for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * When distributing the software, include this License Header Notice
+ * in each file. If applicable, add the following below the License
+ * Header, with the fields enclosed by brackets [] replaced by your own
+ * identifying information:
+ *
+ *       "Portions Copyrighted [year] [name of copyright owner]"
+ *************************************************************************
+ */
+package hultig.sumo;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import hultig.util.StringKernel;
+
+
+/**
+ * Tests the {@link FuzzyIndex} lookups against the scan of the whole
+ * vocabulary with the <i>Edit Distance</i>.
+ *
+ * @author J. P. Cordeiro
+ */
+public class FuzzyIndexTest
+{
+    /**
+     * Random words, short and longer than the indexed prefixes, with some
+     * characters above 255.
+     */
+    private static String word(Random r) {
+        String alpha= r.nextInt(4) == 0 ? "ab\u00e7\u00e3\u20ac" : "abcdefg";
+        int len= r.nextInt(5) == 0 ? 8 + r.nextInt(12) : r.nextInt(8);
+        StringBuilder sb= new StringBuilder(len);
+        for (int i = 0; i < len; i++)  sb.append(alpha.charAt(r.nextInt(alpha.length())));
+        return sb.toString();
+    }
+
+    private static String mutate(Random r, String s, int k) {
+        StringBuilder sb= new StringBuilder(s);
+        for (int e = r.nextInt(k + 2); e > 0; e--) {
+            int i= sb.length() == 0 ? 0 : r.nextInt(sb.length());
+            switch ( sb.length() == 0 ? 1 : r.nextInt(3) ) {
+                case 0:  sb.deleteCharAt(i);  break;
+                case 1:  sb.insert(i, 'c');  break;
+                default: sb.setCharAt(i, 'e');
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * The codes of the words within distance k, by distance and code.
+     */
+    private static int[] scan(String[] vocab, String w, int k) {
+        long[] found= new long[vocab.length];
+        int nf= 0;
+        for (int c = 0; c < vocab.length; c++) {
+            int d= StringKernel.levenshtein(w, vocab[c]);
+            if ( d <= k )  found[nf++]= ((long) d << 32) | c;
+        }
+        Arrays.sort(found, 0, nf);
+        int[] codes= new int[nf];
+        for (int i = 0; i < nf; i++)  codes[i]= (int) found[i];
+        return codes;
+    }
+
+    private static String[] vocabulary(Random r, int n) {
+        String[] vocab= new String[n];
+        for (int c = 0; c < n; c++)  vocab[c]= word(r);
+        return vocab;
+    }
+
+    @Test
+    public void testLookup() {
+        Random r= new Random(20);
+        for (int t = 0; t < 40; t++) {
+            int maxDist= 1 + r.nextInt(3);
+            int prefix= r.nextInt(3) == 0 ? 0 : 1 + r.nextInt(8);
+            String[] vocab= vocabulary(r, 50 + r.nextInt(300));
+            FuzzyIndex fi= new FuzzyIndex(maxDist, prefix);
+            for (int c = 0; c < vocab.length; c++)  assertTrue(fi.add(vocab[c], c));
+            assertFalse(fi.add("x", 0));
+            if ( r.nextBoolean() )  fi.compact();
+            assertEquals(vocab.length, fi.size());
+
+            for (int q = 0; q < 100; q++) {
+                String w= r.nextBoolean() ? mutate(r, vocab[r.nextInt(vocab.length)], maxDist) : word(r);
+                for (int k = 0; k <= maxDist; k++) {
+                    assertArrayEquals(w + " k=" + k + " p=" + prefix, scan(vocab, w, k), fi.lookup(w, k));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSaveLoad() throws IOException {
+        Random r= new Random(21);
+        String[] vocab= vocabulary(r, 500);
+        FuzzyIndex fi= new FuzzyIndex(2);
+        for (int c = 0; c < vocab.length; c++)  fi.add(vocab[c], c);
+
+        File f= File.createTempFile("fuzzy", ".idx");
+        try {
+            assertTrue(fi.save(f.getPath()));
+            FuzzyIndex fl= FuzzyIndex.load(f.getPath());
+            assertNotNull(fl);
+            assertEquals(fi.size(), fl.size());
+            assertEquals(fi.getMaxDist(), fl.getMaxDist());
+            assertEquals(fi.getPrefix(), fl.getPrefix());
+            for (int q = 0; q < 200; q++) {
+                String w= mutate(r, vocab[r.nextInt(vocab.length)], 2);
+                assertArrayEquals(fi.lookup(w, 2), fl.lookup(w, 2));
+            }
+        }
+        finally {
+            f.delete();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*************************************************************************
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 2005-2012 UBI/HULTIG All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 3 only ("GPL"). You may not use this
+ * file except in compliance with the License. You can obtain a copy of
+ * the License at http://www.gnu.org/licenses/gpl.txt. See the License
+ * for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * When distributing the software, include this License Header Notice
+ * in each file. If applicable, add the following below the License
+ * Header, with the fields enclosed by brackets [] replaced by your own
+ * identifying information:
+ *
+ *       "Portions Copyrighted [year] [name of copyright owner]"
+ *************************************************************************
+ */
+package hultig.sumo;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+/**
+ * Tests the {@link NGramsV} term and document frequencies against the
+ * enumeration of every n-gram of each document.
+ *
+ * @author J. P. Cordeiro
+ */
+public class NGramsVTest
+{
+    /**
+     * A random corpus of documents ended by the -1001 code, the last one
+     * possibly without it.
+     */
+    private static int[] corpus(Random r) {
+        int ndocs= 1 + r.nextInt(6);
+        int alpha= 2 + r.nextInt(4);
+        int[] v= new int[ndocs * 40];
+        int n= 0;
+        for (int d = 0; d < ndocs; d++) {
+            for (int e = r.nextInt(30); e > 0; e--)  v[n++]= r.nextInt(alpha);
+            if ( d < ndocs-1 || r.nextBoolean() )  v[n++]= -1001;
+        }
+        return Arrays.copyOf(v, n);
+    }
+
+    /**
+     * The {tf, df} of every n-gram without the -1001 code.
+     */
+    private static Map<String,int[]> enumerate(int[] v) {
+        Map<String,int[]> m= new HashMap<String,int[]>();
+        Map<String,HashSet<Integer>> docs= new HashMap<String,HashSet<Integer>>();
+        int doc= 0;
+        for (int i = 0; i < v.length; i++) {
+            for (int j = i; j < v.length && v[j] != -1001; j++) {
+                String g= Arrays.toString(Arrays.copyOfRange(v, i, j+1));
+                int[] f= m.get(g);
+                if ( f == null ) {
+                    m.put(g, f= new int[2]);
+                    docs.put(g, new HashSet<Integer>());
+                }
+                f[0]++;
+                docs.get(g).add(doc);
+            }
+            if ( v[i] == -1001 )  doc++;
+        }
+        for (Map.Entry<String,int[]> e : m.entrySet())  e.getValue()[1]= docs.get(e.getKey()).size();
+        return m;
+    }
+
+    @Test
+    public void testComputeDf() {
+        Random r= new Random(9);
+        for (int t = 0; t < 300; t++) {
+            final int[] v= corpus(r);
+            final Map<String,int[]> expected= enumerate(v);
+            final Map<String,int[]> found= new HashMap<String,int[]>();
+
+            NGramsV ngv= new NGramsV(v);
+            ngv.compute_df(new NGramsV.DFSink() {
+                @Override
+                public void ngram(int pos, int minN, int maxN, int tf, int df) {
+                    for (int n = minN; n <= maxN; n++) {
+                        String g= Arrays.toString(Arrays.copyOfRange(v, pos, pos+n));
+                        assertNull("n-gram reported twice: " + g, found.put(g, new int[] {tf, df}));
+                    }
+                }
+            });
+
+            for (Map.Entry<String,int[]> e : expected.entrySet()) {
+                int[] f= e.getValue();
+                if ( f[0] < 2 )  continue;
+                assertArrayEquals(e.getKey(), f, found.get(e.getKey()));
+            }
+            for (Map.Entry<String,int[]> e : found.entrySet()) {
+                assertTrue(e.getKey(), expected.containsKey(e.getKey()));
+            }
+
+            // random queries, present or not.
+            for (int q = 0; q < 20 && v.length > 0; q++) {
+                int i= r.nextInt(v.length), n= 1 + r.nextInt(4);
+                int[] gram= Arrays.copyOfRange(v, i, Math.min(v.length, i+n));
+                if ( r.nextInt(4) == 0 )  gram[gram.length-1]= 99;
+                int[] f= expected.get(Arrays.toString(gram));
+                boolean marker= false;
+                for (int c : gram)  marker|= c == -1001;
+                if ( marker )  continue;
+                assertEquals(f == null ? 0 : f[0], ngv.tf(gram));
+                assertEquals(f == null ? 0 : f[1], ngv.df(gram));
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*************************************************************************
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 2005-2011 UBI/HULTIG All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 3 only ("GPL"). You may not use this
+ * file except in compliance with the License. You can obtain a copy of
+ * the License at http://www.gnu.org/licenses/gpl.txt. See the License
+ * for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * When distributing the software, include this License Header Notice
+ * in each file. If applicable, add the following below the License
+ * Header, with the fields enclosed by brackets [] replaced by your own
+ * identifying information:
+ *
+ *       "Portions Copyrighted [year] [name of copyright owner]"
+ *************************************************************************
+ */
+package hultig.sumo;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+/**
+ * Tests the {@link SentenceIndex} candidates against a scan of all the
+ * indexed sentences.
+ *
+ * @author J. P. Cordeiro
+ */
+public class SentenceIndexTest
+{
+    private static final String[] WORDS= {
+        "the", "cat", "dog", "sat", "on", "a", "mat", "ran", "in", "park",
+        "big", "small", "red", "house", "tree", "bird", "saw", "near", "old", "man"
+    };
+
+    private static Sentence sentence(Random r, int nwords, String[] words) {
+        StringBuilder sb= new StringBuilder();
+        for (int i = 0; i < nwords; i++) {
+            if ( i > 0 )  sb.append(' ');
+            sb.append(words[r.nextInt(words.length)]);
+        }
+        return new Sentence(sb.toString());
+    }
+
+    private static HashSet<String> lowerWords(Sentence s) {
+        HashSet<String> h= new HashSet<String>();
+        for (String w : s.getWords())  h.add(w.toLowerCase());
+        return h;
+    }
+
+    @Test
+    public void testCandidatesOfOutsideQuery() {
+        Random r= new Random(7);
+        Sentence[] vs= new Sentence[200];
+        for (int i = 0; i < vs.length; i++)  vs[i]= sentence(r, 3 + r.nextInt(8), WORDS);
+        SentenceIndex index= new SentenceIndex(vs);
+        assertNotNull(index.getDictionary());
+
+        String[] mixed= Arrays.copyOf(WORDS, WORDS.length + 3);
+        mixed[WORDS.length]= "unseen";
+        mixed[WORDS.length+1]= "other";
+        mixed[WORDS.length+2]= "words";
+        for (int t = 0; t < 50; t++) {
+            Sentence q= sentence(r, 2 + r.nextInt(6), mixed);
+            HashSet<String> hq= lowerWords(q);
+            for (int k = 1; k <= 3; k++) {
+                int n= 0;
+                int[] expected= new int[vs.length];
+                for (int i = 0; i < vs.length; i++) {
+                    HashSet<String> h= lowerWords(vs[i]);
+                    h.retainAll(hq);
+                    if ( h.size() >= k )  expected[n++]= i;
+                }
+                assertArrayEquals(Arrays.copyOf(expected, n), index.candidates(q, k));
+            }
+            assertFalse("the query must not be codified", q.isCodefied());
+        }
+    }
+
+    @Test(expected= IllegalStateException.class)
+    public void testUnknownDictionary() {
+        Random r= new Random(3);
+        Sentence[] vs= new Sentence[10];
+        for (int i = 0; i < vs.length; i++)  vs[i]= sentence(r, 4, WORDS);
+        CorpusIndex.codifyOnFly(vs);
+        SentenceIndex index= new SentenceIndex(vs);
+        assertNull(index.getDictionary());
+        index.candidates(sentence(r, 4, WORDS), 1);
+    }
+}
@@ -0,0 +1,92 @@
+/*************************************************************************
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 2005-2011 UBI/HULTIG All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 3 only ("GPL"). You may not use this
+ * file except in compliance with the License. You can obtain a copy of
+ * the License at http://www.gnu.org/licenses/gpl.txt. See the License
+ * for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * When distributing the software, include this License Header Notice
+ * in each file. If applicable, add the following below the License
+ * Header, with the fields enclosed by brackets [] replaced by your own
+ * identifying information:
+ *
+ *       "Portions Copyrighted [year] [name of copyright owner]"
+ *************************************************************************
+ */
+package hultig.sumo;
+
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+/**
+ * Tests the word level <i>Edit Distance</i> of {@link Sentence} against
+ * the full dynamic programming matrix.
+ *
+ * @author J. P. Cordeiro
+ */
+public class SentenceTest
+{
+    private static final String[] WORDS= { "the", "a", "cat", "dog", "sat", "ran", "mat", "on" };
+
+    private static int levenshtein(int[] ca, String[] wa, int[] cb, String[] wb) {
+        int n= ca.length, m= cb.length;
+        int[][] d= new int[n+1][m+1];
+        for (int i = 0; i <= n; i++)  d[i][0]= i;
+        for (int j = 0; j <= m; j++)  d[0][j]= j;
+        for (int i = 1; i <= n; i++) {
+            for (int j = 1; j <= m; j++) {
+                boolean same= ca[i-1] >= 0 && cb[j-1] >= 0 ? ca[i-1] == cb[j-1] : wa[i-1].equals(wb[j-1]);
+                d[i][j]= Math.min(d[i-1][j-1] + (same ? 0 : 1), Math.min(d[i-1][j], d[i][j-1]) + 1);
+            }
+        }
+        return d[n][m];
+    }
+
+    /**
+     * The words of a random sentence, and their codes, some of them not
+     * codified.
+     */
+    private static Object[] sentence(Random r) {
+        int n= r.nextInt(r.nextInt(5) == 0 ? 90 : 15);
+        int[] codes= new int[n];
+        String[] words= new String[n];
+        for (int i = 0; i < n; i++) {
+            int w= r.nextInt(WORDS.length);
+            words[i]= WORDS[w];
+            codes[i]= r.nextInt(6) == 0 ? -1 : w;
+        }
+        return new Object[] { codes, words };
+    }
+
+    @Test
+    public void testDsLevenshtein() {
+        Random r= new Random(8);
+        for (int t = 0; t < 2000; t++) {
+            Object[] a= sentence(r), b= sentence(r);
+            int[] ca= (int[]) a[0], cb= (int[]) b[0];
+            String[] wa= (String[]) a[1], wb= (String[]) b[1];
+            int d= levenshtein(ca, wa, cb, wb);
+            assertEquals(d, Sentence.dsLevenshtein(ca, wa, cb, wb));
+            for (int k = 0; k <= 6; k++) {
+                assertEquals(Math.min(d, k+1), Sentence.dsLevenshtein(ca, wa, cb, wb, k));
+            }
+        }
+    }
+
+    @Test
+    public void testSentences() {
+        Sentence a= new Sentence("the cat sat on the mat");
+        Sentence b= new Sentence("a dog sat on a mat");
+        Sentence.ensureCodification(a, b);
+        assertEquals(3, a.dsLevenshtein(b));
+        assertEquals(2, a.dsLevenshtein(b, 1));
+    }
+}
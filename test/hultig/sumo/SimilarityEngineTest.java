@@ -0,0 +1,107 @@
+/*************************************************************************
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 2005-2011 UBI/HULTIG All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 3 only ("GPL"). You may not use this
+ * file except in compliance with the License. You can obtain a copy of
+ * the License at http://www.gnu.org/licenses/gpl.txt. See the License
+ * for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * When distributing the software, include this License Header Notice
+ * in each file. If applicable, add the following below the License
+ * Header, with the fields enclosed by brackets [] replaced by your own
+ * identifying information:
+ *
+ *       "Portions Copyrighted [year] [name of copyright owner]"
+ *************************************************************************
+ */
+package hultig.sumo;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import hultig.util.MatrixItem;
+
+
+/**
+ * Tests the parallel {@link SimilarityEngine} searches against the
+ * pairwise similarities.
+ *
+ * @author J. P. Cordeiro
+ */
+public class SimilarityEngineTest
+{
+    private static final String[] WORDS= { "the", "a", "cat", "dog", "sat", "ran", "mat", "on", "old", "park" };
+
+    private int grain;
+    private ForkJoinPool pool;
+    private SimilarityEngine engine;
+
+    @Before
+    public void setUp() {
+        grain= SimilarityEngine.GRAIN;
+        SimilarityEngine.GRAIN= 8;
+        pool= new ForkJoinPool(4);
+
+        Random r= new Random(4);
+        Sentence[] vs= new Sentence[120];
+        for (int i = 0; i < vs.length; i++) {
+            StringBuilder sb= new StringBuilder();
+            for (int e = 2 + r.nextInt(8); e > 0; e--)  sb.append(WORDS[r.nextInt(WORDS.length)]).append(' ');
+            vs[i]= new Sentence(sb.toString().trim());
+        }
+        engine= new SimilarityEngine(vs, Sentence.Metric.EDIT, pool);
+    }
+
+    @After
+    public void tearDown() {
+        SimilarityEngine.GRAIN= grain;
+        pool.shutdown();
+    }
+
+    @Test
+    public void testTopK() {
+        int n= engine.size(), k= 4;
+        MatrixItem[][] M= engine.topK(k);
+        for (int i = 0; i < n; i++) {
+            double[] all= new double[n-1];
+            for (int j = 0, e = 0; j < n; j++)  if ( j != i )  all[e++]= engine.similarity(i, j);
+            Arrays.sort(all);
+
+            assertEquals(k, M[i].length);
+            for (int e = 0; e < k; e++) {
+                assertEquals(i, M[i][e].i());
+                assertEquals(all[all.length-1-e], M[i][e].aij(), 0.0);
+                assertEquals(engine.similarity(i, M[i][e].j()), M[i][e].aij(), 0.0);
+            }
+        }
+    }
+
+    @Test
+    public void testPairsAbove() {
+        int n= engine.size();
+        double threshold= 0.5;
+        List<MatrixItem> v= engine.pairsAbove(threshold);
+        int e= 0;
+        for (int i = 0; i < n; i++) {
+            for (int j = i+1; j < n; j++) {
+                if ( engine.similarity(i, j) < threshold )  continue;
+                assertTrue(e < v.size());
+                assertEquals(i, v.get(e).i());
+                assertEquals(j, v.get(e).j());
+                e++;
+            }
+        }
+        assertEquals(e, v.size());
+    }
+}
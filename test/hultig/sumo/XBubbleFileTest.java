@@ -0,0 +1,238 @@
+/*************************************************************************
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 2005-2012 UBI/HULTIG All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 3 only ("GPL"). You may not use this
+ * file except in compliance with the License. You can obtain a copy of
+ * the License at http://www.gnu.org/licenses/gpl.txt. See the License
+ * for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * When distributing the software, include this License Header Notice
+ * in each file. If applicable, add the following below the License
+ * Header, with the fields enclosed by brackets [] replaced by your own
+ * identifying information:
+ *
+ *       "Portions Copyrighted [year] [name of copyright owner]"
+ *************************************************************************
+ */
+package hultig.sumo;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.Vector;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+/**
+ * Tests the {@link XBubbleFile} read back of the bubbles written by a
+ * {@link XBubbleFileWriter}, in several blocks, when appending, and after
+ * an interrupted write.
+ *
+ * @author J. P. Cordeiro
+ */
+public class XBubbleFileTest
+{
+    private static final String[] WORDS= { "the", "cat", "s\u00e3o", "ma\u00e7\u00e3", "\u20ac", "park", "ran" };
+
+    private int blockSize;
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        blockSize= XBubbleFileWriter.BLOCK_SIZE;
+        file= File.createTempFile("xbubble", ".dat");
+    }
+
+    @After
+    public void tearDown() {
+        XBubbleFileWriter.BLOCK_SIZE= blockSize;
+        file.delete();
+    }
+
+    private static POSType postype(Random r) {
+        String[][] tags= new String[1 + r.nextInt(4)][];
+        for (int i = 0; i < tags.length; i++) {
+            if ( i > 0 && r.nextInt(4) == 0 )  continue;
+            tags[i]= new String[1 + r.nextInt(3)];
+            for (int j = 0; j < tags[i].length; j++)  tags[i][j]= "T" + r.nextInt(6);
+        }
+        return new POSType(tags);
+    }
+
+    private static Word word(Random r) {
+        if ( r.nextInt(10) == 0 )  return null;
+        Word w= new Word();
+        Vector<String> meta= null;
+        if ( r.nextBoolean() ) {
+            meta= new Vector<String>();
+            for (int k = r.nextInt(3); k > 0; k--)  meta.add("m" + r.nextInt(4));
+        }
+        char[] pos= r.nextBoolean() ? ("P" + r.nextInt(5)).toCharArray() : null;
+        w.restore(WORDS[r.nextInt(WORDS.length)] + (r.nextInt(4) == 0 ? "" + r.nextInt(100) : ""), meta, pos);
+        if ( r.nextBoolean() ) {
+            w.cods= new int[r.nextInt(4)];
+            for (int k = 0; k < w.cods.length; k++)  w.cods[k]= r.nextInt() >> r.nextInt(32);
+        }
+        ChunkTag[] vct= ChunkTag.values();
+        w.CHTAG= r.nextBoolean() ? vct[r.nextInt(vct.length)] : null;
+        w.FREQ= r.nextLong() >> r.nextInt(64);
+        return w;
+    }
+
+    private static Word[] segment(Random r) {
+        if ( r.nextInt(8) == 0 )  return null;
+        Word[] v= new Word[r.nextInt(5)];
+        for (int k = 0; k < v.length; k++)  v[k]= word(r);
+        return v;
+    }
+
+    private static ArrayList<XBubble> bubbles(Random r, int n, POSType[] vpt) {
+        ArrayList<XBubble> v= new ArrayList<XBubble>(n);
+        for (int i = 0; i < n; i++) {
+            Word[][] wx= null;
+            if ( r.nextInt(5) != 0 ) {
+                wx= new Word[r.nextInt(3)][];
+                for (int j = 0; j < wx.length; j++)  wx[j]= segment(r);
+            }
+            XBubble xb= new XBubble(segment(r), wx, segment(r));
+            //equal POS types, in different objects, are written once.
+            POSType pt= vpt[r.nextInt(vpt.length)];
+            xb.POST= pt == null || r.nextBoolean() ? pt : new POSType(pt.toArray(new String[0][]));
+            v.add(xb);
+        }
+        return v;
+    }
+
+    private static void assertEqualPOS(POSType a, POSType b) {
+        if ( a == null || b == null ) {
+            assertSame(a, b);
+            return;
+        }
+        assertEquals(a.size(), b.size());
+        for (int i = 0; i < a.size(); i++)  assertArrayEquals(a.get(i), b.get(i));
+    }
+
+    private static void assertEqualWords(Word[] a, Word[] b) {
+        if ( a == null || b == null ) {
+            assertSame(a, b);
+            return;
+        }
+        assertEquals(a.length, b.length);
+        for (int k = 0; k < a.length; k++) {
+            Word x= a[k], y= b[k];
+            if ( x == null || y == null ) {
+                assertSame(x, y);
+                continue;
+            }
+            assertEquals(x.toString(), y.toString());
+            assertEquals(x.metaList(), y.metaList());
+            assertArrayEquals(x.posChars(), y.posChars());
+            assertArrayEquals(x.cods, y.cods);
+            assertSame(x.CHTAG, y.CHTAG);
+            assertEquals(x.FREQ, y.FREQ);
+        }
+    }
+
+    private static void assertEqualBubbles(ArrayList<XBubble> expected, XBubbleList lxb) {
+        assertEquals(expected.size(), lxb.size());
+        for (int i = 0; i < expected.size(); i++) {
+            XBubble a= expected.get(i), b= lxb.get(i);
+            assertEqualWords(a.WL, b.WL);
+            assertEqualWords(a.WR, b.WR);
+            if ( a.WX == null || b.WX == null )
+                assertSame(a.WX, b.WX);
+            else {
+                assertEquals(a.WX.length, b.WX.length);
+                for (int j = 0; j < a.WX.length; j++)  assertEqualWords(a.WX[j], b.WX[j]);
+            }
+            assertEqualPOS(a.POST, b.POST);
+        }
+    }
+
+    private static POSType[] postypes(Random r) {
+        return new POSType[] { null, postype(r), postype(r), postype(r) };
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Random r= new Random(25);
+        for (int t = 0; t < 30; t++) {
+            XBubbleFileWriter.BLOCK_SIZE= 1 + r.nextInt(20);
+            POSType[] vpt= postypes(r);
+            ArrayList<XBubble> v= bubbles(r, r.nextInt(100), vpt);
+            POSType lpt= vpt[r.nextInt(vpt.length)];
+
+            XBubbleFileWriter xbw= new XBubbleFileWriter(file.getPath(), 3, lpt);
+            for (XBubble xb : v)  xbw.add(xb);
+            assertEquals(v.size(), xbw.size());
+            xbw.close();
+
+            assertTrue(XBubbleFile.isXBubbleFile(file.getPath()));
+            XBubbleList lxb= XBubbleFile.load(file.getPath());
+            assertEquals(3, lxb.FORMAT);
+            assertEqualPOS(lpt, lxb.getPOSType());
+            assertEqualBubbles(v, lxb);
+        }
+    }
+
+    @Test
+    public void testAppend() throws IOException {
+        Random r= new Random(26);
+        XBubbleFileWriter.BLOCK_SIZE= 7;
+        file.delete();
+        POSType[] vpt= postypes(r);
+        ArrayList<XBubble> all= new ArrayList<XBubble>();
+        for (int t = 0; t < 6; t++) {
+            ArrayList<XBubble> v= bubbles(r, r.nextInt(30), vpt);
+            XBubbleFileWriter xbw= new XBubbleFileWriter(file.getPath());
+            assertEquals(all.size(), xbw.size());
+            for (XBubble xb : v)  xbw.add(xb);
+            xbw.close();
+            all.addAll(v);
+            assertEqualBubbles(all, XBubbleFile.load(file.getPath()));
+        }
+    }
+
+    @Test
+    public void testInterrupted() throws IOException {
+        Random r= new Random(27);
+        XBubbleFileWriter.BLOCK_SIZE= 5;
+        POSType[] vpt= postypes(r);
+        ArrayList<XBubble> v= bubbles(r, 40, vpt);
+        XBubbleFileWriter xbw= new XBubbleFileWriter(file.getPath(), XBubbleList.ARFF, null);
+        for (XBubble xb : v.subList(0, 20))  xbw.add(xb);
+        xbw.close();
+        long complete= file.length();
+
+        xbw= new XBubbleFileWriter(file.getPath());
+        for (XBubble xb : v.subList(20, 25))  xbw.add(xb);
+        xbw.close();
+
+        //cuts the last block, as an interrupted write.
+        RandomAccessFile raf= new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(complete + (file.length() - complete) / 2);
+        }
+        finally {
+            raf.close();
+        }
+        assertEqualBubbles(new ArrayList<XBubble>(v.subList(0, 20)), XBubbleFile.load(file.getPath()));
+
+        xbw= new XBubbleFileWriter(file.getPath());
+        assertEquals(20, xbw.size());
+        for (XBubble xb : v.subList(20, 40))  xbw.add(xb);
+        xbw.close();
+        assertTrue(file.length() > complete);
+        assertEqualBubbles(v, XBubbleFile.load(file.getPath()));
+    }
+}
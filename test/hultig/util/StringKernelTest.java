@@ -0,0 +1,129 @@
+/*************************************************************************
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 2005-2011 UBI/HULTIG All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 3 only ("GPL"). You may not use this
+ * file except in compliance with the License. You can obtain a copy of
+ * the License at http://www.gnu.org/licenses/gpl.txt. See the License
+ * for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * When distributing the software, include this License Header Notice
+ * in each file. If applicable, add the following below the License
+ * Header, with the fields enclosed by brackets [] replaced by your own
+ * identifying information:
+ *
+ *       "Portions Copyrighted [year] [name of copyright owner]"
+ *************************************************************************
+ */
+package hultig.util;
+
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+/**
+ * Tests the {@link StringKernel} bit-parallel and banded kernels against
+ * the full dynamic programming matrices.
+ *
+ * @author J. P. Cordeiro
+ */
+public class StringKernelTest
+{
+    /**
+     * Random strings over a small alphabet, with some characters above 255,
+     * shorter and longer than the 64 characters of a machine word.
+     */
+    private static String random(Random r) {
+        int len= r.nextInt(4) == 0 ? 60 + r.nextInt(80) : r.nextInt(20);
+        String alpha= r.nextBoolean() ? "abcd" : "ab\u00e7\u0101\u20ac";
+        StringBuilder sb= new StringBuilder(len);
+        for (int i = 0; i < len; i++)  sb.append(alpha.charAt(r.nextInt(alpha.length())));
+        return sb.toString();
+    }
+
+    private static String mutate(Random r, String s) {
+        StringBuilder sb= new StringBuilder(s);
+        for (int e = r.nextInt(6); e > 0 && sb.length() > 0; e--) {
+            int i= r.nextInt(sb.length());
+            switch ( r.nextInt(3) ) {
+                case 0:  sb.deleteCharAt(i);  break;
+                case 1:  sb.insert(i, 'x');  break;
+                default: sb.setCharAt(i, 'y');
+            }
+        }
+        return sb.toString();
+    }
+
+    private static int levenshtein(String s, String t) {
+        int n= s.length(), m= t.length();
+        int[][] d= new int[n+1][m+1];
+        for (int i = 0; i <= n; i++)  d[i][0]= i;
+        for (int j = 0; j <= m; j++)  d[0][j]= j;
+        for (int i = 1; i <= n; i++) {
+            for (int j = 1; j <= m; j++) {
+                int c= s.charAt(i-1) == t.charAt(j-1) ? 0 : 1;
+                d[i][j]= Math.min(d[i-1][j-1] + c, Math.min(d[i-1][j], d[i][j-1]) + 1);
+            }
+        }
+        return d[n][m];
+    }
+
+    private static int lcsubstr(String s, String t) {
+        int best= 0;
+        for (int i = 0; i < s.length(); i++) {
+            for (int j = 0; j < t.length(); j++) {
+                int l= 0;
+                while ( i+l < s.length() && j+l < t.length() && s.charAt(i+l) == t.charAt(j+l) )  l++;
+                best= Math.max(best, l);
+            }
+        }
+        return best;
+    }
+
+    @Test
+    public void testLevenshtein() {
+        Random r= new Random(10);
+        for (int t = 0; t < 3000; t++) {
+            String a= random(r);
+            String b= r.nextBoolean() ? mutate(r, a) : random(r);
+            int d= levenshtein(a, b);
+            assertEquals(a + " / " + b, d, StringKernel.levenshtein(a, b));
+            for (int k = 0; k <= 8; k++) {
+                assertEquals(a + " / " + b + " k=" + k, Math.min(d, k+1), StringKernel.levenshtein(a, b, k));
+            }
+        }
+    }
+
+    @Test
+    public void testSymbols() {
+        Random r= new Random(12);
+        for (int t = 0; t < 1000; t++) {
+            final String a= random(r);
+            final String b= mutate(r, a);
+            StringKernel.Symbols eq= new StringKernel.Symbols() {
+                @Override
+                public boolean same(int i, int j) {
+                    return a.charAt(i) == b.charAt(j);
+                }
+            };
+            int d= levenshtein(a, b);
+            int k= r.nextInt(10);
+            assertEquals(Math.min(d, k+1), StringKernel.levenshtein(a.length(), b.length(), eq, k));
+        }
+    }
+
+    @Test
+    public void testLongestCommonSubstring() {
+        Random r= new Random(14);
+        for (int t = 0; t < 2000; t++) {
+            String a= random(r);
+            String b= r.nextBoolean() ? mutate(r, a) : random(r);
+            assertEquals(a + " / " + b, lcsubstr(a, b), StringKernel.lcsubstr(a, b));
+        }
+    }
+}
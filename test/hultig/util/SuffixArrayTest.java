@@ -0,0 +1,102 @@
+/*************************************************************************
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright 2005-2012 UBI/HULTIG All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 3 only ("GPL"). You may not use this
+ * file except in compliance with the License. You can obtain a copy of
+ * the License at http://www.gnu.org/licenses/gpl.txt. See the License
+ * for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * When distributing the software, include this License Header Notice
+ * in each file. If applicable, add the following below the License
+ * Header, with the fields enclosed by brackets [] replaced by your own
+ * identifying information:
+ *
+ *       "Portions Copyrighted [year] [name of copyright owner]"
+ *************************************************************************
+ */
+package hultig.util;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+/**
+ * Tests the {@link SuffixArray} SA-IS and Kasai constructions against
+ * the comparison sort of the suffixes and their direct comparison.
+ *
+ * @author J. P. Cordeiro
+ */
+public class SuffixArrayTest
+{
+    private static int[] sorted(final int[] v, final boolean prefixFirst) {
+        Integer[] vi= new Integer[v.length];
+        for (int i = 0; i < v.length; i++)  vi[i]= i;
+        Arrays.sort(vi, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                int i= a, j= b;
+                while ( i < v.length && j < v.length ) {
+                    if ( v[i] != v[j] )  return v[i] < v[j] ? -1 : 1;
+                    i++;
+                    j++;
+                }
+                if ( i < v.length )  return prefixFirst ? 1 : -1;
+                if ( j < v.length )  return prefixFirst ? -1 : 1;
+                return 0;
+            }
+        });
+        int[] suf= new int[v.length];
+        for (int i = 0; i < v.length; i++)  suf[i]= vi[i];
+        return suf;
+    }
+
+    private static int[] lcp(int[] v, int[] suf) {
+        int[] lcp= new int[v.length+1];
+        for (int i = 1; i < v.length; i++) {
+            int a= suf[i-1], b= suf[i], l= 0;
+            while ( a+l < v.length && b+l < v.length && v[a+l] == v[b+l] )  l++;
+            lcp[i]= l;
+        }
+        return lcp;
+    }
+
+    /**
+     * Random sequences, from runs of one symbol to large and negative
+     * values, as the lexical codes and the -1001 document marker.
+     */
+    private static int[] random(Random r) {
+        int n= r.nextInt(300);
+        int[] v= new int[n];
+        int kind= r.nextInt(4);
+        for (int i = 0; i < n; i++) {
+            switch ( kind ) {
+                case 0:  v[i]= 7;  break;
+                case 1:  v[i]= r.nextInt(2);  break;
+                case 2:  v[i]= r.nextInt(5) == 0 ? -1001 : r.nextInt(1 << 20);  break;
+                default: v[i]= i > 8 && r.nextBoolean() ? v[i - 1 - r.nextInt(8)] : r.nextInt(6);
+            }
+        }
+        return v;
+    }
+
+    @Test
+    public void testBuild() {
+        Random r= new Random(7);
+        for (int t = 0; t < 2000; t++) {
+            int[] v= random(r);
+            for (boolean prefixFirst : new boolean[] { true, false }) {
+                int[] suf= SuffixArray.build(v, prefixFirst);
+                assertArrayEquals(sorted(v, prefixFirst), suf);
+                assertArrayEquals(lcp(v, suf), SuffixArray.lcp(v, suf));
+            }
+        }
+    }
+}